@@ -1,3 +1,5 @@
+import java.time.Clock;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.Objects;
 
@@ -6,60 +8,206 @@ import java.util.Objects;
  *
  * Requirements:
  * - appointmentId: required, unique (enforced by AppointmentService), not null, max 10 chars, NOT updatable
- * - appointmentDate: required, not null, cannot be in the past (use before(new Date()))
+ * - appointmentDate: required, not null, cannot be in the past (checked against the given Clock)
  * - description: required, not null, max 50 chars
+ * - durationMillis: optional, not negative (0 when not given)
+ * - owner: optional resource or person the appointment books, max 20 chars (null when not given)
+ *
+ * An appointment with an owner and a positive duration is a booking of the half-open slot
+ * [appointmentTime, getEndTime()); AppointmentService rejects bookings that overlap another
+ * booking of the same owner.
+ *
+ * The date is stored as primitive epoch millis. getAppointmentTime() is the allocation-free
+ * accessor for hot paths; getAppointmentDate() still returns a defensive Date copy.
+ *
+ * Validation runs on the allocation-free checks in Validation; check() exposes them
+ * directly as error codes for callers that do not want exceptions.
  */
 public class Appointment {
 
     public static final int MAX_ID_LENGTH = 10;
     public static final int MAX_DESCRIPTION_LENGTH = 50;
+    public static final int MAX_OWNER_LENGTH = 20;
+
+    /** Field numbers in the codes returned by check(). */
+    public static final int FIELD_ID = 1;
+    public static final int FIELD_DATE = 2;
+    public static final int FIELD_DESCRIPTION = 3;
+    public static final int FIELD_DURATION = 4;
+    public static final int FIELD_OWNER = 5;
+
+    private static final String[] FIELD_NAMES =
+            {null, "appointmentId", "appointmentDate", "description", "durationMillis", "owner"};
+    private static final int[] FIELD_LIMITS = {0, MAX_ID_LENGTH, 0, MAX_DESCRIPTION_LENGTH, 0, MAX_OWNER_LENGTH};
+
+    /** Orders by appointment time, then by ID; compares primitives only, so sorting allocates nothing per element. */
+    public static final Comparator<Appointment> BY_APPOINTMENT_TIME =
+            Comparator.comparingLong(Appointment::getAppointmentTime).thenComparing(Appointment::getAppointmentId);
+
+    private static final Clock SYSTEM_CLOCK = Clock.systemUTC();
 
     private final String appointmentId; // not updatable
-    private final Date appointmentDate; // not updatable per assignment (only required field)
+    private final long appointmentTime; // epoch millis; not updatable per assignment (only required field)
     private final String description;   // not updatable per assignment (only required field)
+    private final long durationMillis;  // 0 when not given
+    private final String owner;         // null when not given
 
     public Appointment(String appointmentId, Date appointmentDate, String description) {
+        this(appointmentId, appointmentDate, description, SYSTEM_CLOCK);
+    }
+
+    /** Validates appointmentDate against the given clock instead of the system clock. */
+    public Appointment(String appointmentId, Date appointmentDate, String description, Clock clock) {
+        this.appointmentId = validateId(appointmentId);
+        this.appointmentTime = validateDate(appointmentDate, clock);
+        this.description = validateDescription(description);
+        this.durationMillis = 0;
+        this.owner = null;
+    }
+
+    public Appointment(String appointmentId, long appointmentTime, String description) {
+        this(appointmentId, appointmentTime, description, SYSTEM_CLOCK);
+    }
+
+    /** Epoch-millis variant that avoids building a Date at all. */
+    public Appointment(String appointmentId, long appointmentTime, String description, Clock clock) {
+        this(appointmentId, appointmentTime, 0, null, description, clock);
+    }
+
+    /** Appointment that lasts durationMillis and books owner (null for none). */
+    public Appointment(String appointmentId, long appointmentTime, long durationMillis, String owner,
+                       String description) {
+        this(appointmentId, appointmentTime, durationMillis, owner, description, SYSTEM_CLOCK);
+    }
+
+    public Appointment(String appointmentId, long appointmentTime, long durationMillis, String owner,
+                       String description, Clock clock) {
         this.appointmentId = validateId(appointmentId);
-        this.appointmentDate = validateDate(appointmentDate);
+        this.appointmentTime = validateTime(appointmentTime, clock);
         this.description = validateDescription(description);
+        this.durationMillis = validateDuration(durationMillis);
+        this.owner = owner == null ? null : validateOwner(owner);
     }
 
     public String getAppointmentId() { return appointmentId; }
-    public Date getAppointmentDate() { return new Date(appointmentDate.getTime()); } // defensive copy
+    public long getAppointmentTime() { return appointmentTime; } // epoch millis, no allocation
+    public Date getAppointmentDate() { return new Date(appointmentTime); } // defensive copy
     public String getDescription() { return description; }
+    public long getDurationMillis() { return durationMillis; }
+    public String getOwner() { return owner; } // null when the appointment books no one
+
+    /** End of the appointment in epoch millis (exclusive); saturates instead of overflowing. */
+    public long getEndTime() {
+        long end = appointmentTime + durationMillis;
+        return end < appointmentTime ? Long.MAX_VALUE : end;
+    }
+
+    /** True for an appointment that occupies a slot of its owner's time. */
+    public boolean isBooking() {
+        return owner != null && durationMillis > 0;
+    }
+
+    /**
+     * Allocation-free check of the values new Appointment(id, time, description, clock) would
+     * accept: returns Validation.OK, or Validation.code(FIELD_..., kind) for the first failing
+     * field, without building an exception or a message; describe(code) explains a failure.
+     */
+    public static int check(String appointmentId, long appointmentTime, String description, Clock clock) {
+        return check(appointmentId, appointmentTime, 0, null, description, clock);
+    }
 
-    private static String validateId(String id) {
-        String value = requireNonBlank(id, "appointmentId");
-        if (value.length() > MAX_ID_LENGTH) {
-            throw new ValidationException("appointmentId must be <= " + MAX_ID_LENGTH + " characters");
+    /** check for the constructor that takes a duration and an owner. */
+    public static int check(String appointmentId, long appointmentTime, long durationMillis, String owner,
+                            String description, Clock clock) {
+        Objects.requireNonNull(clock, "clock must not be null");
+        int kind = Validation.text(appointmentId, MAX_ID_LENGTH);
+        if (kind != Validation.OK) {
+            return Validation.code(FIELD_ID, kind);
+        }
+        kind = Validation.notBefore(appointmentTime, clock.millis());
+        if (kind != Validation.OK) {
+            return Validation.code(FIELD_DATE, kind);
+        }
+        kind = Validation.text(description, MAX_DESCRIPTION_LENGTH);
+        if (kind != Validation.OK) {
+            return Validation.code(FIELD_DESCRIPTION, kind);
         }
-        return value;
+        kind = Validation.notNegative(durationMillis);
+        if (kind != Validation.OK) {
+            return Validation.code(FIELD_DURATION, kind);
+        }
+        return owner == null ? Validation.OK : Validation.code(FIELD_OWNER, Validation.text(owner, MAX_OWNER_LENGTH));
+    }
+
+    /** check against the system clock. */
+    public static int check(String appointmentId, long appointmentTime, String description) {
+        return check(appointmentId, appointmentTime, description, SYSTEM_CLOCK);
     }
 
-    private static Date validateDate(Date date) {
-        Objects.requireNonNull(date, "appointmentDate must not be null");
-        Date now = new Date();
-        if (date.before(now)) {
-            throw new ValidationException("appointmentDate cannot be in the past");
+    /** Pass/fail form of check, against the system clock. */
+    public static boolean isValid(String appointmentId, long appointmentTime, String description) {
+        return check(appointmentId, appointmentTime, description, SYSTEM_CLOCK) == Validation.OK;
+    }
+
+    /** The message the constructor would throw for a non-OK code returned by check. */
+    public static String describe(int code) {
+        int field = Validation.fieldOf(code);
+        if (field < FIELD_ID || field > FIELD_OWNER) {
+            throw new IllegalArgumentException("not an Appointment validation code: " + code);
         }
-        return new Date(date.getTime()); // defensive copy
+        return Validation.message(FIELD_NAMES[field], Validation.kindOf(code), FIELD_LIMITS[field]);
     }
 
-    private static String validateDescription(String description) {
-        String value = requireNonBlank(description, "description");
-        if (value.length() > MAX_DESCRIPTION_LENGTH) {
-            throw new ValidationException("description must be <= " + MAX_DESCRIPTION_LENGTH + " characters");
+    /** Validates and trims an appointmentId; also used by AppointmentService for lookups. */
+    static String validateId(String id) {
+        return validateText(FIELD_ID, id);
+    }
+
+    /** Validates and trims an owner; also used by AppointmentService for owner queries. */
+    static String validateOwner(String owner) {
+        return validateText(FIELD_OWNER, owner);
+    }
+
+    private static long validateDuration(long durationMillis) {
+        int kind = Validation.notNegative(durationMillis);
+        if (kind != Validation.OK) {
+            throw invalid(FIELD_DURATION, kind);
+        }
+        return durationMillis;
+    }
+
+    private static long validateDate(Date date, Clock clock) {
+        if (date == null) {
+            throw invalid(FIELD_DATE, Validation.NULL);
+        }
+        return validateTime(date.getTime(), clock);
+    }
+
+    private static long validateTime(long time, Clock clock) {
+        Objects.requireNonNull(clock, "clock must not be null");
+        int kind = Validation.notBefore(time, clock.millis());
+        if (kind != Validation.OK) {
+            throw invalid(FIELD_DATE, kind);
         }
-        return value;
+        return time;
+    }
+
+    private static String validateDescription(String description) {
+        return validateText(FIELD_DESCRIPTION, description);
     }
 
-    private static String requireNonBlank(String s, String fieldName) {
-        Objects.requireNonNull(s, fieldName + " must not be null");
-        String trimmed = s.trim();
-        if (trimmed.isEmpty()) {
-            throw new ValidationException(fieldName + " must not be blank");
+    private static String validateText(int field, String value) {
+        int kind = Validation.text(value, FIELD_LIMITS[field]);
+        if (kind != Validation.OK) {
+            throw invalid(field, kind);
         }
-        return trimmed;
+        return Validation.trim(value);
+    }
+
+    /** NullPointerException for a missing value, ValidationException for any other failure. */
+    private static RuntimeException invalid(int field, int kind) {
+        String message = Validation.message(FIELD_NAMES[field], kind, FIELD_LIMITS[field]);
+        return kind == Validation.NULL ? new NullPointerException(message) : new ValidationException(message);
     }
 
     public static class ValidationException extends RuntimeException {
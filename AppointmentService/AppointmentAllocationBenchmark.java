@@ -0,0 +1,88 @@
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Allocation benchmark for the Appointment hot path.
+ *
+ * Sorts and range-filters an array of appointments by getAppointmentTime() and reports the
+ * bytes allocated by the measuring thread per element, next to the same work done through
+ * the defensive getAppointmentDate() copy for comparison.
+ *
+ * Usage: java AppointmentAllocationBenchmark [appointments]
+ */
+public class AppointmentAllocationBenchmark {
+
+    private static final long START = 1_700_000_000_000L;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Clock clock = Clock.fixed(Instant.ofEpochMilli(START), ZoneOffset.UTC);
+
+        Appointment[] appointments = new Appointment[size];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < size; i++) {
+            appointments[i] = new Appointment(Integer.toString(i), START + random.nextLong(86_400_000L * 365),
+                    "Appointment", clock);
+        }
+        long from = START + 86_400_000L * 30;
+        long to = START + 86_400_000L * 60;
+
+        // warm-up
+        for (int i = 0; i < 3; i++) {
+            filterByTime(appointments, from, to);
+            filterByDate(appointments, from, to);
+        }
+
+        long before = allocatedBytes();
+        long matches = filterByTime(appointments, from, to);
+        report("range filter, getAppointmentTime()", before, size, matches);
+
+        before = allocatedBytes();
+        matches = filterByDate(appointments, from, to);
+        report("range filter, getAppointmentDate()", before, size, matches);
+
+        // Arrays.sort allocates one merge buffer for the whole run, not per element
+        Appointment[] copy = appointments.clone();
+        before = allocatedBytes();
+        Arrays.sort(copy, Appointment.BY_APPOINTMENT_TIME);
+        report("sort, BY_APPOINTMENT_TIME", before, size, size);
+    }
+
+    private static long filterByTime(Appointment[] appointments, long from, long to) {
+        long count = 0;
+        for (Appointment a : appointments) {
+            long t = a.getAppointmentTime();
+            if (t >= from && t < to) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static long filterByDate(Appointment[] appointments, long from, long to) {
+        long count = 0;
+        for (Appointment a : appointments) {
+            long t = a.getAppointmentDate().getTime();
+            if (t >= from && t < to) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void report(String name, long allocatedBefore, int size, long result) {
+        long allocated = allocatedBytes() - allocatedBefore;
+        System.out.printf("%-40s %12d bytes %8.3f bytes/element (result %d)%n",
+                name, allocated, (double) allocated / size, result);
+    }
+
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
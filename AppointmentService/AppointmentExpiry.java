@@ -0,0 +1,157 @@
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Background expiry for AppointmentService: removes appointments whose end time is more
+ * than retention in the past, optionally moving them to a cold store first.
+ *
+ * Expired appointments are found from the head of the service's end-time index, so a run
+ * looks only at appointments that have ended, never at the whole store or at long bookings
+ * that started before the cutoff but are still running. They are
+ * removed in batches of batchSize: each batch is deleted one map entry at a time, with one
+ * journal sync per batch, and what was actually deleted (not an appointment changed or
+ * deleted by someone else meanwhile) is handed to the archive callback, if any. No lock is
+ * held across a batch, so readers and writers never wait for a run, and a large backlog is
+ * worked off as a series of short batches rather than one long pause.
+ *
+ * Removals go through the same path as deleteAppointment: they are journaled, published to
+ * the change feed as DELETE events and dropped from every index. If the archive throws, the
+ * batch is stored again (journaled and published as ADD events) and the exception
+ * propagates from runOnce.
+ *
+ * runOnce() expires everything due by the clock's current time; start(interval) calls it
+ * periodically on a daemon thread. The counters report how much was removed and how long
+ * it took.
+ */
+public class AppointmentExpiry implements AutoCloseable {
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final AppointmentService service;
+    private final long retentionMillis;
+    private final Consumer<List<Appointment>> archive; // null: evict only
+    private final Clock clock;
+    private final int batchSize;
+
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxBatchNanos = new AtomicLong();
+    private volatile long lastRunNanos;
+    private final Object runLock = new Object(); // one run at a time
+    private ScheduledExecutorService ticker; // guarded by this
+
+    /** Expiry on the system clock; archive receives each batch once it is removed (null to evict only). */
+    public AppointmentExpiry(AppointmentService service, Duration retention, Consumer<List<Appointment>> archive) {
+        this(service, retention, archive, Clock.systemUTC(), DEFAULT_BATCH_SIZE);
+    }
+
+    public AppointmentExpiry(AppointmentService service, Duration retention, Consumer<List<Appointment>> archive,
+                             Clock clock, int batchSize) {
+        this.service = Objects.requireNonNull(service, "service must not be null");
+        Objects.requireNonNull(retention, "retention must not be null");
+        if (retention.isNegative()) {
+            throw new IllegalArgumentException("retention must not be negative");
+        }
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        this.retentionMillis = retention.toMillis();
+        this.archive = archive;
+        this.clock = Objects.requireNonNull(clock, "clock must not be null");
+        this.batchSize = batchSize;
+    }
+
+    /** Removes every appointment that ended more than retention ago, batch by batch; returns how many. */
+    public int runOnce() {
+        synchronized (runLock) {
+            long start = System.nanoTime();
+            long cutoff = clock.millis() - retentionMillis;
+            int removed = 0;
+            try {
+                while (true) {
+                    long batchStart = System.nanoTime();
+                    int n = service.expire(cutoff, batchSize, archive);
+                    if (n == 0) {
+                        break;
+                    }
+                    long batchNanos = System.nanoTime() - batchStart;
+                    removed += n;
+                    expired.addAndGet(n);
+                    batches.incrementAndGet();
+                    maxBatchNanos.accumulateAndGet(batchNanos, Math::max);
+                    if (n < batchSize) {
+                        break; // caught up, or the rest was deleted meanwhile
+                    }
+                }
+            } finally {
+                long runNanos = System.nanoTime() - start;
+                lastRunNanos = runNanos;
+                totalNanos.addAndGet(runNanos);
+            }
+            return removed;
+        }
+    }
+
+    /** Starts calling runOnce() every interval on a daemon thread; no-op if already started. */
+    public synchronized void start(Duration interval) {
+        long millis = Objects.requireNonNull(interval, "interval must not be null").toMillis();
+        if (millis <= 0) {
+            throw new IllegalArgumentException("interval must be at least 1 ms");
+        }
+        if (ticker != null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread t = new Thread(task, "appointment-expiry");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleWithFixedDelay(this::runQuietly, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stops the background thread; runOnce() still works. */
+    @Override
+    public void close() {
+        ScheduledExecutorService stopping;
+        synchronized (this) {
+            stopping = ticker;
+            ticker = null;
+        }
+        if (stopping != null) {
+            stopping.shutdownNow();
+        }
+    }
+
+    /** Appointments removed so far. */
+    public long getExpiredCount() { return expired.get(); }
+
+    /** Non-empty batches removed so far. */
+    public long getBatchCount() { return batches.get(); }
+
+    /** Time spent in runOnce() so far, in nanoseconds. */
+    public long getTotalNanos() { return totalNanos.get(); }
+
+    /** Duration of the last runOnce(), in nanoseconds. */
+    public long getLastRunNanos() { return lastRunNanos; }
+
+    /** Longest single batch so far, in nanoseconds. */
+    public long getMaxBatchNanos() { return maxBatchNanos.get(); }
+
+    /** runOnce() for the ticker: an exception must not cancel the periodic task. */
+    private void runQuietly() {
+        try {
+            runOnce();
+        } catch (RuntimeException e) {
+            Thread t = Thread.currentThread();
+            t.getUncaughtExceptionHandler().uncaughtException(t, e);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AppointmentExpiryTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long START = 1_000_000_000_000L;
+
+    private final SimulatedClock clock = new SimulatedClock(START);
+    private final AppointmentService service = new AppointmentService();
+
+    private Appointment at(String id, long minute) {
+        return new Appointment(id, START + minute * MINUTE, "Meeting", clock);
+    }
+
+    private static List<String> ids(List<Appointment> appointments) {
+        return appointments.stream().map(Appointment::getAppointmentId).collect(Collectors.toList());
+    }
+
+    @Test
+    void testEndedAppointmentsShouldBeRemovedInBatches() {
+        for (int i = 0; i < 25; i++) {
+            service.addAppointment(at("p" + i, i));
+        }
+        service.addAppointment(at("future", 60));
+        service.addAppointment(new Appointment("running", START + 10 * MINUTE, 30 * MINUTE, "room", "Long", clock));
+        AppointmentExpiry expiry = new AppointmentExpiry(service, Duration.ZERO, null, clock, 10);
+
+        clock.set(START + 30 * MINUTE);
+        assertEquals(25, expiry.runOnce());
+
+        assertEquals(List.of("running", "future"), ids(service.getNextAppointments(START, 100)));
+        assertEquals(25, expiry.getExpiredCount());
+        assertEquals(3, expiry.getBatchCount());
+        assertTrue(expiry.getLastRunNanos() > 0);
+        assertTrue(expiry.getMaxBatchNanos() <= expiry.getTotalNanos());
+        assertEquals(0, expiry.runOnce());
+    }
+
+    @Test
+    void testStepShouldTakeEarliestEndFirstPastRunningBookings() {
+        for (int i = 0; i < 100; i++) { // started before the cutoff, still running after it
+            service.addAppointment(new Appointment("running" + i, START + i, 60 * MINUTE, "room" + i, "Long", clock));
+        }
+        service.addAppointment(new Appointment("long", START, 20 * MINUTE, "hall", "Ended late", clock));
+        service.addAppointment(at("short", 5));
+
+        assertEquals(1, service.expire(START + 30 * MINUTE, 1, null));
+        assertNull(service.getAppointment("short"));
+        assertEquals(1, service.expire(START + 30 * MINUTE, 1, null));
+        assertNull(service.getAppointment("long"));
+        assertEquals(0, service.expire(START + 30 * MINUTE, 1, null));
+        assertEquals(100, service.getAllAppointmentsView().size());
+    }
+
+    @Test
+    void testRetentionShouldKeepRecentlyEndedAppointments() {
+        service.addAppointment(at("old", 0));
+        service.addAppointment(at("recent", 50));
+        AppointmentExpiry expiry = new AppointmentExpiry(service, Duration.ofHours(1), null, clock, 10);
+
+        clock.set(START + 100 * MINUTE);
+        expiry.runOnce();
+
+        assertNull(service.getAppointment("old"));
+        assertNotNull(service.getAppointment("recent"));
+    }
+
+    @Test
+    void testArchiveShouldReceiveBatchesOnceRemoved() {
+        for (int i = 0; i < 5; i++) {
+            service.addAppointment(at("p" + i, i));
+        }
+        List<String> archived = new ArrayList<>();
+        AppointmentExpiry expiry = new AppointmentExpiry(service, Duration.ZERO, batch -> {
+            assertNull(service.getAppointment(batch.get(0).getAppointmentId())); // only removed ones arrive
+            archived.addAll(ids(batch));
+        }, clock, 2);
+
+        clock.set(START + 10 * MINUTE);
+        expiry.runOnce();
+
+        assertEquals(List.of("p0", "p1", "p2", "p3", "p4"), archived);
+        assertTrue(service.getAllAppointmentsView().isEmpty());
+    }
+
+    @Test
+    void testFailingArchiveShouldLeaveBatchInPlace() {
+        service.addAppointment(at("p0", 0));
+        AppointmentExpiry expiry = new AppointmentExpiry(service, Duration.ZERO, batch -> {
+            throw new IllegalStateException("cold store down");
+        }, clock, 10);
+
+        clock.set(START + 10 * MINUTE);
+
+        assertThrows(IllegalStateException.class, expiry::runOnce);
+        assertNotNull(service.getAppointment("p0"));
+        assertEquals(0, expiry.getExpiredCount());
+    }
+
+    @Test
+    void testExpiryShouldPublishDeletesAndSurviveRestart(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("appointments.log");
+        try (Journal journal = Journal.open(file)) {
+            AppointmentService durable = new AppointmentService(journal);
+            durable.addAppointment(at("old", 0));
+            durable.addAppointment(at("new", 60));
+            ChangeFeed<Appointment>.Subscription feed = durable.getChangeFeed().subscribe();
+
+            clock.set(START + 30 * MINUTE);
+            new AppointmentExpiry(durable, Duration.ZERO, null, clock, 10).runOnce();
+
+            ChangeEvent<Appointment> event = feed.poll();
+            assertEquals(ChangeEvent.Type.DELETE, event.getType());
+            assertEquals("old", event.getId());
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            AppointmentService restored = new AppointmentService(journal);
+
+            assertNull(restored.getAppointment("old"));
+            assertNotNull(restored.getAppointment("new"));
+        }
+    }
+
+    @Test
+    void testStartShouldExpireInBackground() throws InterruptedException {
+        service.addAppointment(at("p0", 0));
+        clock.set(START + 10 * MINUTE);
+        try (AppointmentExpiry expiry = new AppointmentExpiry(service, Duration.ZERO, null, clock, 10)) {
+            expiry.start(Duration.ofMillis(5));
+
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (expiry.getExpiredCount() == 0 && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(1, expiry.getExpiredCount());
+            assertNull(service.getAppointment("p0"));
+        }
+    }
+
+    @Test
+    void testBatchSizeMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () ->
+                new AppointmentExpiry(service, Duration.ZERO, null, clock, 0));
+    }
+
+    /** Clock that only moves when the test says so. */
+    private static final class SimulatedClock extends Clock {
+
+        private volatile long millis;
+
+        SimulatedClock(long millis) {
+            this.millis = millis;
+        }
+
+        void set(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reminder engine for AppointmentService: calls a callback leadTime before each
+ * appointment's date.
+ *
+ * An AppointmentService built with reminders schedules one on every add (and for every
+ * appointment loaded at startup) and cancels it on delete, from inside the map operation,
+ * so a reminder never outlives its appointment by more than a delete that races the firing.
+ * Reminders live in a TimerWheel: insert and cancel are O(1), and a reminder fires at most
+ * one tick after its time, plus however long the executor takes to run the callback.
+ *
+ * Time comes from the Clock, and advance() fires everything that came due. start() runs
+ * advance() on a daemon thread every tick; tests instead move a simulated clock and call
+ * advance() themselves. Callbacks run on the given executor, never on the ticker thread
+ * unless the executor runs tasks inline.
+ *
+ * Appointments that are already over when scheduled get no reminder; one whose reminder
+ * time has passed but that is still ahead (for example after a restart) is reminded on the
+ * next advance.
+ */
+public class AppointmentReminders implements AutoCloseable {
+
+    public static final Duration DEFAULT_TICK = Duration.ofMillis(100);
+
+    private final long leadMillis;
+    private final Consumer<Appointment> callback;
+    private final Executor executor;
+    private final Clock clock;
+    private final TimerWheel<Appointment> wheel;
+    private final Map<String, TimerWheel.Timer<Appointment>> timers = new ConcurrentHashMap<>();
+    private ScheduledExecutorService ticker; // guarded by this
+
+    /** Reminders on the system clock with DEFAULT_TICK precision. */
+    public AppointmentReminders(Duration leadTime, Consumer<Appointment> callback, Executor executor) {
+        this(leadTime, callback, executor, Clock.systemUTC(), DEFAULT_TICK);
+    }
+
+    public AppointmentReminders(Duration leadTime, Consumer<Appointment> callback, Executor executor,
+                                Clock clock, Duration tick) {
+        Objects.requireNonNull(leadTime, "leadTime must not be null");
+        if (leadTime.isNegative()) {
+            throw new IllegalArgumentException("leadTime must not be negative");
+        }
+        this.leadMillis = leadTime.toMillis();
+        this.callback = Objects.requireNonNull(callback, "callback must not be null");
+        this.executor = Objects.requireNonNull(executor, "executor must not be null");
+        this.clock = Objects.requireNonNull(clock, "clock must not be null");
+        this.wheel = new TimerWheel<>(Objects.requireNonNull(tick, "tick must not be null").toMillis(), clock.millis());
+    }
+
+    /** Fires every reminder that came due by the clock's current time; returns how many. */
+    public int advance() {
+        return wheel.advanceTo(clock.millis(), appointment -> {
+            // drop the handle unless the ID was already re-added with a new reminder
+            timers.computeIfPresent(appointment.getAppointmentId(),
+                    (id, timer) -> timer.getPayload() == appointment ? null : timer);
+            executor.execute(() -> callback.accept(appointment));
+        });
+    }
+
+    /** Reminders scheduled and not yet fired or cancelled. */
+    public int pending() {
+        return wheel.size();
+    }
+
+    /** Starts calling advance() every tick on a daemon thread; no-op if already started. */
+    public synchronized void start() {
+        if (ticker != null) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread t = new Thread(task, "appointment-reminders");
+            t.setDaemon(true);
+            return t;
+        });
+        long tick = wheel.getTickMillis();
+        ticker.scheduleAtFixedRate(this::advanceQuietly, tick, tick, TimeUnit.MILLISECONDS);
+    }
+
+    /** Stops the ticker thread; pending reminders stay scheduled. */
+    @Override
+    public synchronized void close() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+            ticker = null;
+        }
+    }
+
+    /** Schedules (or reschedules) the reminder for appointment; called by AppointmentService. */
+    void schedule(Appointment appointment) {
+        if (appointment.getAppointmentTime() <= clock.millis()) {
+            return; // already over
+        }
+        TimerWheel.Timer<Appointment> timer = wheel.schedule(appointment.getAppointmentTime() - leadMillis, appointment);
+        TimerWheel.Timer<Appointment> previous = timers.put(appointment.getAppointmentId(), timer);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /** Cancels the reminder of appointmentId, if any; called by AppointmentService. */
+    void cancel(String appointmentId) {
+        TimerWheel.Timer<Appointment> timer = timers.remove(appointmentId);
+        if (timer != null) {
+            timer.cancel();
+        }
+    }
+
+    /** advance() for the ticker: an exception must not cancel the periodic task. */
+    private void advanceQuietly() {
+        try {
+            advance();
+        } catch (RuntimeException e) {
+            Thread t = Thread.currentThread();
+            t.getUncaughtExceptionHandler().uncaughtException(t, e);
+        }
+    }
+}
@@ -0,0 +1,167 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AppointmentRemindersTest {
+
+    private static final long MINUTE = 60_000;
+    private static final long START = 1_000_000_000_000L;
+
+    private final SimulatedClock clock = new SimulatedClock(START);
+    private final List<String> reminded = new ArrayList<>();
+    private final AppointmentReminders reminders = new AppointmentReminders(Duration.ofMinutes(15),
+            a -> reminded.add(a.getAppointmentId()), Runnable::run, clock, Duration.ofSeconds(1));
+
+    private Appointment at(String id, long time) {
+        return new Appointment(id, time, "Meeting", clock);
+    }
+
+    @Test
+    void testReminderShouldFireLeadTimeBeforeAppointment() {
+        AppointmentService service = new AppointmentService(reminders);
+        service.addAppointment(at("1", START + 60 * MINUTE));
+
+        clock.set(START + 45 * MINUTE - 1);
+        assertEquals(0, reminders.advance());
+        clock.set(START + 45 * MINUTE);
+        assertEquals(1, reminders.advance());
+
+        assertEquals(List.of("1"), reminded);
+        assertEquals(0, reminders.pending());
+    }
+
+    @Test
+    void testDeleteShouldCancelReminder() {
+        AppointmentService service = new AppointmentService(reminders);
+        service.addAppointment(at("1", START + 60 * MINUTE));
+        service.addAppointment(at("2", START + 60 * MINUTE));
+
+        service.deleteAppointment("1");
+        clock.set(START + 60 * MINUTE);
+        reminders.advance();
+
+        assertEquals(List.of("2"), reminded);
+    }
+
+    @Test
+    void testReminderInsideLeadTimeShouldFireOnNextAdvance() {
+        AppointmentService service = new AppointmentService(reminders);
+        service.addAppointment(at("soon", START + 5 * MINUTE));
+
+        clock.set(START + 1000);
+        reminders.advance();
+
+        assertEquals(List.of("soon"), reminded);
+    }
+
+    @Test
+    void testAppointmentAlreadyOverShouldGetNoReminder() {
+        Appointment past = at("past", START + MINUTE);
+        clock.set(START + 2 * MINUTE);
+
+        reminders.schedule(past);
+
+        assertEquals(0, reminders.pending());
+    }
+
+    @Test
+    void testCallbackShouldRunOnExecutor() {
+        List<Runnable> queued = new ArrayList<>();
+        AppointmentReminders queuedReminders = new AppointmentReminders(Duration.ZERO,
+                a -> reminded.add(a.getAppointmentId()), queued::add, clock, Duration.ofSeconds(1));
+        queuedReminders.schedule(at("1", START + MINUTE));
+
+        clock.set(START + MINUTE);
+        queuedReminders.advance();
+
+        assertTrue(reminded.isEmpty());
+        assertEquals(1, queued.size());
+        queued.get(0).run();
+        assertEquals(List.of("1"), reminded);
+    }
+
+    @Test
+    void testRemindersShouldBeScheduledForAppointmentsLoadedFromJournal(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("appointments.log");
+        try (Journal journal = Journal.open(file)) {
+            AppointmentService service = new AppointmentService(journal);
+            service.addAppointment(at("1", START + 60 * MINUTE));
+            service.addAppointment(at("2", START + 90 * MINUTE));
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            new AppointmentService(journal, reminders);
+
+            assertEquals(2, reminders.pending());
+            clock.set(START + 90 * MINUTE);
+            reminders.advance();
+            assertEquals(List.of("1", "2"), reminded);
+        }
+    }
+
+    @Test
+    void testStartShouldFireRemindersOnTickerThread() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(1);
+        try (AppointmentReminders live = new AppointmentReminders(Duration.ZERO, a -> fired.countDown(),
+                Runnable::run, Clock.systemUTC(), Duration.ofMillis(10))) {
+            AppointmentService service = new AppointmentService(live);
+            live.start();
+            service.addAppointment(new Appointment("1", System.currentTimeMillis() + 50, "Meeting"));
+
+            assertTrue(fired.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void testNegativeLeadTimeShouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () ->
+                new AppointmentReminders(Duration.ofMinutes(-1), a -> { }, Runnable::run));
+    }
+
+    /** Clock that only moves when the test says so. */
+    private static final class SimulatedClock extends Clock {
+
+        private volatile long millis;
+
+        SimulatedClock(long millis) {
+            this.millis = millis;
+        }
+
+        void set(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
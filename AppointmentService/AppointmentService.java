@@ -1,7 +1,25 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * In-memory service for managing Appointment objects by appointmentId.
@@ -9,27 +27,175 @@ import java.util.Objects;
  * Requirements:
  * - Add appointments with a unique appointmentId
  * - Delete appointments by appointmentId
+ *
+ * Besides the ID lookup, appointments are indexed by appointmentDate in a concurrent
+ * skip list, so range and "next N" queries cost O(log n + k) and stream straight
+ * out of the index without copying or sorting the whole store. The same index backs
+ * getAppointmentsPage, which pages through all appointments in date order from a cursor;
+ * streamAppointments() walks the ID map lazily and splits for parallel streams.
+ *
+ * Persistence (optional): when constructed with a Journal, the service replays it on
+ * startup and logs every add and delete before returning. The record is written while
+ * the map entry is held, so records for one ID are logged in the order applied.
+ * writeSnapshot() stores all appointments in a SnapshotFile without pausing writers; a
+ * restart from (journal, snapshot) loads the snapshot and replays only the journal tail.
+ *
+ * Change feed: every add and delete is also published to getChangeFeed() from inside the
+ * same map operation, so subscribers see the changes of one ID in order.
+ * getSyncIndex() indexes those changes by sequence for delta sync
+ * (getAppointmentChanges), keeping deletes as tombstones.
+ *
+ * Metrics: when enabled, getMetrics() records calls, failures (booking conflicts among
+ * them) and sampled latency of addAppointment and deleteAppointment.
+ *
+ * Reminders (optional): a service built with AppointmentReminders schedules a reminder for
+ * every appointment it adds or loads and cancels it when the appointment is deleted.
+ *
+ * Bookings: an appointment with an owner and a duration claims [start, end) of the owner's
+ * time. addAppointment rejects a booking that overlaps another booking of the same owner
+ * with ConflictException; the check and the insert run under a per-owner lock, so of two
+ * concurrent bookings of one slot exactly one succeeds. A BookingIndex answers overlap and
+ * free-slot queries per owner in O(log n + k).
  */
 public class AppointmentService {
 
-    private final Map<String, Appointment> appointments = new HashMap<>();
+    /** Journal record types owned by this service. */
+    static final byte OP_PUT = 0x31;
+    static final byte OP_REMOVE = 0x32;
+    static final byte OP_SYNC_STATE = 0x33;
+
+    /**
+     * Replayed appointments (and ones read back from the wire format) may be in the past by
+     * now; they were validated when first added.
+     */
+    static final Clock REPLAY_CLOCK = Clock.fixed(Instant.ofEpochMilli(Long.MIN_VALUE), ZoneOffset.UTC);
+
+    private final Map<String, Appointment> appointments = new ConcurrentHashMap<>();
+    private final NavigableMap<TimeKey, Appointment> byDate = new ConcurrentSkipListMap<>();
+    private final NavigableMap<TimeKey, Appointment> byEnd = new ConcurrentSkipListMap<>(); // for expire
+    private final Journal journal; // null when memory-only
+    private final MutationGate gate = new MutationGate();
+    private final ChangeFeed<Appointment> changes = new ChangeFeed<>();
+    private final SyncIndex<Appointment> sync = new SyncIndex<>(changes, this::getAppointment);
+    private final ServiceMetrics metrics = new ServiceMetrics("AppointmentService", "add", "delete");
+    private final ServiceMetrics.Operation addOp = metrics.operation("add");
+    private final ServiceMetrics.Operation deleteOp = metrics.operation("delete");
+    private final AppointmentReminders reminders; // null when reminders are off
+    private final BookingIndex bookings = new BookingIndex();
+    private final WriteIntents intents = new WriteIntents(); // appointments reserved by units of work
+
+    public AppointmentService() {
+        this.journal = null;
+        this.reminders = null;
+    }
+
+    /** Memory-only service that schedules reminders for its appointments. */
+    public AppointmentService(AppointmentReminders reminders) {
+        this.journal = null;
+        this.reminders = Objects.requireNonNull(reminders, "reminders must not be null");
+    }
+
+    /** Durable service: replays the journal into memory, then logs every mutation to it. */
+    public AppointmentService(Journal journal) {
+        this.journal = Objects.requireNonNull(journal, "journal must not be null");
+        this.reminders = null;
+        journal.replay(this::applyRecord);
+        finishRestore();
+    }
+
+    /** Durable service with reminders; appointments loaded from the journal are scheduled too. */
+    public AppointmentService(Journal journal, AppointmentReminders reminders) {
+        this.journal = Objects.requireNonNull(journal, "journal must not be null");
+        this.reminders = Objects.requireNonNull(reminders, "reminders must not be null");
+        journal.replay(this::applyRecord);
+        finishRestore();
+        scheduleLoadedReminders();
+    }
+
+    /**
+     * Durable service that starts from a snapshot written by writeSnapshot (if the file
+     * exists) and replays only the journal records written after it.
+     */
+    public AppointmentService(Journal journal, Path snapshot) {
+        this(journal, snapshot, null);
+    }
+
+    /** Snapshot-based durable service with reminders (null for none). */
+    public AppointmentService(Journal journal, Path snapshot, AppointmentReminders reminders) {
+        this.journal = Objects.requireNonNull(journal, "journal must not be null");
+        this.reminders = reminders;
+        Objects.requireNonNull(snapshot, "snapshot must not be null");
+        long from = journal.startPosition();
+        if (Files.exists(snapshot)) {
+            try {
+                from = SnapshotFile.read(snapshot, record -> {
+                    Appointment a = decode(record);
+                    appointments.put(a.getAppointmentId(), a);
+                    index(a);
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException("cannot load appointment snapshot " + snapshot, e);
+            }
+        }
+        journal.replay(from, this::applyRecord);
+        finishRestore();
+        scheduleLoadedReminders();
+    }
 
     public void addAppointment(Appointment appointment) {
-        Objects.requireNonNull(appointment, "appointment must not be null");
+        long start = addOp.start();
+        try {
+            Objects.requireNonNull(appointment, "appointment must not be null");
 
-        String id = appointment.getAppointmentId();
-        if (appointments.containsKey(id)) {
-            throw new DuplicateIdException("Appointment ID already exists: " + id);
+            long logged = insert(appointment);
+            if (logged == BulkImport.NOT_INSERTED) {
+                throw new DuplicateIdException("Appointment ID already exists: " + appointment.getAppointmentId());
+            }
+            if (logged == BulkImport.CONFLICT) {
+                throw new ConflictException("Time slot is already booked for owner: " + appointment.getOwner());
+            }
+            sync(logged);
+        } catch (RuntimeException e) {
+            throw addOp.failed(start, e);
         }
-        appointments.put(id, appointment);
+        addOp.succeeded(start);
+    }
+
+    /**
+     * Bulk add of already built appointments. Duplicate IDs (already stored or repeated in
+     * the batch) and conflicting bookings are reported in the result instead of thrown, and
+     * the journal, if any, is synced once for the whole batch. Of two overlapping bookings in
+     * one batch, whichever is inserted first wins.
+     */
+    public BulkResult addAppointments(Collection<Appointment> appointments) {
+        return importAppointments(appointments, a -> a);
+    }
+
+    /**
+     * Bulk import: builds an appointment from every row with factory, in parallel so
+     * validation uses all cores, then stores the valid ones in parallel. Validation errors
+     * (including past dates), duplicate IDs and conflicting bookings are reported per row in
+     * the result.
+     */
+    public <T> BulkResult importAppointments(Collection<? extends T> rows,
+                                             Function<? super T, Appointment> factory) {
+        return BulkImport.run(rows, factory, Appointment.ValidationException.class, Appointment::getAppointmentId,
+                this::insert, this::sync);
     }
 
     public void deleteAppointment(String appointmentId) {
-        String id = requireId(appointmentId);
-        if (!appointments.containsKey(id)) {
-            throw new NotFoundException("Appointment not found: " + id);
+        long start = deleteOp.start();
+        try {
+            String id = requireId(appointmentId);
+            long logged = remove(id, null);
+            if (logged < 0) {
+                throw new NotFoundException("Appointment not found: " + id);
+            }
+            sync(logged);
+        } catch (RuntimeException e) {
+            throw deleteOp.failed(start, e);
         }
-        appointments.remove(id);
+        deleteOp.succeeded(start);
     }
 
     public Appointment getAppointment(String appointmentId) {
@@ -37,27 +203,710 @@ public class AppointmentService {
         return appointments.get(id);
     }
 
+    /**
+     * Ordered feed of add and delete events, for caches and indexes that follow this service
+     * instead of polling getAllAppointmentsView(). Events restored at startup are not
+     * published; sequences start at 0 for every new service.
+     */
+    public ChangeFeed<Appointment> getChangeFeed() {
+        return changes;
+    }
+
+    /**
+     * Delta sync: appointments added or deleted since a sync token, from an index by
+     * modification sequence that keeps deletes as tombstones for a while; see SyncIndex.
+     */
+    public SyncIndex<Appointment> getSyncIndex() {
+        return sync;
+    }
+
+    /** getSyncIndex().changesSince(syncToken, limit). */
+    public SyncIndex.Delta<Appointment> getAppointmentChanges(String syncToken, int limit) {
+        return sync.changesSince(syncToken, limit);
+    }
+
+    /**
+     * Call counts, failures and latency of addAppointment and deleteAppointment; disabled until
+     * getMetrics().setEnabled(true), and published over JMX by getMetrics().registerMBean().
+     */
+    public ServiceMetrics getMetrics() {
+        return metrics;
+    }
+
     public Map<String, Appointment> getAllAppointmentsView() {
         return Collections.unmodifiableMap(appointments);
     }
 
+    /**
+     * Appointments with from <= appointmentDate < to, in date order (ties by ID).
+     * The stream reads the index lazily and is weakly consistent with concurrent writes.
+     */
+    public Stream<Appointment> getAppointmentsBetween(Date from, Date to) {
+        Objects.requireNonNull(from, "from must not be null");
+        Objects.requireNonNull(to, "to must not be null");
+        return getAppointmentsBetween(from.getTime(), to.getTime());
+    }
+
+    /** Epoch-millis variant of getAppointmentsBetween(Date, Date). */
+    public Stream<Appointment> getAppointmentsBetween(long fromMillis, long toMillis) {
+        if (toMillis < fromMillis) {
+            throw new Appointment.ValidationException("to must not be before from");
+        }
+        return byDate.subMap(TimeKey.lowest(fromMillis), true, TimeKey.lowest(toMillis), false)
+                .values()
+                .stream();
+    }
+
+    /**
+     * Lazy stream over all appointments, for exports and analytics: nothing is copied up
+     * front, and a parallel stream splits the underlying map evenly. Weakly consistent.
+     */
+    public Stream<Appointment> streamAppointments() {
+        return appointments.values().stream();
+    }
+
+    /**
+     * Up to limit appointments in date order (ties by ID), after cursor: null for the first
+     * page, otherwise Page.getNextCursor() of the previous page.
+     */
+    public Page<Appointment> getAppointmentsPage(String cursor, int limit) {
+        Page.requirePositive(limit);
+        NavigableMap<TimeKey, Appointment> tail = cursor == null ? byDate : byDate.tailMap(TimeKey.decode(cursor), false);
+        List<Appointment> page = new ArrayList<>(Math.min(limit, 64));
+        for (Appointment a : tail.values()) {
+            if (page.size() == limit) {
+                return new Page<>(page, TimeKey.of(page.get(limit - 1)).encode());
+            }
+            page.add(a);
+        }
+        return new Page<>(page, null);
+    }
+
+    /** The first count appointments with appointmentDate >= from, in date order. */
+    public List<Appointment> getNextAppointments(Date from, int count) {
+        Objects.requireNonNull(from, "from must not be null");
+        return getNextAppointments(from.getTime(), count);
+    }
+
+    /** Epoch-millis variant of getNextAppointments(Date, int). */
+    public List<Appointment> getNextAppointments(long fromMillis, int count) {
+        if (count < 0) {
+            throw new Appointment.ValidationException("count must not be negative");
+        }
+        return byDate.tailMap(TimeKey.lowest(fromMillis), true)
+                .values()
+                .stream()
+                .limit(count)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Bookings of owner that overlap [fromMillis, toMillis), in start order. Appointments
+     * without a duration occupy no time and are never returned.
+     */
+    public List<Appointment> getBookings(String owner, long fromMillis, long toMillis) {
+        return bookings.overlapping(requireOwner(owner), fromMillis, checkRange(fromMillis, toMillis));
+    }
+
+    /** True if owner has no booking that overlaps [fromMillis, toMillis). */
+    public boolean isAvailable(String owner, long fromMillis, long toMillis) {
+        return getBookings(owner, fromMillis, toMillis).isEmpty();
+    }
+
+    /**
+     * The free time of owner within [fromMillis, toMillis): the gaps between its bookings
+     * that last at least minDurationMillis, in time order.
+     */
+    public List<TimeSlot> getFreeSlots(String owner, long fromMillis, long toMillis, long minDurationMillis) {
+        if (minDurationMillis < 0) {
+            throw new Appointment.ValidationException("minDurationMillis must not be negative");
+        }
+        return bookings.freeSlots(requireOwner(owner), fromMillis, checkRange(fromMillis, toMillis), minDurationMillis);
+    }
+
+    /**
+     * One step of AppointmentExpiry: takes up to max appointments that ended before
+     * cutoffMillis, earliest end first, from the end-time index, and removes them the way
+     * deleteAppointment does, journal record and DELETE event included. An appointment
+     * deleted or re-added meanwhile is left alone. Each removal holds only its own map entry,
+     * and the journal is synced once per batch. The appointments actually removed are then
+     * passed to archive (unless null); if it throws, they are stored again before the
+     * exception propagates. Returns how many were removed. Every entry visited has ended, so
+     * a step reads at most max entries, however many earlier bookings are still running.
+     */
+    int expire(long cutoffMillis, int max, Consumer<List<Appointment>> archive) {
+        List<Appointment> batch = new ArrayList<>(Math.min(max, 1024));
+        for (Appointment a : byEnd.headMap(TimeKey.lowest(cutoffMillis), false).values()) {
+            if (batch.size() == max) {
+                break;
+            }
+            batch.add(a);
+        }
+        List<Appointment> removed = new ArrayList<>(batch.size());
+        long last = 0;
+        for (Appointment a : batch) {
+            long logged = remove(a.getAppointmentId(), a);
+            if (logged >= 0) {
+                removed.add(a);
+                last = Math.max(last, logged);
+            }
+        }
+        if (removed.isEmpty()) {
+            return 0;
+        }
+        sync(last);
+        if (archive != null) {
+            try {
+                archive.accept(Collections.unmodifiableList(removed));
+            } catch (RuntimeException e) {
+                restore(removed);
+                throw e;
+            }
+        }
+        return removed.size();
+    }
+
+    /** Stores expired appointments again after a failed archive; an ID or slot taken since stays taken. */
+    private void restore(List<Appointment> expired) {
+        long last = 0;
+        for (Appointment a : expired) {
+            last = Math.max(last, insert(a));
+        }
+        sync(last);
+    }
+
+    /**
+     * Removes id, only while it still maps to expected unless expected is null; returns the
+     * journal position of the removal, or -1 if nothing was removed.
+     */
+    private long remove(String id, Appointment expected) {
+        ByteBuffer record = journal == null ? null : encodeRemoval(id);
+        while (true) {
+            long[] logged = {-1};
+            WriteIntents.Commit[] blocker = {null};
+            int ticket = enterMutation();
+            try {
+                appointments.computeIfPresent(id, (key, existing) -> {
+                    if ((expected != null && existing != expected) || (blocker[0] = intents.holder(key)) != null) {
+                        return existing;
+                    }
+                    long sequence = sync.claim();
+                    logged[0] = log(OP_REMOVE, record, sequence);
+                    removed(key, existing, sequence);
+                    return null;
+                });
+            } finally {
+                exitMutation(ticket);
+            }
+            if (blocker[0] == null) {
+                return logged[0];
+            }
+            blocker[0].await();
+        }
+    }
+
+    /**
+     * Stores appointment unless its ID is taken or, for a booking, its slot is; returns its
+     * journal position, BulkImport.NOT_INSERTED or BulkImport.CONFLICT. An ID or a clashing
+     * booking reserved by a committing unit of work is waited for, and the insert retried.
+     */
+    private long insert(Appointment appointment) {
+        while (true) {
+            WriteIntents.Commit[] blocker = {null};
+            long logged = appointment.isBooking() ? book(appointment, blocker) : store(appointment, blocker);
+            if (blocker[0] == null) {
+                return logged;
+            }
+            blocker[0].await();
+        }
+    }
+
+    private long book(Appointment appointment, WriteIntents.Commit[] blocker) {
+        // check and insert under the owner's lock; a taken ID is reported before a conflict
+        return bookings.locked(appointment.getOwner(), () -> {
+            String id = appointment.getAppointmentId();
+            if (appointments.containsKey(id) || (blocker[0] = intents.holder(id)) != null) {
+                return BulkImport.NOT_INSERTED;
+            }
+            Appointment overlap = bookings.findOverlap(appointment);
+            if (overlap == null) {
+                return store(appointment, blocker);
+            }
+            // a staged booking, or one a unit of work is deleting, may not hold the slot for long
+            blocker[0] = intents.holder(overlap.getAppointmentId());
+            return BulkImport.CONFLICT;
+        });
+    }
+
+    private long store(Appointment appointment, WriteIntents.Commit[] blocker) {
+        ByteBuffer record = journal == null ? null : journalRecord(appointment);
+        long[] logged = {BulkImport.NOT_INSERTED};
+        int ticket = enterMutation();
+        try {
+            // the index is updated while the map entry is held, so it cannot drift from the map
+            appointments.computeIfAbsent(appointment.getAppointmentId(), key -> {
+                if ((blocker[0] = intents.holder(key)) != null) {
+                    return null;
+                }
+                long sequence = sync.claim();
+                logged[0] = log(OP_PUT, record, sequence);
+                added(key, appointment, sequence);
+                index(appointment);
+                return appointment;
+            });
+        } finally {
+            exitMutation(ticket);
+        }
+        return logged[0];
+    }
+
+    // publish, index and schedule while the map entry is held; added leaves indexing to the caller
+
+    private void added(String key, Appointment appointment, long sequence) {
+        sync.publish(sequence, ChangeEvent.Type.ADD, key, appointment);
+        if (reminders != null) {
+            reminders.schedule(appointment);
+        }
+    }
+
+    private void removed(String key, Appointment existing, long sequence) {
+        sync.publish(sequence, ChangeEvent.Type.DELETE, key, existing);
+        unindex(existing);
+        if (reminders != null) {
+            reminders.cancel(key);
+        }
+    }
+
+    /** Adds a to the date and end-time indexes and, for a booking, to its owner's calendar. */
+    private void index(Appointment a) {
+        byDate.put(TimeKey.of(a), a);
+        byEnd.put(TimeKey.endOf(a), a);
+        if (a.isBooking()) {
+            bookings.add(a);
+        }
+    }
+
+    private void unindex(Appointment a) {
+        byDate.remove(TimeKey.of(a));
+        byEnd.remove(TimeKey.endOf(a));
+        if (a.isBooking()) {
+            bookings.remove(a);
+        }
+    }
+
     private static String requireId(String id) {
-        Objects.requireNonNull(id, "appointmentId must not be null");
-        String trimmed = id.trim();
-        if (trimmed.isEmpty()) {
-            throw new Appointment.ValidationException("appointmentId must not be blank");
+        return Appointment.validateId(id);
+    }
+
+    private static String requireOwner(String owner) {
+        return Appointment.validateOwner(owner);
+    }
+
+    /** Returns toMillis after checking it is not before fromMillis. */
+    private static long checkRange(long fromMillis, long toMillis) {
+        if (toMillis < fromMillis) {
+            throw new Appointment.ValidationException("to must not be before from");
         }
-        if (trimmed.length() > Appointment.MAX_ID_LENGTH) {
-            throw new Appointment.ValidationException("appointmentId must be <= " + Appointment.MAX_ID_LENGTH + " characters");
+        return toMillis;
+    }
+
+    // -------- Units of work --------
+
+    /**
+     * UnitOfWork step that adds appointment. A booking claims its slot in the owner's
+     * calendar when prepared, so overlap checks and queries see it until it is committed or
+     * aborted.
+     */
+    TransactionStep stageAdd(Appointment appointment) {
+        Objects.requireNonNull(appointment, "appointment must not be null");
+        return new TransactionStep(intents, appointment.getAppointmentId(), journal, gate) {
+            private boolean booked;
+            private long sequence = -1;
+
+            @Override
+            WriteIntents.Commit prepare(WriteIntents.Commit commit) {
+                if (!appointment.isBooking()) {
+                    return reserve(commit);
+                }
+                WriteIntents.Commit[] blocker = {null};
+                bookings.locked(appointment.getOwner(), () -> {
+                    if ((blocker[0] = reserve(commit)) != null) {
+                        return 0;
+                    }
+                    Appointment overlap = bookings.findOverlap(appointment);
+                    if (overlap == null) {
+                        bookings.add(appointment);
+                        booked = true;
+                        return 0;
+                    }
+                    intents.release(id);
+                    if ((blocker[0] = intents.holder(overlap.getAppointmentId())) == null) {
+                        throw new ConflictException("Time slot is already booked for owner: " + appointment.getOwner());
+                    }
+                    return 0;
+                });
+                return blocker[0];
+            }
+
+            /** Reserves the absent ID without storing anything, as in the other services. */
+            private WriteIntents.Commit reserve(WriteIntents.Commit commit) {
+                WriteIntents.Commit[] blocker = {null};
+                Appointment existing = appointments.computeIfAbsent(id, key -> {
+                    if ((blocker[0] = intents.holder(key)) == null) {
+                        intents.hold(key, commit);
+                    }
+                    return null;
+                });
+                if (existing != null) {
+                    throw new DuplicateIdException("Appointment ID already exists: " + id);
+                }
+                return blocker[0];
+            }
+
+            @Override
+            byte type() {
+                return OP_PUT;
+            }
+
+            @Override
+            ByteBuffer record() {
+                sequence = sync.claim();
+                return stamped(journalRecord(appointment), sequence);
+            }
+
+            @Override
+            void apply() {
+                appointments.computeIfAbsent(id, key -> {
+                    added(key, appointment, claimed(sequence));
+                    byDate.put(TimeKey.of(appointment), appointment); // the booking is indexed already
+                    byEnd.put(TimeKey.endOf(appointment), appointment);
+                    return appointment;
+                });
+                intents.release(id);
+            }
+
+            @Override
+            void abort() {
+                release(sequence);
+                if (booked) {
+                    bookings.locked(appointment.getOwner(), () -> {
+                        bookings.remove(appointment);
+                        return 0;
+                    });
+                }
+                intents.release(id);
+            }
+        };
+    }
+
+    /** UnitOfWork step that deletes an appointment. */
+    TransactionStep stageDelete(String appointmentId) {
+        return new TransactionStep(intents, requireId(appointmentId), journal, gate) {
+            private long sequence = -1;
+
+            @Override
+            WriteIntents.Commit prepare(WriteIntents.Commit commit) {
+                WriteIntents.Commit[] blocker = {null};
+                Appointment stored = appointments.computeIfPresent(id, (key, a) -> {
+                    if ((blocker[0] = intents.holder(key)) == null) {
+                        intents.hold(key, commit);
+                    }
+                    return a;
+                });
+                if (stored == null) {
+                    throw new NotFoundException("Appointment not found: " + id);
+                }
+                return blocker[0];
+            }
+
+            @Override
+            byte type() {
+                return OP_REMOVE;
+            }
+
+            @Override
+            ByteBuffer record() {
+                sequence = sync.claim();
+                return stamped(encodeRemoval(id), sequence);
+            }
+
+            @Override
+            void apply() {
+                appointments.computeIfPresent(id, (key, existing) -> {
+                    removed(key, existing, claimed(sequence));
+                    return null;
+                });
+                intents.release(id);
+            }
+
+            @Override
+            void abort() {
+                release(sequence);
+                super.abort();
+            }
+        };
+    }
+
+    // -------- Persistence --------
+
+    /**
+     * Writes all appointments to a snapshot file and returns the journal position it covers;
+     * pass that position to Journal.compact to drop the records the snapshot replaces.
+     * Writers are never paused, so this is meant to run on a background thread.
+     */
+    public long writeSnapshot(Path file) {
+        if (journal == null) {
+            throw new IllegalStateException("snapshots require a journaled AppointmentService");
+        }
+        long position = journal.position();
+        sync(logSyncState()); // after position, so compacting to it keeps the stamps of the records it replaces
+        gate.awaitQuiescence();
+        try (SnapshotFile.Writer writer = SnapshotFile.create(file, position)) {
+            for (Appointment a : appointments.values()) {
+                encodeTo(writer.beginRecord(encodedSize(a)), a);
+            }
+            writer.commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot write appointment snapshot " + file, e);
+        }
+        return position;
+    }
+
+    private int enterMutation() {
+        return journal == null ? -1 : gate.enter();
+    }
+
+    private void exitMutation(int ticket) {
+        if (ticket >= 0) {
+            gate.exit(ticket);
+        }
+    }
+
+    private long log(byte type, ByteBuffer record) {
+        return journal == null ? 0 : journal.append(type, record);
+    }
+
+    /** Logs a change stamped with its claimed sync sequence, which is released if the write fails. */
+    private long log(byte type, ByteBuffer record, long sequence) {
+        if (journal == null) {
+            return 0;
+        }
+        try {
+            return journal.append(type, stamped(record, sequence));
+        } catch (RuntimeException e) {
+            sync.release(sequence);
+            throw e;
+        }
+    }
+
+    private ByteBuffer stamped(ByteBuffer record, long sequence) {
+        sync.stamp(record, sequence);
+        return record;
+    }
+
+    /** The sequence a staged change claimed with its journal record, or a new one without a journal. */
+    private long claimed(long sequence) {
+        return sequence >= 0 ? sequence : sync.claim();
+    }
+
+    private void release(long sequence) {
+        if (sequence >= 0) {
+            sync.release(sequence);
+        }
+    }
+
+    /** Logs the sync index's state; returns the journal position after it. */
+    private long logSyncState() {
+        long[] logged = {0};
+        sync.writeState(record -> logged[0] = log(OP_SYNC_STATE, record));
+        return logged[0];
+    }
+
+    /** Ends replay: sync tokens continue from the restored index, or a first state is logged for new ones. */
+    private void finishRestore() {
+        if (!sync.finishRestore()) {
+            sync(logSyncState());
+        }
+    }
+
+    private void sync(long position) {
+        if (journal != null) {
+            journal.sync(position);
         }
-        return trimmed;
     }
 
+    private void scheduleLoadedReminders() {
+        if (reminders != null) {
+            for (Appointment a : appointments.values()) {
+                reminders.schedule(a);
+            }
+        }
+    }
+
+    private void applyRecord(byte type, ByteBuffer payload) {
+        if (type == OP_PUT) {
+            Appointment a = decode(payload);
+            Appointment previous = appointments.put(a.getAppointmentId(), a);
+            if (previous != null) {
+                unindex(previous);
+            }
+            index(a);
+            sync.restore(payload, ChangeEvent.Type.UPDATE, a.getAppointmentId());
+        } else if (type == OP_REMOVE) {
+            String id = BinaryFields.getString(payload);
+            Appointment previous = appointments.remove(id);
+            if (previous != null) {
+                unindex(previous);
+            }
+            sync.restore(payload, ChangeEvent.Type.DELETE, id);
+        } else if (type == OP_SYNC_STATE) {
+            sync.restoreState(payload);
+        } else if (type == JournalBatch.TYPE) {
+            JournalBatch.forEach(payload, this::applyRecord);
+        }
+    }
+
+    static ByteBuffer encode(Appointment a) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(a));
+        encodeTo(buffer, a);
+        return buffer.flip();
+    }
+
+    static int encodedSize(Appointment a) {
+        int size = Long.BYTES
+                + BinaryFields.sizeOf(a.getAppointmentId())
+                + BinaryFields.sizeOf(a.getDescription());
+        return hasBookingFields(a) ? size + Long.BYTES + BinaryFields.sizeOf(ownerField(a)) : size;
+    }
+
+    /**
+     * Record layout: appointmentTime (long), appointmentId, description, then durationMillis
+     * (long) and owner ("" for none) only if either is set, so records written before
+     * bookings existed still decode.
+     */
+    static void encodeTo(ByteBuffer buffer, Appointment a) {
+        buffer.putLong(a.getAppointmentTime());
+        BinaryFields.putString(buffer, a.getAppointmentId());
+        BinaryFields.putString(buffer, a.getDescription());
+        if (hasBookingFields(a)) {
+            buffer.putLong(a.getDurationMillis());
+            BinaryFields.putString(buffer, ownerField(a));
+        }
+    }
+
+    static Appointment decode(ByteBuffer buffer) {
+        long time = buffer.getLong();
+        String id = BinaryFields.getString(buffer);
+        String description = BinaryFields.getString(buffer);
+        if (!buffer.hasRemaining()) {
+            return new Appointment(id, time, description, REPLAY_CLOCK);
+        }
+        long duration = buffer.getLong();
+        String owner = BinaryFields.getString(buffer);
+        return new Appointment(id, time, duration, owner.isEmpty() ? null : owner, description, REPLAY_CLOCK);
+    }
+
+    private static boolean hasBookingFields(Appointment a) {
+        return a.getDurationMillis() != 0 || a.getOwner() != null;
+    }
+
+    private static String ownerField(Appointment a) {
+        return a.getOwner() == null ? "" : a.getOwner();
+    }
+
+    /**
+     * Journal record of a: the record layout with the booking fields always present, so the
+     * sync stamp after them is not mistaken for them, then room for the stamp.
+     */
+    private static ByteBuffer journalRecord(Appointment a) {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES
+                + BinaryFields.sizeOf(a.getAppointmentId())
+                + BinaryFields.sizeOf(a.getDescription())
+                + Long.BYTES + BinaryFields.sizeOf(ownerField(a))
+                + SyncIndex.STAMP_SIZE);
+        buffer.putLong(a.getAppointmentTime());
+        BinaryFields.putString(buffer, a.getAppointmentId());
+        BinaryFields.putString(buffer, a.getDescription());
+        buffer.putLong(a.getDurationMillis());
+        BinaryFields.putString(buffer, ownerField(a));
+        return buffer.clear();
+    }
+
+    /** Removal record layout: appointmentId, then room for the sync stamp. */
+    private static ByteBuffer encodeRemoval(String id) {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryFields.sizeOf(id) + SyncIndex.STAMP_SIZE);
+        BinaryFields.putString(buffer, id);
+        return buffer.clear();
+    }
+
+    /** Index key: epoch millis first, appointmentId to keep same-instant appointments apart. */
+    private static final class TimeKey implements Comparable<TimeKey> {
+        private static final String LOWEST_ID = ""; // sorts before every valid (non-blank) ID
+
+        private final long millis;
+        private final String id;
+
+        private TimeKey(long millis, String id) {
+            this.millis = millis;
+            this.id = id;
+        }
+
+        static TimeKey of(Appointment appointment) {
+            return new TimeKey(appointment.getAppointmentTime(), appointment.getAppointmentId());
+        }
+
+        static TimeKey endOf(Appointment appointment) {
+            return new TimeKey(appointment.getEndTime(), appointment.getAppointmentId());
+        }
+
+        static TimeKey lowest(long millis) {
+            return new TimeKey(millis, LOWEST_ID);
+        }
+
+        /** Cursor format: millis, ':', appointmentId. */
+        String encode() {
+            return millis + ":" + id;
+        }
+
+        static TimeKey decode(String cursor) {
+            int colon = cursor.indexOf(':');
+            try {
+                return new TimeKey(Long.parseLong(cursor.substring(0, colon)), cursor.substring(colon + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("invalid appointment cursor: " + cursor);
+            }
+        }
+
+        @Override
+        public int compareTo(TimeKey other) {
+            int byTime = Long.compare(millis, other.millis);
+            return byTime != 0 ? byTime : id.compareTo(other.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TimeKey)) return false;
+            TimeKey other = (TimeKey) o;
+            return millis == other.millis && id.equals(other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(millis) * 31 + id.hashCode();
+        }
+    }
+
+    // no stack trace for these two: they report ordinary outcomes, not bugs
     public static class DuplicateIdException extends RuntimeException {
-        public DuplicateIdException(String message) { super(message); }
+        public DuplicateIdException(String message) { super(message, null, false, false); }
     }
 
     public static class NotFoundException extends RuntimeException {
-        public NotFoundException(String message) { super(message); }
+        public NotFoundException(String message) { super(message, null, false, false); }
+    }
+
+    public static class ConflictException extends RuntimeException {
+        public ConflictException(String message) { super(message); }
     }
 }
@@ -1,6 +1,17 @@
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 public class AppointmentServiceTest {
 
@@ -48,4 +59,363 @@ public class AppointmentServiceTest {
         AppointmentService service = new AppointmentService();
         assertThrows(AppointmentService.NotFoundException.class, () -> service.deleteAppointment("999"));
     }
+
+    @Test
+    void testChangeFeedShouldPublishAddAndDelete() {
+        AppointmentService service = new AppointmentService();
+        ChangeFeed<Appointment>.Subscription feed = service.getChangeFeed().subscribe();
+        service.addAppointment(new Appointment("1", futureDate(), "Meeting"));
+        service.deleteAppointment("1");
+
+        assertEquals(ChangeEvent.Type.ADD, feed.poll().getType());
+        ChangeEvent<Appointment> deleted = feed.poll();
+        assertEquals(ChangeEvent.Type.DELETE, deleted.getType());
+        assertEquals("Meeting", deleted.getValue().getDescription());
+        assertNull(feed.poll());
+    }
+
+    @Test
+    void testPurgedTombstonesShouldForceAFullSync() {
+        AppointmentService service = new AppointmentService();
+        service.addAppointment(new Appointment("1", futureDate(), "Meeting"));
+        service.addAppointment(new Appointment("2", futureDate(), "Meeting"));
+        String token = service.getSyncIndex().currentToken();
+        service.deleteAppointment("1");
+        assertEquals(ChangeEvent.Type.DELETE, service.getAppointmentChanges(token, 10).getChanges().get(0).getType());
+
+        service.getSyncIndex().setRetention(0, TimeUnit.MILLISECONDS);
+        service.deleteAppointment("2"); // purges both tombstones
+
+        assertEquals(0, service.getSyncIndex().getTombstoneCount());
+        assertThrows(SyncIndex.TokenExpiredException.class, () -> service.getAppointmentChanges(token, 10));
+        assertTrue(service.getAppointmentChanges(service.getSyncIndex().currentToken(), 10).getChanges().isEmpty());
+    }
+
+    // ---- Time index ----
+
+    private static final long BASE = System.currentTimeMillis() + 3_600_000;
+
+    private Date inMinutes(int minutes) {
+        return new Date(BASE + minutes * 60_000L);
+    }
+
+    private static List<String> ids(List<Appointment> appointments) {
+        return appointments.stream().map(Appointment::getAppointmentId).collect(Collectors.toList());
+    }
+
+    @Test
+    void testAppointmentsBetweenShouldReturnRangeInDateOrder() {
+        AppointmentService service = new AppointmentService();
+        service.addAppointment(new Appointment("c", inMinutes(30), "Meeting"));
+        service.addAppointment(new Appointment("a", inMinutes(10), "Meeting"));
+        service.addAppointment(new Appointment("d", inMinutes(40), "Meeting"));
+        service.addAppointment(new Appointment("b", inMinutes(20), "Meeting"));
+
+        List<Appointment> range = service.getAppointmentsBetween(inMinutes(20), inMinutes(40))
+                .collect(Collectors.toList());
+
+        assertEquals(List.of("b", "c"), ids(range));
+    }
+
+    @Test
+    void testAppointmentsAtSameInstantShouldAllBeIndexed() {
+        AppointmentService service = new AppointmentService();
+        service.addAppointment(new Appointment("2", inMinutes(10), "Meeting"));
+        service.addAppointment(new Appointment("1", inMinutes(10), "Meeting"));
+
+        assertEquals(List.of("1", "2"), ids(service.getNextAppointments(inMinutes(10), 5)));
+    }
+
+    @Test
+    void testNextAppointmentsShouldReturnFirstNFromStart() {
+        AppointmentService service = new AppointmentService();
+        for (int i = 0; i < 10; i++) {
+            service.addAppointment(new Appointment("a" + i, inMinutes(i * 10), "Meeting"));
+        }
+
+        assertEquals(List.of("a3", "a4", "a5"), ids(service.getNextAppointments(inMinutes(25), 3)));
+        assertEquals(List.of("a8", "a9"), ids(service.getNextAppointments(inMinutes(80), 20)));
+        assertTrue(service.getNextAppointments(inMinutes(0), 0).isEmpty());
+    }
+
+    @Test
+    void testDeletedAppointmentShouldLeaveIndex() {
+        AppointmentService service = new AppointmentService();
+        service.addAppointment(new Appointment("1", inMinutes(10), "Meeting"));
+        service.addAppointment(new Appointment("2", inMinutes(20), "Meeting"));
+
+        service.deleteAppointment("1");
+
+        assertEquals(List.of("2"), ids(service.getNextAppointments(inMinutes(0), 10)));
+    }
+
+    @Test
+    void testDuplicateIdShouldNotBeIndexedTwice() {
+        AppointmentService service = new AppointmentService();
+        service.addAppointment(new Appointment("1", inMinutes(10), "Meeting"));
+
+        assertThrows(AppointmentService.DuplicateIdException.class, () ->
+                service.addAppointment(new Appointment("1", inMinutes(20), "Other")));
+
+        assertEquals(List.of("1"), ids(service.getNextAppointments(inMinutes(0), 10)));
+        assertEquals("Meeting", service.getNextAppointments(inMinutes(0), 10).get(0).getDescription());
+    }
+
+    @Test
+    void testInvalidRangeArgumentsShouldThrow() {
+        AppointmentService service = new AppointmentService();
+        assertThrows(NullPointerException.class, () -> service.getAppointmentsBetween(null, inMinutes(1)));
+        assertThrows(Appointment.ValidationException.class, () ->
+                service.getAppointmentsBetween(inMinutes(10), inMinutes(5)));
+        assertThrows(Appointment.ValidationException.class, () -> service.getNextAppointments(inMinutes(0), -1));
+    }
+
+    // ---- Journal ----
+
+    @Test
+    void testJournaledServiceShouldRestoreStateAndIndexAfterRestart(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("appointments.log");
+        try (Journal journal = Journal.open(file)) {
+            AppointmentService service = new AppointmentService(journal);
+            service.addAppointment(new Appointment("1", inMinutes(10), "Meeting"));
+            service.addAppointment(new Appointment("2", inMinutes(20), "Lunch"));
+            service.addAppointment(new Appointment("3", inMinutes(30), "Call"));
+            service.deleteAppointment("2");
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            AppointmentService restored = new AppointmentService(journal);
+
+            assertEquals(2, restored.getAllAppointmentsView().size());
+            assertEquals("Meeting", restored.getAppointment("1").getDescription());
+            assertEquals(inMinutes(30).getTime(), restored.getAppointment("3").getAppointmentTime());
+            assertEquals(List.of("1", "3"), ids(restored.getNextAppointments(inMinutes(0), 10)));
+        }
+    }
+
+    @Test
+    void testServicesShouldShareOneJournal(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("shared.log");
+        try (Journal journal = Journal.open(file)) {
+            new AppointmentService(journal).addAppointment(new Appointment("1", inMinutes(10), "Meeting"));
+            new TaskService(journal).addTask(new Task("1", "Task1", "Description1"));
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            assertEquals(1, new AppointmentService(journal).getAllAppointmentsView().size());
+            assertEquals(1, new TaskService(journal).getAllTasksView().size());
+        }
+    }
+
+    @Test
+    void testSnapshotPlusJournalTailShouldRestoreStateAndIndex(@TempDir Path dir) throws IOException {
+        Path log = dir.resolve("appointments.log");
+        Path snapshot = dir.resolve("appointments.snap");
+        try (Journal journal = Journal.open(log)) {
+            AppointmentService service = new AppointmentService(journal, snapshot);
+            service.addAppointment(new Appointment("1", inMinutes(10), "Meeting"));
+            service.addAppointment(new Appointment("2", inMinutes(20), "Lunch"));
+            journal.compact(service.writeSnapshot(snapshot));
+            service.deleteAppointment("1");
+            service.addAppointment(new Appointment("3", inMinutes(5), "Call"));
+        }
+
+        try (Journal journal = Journal.open(log)) {
+            AppointmentService restored = new AppointmentService(journal, snapshot);
+
+            assertEquals(List.of("3", "2"), ids(restored.getNextAppointments(inMinutes(0), 10)));
+            assertNull(restored.getAppointment("1"));
+        }
+    }
+
+    // ---- Bulk import ----
+
+    @Test
+    void testImportAppointmentsShouldIndexValidRowsAndReportPastDates() {
+        AppointmentService service = new AppointmentService();
+        List<Map.Entry<String, Long>> rows = List.of(
+                Map.entry("a", inMinutes(20).getTime()),
+                Map.entry("b", System.currentTimeMillis() - 60_000),
+                Map.entry("c", inMinutes(10).getTime()));
+
+        BulkResult result = service.importAppointments(rows, r -> new Appointment(r.getKey(), r.getValue(), "Meeting"));
+
+        assertEquals(2, result.getImported());
+        assertEquals(1, result.getFailures().size());
+        assertEquals(BulkResult.Reason.VALIDATION_ERROR, result.getFailures().get(0).getReason());
+        assertEquals(2, service.getNextAppointments(inMinutes(0), 10).size());
+    }
+
+    // ---- Bookings ----
+
+    private static final long MINUTE = 60_000;
+
+    private Appointment booking(String id, String owner, int startMinute, int endMinute) {
+        return new Appointment(id, inMinutes(startMinute).getTime(), (endMinute - startMinute) * MINUTE, owner, "Booking");
+    }
+
+    @Test
+    void testOverlappingBookingOfSameOwnerShouldBeRejected() {
+        AppointmentService service = new AppointmentService();
+        service.addAppointment(booking("a", "room-1", 0, 30));
+
+        assertThrows(AppointmentService.ConflictException.class, () ->
+                service.addAppointment(booking("b", "room-1", 15, 45)));
+        service.addAppointment(booking("c", "room-1", 30, 60)); // touching is fine
+        service.addAppointment(booking("d", "room-2", 15, 45)); // other owner
+        service.addAppointment(new Appointment("e", inMinutes(10), "No owner"));
+
+        assertNull(service.getAppointment("b"));
+        assertEquals(List.of("a", "c"), ids(service.getBookings("room-1", inMinutes(0).getTime(), inMinutes(60).getTime())));
+        assertFalse(service.isAvailable("room-1", inMinutes(20).getTime(), inMinutes(25).getTime()));
+        assertTrue(service.isAvailable("room-1", inMinutes(60).getTime(), inMinutes(90).getTime()));
+    }
+
+    @Test
+    void testDuplicateIdShouldBeReportedBeforeConflict() {
+        AppointmentService service = new AppointmentService();
+        service.addAppointment(booking("a", "room-1", 0, 30));
+
+        assertThrows(AppointmentService.DuplicateIdException.class, () ->
+                service.addAppointment(booking("a", "room-1", 0, 30)));
+    }
+
+    @Test
+    void testDeletedBookingShouldFreeItsSlot() {
+        AppointmentService service = new AppointmentService();
+        service.addAppointment(booking("a", "room-1", 0, 30));
+
+        service.deleteAppointment("a");
+        service.addAppointment(booking("b", "room-1", 0, 30));
+
+        assertEquals(List.of("b"), ids(service.getBookings("room-1", inMinutes(0).getTime(), inMinutes(30).getTime())));
+    }
+
+    @Test
+    void testFreeSlotsShouldListGapsOfMinimumLength() {
+        AppointmentService service = new AppointmentService();
+        service.addAppointment(booking("a", "room-1", 10, 20));
+        service.addAppointment(booking("b", "room-1", 25, 40));
+
+        List<TimeSlot> free = service.getFreeSlots("room-1", inMinutes(0).getTime(), inMinutes(60).getTime(), 10 * MINUTE);
+
+        assertEquals(List.of(new TimeSlot(inMinutes(0).getTime(), inMinutes(10).getTime()),
+                new TimeSlot(inMinutes(40).getTime(), inMinutes(60).getTime())), free);
+        assertThrows(Appointment.ValidationException.class, () ->
+                service.getFreeSlots("room-1", inMinutes(60).getTime(), inMinutes(0).getTime(), 0));
+    }
+
+    @Test
+    void testConcurrentBookingsOfOneSlotShouldLetExactlyOneWin() throws Exception {
+        AppointmentService service = new AppointmentService();
+        int threads = 8;
+        CyclicBarrier start = new CyclicBarrier(threads);
+        AtomicInteger won = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int slot = 0; slot < 200; slot++) {
+                        // every thread tries each slot, shifted so the intervals overlap but differ
+                        try {
+                            service.addAppointment(booking(id + "-" + slot, "room-1", slot * 10 + id % 3, slot * 10 + 5 + id % 3));
+                            won.incrementAndGet();
+                        } catch (AppointmentService.ConflictException expected) {
+                            // another thread has this slot
+                        }
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(200, won.get());
+        List<Appointment> booked = service.getBookings("room-1", inMinutes(0).getTime(), inMinutes(3000).getTime());
+        for (int i = 1; i < booked.size(); i++) {
+            assertTrue(booked.get(i - 1).getEndTime() <= booked.get(i).getAppointmentTime());
+        }
+    }
+
+    @Test
+    void testImportShouldReportConflictingBookings() {
+        AppointmentService service = new AppointmentService();
+        service.addAppointment(booking("a", "room-1", 0, 30));
+
+        BulkResult result = service.addAppointments(List.of(booking("b", "room-1", 10, 20), booking("c", "room-1", 30, 40)));
+
+        assertEquals(1, result.getImported());
+        assertEquals(BulkResult.Reason.CONFLICT, result.getFailures().get(0).getReason());
+        assertEquals("b", result.getFailures().get(0).getId());
+    }
+
+    @Test
+    void testBookingsShouldBeRestoredFromJournal(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("appointments.log");
+        try (Journal journal = Journal.open(file)) {
+            AppointmentService service = new AppointmentService(journal);
+            service.addAppointment(booking("a", "room-1", 0, 30));
+            service.addAppointment(new Appointment("plain", inMinutes(5), "Old format"));
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            AppointmentService restored = new AppointmentService(journal);
+
+            Appointment a = restored.getAppointment("a");
+            assertEquals("room-1", a.getOwner());
+            assertEquals(30 * MINUTE, a.getDurationMillis());
+            assertNull(restored.getAppointment("plain").getOwner());
+            assertThrows(AppointmentService.ConflictException.class, () ->
+                    restored.addAppointment(booking("b", "room-1", 20, 40)));
+        }
+    }
+
+    // ---- Paging and streaming ----
+
+    @Test
+    void testAppointmentsPageShouldWalkAllAppointmentsInDateOrder() {
+        AppointmentService service = new AppointmentService();
+        service.addAppointment(new Appointment("c", inMinutes(30), "Meeting"));
+        service.addAppointment(new Appointment("a", inMinutes(10), "Meeting"));
+        service.addAppointment(new Appointment("b", inMinutes(10), "Meeting"));
+        service.addAppointment(new Appointment("d", inMinutes(40), "Meeting"));
+
+        Page<Appointment> first = service.getAppointmentsPage(null, 3);
+        Page<Appointment> second = service.getAppointmentsPage(first.getNextCursor(), 3);
+
+        assertEquals(List.of("a", "b", "c"), ids(first.getItems()));
+        assertEquals(List.of("d"), ids(second.getItems()));
+        assertFalse(second.hasMore());
+        assertEquals(4, service.streamAppointments().parallel().count());
+        assertThrows(IllegalArgumentException.class, () -> service.getAppointmentsPage("garbage", 3));
+    }
+
+    // ---- Metrics ----
+
+    @Test
+    void testMetricsShouldCountConflictsSeparately() {
+        AppointmentService service = new AppointmentService();
+        ServiceMetrics metrics = service.getMetrics();
+        metrics.setEnabled(true);
+
+        service.addAppointment(booking("1", "room", 0, 30));
+        assertThrows(AppointmentService.ConflictException.class, () ->
+                service.addAppointment(booking("2", "room", 10, 20)));
+        assertThrows(AppointmentService.DuplicateIdException.class, () ->
+                service.addAppointment(booking("1", "desk", 0, 30)));
+        service.deleteAppointment("1");
+
+        ServiceMetrics.OperationStats add = metrics.getOperation("add");
+        assertEquals(3, add.getCalls());
+        assertEquals(Map.of("ConflictException", 1L, "DuplicateIdException", 1L), add.getFailures());
+        assertEquals(1, metrics.getOperation("delete").getCalls());
+        assertEquals(0, metrics.getOperation("delete").getFailureCount());
+    }
 }
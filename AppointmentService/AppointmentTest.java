@@ -1,6 +1,11 @@
 import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.Test;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 public class AppointmentTest {
 
@@ -87,4 +92,129 @@ public class AppointmentTest {
         // original should not change
         assertNotEquals(d1.getTime(), apt.getAppointmentDate().getTime());
     }
+
+    // ---- Epoch millis / clock ----
+
+    private static final long NOW = 1_700_000_000_000L;
+
+    private Clock fixedClock() {
+        return Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC);
+    }
+
+    @Test
+    void testAppointmentTimeShouldMatchDate() {
+        Date future = futureDate();
+        Appointment apt = new Appointment("1", future, "Desc");
+
+        assertEquals(future.getTime(), apt.getAppointmentTime());
+        assertEquals(future, apt.getAppointmentDate());
+    }
+
+    @Test
+    void testEpochMillisConstructorShouldUseGivenClock() {
+        Appointment apt = new Appointment("1", NOW, "Desc", fixedClock());
+        assertEquals(NOW, apt.getAppointmentTime());
+    }
+
+    @Test
+    void testPastDateRelativeToInjectedClockShouldThrow() {
+        assertThrows(Appointment.ValidationException.class, () ->
+                new Appointment("1", NOW - 1, "Desc", fixedClock()));
+        assertThrows(Appointment.ValidationException.class, () ->
+                new Appointment("1", new Date(NOW - 1), "Desc", fixedClock()));
+    }
+
+    @Test
+    void testDateThatIsPastForSystemClockShouldPassWithEarlierClock() {
+        Date longAgo = new Date(NOW);
+        Appointment apt = new Appointment("1", longAgo, "Desc", fixedClock());
+        assertEquals(NOW, apt.getAppointmentTime());
+    }
+
+    @Test
+    void testNullClockShouldThrow() {
+        assertThrows(NullPointerException.class, () -> new Appointment("1", futureDate(), "Desc", null));
+    }
+
+    @Test
+    void testByAppointmentTimeComparatorShouldOrderByTimeThenId() {
+        List<Appointment> list = new ArrayList<>(List.of(
+                new Appointment("b", NOW + 10, "Desc", fixedClock()),
+                new Appointment("c", NOW + 5, "Desc", fixedClock()),
+                new Appointment("a", NOW + 10, "Desc", fixedClock())));
+
+        list.sort(Appointment.BY_APPOINTMENT_TIME);
+
+        assertEquals("c", list.get(0).getAppointmentId());
+        assertEquals("a", list.get(1).getAppointmentId());
+        assertEquals("b", list.get(2).getAppointmentId());
+    }
+
+    // ---- Duration and owner ----
+
+    @Test
+    void testDurationAndOwnerShouldDefaultToNone() {
+        Appointment apt = new Appointment("1", NOW, "Desc", fixedClock());
+
+        assertEquals(0, apt.getDurationMillis());
+        assertNull(apt.getOwner());
+        assertEquals(NOW, apt.getEndTime());
+        assertFalse(apt.isBooking());
+    }
+
+    @Test
+    void testBookingShouldHaveEndTimeAndTrimmedOwner() {
+        Appointment apt = new Appointment("1", NOW, 30 * 60_000, " room-4 ", "Desc", fixedClock());
+
+        assertEquals("room-4", apt.getOwner());
+        assertEquals(NOW + 30 * 60_000, apt.getEndTime());
+        assertTrue(apt.isBooking());
+        assertFalse(new Appointment("2", NOW, 0, "room-4", "Desc", fixedClock()).isBooking());
+        assertEquals(Long.MAX_VALUE, new Appointment("3", NOW, Long.MAX_VALUE, "room-4", "Desc", fixedClock()).getEndTime());
+    }
+
+    @Test
+    void testInvalidDurationOrOwnerShouldThrow() {
+        assertThrows(Appointment.ValidationException.class, () ->
+                new Appointment("1", NOW, -1, "room-4", "Desc", fixedClock()));
+        assertThrows(Appointment.ValidationException.class, () ->
+                new Appointment("1", NOW, 60_000, " ", "Desc", fixedClock()));
+        assertThrows(Appointment.ValidationException.class, () ->
+                new Appointment("1", NOW, 60_000, s(Appointment.MAX_OWNER_LENGTH + 1), "Desc", fixedClock()));
+    }
+
+    @Test
+    void testCheckShouldReportDurationAndOwner() {
+        int code = Appointment.check("1", NOW, -5, null, "Desc", fixedClock());
+        assertEquals(Appointment.FIELD_DURATION, Validation.fieldOf(code));
+        assertEquals("durationMillis must not be negative", Appointment.describe(code));
+
+        code = Appointment.check("1", NOW, 5, s(Appointment.MAX_OWNER_LENGTH + 1), "Desc", fixedClock());
+        assertEquals(Appointment.FIELD_OWNER, Validation.fieldOf(code));
+        assertEquals(Validation.OK, Appointment.check("1", NOW, 5, "room-4", "Desc", fixedClock()));
+    }
+
+    // ---- Error-code validation ----
+
+    @Test
+    void testCheckShouldReportPastDate() {
+        Clock clock = Clock.fixed(Instant.ofEpochMilli(1_000), ZoneOffset.UTC);
+
+        assertEquals(Validation.OK, Appointment.check("1", 1_000, "Desc", clock));
+        int code = Appointment.check("1", 999, "Desc", clock);
+        assertEquals(Appointment.FIELD_DATE, Validation.fieldOf(code));
+        assertEquals(Validation.IN_THE_PAST, Validation.kindOf(code));
+        assertEquals("appointmentDate cannot be in the past", Appointment.describe(code));
+    }
+
+    @Test
+    void testCheckShouldAgreeWithConstructor() {
+        long future = System.currentTimeMillis() + 60_000;
+        int code = Appointment.check("12345678901", future, "Desc");
+
+        Appointment.ValidationException e = assertThrows(Appointment.ValidationException.class, () ->
+                new Appointment("12345678901", future, "Desc"));
+        assertEquals(Appointment.describe(code), e.getMessage());
+        assertTrue(Appointment.isValid("1", future, "Desc"));
+    }
 }
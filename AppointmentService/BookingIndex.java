@@ -0,0 +1,143 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Per-owner interval index of bookings (appointments with an owner and a positive duration)
+ * for AppointmentService, so overlap checks and free-slot queries cost O(log n + k) in the
+ * owner's bookings instead of a scan over every appointment.
+ *
+ * Each owner has a calendar: a concurrent skip list of its bookings ordered by start. The
+ * service only admits a booking that overlaps none of its owner's bookings, so a calendar
+ * holds disjoint intervals whose ends are ordered like their starts. That reduces the
+ * interval-tree query "does anything overlap [start, end)?" to one lookup: the booking with
+ * the greatest start before end is the only candidate that can reach past start.
+ *
+ * Booking is atomic per owner: the service runs the overlap check and its insert inside
+ * locked(owner, ...), so two threads cannot both claim the same slot, while bookings of
+ * different owners proceed in parallel. Removal and queries take no lock and see a weakly
+ * consistent calendar. Calendars of owners whose bookings are all deleted are kept; owners
+ * are expected to be a bounded set of people and rooms.
+ */
+final class BookingIndex {
+
+    private final Map<String, Calendar> calendars = new ConcurrentHashMap<>();
+
+    /** Runs action while holding owner's lock; the overlap check and insert of a booking go here. */
+    long locked(String owner, LongSupplier action) {
+        Calendar calendar = calendars.computeIfAbsent(owner, o -> new Calendar());
+        synchronized (calendar) {
+            return action.getAsLong();
+        }
+    }
+
+    /** A stored booking of booking's owner that overlaps it, or null. */
+    Appointment findOverlap(Appointment booking) {
+        Calendar calendar = calendars.get(booking.getOwner());
+        if (calendar == null) {
+            return null;
+        }
+        Map.Entry<Key, Appointment> last = calendar.slots.lowerEntry(Key.lowest(booking.getEndTime()));
+        return last != null && last.getValue().getEndTime() > booking.getAppointmentTime() ? last.getValue() : null;
+    }
+
+    /** Adds booking without a check; callers either checked it under the lock or are restoring it. */
+    void add(Appointment booking) {
+        calendars.computeIfAbsent(booking.getOwner(), o -> new Calendar()).slots.put(Key.of(booking), booking);
+    }
+
+    void remove(Appointment booking) {
+        Calendar calendar = calendars.get(booking.getOwner());
+        if (calendar != null) {
+            calendar.slots.remove(Key.of(booking), booking);
+        }
+    }
+
+    /** owner's bookings that overlap [from, to), in start order. */
+    List<Appointment> overlapping(String owner, long from, long to) {
+        List<Appointment> result = new ArrayList<>();
+        Calendar calendar = calendars.get(owner);
+        if (calendar == null || from >= to) {
+            return result;
+        }
+        // only the last booking starting before from can reach into the window
+        Map.Entry<Key, Appointment> before = calendar.slots.lowerEntry(Key.lowest(from));
+        if (before != null && before.getValue().getEndTime() > from) {
+            result.add(before.getValue());
+        }
+        result.addAll(calendar.slots.subMap(Key.lowest(from), true, Key.lowest(to), false).values());
+        return result;
+    }
+
+    /** Gaps of at least minLength (and never empty) between owner's bookings within [from, to). */
+    List<TimeSlot> freeSlots(String owner, long from, long to, long minLength) {
+        List<TimeSlot> result = new ArrayList<>();
+        long cursor = from;
+        for (Appointment booking : overlapping(owner, from, to)) {
+            addGap(result, cursor, booking.getAppointmentTime(), minLength);
+            cursor = Math.max(cursor, booking.getEndTime());
+        }
+        addGap(result, cursor, to, minLength);
+        return result;
+    }
+
+    /** Number of bookings of owner. */
+    int size(String owner) {
+        Calendar calendar = calendars.get(owner);
+        return calendar == null ? 0 : calendar.slots.size();
+    }
+
+    private static void addGap(List<TimeSlot> into, long start, long end, long minLength) {
+        if (end > start && end - start >= minLength) {
+            into.add(new TimeSlot(start, end));
+        }
+    }
+
+    /** One owner's bookings; also the monitor that serializes its bookings. */
+    private static final class Calendar {
+        final ConcurrentSkipListMap<Key, Appointment> slots = new ConcurrentSkipListMap<>();
+    }
+
+    /** Start time first, appointmentId to keep bookings restored with the same start apart. */
+    private static final class Key implements Comparable<Key> {
+        private static final String LOWEST_ID = ""; // sorts before every valid (non-blank) ID
+
+        private final long start;
+        private final String id;
+
+        private Key(long start, String id) {
+            this.start = start;
+            this.id = id;
+        }
+
+        static Key of(Appointment booking) {
+            return new Key(booking.getAppointmentTime(), booking.getAppointmentId());
+        }
+
+        static Key lowest(long start) {
+            return new Key(start, LOWEST_ID);
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byStart = Long.compare(start, other.start);
+            return byStart != 0 ? byStart : id.compareTo(other.id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return start == other.start && id.equals(other.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(start) * 31 + id.hashCode();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookingIndexTest {
+
+    private static final long NOW = 1_700_000_000_000L;
+    private static final Clock CLOCK = Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC);
+
+    private final BookingIndex index = new BookingIndex();
+
+    private static Appointment booking(String id, String owner, long start, long end) {
+        return new Appointment(id, NOW + start, end - start, owner, "Booking", CLOCK);
+    }
+
+    private static List<String> ids(List<Appointment> appointments) {
+        return appointments.stream().map(Appointment::getAppointmentId).collect(Collectors.toList());
+    }
+
+    @Test
+    void testOverlapShouldIgnoreTouchingBookings() {
+        index.add(booking("a", "room", 100, 200));
+
+        assertNull(index.findOverlap(booking("x", "room", 0, 100)));
+        assertNull(index.findOverlap(booking("x", "room", 200, 300)));
+        assertEquals("a", index.findOverlap(booking("x", "room", 199, 300)).getAppointmentId());
+        assertEquals("a", index.findOverlap(booking("x", "room", 50, 101)).getAppointmentId());
+        assertEquals("a", index.findOverlap(booking("x", "room", 120, 130)).getAppointmentId());
+        assertEquals("a", index.findOverlap(booking("x", "room", 0, 1000)).getAppointmentId());
+    }
+
+    @Test
+    void testOwnersShouldNotSeeEachOthersBookings() {
+        index.add(booking("a", "room-1", 100, 200));
+
+        assertNull(index.findOverlap(booking("x", "room-2", 100, 200)));
+        assertEquals(1, index.size("room-1"));
+        assertEquals(0, index.size("room-2"));
+    }
+
+    @Test
+    void testOverlappingShouldIncludeBookingStartedBeforeWindow() {
+        index.add(booking("a", "room", 0, 150));
+        index.add(booking("b", "room", 200, 300));
+        index.add(booking("c", "room", 400, 500));
+
+        assertEquals(List.of("a", "b"), ids(index.overlapping("room", NOW + 100, NOW + 250)));
+        assertEquals(List.of(), ids(index.overlapping("room", NOW + 150, NOW + 200)));
+        assertEquals(List.of("c"), ids(index.overlapping("room", NOW + 499, NOW + 1000)));
+    }
+
+    @Test
+    void testRemoveShouldFreeTheSlot() {
+        Appointment a = booking("a", "room", 100, 200);
+        index.add(a);
+
+        index.remove(a);
+
+        assertNull(index.findOverlap(booking("x", "room", 100, 200)));
+        assertEquals(0, index.size("room"));
+    }
+
+    @Test
+    void testFreeSlotsShouldBeTheGapsBetweenBookings() {
+        index.add(booking("a", "room", 100, 200));
+        index.add(booking("b", "room", 200, 250));
+        index.add(booking("c", "room", 300, 400));
+
+        assertEquals(List.of(new TimeSlot(NOW, NOW + 100), new TimeSlot(NOW + 250, NOW + 300),
+                        new TimeSlot(NOW + 400, NOW + 500)),
+                index.freeSlots("room", NOW, NOW + 500, 0));
+        assertEquals(List.of(new TimeSlot(NOW, NOW + 100), new TimeSlot(NOW + 400, NOW + 500)),
+                index.freeSlots("room", NOW, NOW + 500, 60));
+        assertEquals(List.of(new TimeSlot(NOW + 250, NOW + 300)), index.freeSlots("room", NOW + 150, NOW + 350, 0));
+        assertEquals(List.of(new TimeSlot(NOW, NOW + 500)), index.freeSlots("nobody", NOW, NOW + 500, 0));
+    }
+
+    @Test
+    void testRandomBookingsShouldMatchLinearScan() {
+        Random random = new Random(11);
+        List<Appointment> stored = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            long start = random.nextInt(100_000);
+            Appointment candidate = booking("b" + i, "room", start, start + 1 + random.nextInt(200));
+            Appointment expected = null;
+            for (Appointment s : stored) {
+                if (s.getAppointmentTime() < candidate.getEndTime() && candidate.getAppointmentTime() < s.getEndTime()) {
+                    expected = s;
+                    break;
+                }
+            }
+            Appointment found = index.findOverlap(candidate);
+            assertEquals(expected == null, found == null, "overlap mismatch for " + candidate.getAppointmentId());
+            if (found == null) {
+                index.add(candidate);
+                stored.add(candidate);
+            }
+            if (!stored.isEmpty() && random.nextInt(4) == 0) {
+                index.remove(stored.remove(random.nextInt(stored.size())));
+            }
+        }
+        assertEquals(stored.size(), index.size("room"));
+    }
+}
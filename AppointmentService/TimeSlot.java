@@ -0,0 +1,39 @@
+/**
+ * A half-open span of time [start, end) in epoch millis, such as a free slot returned by
+ * AppointmentService.getFreeSlots.
+ */
+public final class TimeSlot {
+
+    private final long start;
+    private final long end;
+
+    public TimeSlot(long start, long end) {
+        if (end < start) {
+            throw new IllegalArgumentException("end must not be before start");
+        }
+        this.start = start;
+        this.end = end;
+    }
+
+    public long getStart() { return start; }
+    public long getEnd() { return end; }
+    public long getDurationMillis() { return end - start; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TimeSlot)) return false;
+        TimeSlot other = (TimeSlot) o;
+        return start == other.start && end == other.end;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(start) * 31 + Long.hashCode(end);
+    }
+
+    @Override
+    public String toString() {
+        return "[" + start + ", " + end + ")";
+    }
+}
@@ -0,0 +1,107 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.Function;
+import java.util.function.LongConsumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Shared engine behind the services' bulk import methods.
+ *
+ * 1. Builds (and so validates) every record in parallel across cores. A validation failure
+ *    is recorded for that record instead of aborting the batch.
+ * 2. Finds the first occurrence of every ID in the batch (in parallel); later occurrences
+ *    are reported as duplicates, so the outcome does not depend on thread scheduling.
+ * 3. Inserts the remaining records in parallel through the service's insert function,
+ *    which returns NOT_INSERTED for an ID that is already stored, CONFLICT for a record
+ *    the service rejects because it clashes with a stored one, or a journal position.
+ * 4. Syncs the journal once, up to the highest position written.
+ */
+final class BulkImport {
+
+    /** Returned by the insert function when the ID is already stored. */
+    static final long NOT_INSERTED = -1;
+
+    /** Returned by the insert function when the record conflicts with a stored one. */
+    static final long CONFLICT = -2;
+
+    private BulkImport() { }
+
+    static <T, M> BulkResult run(Collection<? extends T> source,
+                                 Function<? super T, ? extends M> factory,
+                                 Class<? extends RuntimeException> validationError,
+                                 Function<? super M, String> idOf,
+                                 ToLongFunction<? super M> insert,
+                                 LongConsumer sync) {
+        Objects.requireNonNull(source, "source must not be null");
+        Objects.requireNonNull(factory, "factory must not be null");
+        Object[] rows = source.toArray();
+        int n = rows.length;
+        Object[] built = new Object[n];
+        BulkResult.Failure[] failures = new BulkResult.Failure[n];
+
+        IntStream.range(0, n).parallel().forEach(i -> {
+            try {
+                @SuppressWarnings("unchecked")
+                T row = (T) rows[i];
+                built[i] = Objects.requireNonNull(factory.apply(row), "factory returned null");
+            } catch (NullPointerException e) {
+                failures[i] = new BulkResult.Failure(i, null, BulkResult.Reason.VALIDATION_ERROR, e.getMessage());
+            } catch (RuntimeException e) {
+                if (!validationError.isInstance(e)) {
+                    throw e;
+                }
+                failures[i] = new BulkResult.Failure(i, null, BulkResult.Reason.VALIDATION_ERROR, e.getMessage());
+            }
+        });
+
+        // first occurrence of each ID within the batch, found in parallel
+        ConcurrentHashMap<String, Integer> firstIndex = new ConcurrentHashMap<>(Math.max(16, n));
+        IntStream.range(0, n).parallel().forEach(i -> {
+            if (built[i] != null) {
+                @SuppressWarnings("unchecked")
+                M record = (M) built[i];
+                firstIndex.merge(idOf.apply(record), i, Math::min);
+            }
+        });
+
+        LongAccumulator lastPosition = new LongAccumulator(Math::max, 0);
+        IntStream.range(0, n).parallel().forEach(i -> {
+            if (built[i] == null) {
+                return;
+            }
+            @SuppressWarnings("unchecked")
+            M record = (M) built[i];
+            String id = idOf.apply(record);
+            int first = firstIndex.get(id);
+            if (first != i) {
+                failures[i] = new BulkResult.Failure(i, id, BulkResult.Reason.DUPLICATE_ID,
+                        "ID appears earlier in the batch at index " + first);
+                return;
+            }
+            long position = insert.applyAsLong(record);
+            if (position == NOT_INSERTED) {
+                failures[i] = new BulkResult.Failure(i, id, BulkResult.Reason.DUPLICATE_ID,
+                        "ID already exists: " + id);
+            } else if (position == CONFLICT) {
+                failures[i] = new BulkResult.Failure(i, id, BulkResult.Reason.CONFLICT,
+                        "conflicts with a stored record: " + id);
+            } else {
+                lastPosition.accumulate(position);
+            }
+        });
+        sync.accept(lastPosition.get());
+
+        List<BulkResult.Failure> failed = new ArrayList<>();
+        for (BulkResult.Failure f : failures) {
+            if (f != null) {
+                failed.add(f);
+            }
+        }
+        return new BulkResult(n, n - failed.size(), failed);
+    }
+}
@@ -0,0 +1,101 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkImportTest {
+
+    /** Minimal record type for exercising the engine: "id" or "!message" to fail validation. */
+    private static String build(String row) {
+        if (row.startsWith("!")) {
+            throw new IllegalArgumentException(row.substring(1));
+        }
+        return row;
+    }
+
+    private static BulkResult run(List<String> rows, Map<String, String> store) {
+        return BulkImport.run(rows, BulkImportTest::build, IllegalArgumentException.class, id -> id,
+                id -> store.putIfAbsent(id, id) == null ? 0 : BulkImport.NOT_INSERTED, position -> { });
+    }
+
+    @Test
+    void testValidRowsShouldAllBeImported() {
+        Map<String, String> store = new ConcurrentHashMap<>();
+        BulkResult result = run(Arrays.asList("a", "b", "c"), store);
+
+        assertEquals(3, result.getSubmitted());
+        assertEquals(3, result.getImported());
+        assertFalse(result.hasFailures());
+        assertEquals(3, store.size());
+    }
+
+    @Test
+    void testFailuresShouldBeReportedPerRowInInputOrder() {
+        Map<String, String> store = new ConcurrentHashMap<>();
+        store.put("taken", "taken");
+
+        BulkResult result = run(Arrays.asList("a", "!too long", "taken", "b", "a", null), store);
+
+        assertEquals(6, result.getSubmitted());
+        assertEquals(2, result.getImported());
+        List<BulkResult.Failure> failures = result.getFailures();
+        assertEquals(4, failures.size());
+
+        assertEquals(1, failures.get(0).getIndex());
+        assertEquals(BulkResult.Reason.VALIDATION_ERROR, failures.get(0).getReason());
+        assertEquals("too long", failures.get(0).getMessage());
+        assertNull(failures.get(0).getId());
+
+        assertEquals(2, failures.get(1).getIndex());
+        assertEquals(BulkResult.Reason.DUPLICATE_ID, failures.get(1).getReason());
+        assertEquals("taken", failures.get(1).getId());
+
+        assertEquals(4, failures.get(2).getIndex());
+        assertEquals(BulkResult.Reason.DUPLICATE_ID, failures.get(2).getReason());
+
+        assertEquals(5, failures.get(3).getIndex());
+        assertEquals(BulkResult.Reason.VALIDATION_ERROR, failures.get(3).getReason());
+    }
+
+    @Test
+    void testUnexpectedExceptionShouldPropagate() {
+        Map<String, String> store = new ConcurrentHashMap<>();
+        assertThrows(IllegalStateException.class, () ->
+                BulkImport.<String, String>run(List.of("a"), row -> { throw new IllegalStateException("bug"); },
+                        IllegalArgumentException.class, id -> id, id -> 0, position -> { }));
+    }
+
+    @Test
+    void testJournalShouldBeSyncedOnceUpToHighestPosition() {
+        List<Long> synced = new ArrayList<>();
+        long[] next = {100};
+        BulkResult result = BulkImport.run(List.of("a", "b", "c"), BulkImportTest::build,
+                IllegalArgumentException.class, id -> id, id -> {
+                    synchronized (next) {
+                        return next[0] += 10;
+                    }
+                }, synced::add);
+
+        assertEquals(3, result.getImported());
+        assertEquals(List.of(130L), synced);
+    }
+
+    @Test
+    void testLargeBatchShouldImportEveryRecord() {
+        Map<String, String> store = new ConcurrentHashMap<>();
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            rows.add(Integer.toString(i));
+        }
+
+        BulkResult result = run(rows, store);
+
+        assertEquals(100_000, result.getImported());
+        assertEquals(100_000, store.size());
+    }
+}
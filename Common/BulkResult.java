@@ -0,0 +1,64 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Outcome of a bulk import: how many records were stored and why the others were not.
+ * Failures are listed in input order and refer to records by their index in the input.
+ */
+public final class BulkResult {
+
+    public enum Reason {
+        /** The ID is already stored, or appears earlier in the same batch. */
+        DUPLICATE_ID,
+        /** The record could not be built: a required value is missing or invalid. */
+        VALIDATION_ERROR,
+        /** The record clashes with one already stored, such as a double-booked time slot. */
+        CONFLICT
+    }
+
+    private final int submitted;
+    private final int imported;
+    private final List<Failure> failures;
+
+    BulkResult(int submitted, int imported, List<Failure> failures) {
+        this.submitted = submitted;
+        this.imported = imported;
+        this.failures = Collections.unmodifiableList(failures);
+    }
+
+    public int getSubmitted() { return submitted; }
+    public int getImported() { return imported; }
+    public List<Failure> getFailures() { return failures; }
+    public boolean hasFailures() { return !failures.isEmpty(); }
+
+    @Override
+    public String toString() {
+        return "BulkResult[submitted=" + submitted + ", imported=" + imported + ", failed=" + failures.size() + "]";
+    }
+
+    /** One rejected input record. */
+    public static final class Failure {
+        private final int index;
+        private final String id;       // null if the record failed before it had a valid ID
+        private final Reason reason;
+        private final String message;
+
+        Failure(int index, String id, Reason reason, String message) {
+            this.index = index;
+            this.id = id;
+            this.reason = Objects.requireNonNull(reason, "reason must not be null");
+            this.message = message;
+        }
+
+        public int getIndex() { return index; }
+        public String getId() { return id; }
+        public Reason getReason() { return reason; }
+        public String getMessage() { return message; }
+
+        @Override
+        public String toString() {
+            return "#" + index + (id == null ? "" : " (" + id + ")") + ": " + reason + " - " + message;
+        }
+    }
+}
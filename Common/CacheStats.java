@@ -0,0 +1,44 @@
+/**
+ * Counters of a TinyLfuCache at one moment. Hits and misses count lookups; a miss that
+ * found nothing to load is still a miss. Evictions count entries dropped to stay within
+ * capacity, not invalidations.
+ */
+public final class CacheStats {
+
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final int size;
+    private final int capacity;
+
+    CacheStats(long hits, long misses, long evictions, int size, int capacity) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.size = size;
+        this.capacity = capacity;
+    }
+
+    public long getHits() { return hits; }
+
+    public long getMisses() { return misses; }
+
+    public long getEvictions() { return evictions; }
+
+    /** Cached entries when the stats were taken. */
+    public int getSize() { return size; }
+
+    public int getCapacity() { return capacity; }
+
+    /** Hits per lookup, from 0 to 1; 0 before the first lookup. */
+    public double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("CacheStats[hits=%d, misses=%d, hitRate=%.3f, evictions=%d, size=%d/%d]",
+                hits, misses, getHitRate(), evictions, size, capacity);
+    }
+}
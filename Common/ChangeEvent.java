@@ -0,0 +1,37 @@
+/**
+ * One entry of a ChangeFeed: what happened to which ID, and the value involved.
+ *
+ * For ADD and UPDATE the value is the entity as stored after the change; for DELETE it is
+ * the entity that was removed. Values are snapshots: a later change publishes a new event
+ * and never modifies the value of an earlier one.
+ *
+ * SyncIndex deltas reuse this class with one event per changed record: the value is the
+ * record as it is now, and null for a DELETE, since only a tombstone is kept.
+ */
+public final class ChangeEvent<T> {
+
+    public enum Type { ADD, UPDATE, DELETE }
+
+    private final long sequence;
+    private final Type type;
+    private final String id;
+    private final T value;
+
+    ChangeEvent(long sequence, Type type, String id, T value) {
+        this.sequence = sequence;
+        this.type = type;
+        this.id = id;
+        this.value = value;
+    }
+
+    /** Position in the feed; consecutive events of one feed have consecutive sequences. */
+    public long getSequence() { return sequence; }
+    public Type getType() { return type; }
+    public String getId() { return id; }
+    public T getValue() { return value; }
+
+    @Override
+    public String toString() {
+        return sequence + " " + type + " " + id;
+    }
+}
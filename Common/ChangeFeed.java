@@ -0,0 +1,274 @@
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Ordered change feed (change data capture) of one service: every add, update and delete
+ * becomes a ChangeEvent with a gap-free sequence number (0, 1, 2, ... per process).
+ *
+ * The services publish from inside the map operation that applies the change, so events
+ * for one ID are in the order the changes were applied, and every event is published
+ * before the call that caused it returns.
+ *
+ * Events go into a bounded ring buffer without locks: a writer claims a sequence with one
+ * atomic increment and stores the event into its slot with a CAS. Nothing is signalled to
+ * readers, so with no blocking subscribers the write path pays a few atomic operations
+ * and one allocation per change, whether anyone listens or not.
+ *
+ * Subscribers pull events at their own pace through a Subscription, starting from the
+ * next event or from any sequence still in the ring (to resume after a restart of the
+ * subscriber or a dropped connection). The ring keeps the last capacity events. What
+ * happens when a subscriber falls that far behind is chosen per subscription:
+ * - non-blocking (the default): writers overwrite the oldest events and the subscriber's
+ *   next poll throws LaggedException; it must resync from the service's view and subscribe
+ *   again at nextSequence(). Writers are never slowed down.
+ * - blocking: writers wait until the subscriber has read the event they would overwrite,
+ *   so it never misses one (backpressure). A writer waits while holding its map entry, so
+ *   a blocking subscriber must keep polling and must not write to the same service from
+ *   its polling thread, or it can deadlock with a waiting writer.
+ */
+public class ChangeFeed<T> {
+
+    public static final int DEFAULT_CAPACITY = 1 << 16;
+
+    private static final int SPINS = 100;
+    private static final long PARK_NANOS = 20_000;
+
+    private final AtomicReferenceArray<ChangeEvent<T>> ring;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+    private final Set<Subscription> blocking = ConcurrentHashMap.newKeySet();
+    private final AtomicLong gate = new AtomicLong(Long.MAX_VALUE); // cached minimum blocking position
+    private final Object gateLock = new Object(); // orders writes to gate; readers never take it
+
+    public ChangeFeed() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /** capacity: events kept for subscribers, a power of two. */
+    public ChangeFeed(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+        }
+        this.ring = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /** Appends one event and returns its sequence; called by the services while they hold the entry. */
+    long publish(ChangeEvent.Type type, String id, T value) {
+        long sequence = next.getAndIncrement();
+        ChangeEvent<T> event = new ChangeEvent<>(sequence, type, id, value);
+        if (sequence - gate.get() >= ring.length()) {
+            awaitBlockingSubscribers(sequence);
+        }
+        int slot = (int) sequence & mask;
+        while (true) {
+            ChangeEvent<T> current = ring.get(slot);
+            if (current != null && current.getSequence() > sequence) {
+                return sequence; // a writer one lap ahead already reused the slot
+            }
+            if (ring.compareAndSet(slot, current, event)) {
+                return sequence;
+            }
+        }
+    }
+
+    /** Sequence the next event will get (the number of events published so far). */
+    public long nextSequence() {
+        return next.get();
+    }
+
+    /** Oldest sequence still in the ring, i.e. the smallest valid argument of subscribe. */
+    public long oldestSequence() {
+        return Math.max(0, next.get() - ring.length());
+    }
+
+    public int capacity() {
+        return ring.length();
+    }
+
+    /** Non-blocking subscription starting at the next event. */
+    public Subscription subscribe() {
+        return subscribe(nextSequence(), false);
+    }
+
+    /** Non-blocking subscription starting at fromSequence. */
+    public Subscription subscribe(long fromSequence) {
+        return subscribe(fromSequence, false);
+    }
+
+    /**
+     * Subscription starting at fromSequence; see the class comment for blocking.
+     *
+     * @throws LaggedException if fromSequence is no longer in the ring
+     * @throws IllegalArgumentException if fromSequence has not been reached yet
+     */
+    public Subscription subscribe(long fromSequence, boolean blocking) {
+        long end = nextSequence();
+        if (fromSequence > end) {
+            throw new IllegalArgumentException("sequence " + fromSequence + " is beyond the feed end " + end);
+        }
+        Subscription s = new Subscription(fromSequence, blocking);
+        if (blocking) {
+            synchronized (gateLock) {
+                this.blocking.add(s);
+                gate.accumulateAndGet(fromSequence, Math::min);
+            }
+        }
+        // checked after the gate is lowered: a writer that read the old gate has already
+        // claimed its sequence, so what it may overwrite is behind next.get() - capacity
+        try {
+            s.checkRetained();
+        } catch (LaggedException e) {
+            this.blocking.remove(s);
+            throw e;
+        }
+        return s;
+    }
+
+    /** Waits until every blocking subscription has read the event that sequence would overwrite. */
+    private void awaitBlockingSubscribers(long sequence) {
+        int idle = 0;
+        while (true) {
+            long min;
+            synchronized (gateLock) { // else a subscriber added during the scan could be raised past
+                min = minimumBlockingPosition();
+                gate.set(min);
+            }
+            if (sequence - min < ring.length()) {
+                return;
+            }
+            idle = pause(idle);
+        }
+    }
+
+    private long minimumBlockingPosition() {
+        long min = Long.MAX_VALUE;
+        for (Subscription s : blocking) {
+            min = Math.min(min, s.position);
+        }
+        return min;
+    }
+
+    /** Spins briefly, then parks for short intervals; returns the next idle count. */
+    private static int pause(int idle) {
+        if (idle < SPINS) {
+            Thread.onSpinWait();
+        } else {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+        return idle + 1;
+    }
+
+    /**
+     * One reader's position in the feed. Not thread-safe: use it from one thread at a time.
+     * Close a blocking subscription when done, or writers will eventually wait for it.
+     */
+    public final class Subscription implements AutoCloseable {
+
+        private volatile long position;
+        private final boolean blocking;
+        private boolean closed;
+
+        private Subscription(long position, boolean blocking) {
+            this.position = position;
+            this.blocking = blocking;
+        }
+
+        /** Sequence of the next event this subscription returns. */
+        public long position() {
+            return position;
+        }
+
+        /**
+         * The next event, or null if it has not been published yet.
+         *
+         * @throws LaggedException if the next event was overwritten before it was read
+         */
+        public ChangeEvent<T> poll() {
+            if (closed) {
+                throw new IllegalStateException("subscription is closed");
+            }
+            long p = position;
+            ChangeEvent<T> event = ring.get((int) p & mask);
+            if (event == null || event.getSequence() < p) {
+                if (!blocking) {
+                    checkRetained(); // writers may have claimed a full lap beyond p already
+                }
+                return null;
+            }
+            if (event.getSequence() > p) {
+                throw lagged(p);
+            }
+            position = p + 1;
+            return event;
+        }
+
+        /** Like poll(), but waits up to timeout for the next event to be published. */
+        public ChangeEvent<T> poll(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            int idle = 0;
+            while (true) {
+                ChangeEvent<T> event = poll();
+                if (event != null || System.nanoTime() - deadline >= 0) {
+                    return event;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                idle = pause(idle);
+            }
+        }
+
+        /** Hands up to max events that are already published to sink; returns how many. */
+        public int drain(Consumer<? super ChangeEvent<T>> sink, int max) {
+            Objects.requireNonNull(sink, "sink must not be null");
+            int count = 0;
+            ChangeEvent<T> event;
+            while (count < max && (event = poll()) != null) {
+                sink.accept(event);
+                count++;
+            }
+            return count;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            if (blocking) {
+                ChangeFeed.this.blocking.remove(this);
+            }
+        }
+
+        /** Throws LaggedException if position was already overwritten (or never will be readable). */
+        void checkRetained() {
+            if (position < next.get() - ring.length()) {
+                throw lagged(position);
+            }
+        }
+
+        private LaggedException lagged(long p) {
+            long oldest = oldestSequence();
+            return new LaggedException("subscriber at sequence " + p + " fell behind; oldest retained event is "
+                    + oldest, oldest);
+        }
+    }
+
+    /** A subscription's next event is no longer in the ring; resync and subscribe again. */
+    public static class LaggedException extends RuntimeException {
+
+        private final long oldestRetained;
+
+        public LaggedException(String message, long oldestRetained) {
+            super(message);
+            this.oldestRetained = oldestRetained;
+        }
+
+        public long getOldestRetained() { return oldestRetained; }
+    }
+}
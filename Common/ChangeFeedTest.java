@@ -0,0 +1,186 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChangeFeedTest {
+
+    private final ChangeFeed<String> feed = new ChangeFeed<>(4);
+
+    private void publish(String id) {
+        feed.publish(ChangeEvent.Type.ADD, id, "value " + id);
+    }
+
+    @Test
+    void testEventsShouldHaveConsecutiveSequences() {
+        ChangeFeed<String>.Subscription s = feed.subscribe();
+        publish("a");
+        feed.publish(ChangeEvent.Type.DELETE, "a", "value a");
+
+        ChangeEvent<String> first = s.poll();
+        ChangeEvent<String> second = s.poll();
+
+        assertEquals(0, first.getSequence());
+        assertEquals(ChangeEvent.Type.ADD, first.getType());
+        assertEquals("a", first.getId());
+        assertEquals("value a", first.getValue());
+        assertEquals(1, second.getSequence());
+        assertEquals(ChangeEvent.Type.DELETE, second.getType());
+        assertNull(s.poll());
+        assertEquals(2, s.position());
+    }
+
+    @Test
+    void testSubscriptionShouldResumeFromSequence() {
+        publish("a");
+        publish("b");
+        publish("c");
+
+        ChangeFeed<String>.Subscription s = feed.subscribe(1);
+
+        assertEquals("b", s.poll().getId());
+        assertEquals("c", s.poll().getId());
+        assertNull(s.poll());
+        assertThrows(IllegalArgumentException.class, () -> feed.subscribe(4));
+    }
+
+    @Test
+    void testSlowNonBlockingSubscriberShouldLag() {
+        ChangeFeed<String>.Subscription s = feed.subscribe();
+        for (int i = 0; i < 5; i++) {
+            publish("e" + i);
+        }
+
+        ChangeFeed.LaggedException e = assertThrows(ChangeFeed.LaggedException.class, s::poll);
+        assertEquals(1, e.getOldestRetained());
+        assertEquals(1, feed.oldestSequence());
+        assertThrows(ChangeFeed.LaggedException.class, () -> feed.subscribe(0));
+        assertEquals("e1", feed.subscribe(e.getOldestRetained()).poll().getId());
+    }
+
+    @Test
+    void testBlockingSubscriberShouldHoldWritersBack() throws Exception {
+        ChangeFeed<String>.Subscription s = feed.subscribe(0, true);
+        for (int i = 0; i < 4; i++) {
+            publish("e" + i);
+        }
+        CompletableFuture<Void> fifth = CompletableFuture.runAsync(() -> publish("e4"));
+
+        assertThrows(TimeoutException.class, () -> fifth.get(100, TimeUnit.MILLISECONDS));
+        assertEquals("e0", s.poll().getId());
+        fifth.get(5, TimeUnit.SECONDS);
+
+        List<String> rest = new ArrayList<>();
+        assertEquals(4, s.drain(e -> rest.add(e.getId()), 10));
+        assertEquals(List.of("e1", "e2", "e3", "e4"), rest);
+    }
+
+    @Test
+    void testClosingBlockingSubscriptionShouldReleaseWriters() throws Exception {
+        ChangeFeed<String>.Subscription s = feed.subscribe(0, true);
+        for (int i = 0; i < 4; i++) {
+            publish("e" + i);
+        }
+        CompletableFuture<Void> fifth = CompletableFuture.runAsync(() -> publish("e4"));
+
+        s.close();
+
+        fifth.get(5, TimeUnit.SECONDS);
+        assertThrows(IllegalStateException.class, s::poll);
+    }
+
+    @Test
+    void testConcurrentPublishersShouldNotLoseEventsForBlockingSubscriber() throws Exception {
+        ChangeFeed<String> small = new ChangeFeed<>(64);
+        ChangeFeed<String>.Subscription s = small.subscribe(0, true);
+        int writers = 4;
+        int perWriter = 5000;
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            int writer = w;
+            futures.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    small.publish(ChangeEvent.Type.UPDATE, writer + ":" + i, null);
+                }
+            }));
+        }
+
+        int[] lastPerWriter = {-1, -1, -1, -1};
+        for (long expected = 0; expected < writers * perWriter; expected++) {
+            ChangeEvent<String> e = s.poll(10, TimeUnit.SECONDS);
+            assertNotNull(e, "missing event " + expected);
+            assertEquals(expected, e.getSequence());
+            String[] parts = e.getId().split(":");
+            int writer = Integer.parseInt(parts[0]);
+            int index = Integer.parseInt(parts[1]);
+            assertEquals(lastPerWriter[writer] + 1, index); // each writer's events stay in order
+            lastPerWriter[writer] = index;
+        }
+        for (CompletableFuture<Void> f : futures) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+        assertNull(s.poll());
+    }
+
+    @Test
+    void testBlockingSubscriberJoiningWhileWritersWaitShouldMissNothing() throws Exception {
+        ChangeFeed<String> small = new ChangeFeed<>(16);
+        ChangeFeed<String>.Subscription slow = small.subscribe(0, true); // keeps writers at the wrap point
+        AtomicBoolean stop = new AtomicBoolean();
+        List<CompletableFuture<Void>> threads = new ArrayList<>();
+        for (int w = 0; w < 2; w++) {
+            threads.add(CompletableFuture.runAsync(() -> {
+                while (!stop.get()) {
+                    small.publish(ChangeEvent.Type.UPDATE, "id", null);
+                }
+            }));
+        }
+        threads.add(CompletableFuture.runAsync(() -> {
+            while (!stop.get()) {
+                slow.drain(e -> { }, 4);
+                Thread.yield();
+            }
+            slow.close(); // here, not in the test thread, so no drain runs on a closed subscription
+        }));
+
+        try {
+            for (int round = 0; round < 200; round++) {
+                ChangeFeed<String>.Subscription joined;
+                try {
+                    joined = small.subscribe(small.oldestSequence(), true);
+                } catch (ChangeFeed.LaggedException e) {
+                    continue; // the writers moved on between the two calls; try again
+                }
+                try (joined) {
+                    long expected = joined.position();
+                    for (int i = 0; i < 64; i++) {
+                        ChangeEvent<String> e = joined.poll(10, TimeUnit.SECONDS);
+                        assertNotNull(e);
+                        assertEquals(expected++, e.getSequence());
+                    }
+                }
+            }
+        } finally {
+            stop.set(true); // the drainer closes slow, which releases any writer still waiting on it
+        }
+        for (CompletableFuture<Void> f : threads) {
+            f.get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void testTimedPollShouldReturnNullWhenNothingArrives() throws Exception {
+        assertNull(feed.subscribe().poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void testCapacityMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new ChangeFeed<String>(3));
+    }
+}
@@ -0,0 +1,59 @@
+import java.util.Collections;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Default RecordStore: a ConcurrentHashMap of the records.
+ *
+ * get never blocks and returns the stored instance itself, so a caller can compare
+ * records by identity. Each record costs a map node plus the record object.
+ */
+public class HeapRecordStore<V> implements RecordStore<V> {
+
+    private final ConcurrentHashMap<String, V> records = new ConcurrentHashMap<>();
+    private final Map<String, V> view = Collections.unmodifiableMap(records);
+
+    @Override
+    public V get(String id) {
+        return records.get(id);
+    }
+
+    @Override
+    public V computeIfAbsent(String id, Function<String, V> factory) {
+        return records.computeIfAbsent(id, factory);
+    }
+
+    @Override
+    public V computeIfPresent(String id, BiFunction<String, V, V> remap) {
+        return records.computeIfPresent(id, remap);
+    }
+
+    @Override
+    public V put(String id, V value) {
+        return records.put(id, value);
+    }
+
+    @Override
+    public V remove(String id) {
+        return records.remove(id);
+    }
+
+    @Override
+    public int size() {
+        return records.size();
+    }
+
+    @Override
+    public Map<String, V> asMap() {
+        return view;
+    }
+
+    /** ConcurrentHashMap's own spliterator, which splits the hash table by ranges of bins. */
+    @Override
+    public Spliterator<V> spliterator() {
+        return records.values().spliterator();
+    }
+}
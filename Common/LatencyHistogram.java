@@ -0,0 +1,126 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram with HDR-style log-linear buckets: every power of two is split into 32
+ * equal sub-buckets, so a recorded value is known to within 1/32 (about 3%) from a few
+ * nanoseconds up to a minute, in 1,056 counters. Values of 2^36 ns (about 69 s) and more
+ * share the top bucket; the exact maximum is kept separately.
+ *
+ * A histogram has a single writer: ServiceMetrics gives every recording thread its own, so
+ * recording is a few plain loads and stores with no atomic read-modify-write. Readers on
+ * other threads may merge histograms with snapshot() at any time; the counters are stored
+ * with opaque writes, so a reader sees each one at some recent value.
+ */
+final class LatencyHistogram {
+
+    static final int SUB_BITS = 5;
+    static final int SUB_COUNT = 1 << SUB_BITS;
+    static final int MAX_EXPONENT = 36;
+    static final int BUCKETS = (MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT;
+
+    private static final int SUM = BUCKETS;
+    private static final int MAX = BUCKETS + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS + 2);
+
+    /** Records one value in nanoseconds (negative values count as 0); owning thread only. */
+    void record(long nanos) {
+        long value = Math.max(0, nanos);
+        int bucket = bucketOf(value);
+        counts.setOpaque(bucket, counts.getPlain(bucket) + 1);
+        counts.setOpaque(SUM, counts.getPlain(SUM) + value);
+        if (value > counts.getPlain(MAX)) {
+            counts.setOpaque(MAX, value);
+        }
+    }
+
+    /** Merged counts of histograms, read while their writers continue. */
+    static Snapshot snapshot(Iterable<LatencyHistogram> histograms) {
+        long[] counts = new long[BUCKETS];
+        long sum = 0;
+        long max = 0;
+        for (LatencyHistogram histogram : histograms) {
+            AtomicLongArray source = histogram.counts;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] += source.getOpaque(i);
+            }
+            sum += source.getOpaque(SUM);
+            max = Math.max(max, source.getOpaque(MAX));
+        }
+        return new Snapshot(counts, sum, max);
+    }
+
+    /** Bucket of a non-negative value. */
+    static int bucketOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int shift = exponent - SUB_BITS;
+        return ((shift + 1) << SUB_BITS) + (int) (value >>> shift) - SUB_COUNT;
+    }
+
+    /** Largest value that falls into bucket (the top bucket is open-ended). */
+    static long highestValueIn(int bucket) {
+        int group = bucket >>> SUB_BITS;
+        int sub = bucket & (SUB_COUNT - 1);
+        if (group == 0) {
+            return sub;
+        }
+        int shift = group - 1;
+        return ((long) (SUB_COUNT + sub + 1) << shift) - 1;
+    }
+
+    /** Immutable merged counts. */
+    static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        Snapshot(long[] counts, long sum, long max) {
+            long total = 0;
+            for (long c : counts) {
+                total += c;
+            }
+            this.counts = counts;
+            this.count = total;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        long getCount() { return count; }
+
+        long getMax() { return max; }
+
+        double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /**
+         * Smallest value v such that percentile % of the recorded values are at most v,
+         * rounded up to the top of its bucket (but never above the maximum); 0 when empty.
+         */
+        long getValueAtPercentile(double percentile) {
+            if (!(percentile >= 0 && percentile <= 100)) {
+                throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+            }
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueIn(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
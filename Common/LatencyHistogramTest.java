@@ -0,0 +1,73 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    void testBucketsShouldBeContiguousAndOrdered() {
+        long previousHighest = -1;
+        for (int bucket = 0; bucket < LatencyHistogram.BUCKETS - 1; bucket++) {
+            long lowest = previousHighest + 1;
+            long highest = LatencyHistogram.highestValueIn(bucket);
+            assertEquals(bucket, LatencyHistogram.bucketOf(lowest));
+            assertEquals(bucket, LatencyHistogram.bucketOf(highest));
+            previousHighest = highest;
+        }
+        assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    void testBucketWidthShouldStayWithinPrecision() {
+        for (long value : new long[] {100, 1_000, 12_345, 1_000_000, 987_654_321, 30_000_000_000L}) {
+            long highest = LatencyHistogram.highestValueIn(LatencyHistogram.bucketOf(value));
+            assertTrue(highest >= value);
+            assertTrue(highest - value <= value / LatencyHistogram.SUB_COUNT, "value " + value);
+        }
+    }
+
+    @Test
+    void testPercentilesShouldFollowRecordedValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1_000L); // 1 us .. 1 ms
+        }
+
+        LatencyHistogram.Snapshot snapshot = LatencyHistogram.snapshot(List.of(histogram));
+
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(1_000_000, snapshot.getMax());
+        assertEquals(500_500, snapshot.getMean(), 0.001);
+        assertEquals(500_000, snapshot.getValueAtPercentile(50), 500_000 / 32.0);
+        assertEquals(990_000, snapshot.getValueAtPercentile(99), 990_000 / 32.0);
+        assertEquals(1_000_000, snapshot.getValueAtPercentile(100));
+        assertEquals(1_000, snapshot.getValueAtPercentile(0), 1_000 / 32.0);
+    }
+
+    @Test
+    void testSnapshotShouldMergeHistograms() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(10);
+        b.record(20);
+        b.record(-5); // clock went backwards: counts as 0
+
+        LatencyHistogram.Snapshot snapshot = LatencyHistogram.snapshot(List.of(a, b));
+
+        assertEquals(3, snapshot.getCount());
+        assertEquals(20, snapshot.getMax());
+        assertEquals(0, snapshot.getValueAtPercentile(1));
+    }
+
+    @Test
+    void testEmptySnapshotShouldReportZeros() {
+        LatencyHistogram.Snapshot snapshot = LatencyHistogram.snapshot(List.of());
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+        assertEquals(0, snapshot.getMean());
+        assertThrows(IllegalArgumentException.class, () -> snapshot.getValueAtPercentile(101));
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.function.Function;
+
+/**
+ * One page of a cursor-paginated listing: up to limit items and an opaque cursor that
+ * continues after the last of them.
+ *
+ * Pages are read from live indexes without locking or copying the store, so paging through
+ * millions of records keeps only one page in memory. Like the services' views, a listing is
+ * weakly consistent: a record added or removed between two pages may or may not appear.
+ */
+public final class Page<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    Page(List<T> items, String nextCursor) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getItems() { return items; }
+
+    /** Cursor for the next page, or null if this is the last one. */
+    public String getNextCursor() { return nextCursor; }
+
+    public boolean hasMore() { return nextCursor != null; }
+
+    /**
+     * Page of the records whose IDs follow cursor (null for the first page) in ids, in ID
+     * order; the cursor is the last ID returned. IDs that lookup no longer finds were removed
+     * after the index was read and are skipped.
+     */
+    static <T> Page<T> ofIds(NavigableSet<String> ids, String cursor, int limit, Function<String, T> lookup) {
+        requirePositive(limit);
+        Iterable<String> tail = cursor == null ? ids : ids.tailSet(cursor, false);
+        List<T> page = new ArrayList<>(Math.min(limit, 64));
+        String last = null;
+        for (String id : tail) {
+            T item = lookup.apply(id);
+            if (item == null) {
+                continue;
+            }
+            if (page.size() == limit) {
+                return new Page<>(page, last);
+            }
+            page.add(item);
+            last = id;
+        }
+        return new Page<>(page, null);
+    }
+
+    static void requirePositive(int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+    }
+}
@@ -0,0 +1,84 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PageTest {
+
+    private final Map<String, String> records = new TreeMap<>();
+    private final NavigableSet<String> ids = new TreeSet<>();
+
+    private void put(String id) {
+        records.put(id, "value " + id);
+        ids.add(id);
+    }
+
+    @Test
+    void testPagesShouldFollowIdOrderUntilExhausted() {
+        for (String id : List.of("d", "a", "c", "b", "e")) {
+            put(id);
+        }
+
+        List<String> all = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            Page<String> page = Page.ofIds(ids, cursor, 2, records::get);
+            all.addAll(page.getItems());
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(List.of("value a", "value b", "value c", "value d", "value e"), all);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    void testLastFullPageShouldHaveNoCursor() {
+        put("a");
+        put("b");
+
+        Page<String> page = Page.ofIds(ids, null, 2, records::get);
+
+        assertEquals(2, page.getItems().size());
+        assertFalse(page.hasMore());
+    }
+
+    @Test
+    void testRecordsRemovedBehindTheIndexShouldBeSkipped() {
+        put("a");
+        put("b");
+        put("c");
+        records.remove("b"); // index not updated yet
+
+        Page<String> page = Page.ofIds(ids, null, 2, records::get);
+
+        assertEquals(List.of("value a", "value c"), page.getItems());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void testCursorShouldSurviveRemovalOfItsRecord() {
+        put("a");
+        put("b");
+        put("c");
+        Page<String> first = Page.ofIds(ids, null, 2, records::get);
+        records.remove("b");
+        ids.remove("b");
+
+        Page<String> second = Page.ofIds(ids, first.getNextCursor(), 2, records::get);
+
+        assertEquals(List.of("value c"), second.getItems());
+    }
+
+    @Test
+    void testLimitMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> Page.ofIds(ids, null, 0, records::get));
+    }
+}
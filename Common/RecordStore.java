@@ -0,0 +1,53 @@
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Storage behind a service: a concurrent map from record ID to record.
+ *
+ * The services write journal records, change events and index entries from inside the
+ * compute functions, so an implementation must run them atomically per ID and call each
+ * function at most once (ConcurrentHashMap does; the ConcurrentMap default methods, which
+ * retry, do not).
+ *
+ * Implementations:
+ * - HeapRecordStore: a ConcurrentHashMap of the records (the default)
+ * - DiskRecordStore: fixed-width records in files with a bounded cache in front, for data
+ *   sets larger than memory
+ * - OffHeapContactStore: contacts in direct memory (see ContactStore)
+ */
+public interface RecordStore<V> {
+
+    /** The stored record, or null. */
+    V get(String id);
+
+    /**
+     * If id is absent, stores factory's result (unless null) and returns it; otherwise
+     * returns the stored record without calling factory.
+     */
+    V computeIfAbsent(String id, Function<String, V> factory);
+
+    /**
+     * If id is present, replaces its record with remap's result, or removes it when remap
+     * returns null; returns the new record (or null). Absent IDs are left alone.
+     */
+    V computeIfPresent(String id, BiFunction<String, V, V> remap);
+
+    /** Stores value under id unconditionally; returns the previous record or null. */
+    V put(String id, V value);
+
+    /** Removes id; returns the removed record or null. */
+    V remove(String id);
+
+    int size();
+
+    /** Read-only view; iteration is weakly consistent and safe while other threads write. */
+    Map<String, V> asMap();
+
+    /**
+     * Weakly consistent spliterator over all records, safe while other threads write and
+     * able to split the store into balanced parts for parallel streams.
+     */
+    Spliterator<V> spliterator();
+}
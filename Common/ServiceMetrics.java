@@ -0,0 +1,372 @@
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-operation call counts, failure counts by exception type and latency histograms of
+ * one service. Disabled by default; setEnabled(true) turns recording on.
+ *
+ * The services bracket each public mutation with start() and succeeded()/failed() of its
+ * Operation. The hot path is built to stay small next to the operation itself:
+ * - counters are striped per thread: each recording thread owns a cell (found by a hash of
+ *   its thread ID, taken over when its previous owner has died) and updates it with plain
+ *   stores, so there is no atomic read-modify-write and no shared cache line on the hot
+ *   path. Threads that find no free cell share one synchronized cell;
+ * - latency is timed for one call in sampleInterval (default 64, at random gaps chosen by
+ *   each cell), because reading the clock twice costs more than the rest of the
+ *   bookkeeping; timed calls go into the cell's own LatencyHistogram;
+ * - failures are counted per exception class only on the (rare) failure path.
+ * When disabled, an operation costs one volatile read.
+ *
+ * Results are pulled with getOperation(name) or getOperations(), or through JMX after
+ * registerMBean(). Statistics are weakly consistent: cells are summed one by one while
+ * calls continue.
+ */
+public final class ServiceMetrics implements ServiceMetricsMXBean {
+
+    public static final int DEFAULT_SAMPLE_INTERVAL = 64;
+
+    /** start() result when recording was off at the start of the call. */
+    static final long OFF = Long.MIN_VALUE;
+    /** start() result for a counted but untimed call. */
+    static final long UNTIMED = Long.MIN_VALUE + 1;
+
+    private final String service;
+    private final Map<String, Operation> operations = new LinkedHashMap<>();
+    private final Cell[] cells;
+    private final int mask;
+    private final Cell overflow;
+    private volatile boolean enabled;
+    private volatile int sampleMask = DEFAULT_SAMPLE_INTERVAL - 1;
+    private MBeanServer registeredWith; // guarded by this
+    private ObjectName registeredName;  // guarded by this
+
+    /** Metrics of service (a name used in JMX) for the given operation names. */
+    ServiceMetrics(String service, String... operationNames) {
+        this.service = Objects.requireNonNull(service, "service must not be null");
+        for (String name : operationNames) {
+            operations.put(name, new Operation(name, operations.size()));
+        }
+        int wanted = Math.max(16, Math.min(1024, 4 * Runtime.getRuntime().availableProcessors()));
+        int n = Integer.highestOneBit(wanted * 2 - 1);
+        this.cells = new Cell[n];
+        for (int i = 0; i < n; i++) {
+            cells[i] = new Cell(operationNames.length, i);
+        }
+        this.mask = n - 1;
+        this.overflow = new SharedCell(operationNames.length);
+    }
+
+    /** Handle the service keeps for one of its operations. */
+    Operation operation(String name) {
+        Operation operation = operations.get(name);
+        if (operation == null) {
+            throw new IllegalArgumentException("unknown operation: " + name);
+        }
+        return operation;
+    }
+
+    @Override
+    public String getService() { return service; }
+
+    @Override
+    public boolean isEnabled() { return enabled; }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public int getSampleInterval() { return sampleMask + 1; }
+
+    /** Times one call in oneIn (a power of two; 1 times every call). */
+    @Override
+    public void setSampleInterval(int oneIn) {
+        if (oneIn <= 0 || Integer.bitCount(oneIn) != 1) {
+            throw new IllegalArgumentException("sample interval must be a power of two: " + oneIn);
+        }
+        sampleMask = oneIn - 1;
+    }
+
+    /** Statistics of one operation. */
+    public OperationStats getOperation(String name) {
+        return operation(name).stats();
+    }
+
+    @Override
+    public Map<String, OperationStats> getOperations() {
+        Map<String, OperationStats> stats = new LinkedHashMap<>();
+        for (Operation operation : operations.values()) {
+            stats.put(operation.name, operation.stats());
+        }
+        return Collections.unmodifiableMap(stats);
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server as
+     * mobileservices:type=ServiceMetrics,name=&lt;service&gt; and returns that name.
+     */
+    public ObjectName registerMBean() {
+        try {
+            return registerMBean(ManagementFactory.getPlatformMBeanServer(),
+                    new ObjectName("mobileservices:type=ServiceMetrics,name=" + service));
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot register metrics of " + service, e);
+        }
+    }
+
+    /** Registers these metrics with server under name. */
+    public synchronized ObjectName registerMBean(MBeanServer server, ObjectName name) throws JMException {
+        if (registeredName != null) {
+            throw new IllegalStateException("metrics of " + service + " are already registered as " + registeredName);
+        }
+        registeredName = server.registerMBean(this, name).getObjectName();
+        registeredWith = server;
+        return registeredName;
+    }
+
+    /** Removes the registration made by registerMBean(); no-op if not registered. */
+    public synchronized void unregisterMBean() {
+        if (registeredName == null) {
+            return;
+        }
+        try {
+            registeredWith.unregisterMBean(registeredName);
+        } catch (JMException e) {
+            throw new IllegalStateException("cannot unregister " + registeredName, e);
+        } finally {
+            registeredWith = null;
+            registeredName = null;
+        }
+    }
+
+    /** The calling thread's cell. */
+    private Cell cell() {
+        Thread thread = Thread.currentThread();
+        Cell cell = cells[(int) thread.getId() & mask];
+        return cell.owner.get() == thread ? cell : claim(thread);
+    }
+
+    /** Finds a cell the thread owns, or takes over a free one, probing from its home cell. */
+    private Cell claim(Thread thread) {
+        int home = (int) thread.getId() & mask;
+        for (int i = 0; i < cells.length; i++) {
+            Cell cell = cells[(home + i) & mask];
+            Thread owner = cell.owner.get();
+            if (owner == thread) {
+                return cell;
+            }
+            if ((owner == null || !owner.isAlive()) && cell.owner.compareAndSet(owner, thread)) {
+                return cell;
+            }
+        }
+        return overflow;
+    }
+
+    /** Recording side of one operation, used by the service around each call. */
+    final class Operation {
+
+        private final String name;
+        private final int index;
+        private final ConcurrentHashMap<Class<?>, LongAdder> failures = new ConcurrentHashMap<>();
+
+        Operation(String name, int index) {
+            this.name = name;
+            this.index = index;
+        }
+
+        /** Counts a call; pass the result to succeeded or failed when it ends. */
+        long start() {
+            if (!enabled) {
+                return OFF;
+            }
+            return cell().begin(index, sampleMask);
+        }
+
+        void succeeded(long start) {
+            stopTimer(start);
+        }
+
+        /** Counts the failure and returns e for rethrowing. */
+        <E extends RuntimeException> E failed(long start, E e) {
+            if (start != OFF) {
+                stopTimer(start);
+                LongAdder counter = failures.get(e.getClass());
+                if (counter == null) {
+                    counter = failures.computeIfAbsent(e.getClass(), c -> new LongAdder());
+                }
+                counter.increment();
+            }
+            return e;
+        }
+
+        private void stopTimer(long start) {
+            if (start > UNTIMED) {
+                recordLatency(start);
+            }
+        }
+
+        /** Rare path, kept out of line like Cell.startTimer. */
+        private void recordLatency(long start) {
+            long nanos = System.nanoTime() - start;
+            Thread thread = Thread.currentThread();
+            Cell cell = cells[(int) thread.getId() & mask];
+            if (cell.owner.get() != thread) {
+                cell = claim(thread);
+            }
+            cell.record(index, nanos);
+        }
+
+        OperationStats stats() {
+            long calls = overflow.calls(index);
+            List<LatencyHistogram> histograms = new ArrayList<>();
+            overflow.addHistogram(index, histograms);
+            for (Cell cell : cells) {
+                calls += cell.calls(index);
+                cell.addHistogram(index, histograms);
+            }
+            Map<String, Long> byType = new TreeMap<>();
+            failures.forEach((type, counter) -> byType.merge(type.getSimpleName(), counter.sum(), Long::sum));
+            return new OperationStats(calls, byType, LatencyHistogram.snapshot(histograms));
+        }
+    }
+
+    /** Counters of the thread that owns the cell, written by that thread only. */
+    private static class Cell {
+
+        final AtomicReference<Thread> owner = new AtomicReference<>();
+        private final AtomicLongArray calls;
+        private final AtomicReferenceArray<LatencyHistogram> latency; // created on first timed call
+        private long seed;
+        private int untilTimed = 1; // calls until the next timed one
+
+        Cell(int operations, long seed) {
+            this.calls = new AtomicLongArray(operations);
+            this.latency = new AtomicReferenceArray<>(operations);
+            this.seed = (seed + 1) * 0x9E3779B97F4A7C15L;
+        }
+
+        /** Counts a call of op and returns its start time if it is to be timed, else UNTIMED. */
+        long begin(int op, int sampleMask) {
+            calls.setOpaque(op, calls.getPlain(op) + 1);
+            return --untilTimed > 0 ? UNTIMED : startTimer(sampleMask);
+        }
+
+        /**
+         * Picks a random gap to the next timed call (1 to 2 * sampleMask + 1, sampleMask + 1
+         * on average, so periodic call patterns are not sampled in step) and reads the clock.
+         * Kept out of line on purpose: C2 inlines a method this size only at frequent call
+         * sites, and with the clock call inlined every service method measured several
+         * nanoseconds slower even on untimed calls.
+         */
+        private long startTimer(int sampleMask) {
+            long x = seed;
+            x ^= x << 13;
+            x ^= x >>> 7;
+            x ^= x << 17;
+            seed = x;
+            untilTimed = 1 + (int) (x & sampleMask) + (int) ((x >>> 32) & sampleMask);
+            return System.nanoTime();
+        }
+
+        /** Records the latency of a timed call of op. */
+        void record(int op, long nanos) {
+            LatencyHistogram histogram = latency.getPlain(op);
+            if (histogram == null) {
+                histogram = new LatencyHistogram();
+                latency.set(op, histogram);
+            }
+            histogram.record(nanos);
+        }
+
+        long calls(int op) {
+            return calls.getOpaque(op);
+        }
+
+        void addHistogram(int op, List<LatencyHistogram> to) {
+            LatencyHistogram histogram = latency.get(op);
+            if (histogram != null) {
+                to.add(histogram);
+            }
+        }
+    }
+
+    /** Cell for threads that found no cell of their own; writers take turns. */
+    private static final class SharedCell extends Cell {
+
+        SharedCell(int operations) {
+            super(operations, -1);
+        }
+
+        @Override
+        synchronized long begin(int op, int sampleMask) {
+            return super.begin(op, sampleMask);
+        }
+
+        @Override
+        synchronized void record(int op, long nanos) {
+            super.record(op, nanos);
+        }
+    }
+
+    /**
+     * Statistics of one operation: calls and failures since recording was enabled, and the
+     * latency of the timed calls in nanoseconds.
+     */
+    public static final class OperationStats {
+
+        private final long calls;
+        private final Map<String, Long> failures;
+        private final long failureCount;
+        private final LatencyHistogram.Snapshot latency;
+
+        OperationStats(long calls, Map<String, Long> failures, LatencyHistogram.Snapshot latency) {
+            this.calls = calls;
+            this.failures = Collections.unmodifiableMap(failures);
+            this.failureCount = failures.values().stream().mapToLong(Long::longValue).sum();
+            this.latency = latency;
+        }
+
+        /** Calls made, successful or not. */
+        public long getCalls() { return calls; }
+
+        public long getFailureCount() { return failureCount; }
+
+        /** Failures by exception simple name, e.g. "DuplicateIdException". */
+        public Map<String, Long> getFailures() { return failures; }
+
+        /** Calls whose latency was recorded (about calls / sample interval). */
+        public long getTimedCalls() { return latency.getCount(); }
+
+        public double getMeanNanos() { return latency.getMean(); }
+
+        public long getMaxNanos() { return latency.getMax(); }
+
+        public long getP50Nanos() { return latency.getValueAtPercentile(50); }
+
+        public long getP90Nanos() { return latency.getValueAtPercentile(90); }
+
+        public long getP99Nanos() { return latency.getValueAtPercentile(99); }
+
+        public long getP999Nanos() { return latency.getValueAtPercentile(99.9); }
+
+        /** Latency at any percentile, in nanoseconds. */
+        public long percentileNanos(double percentile) {
+            return latency.getValueAtPercentile(percentile);
+        }
+    }
+}
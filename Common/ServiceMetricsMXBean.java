@@ -0,0 +1,18 @@
+import java.util.Map;
+
+/** JMX view of a ServiceMetrics; see ServiceMetrics.registerMBean(). */
+public interface ServiceMetricsMXBean {
+
+    String getService();
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    int getSampleInterval();
+
+    void setSampleInterval(int oneIn);
+
+    /** Statistics of every operation, by operation name. */
+    Map<String, ServiceMetrics.OperationStats> getOperations();
+}
@@ -0,0 +1,144 @@
+import org.junit.jupiter.api.Test;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServiceMetricsTest {
+
+    private final ServiceMetrics metrics = new ServiceMetrics("TestService", "add", "delete");
+    private final ServiceMetrics.Operation add = metrics.operation("add");
+    private final ServiceMetrics.Operation delete = metrics.operation("delete");
+
+    @Test
+    void testDisabledMetricsShouldRecordNothing() {
+        add.succeeded(add.start());
+        add.failed(add.start(), new IllegalStateException());
+
+        ServiceMetrics.OperationStats stats = metrics.getOperation("add");
+        assertEquals(0, stats.getCalls());
+        assertEquals(0, stats.getFailureCount());
+        assertEquals(0, stats.getTimedCalls());
+    }
+
+    @Test
+    void testCallsFailuresAndLatencyShouldBeRecorded() {
+        metrics.setEnabled(true);
+        metrics.setSampleInterval(1);
+
+        for (int i = 0; i < 5; i++) {
+            add.succeeded(add.start());
+        }
+        add.failed(add.start(), new IllegalArgumentException());
+        add.failed(add.start(), new IllegalStateException());
+        add.failed(add.start(), new IllegalStateException());
+
+        ServiceMetrics.OperationStats stats = metrics.getOperation("add");
+        assertEquals(8, stats.getCalls());
+        assertEquals(3, stats.getFailureCount());
+        assertEquals(Map.of("IllegalArgumentException", 1L, "IllegalStateException", 2L), stats.getFailures());
+        assertEquals(8, stats.getTimedCalls());
+        assertTrue(stats.getMaxNanos() >= stats.getP50Nanos());
+        assertEquals(0, metrics.getOperation("delete").getCalls());
+    }
+
+    @Test
+    void testSamplingShouldTimeAboutOneCallInInterval() {
+        metrics.setEnabled(true);
+        metrics.setSampleInterval(16);
+
+        for (int i = 0; i < 160_000; i++) {
+            delete.succeeded(delete.start());
+        }
+
+        ServiceMetrics.OperationStats stats = metrics.getOperation("delete");
+        assertEquals(160_000, stats.getCalls());
+        assertEquals(10_000, stats.getTimedCalls(), 1_000);
+    }
+
+    @Test
+    void testSampleIntervalMustBeAPowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> metrics.setSampleInterval(0));
+        assertThrows(IllegalArgumentException.class, () -> metrics.setSampleInterval(12));
+        assertEquals(ServiceMetrics.DEFAULT_SAMPLE_INTERVAL, metrics.getSampleInterval());
+    }
+
+    @Test
+    void testUnknownOperationShouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> metrics.getOperation("update"));
+    }
+
+    @Test
+    void testConcurrentCallsShouldAllBeCounted() throws Exception {
+        metrics.setEnabled(true);
+        int threads = 40; // more than the cells, so some threads share the overflow cell
+        int calls = 5_000;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    barrier.await();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                for (int i = 0; i < calls; i++) {
+                    add.succeeded(add.start());
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals((long) threads * calls, metrics.getOperation("add").getCalls());
+    }
+
+    @Test
+    void testCellsOfFinishedThreadsShouldKeepTheirCounts() throws Exception {
+        metrics.setEnabled(true);
+        for (int round = 0; round < 100; round++) {
+            Thread worker = new Thread(() -> add.succeeded(add.start()));
+            worker.start();
+            worker.join();
+        }
+
+        assertEquals(100, metrics.getOperation("add").getCalls());
+    }
+
+    @Test
+    void testMBeanShouldExposeOperationStats() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        metrics.setEnabled(true);
+        metrics.setSampleInterval(1);
+        add.succeeded(add.start());
+        add.failed(add.start(), new IllegalStateException());
+
+        ObjectName name = metrics.registerMBean(server, new ObjectName("test:type=ServiceMetrics"));
+        try {
+            assertEquals("TestService", server.getAttribute(name, "Service"));
+            TabularData operations = (TabularData) server.getAttribute(name, "Operations");
+            CompositeData addStats = (CompositeData) operations.get(new Object[] {"add"}).get("value");
+            assertEquals(2L, addStats.get("calls"));
+            assertEquals(1L, addStats.get("failureCount"));
+
+            server.setAttribute(name, new Attribute("Enabled", false));
+            assertFalse(metrics.isEnabled());
+            assertThrows(IllegalStateException.class, () -> metrics.registerMBean(server, name));
+        } finally {
+            metrics.unregisterMBean();
+        }
+        assertFalse(server.isRegistered(name));
+    }
+}
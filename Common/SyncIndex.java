@@ -0,0 +1,425 @@
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Delta sync for one service: which records changed since a client's last sync, found
+ * through an index instead of a scan of the store.
+ *
+ * Every change claims a modification sequence from the index, is journaled with it, and is
+ * then published: to the service's ChangeFeed, and into the index under that sequence. The
+ * index keeps one entry per changed record, its latest change; a deleted record's entry
+ * is a tombstone. changesSince(token, limit) walks the index from the token's sequence, so
+ * a sync costs O(log n + changes) however large the store is, and a record changed ten
+ * times since the last sync is returned once.
+ *
+ * Only changes inside the retention window (default 30 days) are kept: older entries,
+ * upserts and tombstones alike, are dropped on the next change or sync that finds one due,
+ * or by purgeExpired(), so the index holds recent changes rather than a node per record.
+ * A token older than a dropped change is rejected with TokenExpiredException, and so is a
+ * token from another index. Either way the client falls back to a full sync: take
+ * currentToken(), then page through all records, then sync from that token (changes made
+ * during the full read may come again; applying them is idempotent). Clients that sync at
+ * least once per window never need a full resync.
+ *
+ * Tokens survive restarts of a journaled service. Each journal record ends in a stamp (the
+ * change's sequence and time, see stamp), and the service logs the index's state (epoch,
+ * horizon, entries) with every snapshot and when it first starts; replay restores both.
+ * Sequences continue RESTART_GAP past the restored ones, so one a client saw just before a
+ * crash is not handed out again for a different change. A memory-only service gets a new
+ * epoch per instance.
+ *
+ * Writers claim a sequence and index it a moment later, so a reader must not hand out a
+ * token beyond a sequence still being indexed, or the client would skip it. Each claimed
+ * sequence stays registered until it is published or released; tokens never pass the
+ * smallest one registered.
+ */
+public class SyncIndex<T> {
+
+    public static final long DEFAULT_RETENTION_MILLIS = TimeUnit.DAYS.toMillis(30);
+
+    /** Bytes at the end of a journal record that stamp fills in. */
+    static final int STAMP_SIZE = 2 * Long.BYTES;
+
+    /** Sequences skipped after a restore; far more than a crash can lose from the unsynced journal tail. */
+    static final long RESTART_GAP = 1L << 20;
+
+    private static final int STATE_CHUNK = 4096; // entries per state record
+    private static final ChangeEvent.Type[] TYPES = ChangeEvent.Type.values();
+
+    private final ChangeFeed<T> feed;
+    private final Function<String, T> lookup;
+    private final Clock clock;
+    private volatile String epoch = Long.toHexString(System.nanoTime() ^ Double.doubleToLongBits(Math.random()));
+    private final AtomicLong next = new AtomicLong(); // sequence the next claim gets
+    private final ConcurrentSkipListMap<Long, Entry> bySequence = new ConcurrentSkipListMap<>();
+    private final Map<String, Entry> latest = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Integer> inFlight = new ConcurrentSkipListMap<>();
+    private final AtomicInteger tombstoneCount = new AtomicInteger();
+    private final AtomicLong horizon = new AtomicLong(); // smallest sequence a token may still name
+    private final AtomicBoolean purging = new AtomicBoolean();
+    private volatile long retentionMillis = DEFAULT_RETENTION_MILLIS;
+    private boolean stateRestored; // only touched while the service loads
+
+    /** Index over feed; lookup returns the current value of a record, or null if it is gone. */
+    public SyncIndex(ChangeFeed<T> feed, Function<String, T> lookup) {
+        this(feed, lookup, Clock.systemUTC());
+    }
+
+    SyncIndex(ChangeFeed<T> feed, Function<String, T> lookup, Clock clock) {
+        this.feed = feed;
+        this.lookup = lookup;
+        this.clock = clock;
+    }
+
+    // -------- Writers --------
+
+    /** Claims the sequence of a change about to be made; publish or release it afterwards. */
+    long claim() {
+        long bound = next.get(); // registered first: a reader that misses both registrations sees next moved
+        inFlight.merge(bound, 1, Integer::sum);
+        long sequence = next.getAndIncrement();
+        inFlight.merge(sequence, 1, Integer::sum);
+        leave(bound);
+        return sequence;
+    }
+
+    /** Writes sequence and the current time into the last STAMP_SIZE bytes of a journal record. */
+    void stamp(ByteBuffer record, long sequence) {
+        int at = record.limit() - STAMP_SIZE;
+        record.putLong(at, sequence).putLong(at + Long.BYTES, clock.millis());
+    }
+
+    /**
+     * Publishes a change to the feed and indexes it under its claimed sequence. Called by the
+     * services while they hold the record's entry, so changes to one ID arrive in order.
+     */
+    void publish(long sequence, ChangeEvent.Type type, String id, T value) {
+        try {
+            feed.publish(type, id, value);
+            index(new Entry(sequence, type, id, clock.millis()));
+            purgeIfDue();
+        } finally {
+            leave(sequence);
+        }
+    }
+
+    /** claim and publish in one step, for a change that is not journaled; returns its sequence. */
+    long publish(ChangeEvent.Type type, String id, T value) {
+        long sequence = claim();
+        publish(sequence, type, id, value);
+        return sequence;
+    }
+
+    /** Gives up a claimed sequence whose change was not made. */
+    void release(long sequence) {
+        leave(sequence);
+    }
+
+    // -------- Readers --------
+
+    /** Token for "now": a client that has read every record after taking it syncs from it. */
+    public String currentToken() {
+        return token(stableSequence());
+    }
+
+    /**
+     * Up to limit changes after token, oldest first, with the token to sync from next time.
+     * Each changed record appears once, with its latest sequence: ADD or UPDATE with its
+     * current value (treat both as an upsert), or DELETE with a null value.
+     *
+     * @throws TokenExpiredException if token is from another index or older than a dropped change
+     * @throws IllegalArgumentException if token is null or malformed, or limit is not positive
+     */
+    public Delta<T> changesSince(String token, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        long from = parse(token);
+        purgeIfDue();
+        checkHorizon(from, token);
+        long end = Math.max(from, stableSequence()); // the stable point can briefly fall behind a token
+        List<ChangeEvent<T>> changes = new ArrayList<>(Math.min(limit, 64));
+        long nextFrom = end;
+        for (Entry e : bySequence.subMap(from, true, end, false).values()) {
+            if (changes.size() == limit) {
+                nextFrom = e.sequence;
+                break;
+            }
+            if (e.isTombstone()) {
+                changes.add(new ChangeEvent<>(e.sequence, ChangeEvent.Type.DELETE, e.id, null));
+            } else {
+                T value = lookup.apply(e.id);
+                if (value != null) { // else deleted since; its tombstone follows
+                    changes.add(new ChangeEvent<>(e.sequence, e.type, e.id, value));
+                }
+            }
+        }
+        checkHorizon(from, token); // a purge during the walk may have removed entries it needed
+        return new Delta<>(changes, token(nextFrom), nextFrom < end);
+    }
+
+    /**
+     * Drops every change older than the retention window, from the oldest sequence up;
+     * returns how many records left the index. Tokens from before a dropped change expire.
+     */
+    public int purgeExpired() {
+        if (!purging.compareAndSet(false, true)) {
+            return 0; // another thread is purging
+        }
+        try {
+            long cutoff = clock.millis() - retentionMillis;
+            int purged = 0;
+            Map.Entry<Long, Entry> head;
+            while ((head = bySequence.firstEntry()) != null && head.getValue().changedAt <= cutoff) {
+                Entry e = head.getValue();
+                horizon.accumulateAndGet(e.sequence + 1, Math::max); // before removal; see changesSince
+                if (latest.remove(e.id, e)) {
+                    if (e.isTombstone()) {
+                        tombstoneCount.decrementAndGet();
+                    }
+                    purged++;
+                }
+                bySequence.remove(e.sequence, e);
+            }
+            return purged;
+        } finally {
+            purging.set(false);
+        }
+    }
+
+    /** Changes are kept at least this long. */
+    public void setRetention(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("retention must not be negative");
+        }
+        retentionMillis = unit.toMillis(duration);
+    }
+
+    public long getRetentionMillis() {
+        return retentionMillis;
+    }
+
+    /** Records in the index, tombstones included. */
+    public int size() {
+        return latest.size();
+    }
+
+    public int getTombstoneCount() {
+        return tombstoneCount.get();
+    }
+
+    // -------- Persistence --------
+
+    /**
+     * Hands the index's state to sink as one or more records for the service's journal:
+     * the epoch, the horizon, the next sequence and the indexed changes, so restoreState
+     * can rebuild the index after the journal records that carry them are compacted away.
+     */
+    void writeState(Consumer<ByteBuffer> sink) {
+        String currentEpoch = epoch;
+        long currentHorizon = horizon.get();
+        long currentNext = next.get();
+        List<Entry> chunk = new ArrayList<>();
+        boolean written = false;
+        for (Entry e : bySequence.values()) {
+            chunk.add(e);
+            if (chunk.size() == STATE_CHUNK) {
+                sink.accept(encodeState(currentEpoch, currentHorizon, currentNext, chunk));
+                chunk.clear();
+                written = true;
+            }
+        }
+        if (!chunk.isEmpty() || !written) {
+            sink.accept(encodeState(currentEpoch, currentHorizon, currentNext, chunk));
+        }
+    }
+
+    /** Restores a record written by writeState; call while the service loads. */
+    void restoreState(ByteBuffer record) {
+        epoch = BinaryFields.getString(record);
+        stateRestored = true;
+        horizon.accumulateAndGet(record.getLong(), Math::max);
+        next.accumulateAndGet(record.getLong(), Math::max);
+        for (int count = record.getInt(); count > 0; count--) {
+            long sequence = record.getLong();
+            long changedAt = record.getLong();
+            ChangeEvent.Type type = TYPES[record.get()];
+            restore(new Entry(sequence, type, BinaryFields.getString(record), changedAt));
+        }
+    }
+
+    /**
+     * Restores the stamp of a replayed journal record, if it has one (records from before
+     * sync tokens do not); payload must be positioned just after the record's fields.
+     */
+    void restore(ByteBuffer payload, ChangeEvent.Type type, String id) {
+        if (payload.remaining() >= STAMP_SIZE) {
+            long sequence = payload.getLong();
+            restore(new Entry(sequence, type, id, payload.getLong()));
+        }
+    }
+
+    /**
+     * Ends loading. Returns true if a state record restored the epoch, after moving the next
+     * sequence RESTART_GAP ahead; false if the service must log writeState for a new epoch.
+     */
+    boolean finishRestore() {
+        if (stateRestored) {
+            next.addAndGet(RESTART_GAP);
+        }
+        return stateRestored;
+    }
+
+    private static ByteBuffer encodeState(String epoch, long horizon, long next, List<Entry> entries) {
+        int size = BinaryFields.sizeOf(epoch) + 2 * Long.BYTES + Integer.BYTES;
+        for (Entry e : entries) {
+            size += 2 * Long.BYTES + 1 + BinaryFields.sizeOf(e.id);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        BinaryFields.putString(buffer, epoch);
+        buffer.putLong(horizon).putLong(next).putInt(entries.size());
+        for (Entry e : entries) {
+            buffer.putLong(e.sequence).putLong(e.changedAt).put((byte) e.type.ordinal());
+            BinaryFields.putString(buffer, e.id);
+        }
+        return buffer.flip();
+    }
+
+    // -------- Internals --------
+
+    private void index(Entry entry) {
+        bySequence.put(entry.sequence, entry);
+        Entry previous = latest.put(entry.id, entry);
+        if (previous != null) {
+            bySequence.remove(previous.sequence, previous);
+            if (previous.isTombstone()) {
+                tombstoneCount.decrementAndGet();
+            }
+        }
+        if (entry.isTombstone()) {
+            tombstoneCount.incrementAndGet();
+        }
+    }
+
+    /** Indexes a change read back while loading, unless a later one to the same record is indexed. */
+    private void restore(Entry entry) {
+        next.accumulateAndGet(entry.sequence + 1, Math::max);
+        Entry current = latest.get(entry.id);
+        if (current == null || current.sequence < entry.sequence) {
+            index(entry);
+        }
+    }
+
+    private void leave(long sequence) {
+        inFlight.computeIfPresent(sequence, (k, writers) -> writers == 1 ? null : writers - 1);
+    }
+
+    private void purgeIfDue() {
+        Map.Entry<Long, Entry> head = bySequence.firstEntry();
+        if (head != null && head.getValue().changedAt <= clock.millis() - retentionMillis) {
+            purgeExpired();
+        }
+    }
+
+    /** Every change below the returned sequence is in the index. */
+    private long stableSequence() {
+        long end = next.get(); // read before inFlight: a writer not registered yet gets end or more
+        Map.Entry<Long, Integer> oldest = inFlight.firstEntry();
+        return oldest == null ? end : Math.min(end, oldest.getKey());
+    }
+
+    private void checkHorizon(long from, String token) {
+        if (from < horizon.get()) {
+            throw new TokenExpiredException("sync token " + token + " is older than the changes kept");
+        }
+    }
+
+    private String token(long sequence) {
+        return epoch + "-" + Long.toHexString(sequence);
+    }
+
+    private long parse(String token) {
+        if (token == null) {
+            throw new IllegalArgumentException("sync token is required; start with currentToken()");
+        }
+        int dash = token.lastIndexOf('-');
+        long sequence = -1;
+        if (dash > 0) {
+            try {
+                sequence = Long.parseLong(token.substring(dash + 1), 16);
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+        }
+        if (sequence < 0) {
+            throw new IllegalArgumentException("malformed sync token " + token);
+        }
+        String current = epoch;
+        if (dash != current.length() || !token.startsWith(current)) {
+            throw new TokenExpiredException("sync token " + token + " is from another service instance");
+        }
+        if (sequence > next.get()) {
+            throw new IllegalArgumentException("sync token " + token + " is beyond the end of the index");
+        }
+        return sequence;
+    }
+
+    /** The latest change to one record. */
+    private static final class Entry {
+
+        final long sequence;
+        final ChangeEvent.Type type;
+        final String id;
+        final long changedAt;
+
+        Entry(long sequence, ChangeEvent.Type type, String id, long changedAt) {
+            this.sequence = sequence;
+            this.type = type;
+            this.id = id;
+            this.changedAt = changedAt;
+        }
+
+        boolean isTombstone() {
+            return type == ChangeEvent.Type.DELETE;
+        }
+    }
+
+    /** One answer of changesSince. */
+    public static final class Delta<T> {
+
+        private final List<ChangeEvent<T>> changes;
+        private final String token;
+        private final boolean more;
+
+        Delta(List<ChangeEvent<T>> changes, String token, boolean more) {
+            this.changes = Collections.unmodifiableList(changes);
+            this.token = token;
+            this.more = more;
+        }
+
+        public List<ChangeEvent<T>> getChanges() { return changes; }
+
+        /** Token to pass to the next changesSince call; never null. */
+        public String getToken() { return token; }
+
+        /** Whether limit cut the answer short; if so, call again with getToken() right away. */
+        public boolean hasMore() { return more; }
+    }
+
+    /** The client must fall back to a full sync. */
+    public static class TokenExpiredException extends RuntimeException {
+        public TokenExpiredException(String message) { super(message); }
+    }
+}
@@ -0,0 +1,222 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SyncIndexTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private final SimulatedClock clock = new SimulatedClock(1_000_000_000_000L);
+    private final Map<String, String> store = new ConcurrentHashMap<>();
+    private final ChangeFeed<String> feed = new ChangeFeed<>(4);
+    private final SyncIndex<String> index = new SyncIndex<>(feed, store::get, clock);
+
+    // what a service does: change the store, then publish while still "holding" the record
+    private void put(String id, String value) {
+        boolean added = store.put(id, value) == null;
+        index.publish(added ? ChangeEvent.Type.ADD : ChangeEvent.Type.UPDATE, id, value);
+    }
+
+    private void delete(String id) {
+        index.publish(ChangeEvent.Type.DELETE, id, store.remove(id));
+    }
+
+    private static List<String> describe(SyncIndex.Delta<String> delta) {
+        return delta.getChanges().stream()
+                .map(e -> e.getType() + " " + e.getId() + (e.getValue() == null ? "" : "=" + e.getValue()))
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void testDeltaShouldHoldEachChangedRecordOnceWithItsLatestState() {
+        put("a", "1");
+        put("b", "1");
+        String token = index.currentToken();
+        put("a", "2");
+        put("c", "1");
+        put("a", "3");
+        delete("b");
+
+        SyncIndex.Delta<String> delta = index.changesSince(token, 10);
+
+        assertEquals(List.of("ADD c=1", "UPDATE a=3", "DELETE b"), describe(delta));
+        assertFalse(delta.hasMore());
+        assertEquals(List.of(), index.changesSince(delta.getToken(), 10).getChanges());
+        assertEquals(3, index.size());
+        assertEquals(1, index.getTombstoneCount());
+    }
+
+    @Test
+    void testLimitShouldSplitADeltaWithoutLosingChanges() {
+        String token = index.currentToken();
+        for (int i = 0; i < 25; i++) {
+            put("r" + i, "v");
+        }
+        List<String> seen = new ArrayList<>();
+        SyncIndex.Delta<String> delta;
+        do {
+            delta = index.changesSince(token, 10);
+            delta.getChanges().forEach(e -> seen.add(e.getId()));
+            token = delta.getToken();
+        } while (delta.hasMore());
+
+        assertEquals(25, seen.size());
+        assertEquals("r0", seen.get(0));
+        assertEquals("r24", seen.get(24));
+    }
+
+    @Test
+    void testDeleteAndReAddShouldReplaceTheTombstone() {
+        put("a", "1");
+        String token = index.currentToken();
+        delete("a");
+        put("a", "2");
+
+        assertEquals(List.of("ADD a=2"), describe(index.changesSince(token, 10)));
+        assertEquals(0, index.getTombstoneCount());
+    }
+
+    @Test
+    void testPurgedChangesShouldExpireOlderTokensOnly() {
+        put("a", "1");
+        put("b", "1");
+        String old = index.currentToken();
+        delete("a");
+        String afterDelete = index.currentToken();
+        clock.advance(DAY);
+        index.setRetention(1, TimeUnit.DAYS);
+        delete("b"); // purges a's tombstone, which is now due
+        assertEquals(1, index.getTombstoneCount());
+
+        assertThrows(SyncIndex.TokenExpiredException.class, () -> index.changesSince(old, 10));
+        assertEquals(List.of("DELETE b"), describe(index.changesSince(afterDelete, 10)));
+
+        clock.advance(DAY);
+        assertEquals(1, index.purgeExpired());
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void testUpsertsOutsideTheWindowShouldLeaveTheIndex() {
+        index.setRetention(1, TimeUnit.DAYS);
+        put("a", "1");
+        String old = index.currentToken();
+        put("b", "1");
+        String afterB = index.currentToken();
+        clock.advance(2 * DAY);
+        put("c", "1"); // a and b are both due
+
+        assertEquals(1, index.size());
+        assertThrows(SyncIndex.TokenExpiredException.class, () -> index.changesSince(old, 10));
+        assertEquals(List.of("ADD c=1"), describe(index.changesSince(afterB, 10)));
+    }
+
+    @Test
+    void testRestoredIndexShouldKeepTokensValid() {
+        put("a", "1");
+        String token = index.currentToken();
+        put("b", "1");
+        delete("a");
+        List<ByteBuffer> state = new ArrayList<>();
+        index.writeState(state::add);
+        // a change journaled after the state record, as a service logs it
+        store.put("c", "1");
+        ByteBuffer record = ByteBuffer.allocate(SyncIndex.STAMP_SIZE);
+        long sequence = index.claim();
+        index.stamp(record, sequence);
+        index.publish(sequence, ChangeEvent.Type.ADD, "c", "1");
+
+        SyncIndex<String> restored = new SyncIndex<>(new ChangeFeed<>(4), store::get, clock);
+        state.forEach(restored::restoreState);
+        restored.restore(record, ChangeEvent.Type.UPDATE, "c");
+        assertTrue(restored.finishRestore());
+
+        assertEquals(List.of("ADD b=1", "DELETE a", "UPDATE c=1"), describe(restored.changesSince(token, 10)));
+        assertEquals(1, restored.getTombstoneCount());
+        assertTrue(restored.claim() >= sequence + SyncIndex.RESTART_GAP);
+    }
+
+    @Test
+    void testTokensShouldBeCheckedAgainstThisInstance() {
+        String foreign = new SyncIndex<>(new ChangeFeed<String>(), store::get).currentToken();
+
+        assertThrows(SyncIndex.TokenExpiredException.class, () -> index.changesSince(foreign, 10));
+        assertThrows(IllegalArgumentException.class, () -> index.changesSince(null, 10));
+        assertThrows(IllegalArgumentException.class, () -> index.changesSince("nonsense", 10));
+        assertThrows(IllegalArgumentException.class, () -> index.changesSince(index.currentToken(), 0));
+    }
+
+    @Test
+    void testConcurrentWritersShouldNeverBeSkippedByASyncingClient() throws InterruptedException {
+        int writers = 4;
+        int perWriter = 5_000;
+        CountDownLatch done = new CountDownLatch(writers);
+        for (int w = 0; w < writers; w++) {
+            String prefix = "w" + w + "-";
+            new Thread(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    put(prefix + i, "v"); // each writer owns its IDs, as if it held their entries
+                }
+                done.countDown();
+            }).start();
+        }
+
+        String token = index.currentToken();
+        List<String> seen = new ArrayList<>(store.keySet()); // the full read after taking the token
+        while (done.getCount() > 0) {
+            SyncIndex.Delta<String> delta = index.changesSince(token, 500);
+            delta.getChanges().forEach(e -> seen.add(e.getId()));
+            token = delta.getToken();
+        }
+        index.changesSince(token, Integer.MAX_VALUE).getChanges().forEach(e -> seen.add(e.getId()));
+
+        assertEquals(writers * perWriter, seen.stream().distinct().count());
+    }
+
+    /** Clock that only moves when the test says so. */
+    private static final class SimulatedClock extends Clock {
+
+        private volatile long millis;
+
+        SimulatedClock(long millis) {
+            this.millis = millis;
+        }
+
+        void advance(long delta) {
+            this.millis += delta;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
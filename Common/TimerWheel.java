@@ -0,0 +1,226 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: schedules payloads for a deadline (epoch millis) with O(1)
+ * insert and cancel, for millions of pending timers.
+ *
+ * Time is cut into ticks of tickMillis. Level 0 has 64 slots of one tick each, level 1 has
+ * 64 slots of 64 ticks, level 2 of 64^2 ticks, and so on (11 levels cover every long).
+ * A timer goes into the lowest level whose range reaches its deadline; each slot is a
+ * doubly linked list, so insert and cancel only relink a node. When the wheel turns past
+ * a level boundary, the next slot of the level above is emptied into the lower levels
+ * (cascading), so each timer moves at most once per level before it fires. advanceTo jumps
+ * over ticks where nothing can happen (up to the next slot boundary of the lowest level
+ * holding timers), so a long idle gap costs a few steps rather than one per tick.
+ *
+ * Timing: a timer fires on the first advanceTo(now) with now >= its deadline rounded up to
+ * the next tick, so it never fires early and fires at most one tick late (plus however
+ * late advanceTo is called). A deadline already reached fires on the next advance.
+ *
+ * The wheel does not run a thread or read a clock; its owner calls advanceTo, from a
+ * ticker thread in production or with simulated time in tests. All methods are
+ * synchronized and short; advanceTo hands the expired payloads to its consumer after
+ * releasing the lock, so the consumer may schedule or cancel timers.
+ */
+public class TimerWheel<T> {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = (Long.SIZE + SLOT_BITS - 1) / SLOT_BITS;
+
+    private final long tickMillis;
+    private final Timer<T>[][] wheel; // sentinel node per slot
+    private final int[] levelSizes;   // timers per level, to skip idle stretches
+    private long currentTick;         // last tick whose timers have fired
+    private int size;
+
+    /** Wheel whose time starts at startMillis; tickMillis is the timing granularity. */
+    public TimerWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("tickMillis must be positive");
+        }
+        this.tickMillis = tickMillis;
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+        @SuppressWarnings("unchecked")
+        Timer<T>[][] wheel = (Timer<T>[][]) new Timer<?>[LEVELS][SLOTS];
+        this.wheel = wheel;
+        this.levelSizes = new int[LEVELS];
+        for (Timer<T>[] level : wheel) {
+            for (int s = 0; s < SLOTS; s++) {
+                level[s] = new Timer<>(this, 0, null);
+                level[s].linkToSelf();
+            }
+        }
+    }
+
+    /** Schedules payload to fire at deadlineMillis; the handle cancels it. */
+    public synchronized Timer<T> schedule(long deadlineMillis, T payload) {
+        Timer<T> timer = new Timer<>(this, deadlineMillis, payload);
+        long tick = ceilDiv(deadlineMillis, tickMillis);
+        timer.tick = Math.max(tick, currentTick + 1);
+        place(timer);
+        size++;
+        return timer;
+    }
+
+    /** Cancels timer if it has not fired yet; true if it was pending. */
+    public synchronized boolean cancel(Timer<T> timer) {
+        if (timer.wheel != this || !timer.isLinked()) {
+            return false;
+        }
+        timer.unlink();
+        levelSizes[timer.level]--;
+        size--;
+        return true;
+    }
+
+    /**
+     * Moves the wheel to nowMillis and passes the payload of every timer that came due, in
+     * deadline order by tick, to expired. Returns how many fired. Time never moves back: a
+     * now earlier than the wheel's time fires nothing.
+     */
+    public int advanceTo(long nowMillis, Consumer<? super T> expired) {
+        List<T> due = new ArrayList<>();
+        synchronized (this) {
+            long target = Math.floorDiv(nowMillis, tickMillis);
+            while (currentTick < target) {
+                // nothing fires or cascades before the next boundary of the lowest busy level
+                long idle = idleUntil();
+                if (idle >= target) {
+                    currentTick = target;
+                    break;
+                }
+                currentTick = Math.max(currentTick, idle) + 1;
+                cascade();
+                drain(wheel[0][(int) currentTick & SLOT_MASK], due);
+            }
+            size -= due.size();
+        }
+        for (T payload : due) {
+            expired.accept(payload);
+        }
+        return due.size();
+    }
+
+    /** Timers scheduled and neither fired nor cancelled. */
+    public synchronized int size() {
+        return size;
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /** Last tick before anything can fire or cascade; Long.MAX_VALUE for an empty wheel. */
+    private long idleUntil() {
+        for (int level = 0; level < LEVELS; level++) {
+            if (levelSizes[level] > 0) {
+                return currentTick | ((1L << (SLOT_BITS * level)) - 1);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /**
+     * Re-places the timers of every upper-level slot that starts at currentTick, highest
+     * level first, so a timer can drop several levels in one turn.
+     */
+    private void cascade() {
+        int top = 0;
+        while (top < LEVELS - 1 && (currentTick & ((1L << (SLOT_BITS * (top + 1))) - 1)) == 0) {
+            top++;
+        }
+        for (int level = top; level >= 1; level--) {
+            Timer<T> sentinel = wheel[level][(int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK];
+            Timer<T> timer = sentinel.next;
+            sentinel.linkToSelf();
+            while (timer != sentinel) {
+                Timer<T> following = timer.next;
+                levelSizes[level]--;
+                place(timer);
+                timer = following;
+            }
+        }
+    }
+
+    private void place(Timer<T> timer) {
+        long delta = timer.tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = (int) (timer.tick >>> (SLOT_BITS * level)) & SLOT_MASK;
+        timer.level = level;
+        levelSizes[level]++;
+        timer.linkBefore(wheel[level][slot]);
+    }
+
+    private void drain(Timer<T> sentinel, List<T> into) {
+        Timer<T> timer = sentinel.next;
+        while (timer != sentinel) {
+            Timer<T> following = timer.next;
+            timer.prev = null;
+            timer.next = null;
+            into.add(timer.payload);
+            levelSizes[0]--;
+            timer = following;
+        }
+        sentinel.linkToSelf();
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return -Math.floorDiv(-value, divisor);
+    }
+
+    /** A scheduled timer; a node of its slot's circular list while pending. */
+    public static final class Timer<T> {
+
+        private final TimerWheel<T> wheel;
+        private final long deadline;
+        private final T payload;
+        private long tick;
+        private int level;
+        private Timer<T> prev;
+        private Timer<T> next;
+
+        private Timer(TimerWheel<T> wheel, long deadline, T payload) {
+            this.wheel = wheel;
+            this.deadline = deadline;
+            this.payload = payload;
+        }
+
+        public long getDeadline() { return deadline; }
+        public T getPayload() { return payload; }
+
+        /** Same as TimerWheel.cancel(this). */
+        public boolean cancel() {
+            return wheel.cancel(this);
+        }
+
+        private boolean isLinked() {
+            return next != null;
+        }
+
+        private void linkToSelf() {
+            prev = this;
+            next = this;
+        }
+
+        private void linkBefore(Timer<T> sentinel) {
+            prev = sentinel.prev;
+            next = sentinel;
+            sentinel.prev.next = this;
+            sentinel.prev = this;
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = null;
+            next = null;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimerWheelTest {
+
+    private static final long TICK = 10;
+
+    private final TimerWheel<String> wheel = new TimerWheel<>(TICK, 0);
+    private final List<String> fired = new ArrayList<>();
+
+    private int advanceTo(long now) {
+        return wheel.advanceTo(now, fired::add);
+    }
+
+    @Test
+    void testTimerShouldFireOnTheTickReachingItsDeadline() {
+        wheel.schedule(25, "a"); // due at tick 3 (30 ms)
+
+        assertEquals(0, advanceTo(29));
+        assertEquals(1, advanceTo(30));
+        assertEquals(List.of("a"), fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testCancelledTimerShouldNotFire() {
+        TimerWheel.Timer<String> a = wheel.schedule(100, "a");
+        wheel.schedule(100, "b");
+
+        assertTrue(a.cancel());
+        assertFalse(a.cancel());
+        assertEquals(1, wheel.size());
+
+        advanceTo(1000);
+        assertEquals(List.of("b"), fired);
+        TimerWheel.Timer<String> late = wheel.schedule(50, "late"); // already past: fires next time
+        assertEquals(1, wheel.size());
+        advanceTo(1010);
+        assertFalse(late.cancel());
+        assertEquals(List.of("b", "late"), fired);
+    }
+
+    @Test
+    void testPastDeadlineShouldFireOnNextAdvance() {
+        advanceTo(1000);
+        wheel.schedule(10, "past");
+
+        advanceTo(1005); // same tick: nothing due yet
+        assertTrue(fired.isEmpty());
+        advanceTo(1010);
+        assertEquals(List.of("past"), fired);
+    }
+
+    @Test
+    void testFarDeadlinesShouldCascadeDownAndFireOnTime() {
+        long[] deadlines = {64 * TICK, 64 * 64 * TICK + 5, 64L * 64 * 64 * 64 * TICK + 123, 365L * 24 * 3600 * 1000};
+        for (long d : deadlines) {
+            wheel.schedule(d, Long.toString(d));
+        }
+        for (long d : deadlines) {
+            long due = -Math.floorDiv(-d, TICK) * TICK;
+            advanceTo(due - 1);
+            assertFalse(fired.contains(Long.toString(d)), "fired early: " + d);
+            advanceTo(due);
+            assertTrue(fired.contains(Long.toString(d)), "not fired: " + d);
+        }
+    }
+
+    @Test
+    void testRandomTimersShouldFireWithinOneTickOfTheirDeadline() {
+        Random random = new Random(3);
+        Map<String, Long> deadlines = new HashMap<>();
+        List<TimerWheel.Timer<String>> cancellable = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            long deadline = random.nextInt(2_000_000);
+            TimerWheel.Timer<String> t = wheel.schedule(deadline, "t" + i);
+            deadlines.put("t" + i, deadline);
+            if (i % 10 == 0) {
+                cancellable.add(t);
+            }
+        }
+        for (TimerWheel.Timer<String> t : cancellable) {
+            assertTrue(t.cancel());
+            deadlines.remove(t.getPayload());
+        }
+
+        long now = 0;
+        while (now < 2_000_000) {
+            long previous = now;
+            now += 1 + random.nextInt(3 * (int) TICK);
+            long at = now;
+            wheel.advanceTo(now, id -> {
+                long deadline = deadlines.remove(id);
+                assertTrue(deadline <= at, "fired before its deadline");
+                assertTrue(deadline > previous - TICK, "fired more than a tick late");
+            });
+        }
+        advanceTo(2_000_000 + TICK);
+        assertTrue(deadlines.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void testConsumerMayScheduleNewTimers() {
+        wheel.schedule(10, "first");
+        wheel.advanceTo(10, id -> wheel.schedule(20, "second"));
+
+        advanceTo(20);
+        assertEquals(List.of("second"), fired);
+    }
+
+    @Test
+    void testTickMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new TimerWheel<String>(0, 0));
+    }
+}
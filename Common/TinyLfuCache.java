@@ -0,0 +1,381 @@
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Bounded read-through cache with the W-TinyLFU policy, for a store whose reads are much
+ * slower than a map lookup (see DiskRecordStore).
+ *
+ * Policy: a new entry enters a small LRU window (1% of capacity). When the window is full
+ * its oldest entry becomes a candidate for the main space, a segmented LRU of a probation
+ * part and a protected part (80% of the main space) that entries reach by being hit again
+ * while on probation. Once the main space is full, the candidate is admitted only if it was
+ * requested more often than the entry it would evict, as estimated by a count-min sketch of
+ * 4-bit counters that is halved every 10 * capacity requests so old popularity fades. The
+ * window lets bursts of new keys in; the frequency filter keeps one-off scans from flushing
+ * the entries that are read over and over.
+ *
+ * Concurrency: entries live in a ConcurrentHashMap, so a hit is a lock-free lookup. A miss
+ * loads the value inside computeIfAbsent, so concurrent misses for one key run the loader
+ * once and the others wait for its result. The policy's queues and sketch are guarded by one
+ * lock: a miss takes it after the value is stored, while hits are recorded in a small lossy
+ * ring buffer that is replayed under tryLock every few hits (hits that overflow the buffer
+ * are dropped, which only makes the policy's view of popularity slightly coarser).
+ *
+ * Capacity counts entries, not bytes. Null values are not cached.
+ */
+public final class TinyLfuCache<K, V> {
+
+    private static final int WINDOW = 0;
+    private static final int PROBATION = 1;
+    private static final int PROTECTED = 2;
+
+    private static final int READ_BUFFER_SIZE = 128;
+    private static final int DRAIN_INTERVAL = 32;
+
+    private final int capacity;
+    private final int windowMax;
+    private final int mainMax;
+    private final int protectedMax;
+    private final ConcurrentHashMap<K, Node<K, V>> data;
+    private final ReentrantLock policyLock = new ReentrantLock();
+    private final FrequencySketch sketch;                            // guarded by policyLock
+    private final AccessQueue<K, V> window = new AccessQueue<>();    // guarded by policyLock
+    private final AccessQueue<K, V> probation = new AccessQueue<>(); // guarded by policyLock
+    private final AccessQueue<K, V> protectedQueue = new AccessQueue<>(); // guarded by policyLock
+    private final AtomicReferenceArray<Node<K, V>> readBuffer = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+    private final AtomicLong reads = new AtomicLong();
+    private long drained; // reads replayed so far; guarded by policyLock
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public TinyLfuCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.windowMax = Math.max(1, capacity / 100);
+        this.mainMax = capacity - windowMax;
+        this.protectedMax = (int) (mainMax * 4L / 5);
+        this.sketch = new FrequencySketch(capacity);
+        this.data = new ConcurrentHashMap<>(Math.min(capacity, 1 << 16));
+    }
+
+    /** The cached value, or null; counts as a hit or a miss. */
+    public V getIfPresent(K key) {
+        Node<K, V> node = data.get(key);
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        afterRead(node);
+        return node.value;
+    }
+
+    /**
+     * The cached value, or else loader's value, which is cached unless null. Concurrent
+     * calls for one key run loader once; it must not use this cache. Exceptions from loader
+     * propagate and nothing is cached.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        Objects.requireNonNull(loader, "loader must not be null");
+        Node<K, V> node = data.get(key);
+        if (node != null) {
+            hits.increment();
+            afterRead(node);
+            return node.value;
+        }
+        Object[] loaded = new Object[1];
+        node = data.computeIfAbsent(key, k -> {
+            V value = loader.apply(k);
+            if (value == null) {
+                return null;
+            }
+            Node<K, V> created = new Node<>(k, value);
+            loaded[0] = created;
+            return created;
+        });
+        if (node == null) {
+            misses.increment();
+            return null;
+        }
+        if (node == loaded[0]) {
+            misses.increment();
+            afterWrite(node);
+        } else {
+            hits.increment(); // loaded by another thread while this one waited
+            afterRead(node);
+        }
+        return node.value;
+    }
+
+    /**
+     * Drops key's entry, if any. A store calls this after changing the record behind key;
+     * a load of key that was running at that moment is waited for and dropped too.
+     */
+    public void invalidate(K key) {
+        Node<K, V> node = data.remove(key);
+        if (node != null) {
+            policyLock.lock();
+            try {
+                drainReads();
+                retire(node);
+            } finally {
+                policyLock.unlock();
+            }
+        }
+    }
+
+    public int size() {
+        return data.size();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), evictions.sum(), data.size(), capacity);
+    }
+
+    /** Records a hit for the policy: buffered, replayed by whoever gets the lock next. */
+    private void afterRead(Node<K, V> node) {
+        long n = reads.getAndIncrement();
+        readBuffer.lazySet((int) n & (READ_BUFFER_SIZE - 1), node);
+        if ((n & (DRAIN_INTERVAL - 1)) == DRAIN_INTERVAL - 1 && policyLock.tryLock()) {
+            try {
+                drainReads();
+            } finally {
+                policyLock.unlock();
+            }
+        }
+    }
+
+    /** Adds a newly loaded entry to the window and evicts down to capacity. */
+    private void afterWrite(Node<K, V> node) {
+        policyLock.lock();
+        try {
+            drainReads();
+            if (node.retired) {
+                return; // invalidated before it was linked
+            }
+            sketch.increment(spread(node.key));
+            node.queue = WINDOW;
+            window.add(node);
+            evict();
+        } finally {
+            policyLock.unlock();
+        }
+    }
+
+    /** Replays the hits buffered since the last drain (at most the buffer's size). */
+    private void drainReads() {
+        long end = reads.get();
+        for (long n = Math.max(drained, end - READ_BUFFER_SIZE); n < end; n++) {
+            int i = (int) n & (READ_BUFFER_SIZE - 1);
+            Node<K, V> node = readBuffer.get(i);
+            if (node != null && readBuffer.compareAndSet(i, node, null)) {
+                onAccess(node);
+            }
+        }
+        drained = end;
+    }
+
+    private void onAccess(Node<K, V> node) {
+        if (node.retired || !node.linked()) {
+            return;
+        }
+        sketch.increment(spread(node.key));
+        if (node.queue == WINDOW) {
+            window.moveToTail(node);
+        } else if (node.queue == PROBATION) {
+            probation.remove(node);
+            node.queue = PROTECTED;
+            protectedQueue.add(node);
+            if (protectedQueue.size > protectedMax) {
+                Node<K, V> demoted = protectedQueue.head;
+                protectedQueue.remove(demoted);
+                demoted.queue = PROBATION;
+                probation.add(demoted);
+            }
+        } else {
+            protectedQueue.moveToTail(node);
+        }
+    }
+
+    /** Moves window overflow into the main space, admitting by frequency once it is full. */
+    private void evict() {
+        while (window.size > windowMax) {
+            Node<K, V> candidate = window.head;
+            window.remove(candidate);
+            if (probation.size + protectedQueue.size < mainMax) {
+                candidate.queue = PROBATION;
+                probation.add(candidate);
+                continue;
+            }
+            Node<K, V> victim = probation.head != null ? probation.head : protectedQueue.head;
+            if (victim != null && sketch.frequency(spread(candidate.key)) > sketch.frequency(spread(victim.key))) {
+                (victim.queue == PROBATION ? probation : protectedQueue).remove(victim);
+                evict(victim);
+                candidate.queue = PROBATION;
+                probation.add(candidate);
+            } else {
+                evict(candidate);
+            }
+        }
+    }
+
+    private void evict(Node<K, V> node) {
+        node.retired = true;
+        data.remove(node.key, node);
+        evictions.increment();
+    }
+
+    private void retire(Node<K, V> node) {
+        if (node.linked()) {
+            (node.queue == WINDOW ? window : node.queue == PROBATION ? probation : protectedQueue).remove(node);
+        }
+        node.retired = true;
+    }
+
+    /** murmur3 finalizer, so that similar keys hit unrelated sketch counters. */
+    private static int spread(Object key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    /** Cache entry; the policy fields are guarded by policyLock. */
+    private static final class Node<K, V> {
+
+        final K key;
+        final V value;
+        int queue = -1; // -1 until linked by afterWrite
+        boolean retired;
+        Node<K, V> prev;
+        Node<K, V> next;
+
+        Node(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        boolean linked() {
+            return queue >= 0 && !retired;
+        }
+    }
+
+    /** Doubly linked LRU list: head is the least recently used entry. */
+    private static final class AccessQueue<K, V> {
+
+        Node<K, V> head;
+        Node<K, V> tail;
+        int size;
+
+        void add(Node<K, V> node) {
+            node.prev = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        void remove(Node<K, V> node) {
+            if (node.prev == null) {
+                head = node.next;
+            } else {
+                node.prev.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.prev;
+            } else {
+                node.next.prev = node.prev;
+            }
+            node.prev = null;
+            node.next = null;
+            size--;
+        }
+
+        void moveToTail(Node<K, V> node) {
+            if (node != tail) {
+                remove(node);
+                add(node);
+            }
+        }
+    }
+
+    /**
+     * Count-min sketch with four rows of 4-bit counters, sixteen to a long. An entry's
+     * frequency is its smallest counter; all counters are halved after sampleSize
+     * increments.
+     */
+    private static final class FrequencySketch {
+
+        private static final long[] SEEDS = {
+            0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L,
+        };
+        private static final long HALVE_MASK = 0x7777_7777_7777_7777L;
+
+        private final long[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int length = Integer.highestOneBit(Math.max(2, Math.min(capacity, 1 << 26)) * 2 - 1);
+            this.table = new long[length];
+            this.mask = length - 1;
+            this.sampleSize = (int) Math.min(10L * capacity, Integer.MAX_VALUE);
+        }
+
+        int frequency(int hash) {
+            int min = 15;
+            for (int row = 0; row < 4; row++) {
+                min = Math.min(min, (int) (table[indexOf(hash, row)] >>> shiftOf(hash, row)) & 15);
+            }
+            return min;
+        }
+
+        void increment(int hash) {
+            boolean added = false;
+            for (int row = 0; row < 4; row++) {
+                int index = indexOf(hash, row);
+                int shift = shiftOf(hash, row);
+                if (((table[index] >>> shift) & 15) < 15) {
+                    table[index] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                for (int i = 0; i < table.length; i++) {
+                    table[i] = (table[i] >>> 1) & HALVE_MASK;
+                }
+                additions >>>= 1;
+            }
+        }
+
+        private int indexOf(int hash, int row) {
+            long h = (hash + SEEDS[row]) * SEEDS[row];
+            h += h >>> 32;
+            return (int) h & mask;
+        }
+
+        /** Bit offset of the row's counter within its long. */
+        private static int shiftOf(int hash, int row) {
+            return ((hash >>> (row << 3)) & 15) << 2;
+        }
+    }
+}
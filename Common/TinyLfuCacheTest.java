@@ -0,0 +1,138 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TinyLfuCacheTest {
+
+    @Test
+    void testMissShouldLoadOnceThenHit() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(10);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("value a", cache.get("a", k -> { loads.incrementAndGet(); return "value " + k; }));
+        assertEquals("value a", cache.get("a", k -> fail("cached values must not be loaded again")));
+        assertEquals("value a", cache.getIfPresent("a"));
+
+        CacheStats stats = cache.stats();
+        assertEquals(1, loads.get());
+        assertEquals(2, stats.getHits());
+        assertEquals(1, stats.getMisses());
+        assertEquals(2.0 / 3, stats.getHitRate(), 1e-9);
+        assertEquals(1, stats.getSize());
+    }
+
+    @Test
+    void testNullShouldNotBeCached() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(10);
+
+        assertNull(cache.get("a", k -> null));
+        assertNull(cache.getIfPresent("a"));
+        assertEquals(0, cache.size());
+        assertEquals(2, cache.stats().getMisses());
+    }
+
+    @Test
+    void testSizeShouldStayWithinCapacity() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(100);
+        for (int i = 0; i < 10_000; i++) {
+            cache.get(i, k -> k);
+        }
+
+        assertEquals(100, cache.size());
+        assertEquals(9_900, cache.stats().getEvictions());
+    }
+
+    @Test
+    void testFrequentKeysShouldSurviveAScan() {
+        TinyLfuCache<Integer, Integer> cache = new TinyLfuCache<>(100);
+        for (int round = 0; round < 20; round++) {
+            for (int hot = 0; hot < 50; hot++) {
+                cache.get(hot, k -> k);
+            }
+        }
+        for (int scanned = 1000; scanned < 11_000; scanned++) {
+            cache.get(scanned, k -> k);
+        }
+
+        int hotCached = 0;
+        for (int hot = 0; hot < 50; hot++) {
+            if (cache.getIfPresent(hot) != null) {
+                hotCached++;
+            }
+        }
+        assertTrue(hotCached >= 45, "hot keys left after scan: " + hotCached);
+    }
+
+    @Test
+    void testInvalidateShouldDropEntry() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(10);
+        cache.get("a", k -> "old");
+
+        cache.invalidate("a");
+        cache.invalidate("missing");
+
+        assertEquals("new", cache.get("a", k -> "new"));
+        assertEquals(0, cache.stats().getEvictions());
+    }
+
+    @Test
+    void testConcurrentMissesShouldLoadOnce() throws Exception {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(10);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        int threads = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(pool.submit(() -> cache.get("k", k -> {
+                    loads.incrementAndGet();
+                    loading.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "loaded";
+                })));
+            }
+            assertTrue(loading.await(10, TimeUnit.SECONDS));
+            Thread.sleep(50); // let the other threads reach the pending load
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("loaded", result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().getMisses());
+        assertEquals(threads - 1, cache.stats().getHits());
+    }
+
+    @Test
+    void testLoaderFailureShouldPropagateAndCacheNothing() {
+        TinyLfuCache<String, String> cache = new TinyLfuCache<>(10);
+
+        assertThrows(IllegalStateException.class, () -> cache.get("a", k -> { throw new IllegalStateException("disk"); }));
+
+        assertEquals(0, cache.size());
+        assertEquals("a", cache.get("a", k -> k));
+    }
+
+    @Test
+    void testCapacityMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new TinyLfuCache<String, String>(0));
+    }
+}
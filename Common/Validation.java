@@ -0,0 +1,148 @@
+/**
+ * Allocation-free field checks shared by the model classes.
+ *
+ * Every check works on the value in place (surrounding whitespace is skipped by index,
+ * not trimmed into a copy) and returns a failure kind instead of throwing: OK (0) when
+ * the value is valid, or one of the constants below. The models combine a kind with
+ * their own field number via code(field, kind), so a caller that validates a whole
+ * record gets one int that says which field failed and why, and a caller that only needs
+ * pass/fail compares it with OK. Nothing is allocated on either path.
+ *
+ * The models' exception-throwing constructors are a thin layer on top: they run the same
+ * checks and only build a message (message()) and an exception when a check fails.
+ */
+public final class Validation {
+
+    public static final int OK = 0;
+    public static final int NULL = 1;
+    public static final int BLANK = 2;
+    public static final int TOO_LONG = 3;
+    public static final int WRONG_LENGTH = 4;
+    public static final int NOT_DIGITS = 5;
+    public static final int IN_THE_PAST = 6;
+    public static final int NEGATIVE = 7;
+    public static final int OUT_OF_RANGE = 8;
+
+    private static final int FIELD_SHIFT = 8;
+    private static final int KIND_MASK = (1 << FIELD_SHIFT) - 1;
+
+    private Validation() { }
+
+    /** Non-null text that is not blank and at most maxLength chars once trimmed. */
+    public static int text(String value, int maxLength) {
+        if (value == null) {
+            return NULL;
+        }
+        int start = trimStart(value);
+        int end = trimEnd(value, start);
+        if (start == end) {
+            return BLANK;
+        }
+        return end - start > maxLength ? TOO_LONG : OK;
+    }
+
+    /** Non-null text that, once trimmed, is exactly length digits. */
+    public static int digits(String value, int length) {
+        if (value == null) {
+            return NULL;
+        }
+        int start = trimStart(value);
+        int end = trimEnd(value, start);
+        if (start == end) {
+            return BLANK;
+        }
+        if (end - start != length) {
+            return WRONG_LENGTH;
+        }
+        for (int i = start; i < end; i++) {
+            if (!Character.isDigit(value.charAt(i))) {
+                return NOT_DIGITS;
+            }
+        }
+        return OK;
+    }
+
+    /**
+     * Numeric value of a text that passed digits(): surrounding whitespace is skipped and
+     * nothing is allocated. Any Unicode decimal digit counts, as in digits().
+     */
+    public static long digitsValue(String value) {
+        int start = trimStart(value);
+        int end = trimEnd(value, start);
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            result = result * 10 + Character.digit(value.charAt(i), 10);
+        }
+        return result;
+    }
+
+    /** Epoch millis that are not before now. */
+    public static int notBefore(long time, long now) {
+        return time < now ? IN_THE_PAST : OK;
+    }
+
+    /** A length or count that is zero or more. */
+    public static int notNegative(long value) {
+        return value < 0 ? NEGATIVE : OK;
+    }
+
+    /** A level or score from 0 to max. */
+    public static int inRange(long value, long max) {
+        return value < 0 || value > max ? OUT_OF_RANGE : OK;
+    }
+
+    /**
+     * The value to store for a text that passed its check: the same instance unless it has
+     * surrounding whitespace (String.trim returns this when there is nothing to remove).
+     */
+    public static String trim(String value) {
+        return value.trim();
+    }
+
+    /** Combines a model's field number (1..0xFFFFFF) with a failure kind; OK stays OK. */
+    public static int code(int field, int kind) {
+        return kind == OK ? OK : field << FIELD_SHIFT | kind;
+    }
+
+    /** Field number of a code built by code(), 0 for OK. */
+    public static int fieldOf(int code) {
+        return code >>> FIELD_SHIFT;
+    }
+
+    /** Failure kind of a code built by code(). */
+    public static int kindOf(int code) {
+        return code & KIND_MASK;
+    }
+
+    /** Human-readable message for a failed check; limit is the length the check used. */
+    public static String message(String fieldName, int kind, int limit) {
+        switch (kind) {
+            case NULL: return fieldName + " must not be null";
+            case BLANK: return fieldName + " must not be blank";
+            case TOO_LONG: return fieldName + " must be <= " + limit + " characters";
+            case WRONG_LENGTH: return fieldName + " must be exactly " + limit + " digits";
+            case NOT_DIGITS: return fieldName + " must contain digits only";
+            case IN_THE_PAST: return fieldName + " cannot be in the past";
+            case NEGATIVE: return fieldName + " must not be negative";
+            case OUT_OF_RANGE: return fieldName + " must be between 0 and " + limit;
+            default: throw new IllegalArgumentException("not a failure kind: " + kind);
+        }
+    }
+
+    // same whitespace definition as String.trim
+    private static int trimStart(String value) {
+        int start = 0;
+        while (start < value.length() && value.charAt(start) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimEnd(String value, int start) {
+        int end = value.length();
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+}
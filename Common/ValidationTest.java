@@ -0,0 +1,76 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ValidationTest {
+
+    @Test
+    void testTextShouldMeasureTrimmedLength() {
+        assertEquals(Validation.OK, Validation.text("  abc  ", 3));
+        assertEquals(Validation.TOO_LONG, Validation.text("abcd", 3));
+        assertEquals(Validation.BLANK, Validation.text(" \t ", 3));
+        assertEquals(Validation.BLANK, Validation.text("", 3));
+        assertEquals(Validation.NULL, Validation.text(null, 3));
+    }
+
+    @Test
+    void testDigitsShouldRequireExactLength() {
+        assertEquals(Validation.OK, Validation.digits(" 0123 ", 4));
+        assertEquals(Validation.WRONG_LENGTH, Validation.digits("012", 4));
+        assertEquals(Validation.NOT_DIGITS, Validation.digits("01a3", 4));
+        assertEquals(Validation.BLANK, Validation.digits("   ", 4));
+        assertEquals(Validation.NULL, Validation.digits(null, 4));
+    }
+
+    @Test
+    void testDigitsValueShouldSkipWhitespaceAndKeepLeadingZeros() {
+        assertEquals(123L, Validation.digitsValue(" 0000000123 "));
+        assertEquals(9_999_999_999L, Validation.digitsValue("9999999999"));
+        assertEquals(42L, Validation.digitsValue("\u0664\u0662")); // Arabic-Indic digits pass digits() too
+    }
+
+    @Test
+    void testNotBeforeShouldAcceptNow() {
+        assertEquals(Validation.OK, Validation.notBefore(100, 100));
+        assertEquals(Validation.IN_THE_PAST, Validation.notBefore(99, 100));
+    }
+
+    @Test
+    void testNotNegativeShouldAcceptZero() {
+        assertEquals(Validation.OK, Validation.notNegative(0));
+        assertEquals(Validation.NEGATIVE, Validation.notNegative(-1));
+        assertEquals("duration must not be negative", Validation.message("duration", Validation.NEGATIVE, 0));
+    }
+
+    @Test
+    void testInRangeShouldAcceptBothEnds() {
+        assertEquals(Validation.OK, Validation.inRange(0, 9));
+        assertEquals(Validation.OK, Validation.inRange(9, 9));
+        assertEquals(Validation.OUT_OF_RANGE, Validation.inRange(10, 9));
+        assertEquals(Validation.OUT_OF_RANGE, Validation.inRange(-1, 9));
+        assertEquals("priority must be between 0 and 9", Validation.message("priority", Validation.OUT_OF_RANGE, 9));
+    }
+
+    @Test
+    void testTrimShouldNotCopyCleanValues() {
+        String clean = "abc";
+        assertSame(clean, Validation.trim(clean));
+        assertEquals("abc", Validation.trim(" abc "));
+    }
+
+    @Test
+    void testCodeShouldCarryFieldAndKind() {
+        int code = Validation.code(3, Validation.TOO_LONG);
+
+        assertEquals(3, Validation.fieldOf(code));
+        assertEquals(Validation.TOO_LONG, Validation.kindOf(code));
+        assertEquals(Validation.OK, Validation.code(3, Validation.OK));
+    }
+
+    @Test
+    void testMessageShouldMatchTheExceptionMessages() {
+        assertEquals("name must be <= 20 characters", Validation.message("name", Validation.TOO_LONG, 20));
+        assertEquals("phone must be exactly 10 digits", Validation.message("phone", Validation.WRONG_LENGTH, 10));
+        assertThrows(IllegalArgumentException.class, () -> Validation.message("name", Validation.OK, 0));
+    }
+}
@@ -9,6 +9,16 @@ import java.util.Objects;
  * - lastName: required, not null, max 10 chars
  * - phone: required, not null, exactly 10 digits
  * - address: required, not null, max 30 chars
+ *
+ * Contacts are immutable snapshots. An update validates every new value first and then
+ * produces a new Contact with the next version number, so a reader holding a Contact
+ * never sees a half-applied change and a failed validation changes nothing.
+ *
+ * Validation runs on the allocation-free checks in Validation; check() exposes them
+ * directly as error codes for callers that do not want exceptions.
+ *
+ * The phone is kept as a primitive long (10 digits fit easily) instead of a 10-char String:
+ * getPhoneNumber() returns it as stored, getPhone() formats it back to 10 digits.
  */
 public class Contact {
 
@@ -18,11 +28,26 @@ public class Contact {
     public static final int PHONE_LENGTH = 10;
     public static final int MAX_ADDRESS_LENGTH = 30;
 
+    /** Field numbers in the codes returned by check(). */
+    public static final int FIELD_ID = 1;
+    public static final int FIELD_FIRST_NAME = 2;
+    public static final int FIELD_LAST_NAME = 3;
+    public static final int FIELD_PHONE = 4;
+    public static final int FIELD_ADDRESS = 5;
+
+    private static final String[] FIELD_NAMES = {null, "contactId", "firstName", "lastName", "phone", "address"};
+    private static final int[] FIELD_LIMITS =
+            {0, MAX_ID_LENGTH, MAX_FIRST_NAME_LENGTH, MAX_LAST_NAME_LENGTH, PHONE_LENGTH, MAX_ADDRESS_LENGTH};
+
+    /** Version of a newly created contact; every update increments it by one. */
+    public static final long INITIAL_VERSION = 1;
+
     private final String contactId; // not updatable
-    private String firstName;
-    private String lastName;
-    private String phone;
-    private String address;
+    private final String firstName;
+    private final String lastName;
+    private final long phone;
+    private final String address;
+    private final long version;
 
     public Contact(String contactId, String firstName, String lastName, String phone, String address) {
         this.contactId = validateId(contactId);
@@ -30,74 +55,194 @@ public class Contact {
         this.lastName = validateLastName(lastName);
         this.phone = validatePhone(phone);
         this.address = validateAddress(address);
+        this.version = INITIAL_VERSION;
+    }
+
+    /** Internal constructor for the next version of previous, with already validated values. */
+    private Contact(Contact previous, String firstName, String lastName, long phone, String address) {
+        this(previous.contactId, firstName, lastName, phone, address, previous.version + 1);
+    }
+
+    /** Internal constructor for already validated values. */
+    private Contact(String contactId, String firstName, String lastName, long phone, String address, long version) {
+        this.contactId = contactId;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.phone = phone;
+        this.address = address;
+        this.version = version;
+    }
+
+    /**
+     * Rebuilds a stored contact (journal replay) with its recorded version.
+     * Field values are validated the same way as in the public constructor.
+     */
+    static Contact restore(String contactId, String firstName, String lastName, String phone, String address,
+                           long version) {
+        return new Contact(validateId(contactId), validateFirstName(firstName), validateLastName(lastName),
+                validatePhone(phone), validateAddress(address), version);
+    }
+
+    /** Rebuilds a contact from values that were validated before they were stored (OffHeapContactStore). */
+    static Contact trusted(String contactId, String firstName, String lastName, long phone, String address,
+                           long version) {
+        return new Contact(contactId, firstName, lastName, phone, address, version);
+    }
+
+    /** This contact with another version; used when a re-added ID must not reuse old versions. */
+    Contact atVersion(long version) {
+        return version == this.version ? this : new Contact(contactId, firstName, lastName, phone, address, version);
     }
 
     public String getContactId() { return contactId; }
     public String getFirstName() { return firstName; }
     public String getLastName() { return lastName; }
-    public String getPhone() { return phone; }
+    public String getPhone() { return formatPhone(phone); }
+    public long getPhoneNumber() { return phone; }
     public String getAddress() { return address; }
+    public long getVersion() { return version; }
+
+    /** Value equality over all fields including the version, so copies of one snapshot are equal. */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Contact)) {
+            return false;
+        }
+        Contact other = (Contact) o;
+        return version == other.version
+                && contactId.equals(other.contactId)
+                && firstName.equals(other.firstName)
+                && lastName.equals(other.lastName)
+                && phone == other.phone
+                && address.equals(other.address);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(contactId, firstName, lastName, phone, address, version);
+    }
+
+    /**
+     * Returns the next version of this contact with all updatable fields replaced.
+     * All values are validated before anything is built; this contact is never modified.
+     */
+    public Contact withUpdates(String firstName, String lastName, String phone, String address) {
+        return new Contact(this,
+                validateFirstName(firstName),
+                validateLastName(lastName),
+                validatePhone(phone),
+                validateAddress(address));
+    }
 
-    /** Updatable fields per requirements */
-    public void setFirstName(String firstName) { this.firstName = validateFirstName(firstName); }
-    public void setLastName(String lastName) { this.lastName = validateLastName(lastName); }
-    public void setPhone(String phone) { this.phone = validatePhone(phone); }
-    public void setAddress(String address) { this.address = validateAddress(address); }
+    /** Updatable fields per requirements; each returns a new version. */
+    public Contact withFirstName(String firstName) {
+        return new Contact(this, validateFirstName(firstName), lastName, phone, address);
+    }
+
+    public Contact withLastName(String lastName) {
+        return new Contact(this, firstName, validateLastName(lastName), phone, address);
+    }
+
+    public Contact withPhone(String phone) {
+        return new Contact(this, firstName, lastName, validatePhone(phone), address);
+    }
+
+    public Contact withAddress(String address) {
+        return new Contact(this, firstName, lastName, phone, validateAddress(address));
+    }
 
     // -------- Validation --------
 
-    private static String validateId(String id) {
-        String value = requireNonBlank(id, "contactId");
-        if (value.length() > MAX_ID_LENGTH) {
-            throw new ValidationException("contactId must be <= " + MAX_ID_LENGTH + " characters");
+    /**
+     * Allocation-free check of the values new Contact(...) would accept: returns Validation.OK,
+     * or Validation.code(FIELD_..., kind) for the first failing field. No exception or message
+     * is built, so this is the cheap path for bulk payloads; describe(code) explains a failure.
+     */
+    public static int check(String contactId, String firstName, String lastName, String phone, String address) {
+        int kind = Validation.text(contactId, MAX_ID_LENGTH);
+        if (kind != Validation.OK) {
+            return Validation.code(FIELD_ID, kind);
+        }
+        kind = Validation.text(firstName, MAX_FIRST_NAME_LENGTH);
+        if (kind != Validation.OK) {
+            return Validation.code(FIELD_FIRST_NAME, kind);
+        }
+        kind = Validation.text(lastName, MAX_LAST_NAME_LENGTH);
+        if (kind != Validation.OK) {
+            return Validation.code(FIELD_LAST_NAME, kind);
         }
-        return value;
+        kind = Validation.digits(phone, PHONE_LENGTH);
+        if (kind != Validation.OK) {
+            return Validation.code(FIELD_PHONE, kind);
+        }
+        return Validation.code(FIELD_ADDRESS, Validation.text(address, MAX_ADDRESS_LENGTH));
     }
 
-    private static String validateFirstName(String firstName) {
-        String value = requireNonBlank(firstName, "firstName");
-        if (value.length() > MAX_FIRST_NAME_LENGTH) {
-            throw new ValidationException("firstName must be <= " + MAX_FIRST_NAME_LENGTH + " characters");
+    /** Pass/fail form of check. */
+    public static boolean isValid(String contactId, String firstName, String lastName, String phone, String address) {
+        return check(contactId, firstName, lastName, phone, address) == Validation.OK;
+    }
+
+    /** The message the constructor would throw for a non-OK code returned by check. */
+    public static String describe(int code) {
+        int field = Validation.fieldOf(code);
+        if (field < FIELD_ID || field > FIELD_ADDRESS) {
+            throw new IllegalArgumentException("not a Contact validation code: " + code);
         }
-        return value;
+        return Validation.message(FIELD_NAMES[field], Validation.kindOf(code), FIELD_LIMITS[field]);
+    }
+
+    /** Validates and trims a contactId; also used by ContactService for lookups. */
+    static String validateId(String id) {
+        return validateText(FIELD_ID, id);
+    }
+
+    private static String validateFirstName(String firstName) {
+        return validateText(FIELD_FIRST_NAME, firstName);
     }
 
     private static String validateLastName(String lastName) {
-        String value = requireNonBlank(lastName, "lastName");
-        if (value.length() > MAX_LAST_NAME_LENGTH) {
-            throw new ValidationException("lastName must be <= " + MAX_LAST_NAME_LENGTH + " characters");
-        }
-        return value;
+        return validateText(FIELD_LAST_NAME, lastName);
     }
 
-    private static String validatePhone(String phone) {
-        String value = requireNonBlank(phone, "phone");
-        if (value.length() != PHONE_LENGTH) {
-            throw new ValidationException("phone must be exactly " + PHONE_LENGTH + " digits");
+    /** Validates a phone and returns its numeric value; also used by ContactService for lookups. */
+    static long validatePhone(String phone) {
+        int kind = Validation.digits(phone, PHONE_LENGTH);
+        if (kind != Validation.OK) {
+            throw invalid(FIELD_PHONE, kind);
         }
-        for (int i = 0; i < value.length(); i++) {
-            if (!Character.isDigit(value.charAt(i))) {
-                throw new ValidationException("phone must contain digits only");
-            }
+        return Validation.digitsValue(phone);
+    }
+
+    /** The 10-digit form of a stored phone number, with leading zeros. */
+    static String formatPhone(long phone) {
+        char[] digits = new char[PHONE_LENGTH];
+        for (int i = PHONE_LENGTH - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + phone % 10);
+            phone /= 10;
         }
-        return value;
+        return new String(digits);
     }
 
     private static String validateAddress(String address) {
-        String value = requireNonBlank(address, "address");
-        if (value.length() > MAX_ADDRESS_LENGTH) {
-            throw new ValidationException("address must be <= " + MAX_ADDRESS_LENGTH + " characters");
-        }
-        return value;
+        return validateText(FIELD_ADDRESS, address);
     }
 
-    private static String requireNonBlank(String s, String fieldName) {
-        Objects.requireNonNull(s, fieldName + " must not be null");
-        String trimmed = s.trim();
-        if (trimmed.isEmpty()) {
-            throw new ValidationException(fieldName + " must not be blank");
+    private static String validateText(int field, String value) {
+        int kind = Validation.text(value, FIELD_LIMITS[field]);
+        if (kind != Validation.OK) {
+            throw invalid(field, kind);
         }
-        return trimmed;
+        return Validation.trim(value);
+    }
+
+    /** NullPointerException for a missing value, ValidationException for any other failure. */
+    private static RuntimeException invalid(int field, int kind) {
+        String message = Validation.message(FIELD_NAMES[field], kind, FIELD_LIMITS[field]);
+        return kind == Validation.NULL ? new NullPointerException(message) : new ValidationException(message);
     }
 
     /** Custom runtime exception for domain validation issues. */
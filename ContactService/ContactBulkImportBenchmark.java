@@ -0,0 +1,88 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk import vs. per-record add for ContactService.
+ *
+ * Imports the same rows once through a loop of addContact(new Contact(...)) and once through
+ * importContacts(rows, factory), for a memory-only service and for a journaled one (where the
+ * per-record loop pays one fsync per contact and the bulk path one per batch).
+ *
+ * Usage: java ContactBulkImportBenchmark [rows] [journaledRows]
+ */
+public class ContactBulkImportBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int journaledRows = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        List<String[]> data = rows(rows);
+        for (int i = 0; i < 2; i++) { // warm-up
+            loop(new ContactService(), rows(50_000));
+            new ContactService().importContacts(rows(50_000), ContactBulkImportBenchmark::build);
+        }
+
+        long start = System.nanoTime();
+        loop(new ContactService(), data);
+        double loopSeconds = seconds(start);
+        start = System.nanoTime();
+        new ContactService().importContacts(data, ContactBulkImportBenchmark::build);
+        double bulkSeconds = seconds(start);
+        report("memory-only", rows, loopSeconds, bulkSeconds);
+
+        List<String[]> journaled = rows(journaledRows);
+        Path dir = Files.createTempDirectory("contact-bulk");
+        try {
+            try (Journal journal = Journal.open(dir.resolve("loop.log"))) {
+                start = System.nanoTime();
+                loop(new ContactService(journal), journaled);
+                loopSeconds = seconds(start);
+            }
+            try (Journal journal = Journal.open(dir.resolve("bulk.log"))) {
+                start = System.nanoTime();
+                new ContactService(journal).importContacts(journaled, ContactBulkImportBenchmark::build);
+                bulkSeconds = seconds(start);
+            }
+            report("journaled", journaledRows, loopSeconds, bulkSeconds);
+        } finally {
+            Files.deleteIfExists(dir.resolve("loop.log"));
+            Files.deleteIfExists(dir.resolve("bulk.log"));
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void loop(ContactService service, List<String[]> data) {
+        for (String[] r : data) {
+            try {
+                service.addContact(build(r));
+            } catch (Contact.ValidationException | ContactService.DuplicateIdException e) {
+                // the per-record path has to catch and carry on as well
+            }
+        }
+    }
+
+    private static Contact build(String[] r) {
+        return new Contact(r[0], r[1], r[2], r[3], r[4]);
+    }
+
+    private static List<String[]> rows(int count) {
+        List<String[]> rows = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            rows.add(new String[] {Integer.toString(i, 36), "John", "Lennon", "1234567890", "1 W 72nd St, New York"});
+        }
+        return rows;
+    }
+
+    private static double seconds(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1e9;
+    }
+
+    private static void report(String mode, int rows, double loopSeconds, double bulkSeconds) {
+        System.out.printf("%-12s %9d rows  loop %8.3f s  bulk %8.3f s  speedup %6.2fx  (%d cores)%n",
+                mode, rows, loopSeconds, bulkSeconds, loopSeconds / bulkSeconds,
+                Runtime.getRuntime().availableProcessors());
+    }
+}
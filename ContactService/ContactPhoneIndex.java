@@ -0,0 +1,311 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * Phone-number index: maps a contact's phone (a primitive long) to its contactId, for
+ * "who is calling?" lookups by exact number and for lookups by leading digits (area code).
+ *
+ * Nothing is boxed: entries live in parallel arrays (phone, contactId, links) and are
+ * chained twice, once per hash bucket of the phone number (exact lookups) and once per
+ * 3-digit area code (prefix lookups walk only the areas the prefix covers). Removed
+ * entries go to a free list and are reused.
+ *
+ * The index is split into segments by area code, each with a StampedLock, so writers for
+ * different areas do not contend. Exact lookups use an optimistic read and retry under the
+ * read lock if a write intervened; prefix walks can be long and take the read lock.
+ *
+ * Like ContactSearchIndex, ContactService updates the index from inside the map operation
+ * that changes a contact, and queries look every hit up in the store and drop entries that
+ * no longer match, which covers a reader racing an update.
+ */
+final class ContactPhoneIndex {
+
+    private static final int DIGITS = Contact.PHONE_LENGTH;
+    private static final long AREA_DIVISOR = 10_000_000L;  // phone / AREA_DIVISOR = area code
+    private static final int AREA_CODES = 1000;
+    private static final int SEGMENTS = 16;
+    private static final int NONE = -1;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    ContactPhoneIndex() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    void add(Contact c) {
+        long phone = c.getPhoneNumber();
+        Segment s = segmentFor(phone);
+        long stamp = s.lock.writeLock();
+        try {
+            s.add(phone, c.getContactId());
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    void remove(Contact c) {
+        long phone = c.getPhoneNumber();
+        Segment s = segmentFor(phone);
+        long stamp = s.lock.writeLock();
+        try {
+            s.remove(phone, c.getContactId());
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Moves the entry of previous (may be null) to next's phone if it changed. */
+    void replace(Contact previous, Contact next) {
+        if (previous != null) {
+            if (previous.getPhoneNumber() == next.getPhoneNumber()) {
+                return;
+            }
+            remove(previous);
+        }
+        add(next);
+    }
+
+    /** Contacts whose phone is exactly phone. */
+    List<Contact> find(long phone, Function<String, Contact> lookup) {
+        Segment s = segmentFor(phone);
+        List<String> ids = null;
+        long stamp = s.lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                ids = s.find(phone);
+                if (!s.lock.validate(stamp)) {
+                    ids = null;
+                }
+            } catch (RuntimeException raced) {
+                ids = null; // the arrays changed under the optimistic read; retry under the lock
+            }
+        }
+        if (ids == null) {
+            stamp = s.lock.readLock();
+            try {
+                ids = s.find(phone);
+            } finally {
+                s.lock.unlockRead(stamp);
+            }
+        }
+        List<Contact> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            Contact c = lookup.apply(id);
+            if (c != null && c.getPhoneNumber() == phone) {
+                result.add(c);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Up to limit contacts whose phone starts with the given leading digits (prefix holds
+     * prefixDigits digits, 1 to 10; "212" is prefix 212 with 3 digits). Results come area
+     * by area in no particular order within an area.
+     */
+    List<Contact> findByPrefix(long prefix, int prefixDigits, int limit, Function<String, Contact> lookup) {
+        if (prefixDigits < 1 || prefixDigits > DIGITS) {
+            throw new IllegalArgumentException("prefix must have 1 to " + DIGITS + " digits");
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        long scale = pow10(DIGITS - prefixDigits);
+        long from = prefix * scale;
+        long to = from + scale; // exclusive
+        if (prefix < 0 || to > pow10(DIGITS)) {
+            throw new IllegalArgumentException("prefix " + prefix + " has more than " + prefixDigits + " digits");
+        }
+        List<Contact> result = new ArrayList<>(Math.min(limit, 64));
+        List<String> ids = new ArrayList<>();
+        for (int area = (int) (from / AREA_DIVISOR); area <= (to - 1) / AREA_DIVISOR && result.size() < limit; area++) {
+            Segment s = segments[area % SEGMENTS];
+            ids.clear();
+            long stamp = s.lock.readLock();
+            try {
+                s.collectArea(area, from, to, limit - result.size(), ids);
+            } finally {
+                s.lock.unlockRead(stamp);
+            }
+            // looked up outside the index lock: store writers hold their lock while updating the index
+            for (String id : ids) {
+                Contact c = lookup.apply(id);
+                if (c != null && c.getPhoneNumber() >= from && c.getPhoneNumber() < to) {
+                    result.add(c);
+                }
+            }
+        }
+        return result;
+    }
+
+    int size() {
+        int total = 0;
+        for (Segment s : segments) {
+            long stamp = s.lock.readLock();
+            try {
+                total += s.size;
+            } finally {
+                s.lock.unlockRead(stamp);
+            }
+        }
+        return total;
+    }
+
+    private Segment segmentFor(long phone) {
+        return segments[(int) (phone / AREA_DIVISOR) % SEGMENTS];
+    }
+
+    private static long pow10(int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; i++) {
+            result *= 10;
+        }
+        return result;
+    }
+
+    /** Entries of the area codes with area % SEGMENTS == this segment's number. */
+    private static final class Segment {
+
+        final StampedLock lock = new StampedLock();
+
+        // entry arrays, indexed by entry number; ids[e] == null marks a free entry
+        long[] phones = new long[16];
+        String[] ids = new String[16];
+        int[] bucketNext = new int[16];   // next entry in the same hash bucket, or in the free list
+        int[] areaNext = new int[16];
+        int[] areaPrev = new int[16];
+        int used;                          // entries handed out so far
+        int freeHead = NONE;
+        int size;
+
+        int[] buckets = filled(16);
+        final int[] areaHeads = filled(AREA_CODES / SEGMENTS + 1);
+
+        void add(long phone, String contactId) {
+            if (size + 1 > buckets.length - (buckets.length >>> 2)) {
+                rehash(buckets.length * 2);
+            }
+            int e = allocate();
+            phones[e] = phone;
+            ids[e] = contactId;
+
+            int b = bucket(phone, buckets.length);
+            bucketNext[e] = buckets[b];
+            buckets[b] = e;
+
+            int a = areaSlot(phone);
+            areaPrev[e] = NONE;
+            areaNext[e] = areaHeads[a];
+            if (areaHeads[a] != NONE) {
+                areaPrev[areaHeads[a]] = e;
+            }
+            areaHeads[a] = e;
+            size++;
+        }
+
+        void remove(long phone, String contactId) {
+            int b = bucket(phone, buckets.length);
+            int previous = NONE;
+            for (int e = buckets[b]; e != NONE; previous = e, e = bucketNext[e]) {
+                if (phones[e] != phone || !ids[e].equals(contactId)) {
+                    continue;
+                }
+                if (previous == NONE) {
+                    buckets[b] = bucketNext[e];
+                } else {
+                    bucketNext[previous] = bucketNext[e];
+                }
+                if (areaPrev[e] == NONE) {
+                    areaHeads[areaSlot(phone)] = areaNext[e];
+                } else {
+                    areaNext[areaPrev[e]] = areaNext[e];
+                }
+                if (areaNext[e] != NONE) {
+                    areaPrev[areaNext[e]] = areaPrev[e];
+                }
+                ids[e] = null;
+                bucketNext[e] = freeHead;
+                freeHead = e;
+                size--;
+                return;
+            }
+        }
+
+        /** IDs stored under phone; bounded so a torn optimistic read cannot loop forever. */
+        List<String> find(long phone) {
+            int[] heads = buckets;
+            long[] keys = phones;
+            String[] values = ids;
+            int[] next = bucketNext;
+            List<String> result = new ArrayList<>(1);
+            int steps = keys.length;
+            for (int e = heads[bucket(phone, heads.length)]; e != NONE && steps-- > 0; e = next[e]) {
+                if (keys[e] == phone) {
+                    result.add(values[e]);
+                }
+            }
+            return result;
+        }
+
+        void collectArea(int area, long from, long to, int limit, List<String> out) {
+            for (int e = areaHeads[area / SEGMENTS]; e != NONE && out.size() < limit; e = areaNext[e]) {
+                if (phones[e] >= from && phones[e] < to) {
+                    out.add(ids[e]);
+                }
+            }
+        }
+
+        private int allocate() {
+            if (freeHead != NONE) {
+                int e = freeHead;
+                freeHead = bucketNext[e];
+                return e;
+            }
+            if (used == phones.length) {
+                int capacity = phones.length * 2;
+                phones = Arrays.copyOf(phones, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                bucketNext = Arrays.copyOf(bucketNext, capacity);
+                areaNext = Arrays.copyOf(areaNext, capacity);
+                areaPrev = Arrays.copyOf(areaPrev, capacity);
+            }
+            return used++;
+        }
+
+        /** Rebuilds the hash chains into a new bucket array; published only once complete. */
+        private void rehash(int capacity) {
+            int[] grown = filled(capacity);
+            int[] next = new int[bucketNext.length];
+            for (int e = 0; e < used; e++) {
+                if (ids[e] == null) {
+                    next[e] = bucketNext[e]; // keep the free list
+                    continue;
+                }
+                int b = bucket(phones[e], capacity);
+                next[e] = grown[b];
+                grown[b] = e;
+            }
+            bucketNext = next;
+            buckets = grown;
+        }
+
+        private static int areaSlot(long phone) {
+            return (int) (phone / AREA_DIVISOR) / SEGMENTS;
+        }
+
+        private static int bucket(long phone, int capacity) {
+            return (int) ((phone * 0x9E3779B97F4A7C15L) >>> 32) & (capacity - 1);
+        }
+
+        private static int[] filled(int length) {
+            int[] array = new int[length];
+            Arrays.fill(array, NONE);
+            return array;
+        }
+    }
+}
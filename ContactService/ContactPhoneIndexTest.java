@@ -0,0 +1,120 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContactPhoneIndexTest {
+
+    private final Map<String, Contact> store = new HashMap<>();
+    private final ContactPhoneIndex index = new ContactPhoneIndex();
+
+    private void put(Contact c) {
+        index.replace(store.put(c.getContactId(), c), c);
+    }
+
+    private void delete(String id) {
+        index.remove(store.remove(id));
+    }
+
+    private List<String> find(long phone) {
+        return ids(index.find(phone, store::get));
+    }
+
+    private List<String> findByPrefix(long prefix, int digits, int limit) {
+        return ids(index.findByPrefix(prefix, digits, limit, store::get));
+    }
+
+    private static List<String> ids(List<Contact> contacts) {
+        List<String> ids = new ArrayList<>();
+        for (Contact c : contacts) {
+            ids.add(c.getContactId());
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    @Test
+    void testExactLookupShouldFollowUpdatesAndDeletes() {
+        put(new Contact("1", "John", "Lennon", "2125550100", "Address"));
+        put(new Contact("2", "Paul", "McCartney", "2125550100", "Address"));
+
+        assertEquals(List.of("1", "2"), find(2125550100L));
+
+        put(store.get("1").withPhone("3105550100"));
+        assertEquals(List.of("2"), find(2125550100L));
+        assertEquals(List.of("1"), find(3105550100L));
+
+        delete("2");
+        assertTrue(find(2125550100L).isEmpty());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    void testPrefixShouldCoverAreaCodesAndLongerPrefixes() {
+        put(new Contact("1", "A", "A", "2125550100", "Address"));
+        put(new Contact("2", "B", "B", "2129990100", "Address"));
+        put(new Contact("3", "C", "C", "2135550100", "Address"));
+        put(new Contact("4", "D", "D", "0015550100", "Address"));
+
+        assertEquals(List.of("1", "2"), findByPrefix(212, 3, 10));
+        assertEquals(List.of("1"), findByPrefix(212555, 6, 10));
+        assertEquals(List.of("1", "2", "3"), findByPrefix(21, 2, 10));
+        assertEquals(List.of("1", "2", "3"), findByPrefix(2, 1, 10));
+        assertEquals(List.of("4"), findByPrefix(1, 3, 10));
+        assertEquals(List.of("3"), findByPrefix(2135550100L, 10, 10));
+        assertEquals(2, findByPrefix(21, 2, 2).size());
+    }
+
+    @Test
+    void testBadPrefixShouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> findByPrefix(1234, 3, 10));
+        assertThrows(IllegalArgumentException.class, () -> findByPrefix(1, 0, 10));
+        assertThrows(IllegalArgumentException.class, () -> findByPrefix(1, 11, 10));
+        assertThrows(IllegalArgumentException.class, () -> findByPrefix(212, 3, 0));
+    }
+
+    @Test
+    void testStaleEntriesShouldBeSkipped() {
+        Contact c = new Contact("1", "John", "Lennon", "2125550100", "Address");
+        put(c);
+        store.put("1", c.withPhone("3105550100")); // store changed, index not yet
+
+        assertTrue(find(2125550100L).isEmpty());
+        assertTrue(findByPrefix(212, 3, 10).isEmpty());
+    }
+
+    @Test
+    void testRandomOperationsShouldMatchScan() {
+        Random random = new Random(7);
+        for (int i = 0; i < 20_000; i++) {
+            String id = "c" + random.nextInt(2000);
+            if (random.nextInt(4) == 0) {
+                if (store.containsKey(id)) {
+                    delete(id);
+                }
+            } else {
+                String phone = String.format("%03d%07d", random.nextInt(20), random.nextInt(50));
+                put(store.containsKey(id) ? store.get(id).withPhone(phone) : new Contact(id, "F", "L", phone, "A"));
+            }
+        }
+        assertEquals(store.size(), index.size());
+        for (int area = 0; area < 20; area++) {
+            List<String> expected = new ArrayList<>();
+            for (Contact c : store.values()) {
+                if (c.getPhoneNumber() / 10_000_000L == area) {
+                    expected.add(c.getContactId());
+                }
+            }
+            expected.sort(null);
+            assertEquals(expected, findByPrefix(area, 3, Integer.MAX_VALUE));
+        }
+        for (Contact c : store.values()) {
+            assertTrue(find(c.getPhoneNumber()).contains(c.getContactId()));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Type-ahead latency for ContactService.searchContacts.
+ *
+ * Loads n contacts with generated names and phone numbers, then times first-page prefix
+ * queries of 1 to 4 characters against the index and, for comparison, the same query
+ * answered by scanning getAllContactsView() (what a search box without the index does).
+ *
+ * Usage: java ContactSearchBenchmark [contacts] [queries] [pageSize]
+ */
+public class ContactSearchBenchmark {
+
+    private static final String[] SYLLABLES = {"an", "be", "ca", "do", "el", "fi", "ga", "ha", "jo", "ka",
+        "li", "ma", "no", "pa", "ri", "sa", "ta", "vi", "wi", "zo"};
+
+    public static void main(String[] args) {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        int pageSize = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+        Random random = new Random(42);
+        ContactService service = new ContactService();
+        long loadStart = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            String phone = String.format("%010d", Math.floorMod(random.nextLong(), 10_000_000_000L));
+            service.addContact(new Contact(Integer.toString(i), name(random), name(random), phone, "Address"));
+        }
+        System.out.printf("loaded %d contacts in %.2f s%n", n, (System.nanoTime() - loadStart) / 1e9);
+
+        String[] prefixes = new String[queries];
+        for (int i = 0; i < queries; i++) {
+            String p = random.nextInt(4) == 0
+                    ? Integer.toString(random.nextInt(1000))
+                    : name(random).toLowerCase(Locale.ROOT);
+            prefixes[i] = p.substring(0, 1 + random.nextInt(Math.min(4, p.length())));
+        }
+
+        long hits = 0;
+        for (int round = 0; round < 3; round++) { // warm-up rounds, last one measured
+            long start = System.nanoTime();
+            hits = 0;
+            for (String prefix : prefixes) {
+                hits += service.searchContacts(prefix, pageSize).getContacts().size();
+            }
+            if (round == 2) {
+                double micros = (System.nanoTime() - start) / 1e3 / queries;
+                System.out.printf("index  %8.1f us/query  (%d hits, page size %d)%n", micros, hits, pageSize);
+            }
+        }
+
+        int scans = Math.min(queries, 20);
+        long start = System.nanoTime();
+        long scanned = 0;
+        for (int i = 0; i < scans; i++) {
+            scanned += scan(service, prefixes[i], pageSize);
+        }
+        double micros = (System.nanoTime() - start) / 1e3 / scans;
+        System.out.printf("scan   %8.1f us/query  (%d hits)%n", micros, scanned);
+    }
+
+    /** Full scan of the view, collecting the first pageSize matches like the old search box. */
+    private static int scan(ContactService service, String prefix, int pageSize) {
+        int found = 0;
+        for (Contact c : service.getAllContactsView().values()) {
+            if (c.getFirstName().toLowerCase(Locale.ROOT).startsWith(prefix)
+                    || c.getLastName().toLowerCase(Locale.ROOT).startsWith(prefix)
+                    || c.getPhone().startsWith(prefix)) {
+                if (++found == pageSize) {
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static String name(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+        return sb.toString();
+    }
+}
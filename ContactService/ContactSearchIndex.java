@@ -0,0 +1,206 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+
+/**
+ * Sorted prefix index over the searchable contact fields (firstName, lastName, phone).
+ *
+ * Every contact contributes one key per field: (lower-cased field value, contactId, field).
+ * The keys live in a ConcurrentSkipListSet, so a prefix query is a seek to the first key
+ * at or after the prefix followed by an in-order walk: O(log n + page size), and readers
+ * never block writers.
+ *
+ * ContactService keeps the index in sync from inside the map operation that changes a
+ * contact, so the keys for one ID are updated in the same order as the map. A query still
+ * looks every hit up in the map and drops keys that no longer match the stored contact,
+ * which covers a reader racing an update.
+ *
+ * A contact that matches the prefix in more than one field is reported once, at the
+ * smallest of its matching keys, so results and cursors stay stable across pages.
+ */
+final class ContactSearchIndex {
+
+    static final int FIRST_NAME = 0;
+    static final int LAST_NAME = 1;
+    static final int PHONE = 2;
+    private static final int FIELD_COUNT = 3;
+
+    private final NavigableSet<Key> keys = new ConcurrentSkipListSet<>();
+
+    void add(Contact c) {
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            keys.add(new Key(term(c, field), c.getContactId(), field));
+        }
+    }
+
+    /**
+     * Indexes a whole collection, typically right after a journal replay. The keys are sorted
+     * first so the skip list is filled in order, which is several times faster than adding
+     * contacts one by one in hash order.
+     */
+    void addAll(Collection<Contact> contacts) {
+        List<Key> batch = new ArrayList<>(contacts.size() * FIELD_COUNT);
+        for (Contact c : contacts) {
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                batch.add(new Key(term(c, field), c.getContactId(), field));
+            }
+        }
+        Key[] sorted = batch.toArray(new Key[0]);
+        Arrays.parallelSort(sorted);
+        keys.addAll(Arrays.asList(sorted));
+    }
+
+    void remove(Contact c) {
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            keys.remove(new Key(term(c, field), c.getContactId(), field));
+        }
+    }
+
+    /** Replaces the keys of previous (may be null) with those of next, skipping unchanged fields. */
+    void replace(Contact previous, Contact next) {
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            String term = term(next, field);
+            if (previous != null) {
+                String old = term(previous, field);
+                if (old.equals(term)) {
+                    continue;
+                }
+                keys.remove(new Key(old, previous.getContactId(), field));
+            }
+            keys.add(new Key(term, next.getContactId(), field));
+        }
+    }
+
+    /**
+     * Returns up to limit contacts with a field starting with prefix (case-insensitive),
+     * ordered by the matching value, then contactId, starting after cursor (null for the
+     * first page).
+     */
+    ContactService.SearchPage search(String prefix, String cursor, int limit, Function<String, Contact> lookup) {
+        Objects.requireNonNull(prefix, "prefix must not be null");
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+        String normalized = normalize(prefix);
+        NavigableSet<Key> tail = cursor == null
+                ? keys.tailSet(new Key(normalized, "", -1), true)
+                : keys.tailSet(Key.decode(cursor), false);
+
+        List<Contact> page = new ArrayList<>(Math.min(limit, 64));
+        Key last = null;
+        boolean more = false;
+        for (Key key : tail) {
+            if (!key.term.startsWith(normalized)) {
+                break;
+            }
+            Contact c = lookup.apply(key.contactId);
+            if (c == null || !isReportedAt(c, key, normalized)) {
+                continue; // stale key, or the contact is reported at a smaller key
+            }
+            if (page.size() == limit) {
+                more = true;
+                break;
+            }
+            page.add(c);
+            last = key;
+        }
+        return new ContactService.SearchPage(page, more ? last.encode() : null);
+    }
+
+    int size() {
+        return keys.size();
+    }
+
+    /** True if key is current for c and is the smallest of c's keys matching prefix. */
+    private static boolean isReportedAt(Contact c, Key key, String prefix) {
+        if (!term(c, key.field).equals(key.term)) {
+            return false;
+        }
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (field == key.field) {
+                continue;
+            }
+            String term = term(c, field);
+            if (term.startsWith(prefix)) {
+                int cmp = term.compareTo(key.term);
+                if (cmp < 0 || (cmp == 0 && field < key.field)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static String term(Contact c, int field) {
+        switch (field) {
+            case FIRST_NAME: return normalize(c.getFirstName());
+            case LAST_NAME: return normalize(c.getLastName());
+            case PHONE: return c.getPhone();
+            default: throw new IllegalArgumentException("unknown field " + field);
+        }
+    }
+
+    private static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /** Index key; ordered by term, then contactId, then field. */
+    private static final class Key implements Comparable<Key> {
+
+        final String term;
+        final String contactId;
+        final int field;
+
+        Key(String term, String contactId, int field) {
+            this.term = term;
+            this.contactId = contactId;
+            this.field = field;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int cmp = term.compareTo(other.term);
+            if (cmp == 0) {
+                cmp = contactId.compareTo(other.contactId);
+            }
+            return cmp != 0 ? cmp : Integer.compare(field, other.field);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && compareTo((Key) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(term, contactId, field);
+        }
+
+        /** Cursor format: field, term length, ':', term, contactId. */
+        String encode() {
+            return field + "" + term.length() + ":" + term + contactId;
+        }
+
+        static Key decode(String cursor) {
+            try {
+                int field = cursor.charAt(0) - '0';
+                int colon = cursor.indexOf(':');
+                int length = Integer.parseInt(cursor.substring(1, colon));
+                String term = cursor.substring(colon + 1, colon + 1 + length);
+                String contactId = cursor.substring(colon + 1 + length);
+                if (field < 0 || field >= FIELD_COUNT) {
+                    throw new IllegalArgumentException("invalid search cursor: " + cursor);
+                }
+                return new Key(term, contactId, field);
+            } catch (IndexOutOfBoundsException | NumberFormatException e) {
+                throw new IllegalArgumentException("invalid search cursor: " + cursor, e);
+            }
+        }
+    }
+}
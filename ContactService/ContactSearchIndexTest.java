@@ -0,0 +1,99 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ContactSearchIndexTest {
+
+    private final Map<String, Contact> store = new HashMap<>();
+    private final ContactSearchIndex index = new ContactSearchIndex();
+
+    private void put(Contact c) {
+        index.replace(store.put(c.getContactId(), c), c);
+    }
+
+    private List<Contact> search(String prefix, int limit) {
+        return index.search(prefix, null, limit, store::get).getContacts();
+    }
+
+    @Test
+    void testPrefixShouldMatchEachFieldCaseInsensitively() {
+        put(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+
+        assertEquals(1, search("JOH", 10).size());
+        assertEquals(1, search("len", 10).size());
+        assertEquals(1, search("123", 10).size());
+        assertTrue(search("ohn", 10).isEmpty());
+    }
+
+    @Test
+    void testContactMatchingSeveralFieldsShouldBeReportedOnce() {
+        put(new Contact("1", "Lee", "Lee", "1234567890", "Address"));
+        put(new Contact("2", "Leo", "Lewis", "1234567890", "Address"));
+
+        List<Contact> hits = search("le", 10);
+
+        assertEquals(2, hits.size());
+        assertEquals("1", hits.get(0).getContactId());
+        assertEquals("2", hits.get(1).getContactId());
+        assertEquals(6, index.size());
+    }
+
+    @Test
+    void testReplaceShouldDropOldKeys() {
+        Contact first = new Contact("1", "John", "Lennon", "1234567890", "Address");
+        put(first);
+        put(first.withFirstName("Julian"));
+
+        assertTrue(search("john", 10).isEmpty());
+        assertEquals(1, search("jul", 10).size());
+        assertEquals(3, index.size());
+
+        index.remove(store.remove("1"));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    void testStaleKeysShouldBeSkipped() {
+        Contact c = new Contact("1", "John", "Lennon", "1234567890", "Address");
+        index.add(c);
+        store.put("1", c.withFirstName("Julian")); // map changed, index not yet
+
+        assertTrue(search("john", 10).isEmpty());
+    }
+
+    @Test
+    void testLastFullPageShouldHaveNoCursor() {
+        put(new Contact("1", "Anna", "Smith", "1234567890", "Address"));
+        put(new Contact("2", "Anne", "Smith", "1234567890", "Address"));
+
+        ContactService.SearchPage page = index.search("ann", null, 2, store::get);
+
+        assertEquals(2, page.getContacts().size());
+        assertFalse(page.hasMore());
+    }
+
+    @Test
+    void testCursorShouldResumeAfterLastHit() {
+        put(new Contact("1", "Anna", "Smith", "1234567890", "Address"));
+        put(new Contact("2", "Anne", "Smith", "1234567890", "Address"));
+        put(new Contact("3", "Annie", "Smith", "1234567890", "Address"));
+
+        ContactService.SearchPage first = index.search("ann", null, 2, store::get);
+        ContactService.SearchPage second = index.search("ann", first.getNextCursor(), 2, store::get);
+
+        assertTrue(first.hasMore());
+        assertEquals(List.of(store.get("3")), second.getContacts());
+        assertFalse(second.hasMore());
+    }
+
+    @Test
+    void testInvalidArgumentsShouldThrow() {
+        assertThrows(NullPointerException.class, () -> index.search(null, null, 10, store::get));
+        assertThrows(IllegalArgumentException.class, () -> index.search("a", null, 0, store::get));
+        assertThrows(IllegalArgumentException.class, () -> index.search("a", "garbage", 10, store::get));
+    }
+}
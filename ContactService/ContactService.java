@@ -1,7 +1,20 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * In-memory service for managing Contact objects by contactId.
@@ -10,55 +23,516 @@ import java.util.Objects;
  * - Add contacts with unique ID
  * - Delete contacts by contactId
  * - Update (firstName, lastName, phone, address) by contactId
+ *
+ * Thread safety: contacts are kept in a RecordStore (by default a ConcurrentHashMap,
+ * see HeapContactStore), so add, delete and update are atomic per contactId (they only
+ * lock the bin holding that ID) and getContact never blocks. Contacts are immutable;
+ * updates replace the stored snapshot with a compare-and-set and can be made conditional
+ * on the version. OffHeapContactStore keeps the records outside the Java heap instead, and
+ * a DiskRecordStore opened with RECORD_CODEC keeps them in files behind a bounded cache.
+ *
+ * Persistence (optional): when constructed with a Journal, the service replays it on
+ * startup and logs every add, update and delete before returning. The record is written
+ * while the map entry is held, so records for one ID are logged in the order applied.
+ * writeSnapshot() stores all contacts in a SnapshotFile without pausing writers; a restart
+ * from (journal, snapshot) loads the snapshot and replays only the journal tail after it.
+ *
+ * Search: searchContacts answers case-insensitive prefix queries over firstName, lastName
+ * and phone from a ContactSearchIndex that is updated together with the map entry.
+ * findContactsByPhone and findContactsByPhonePrefix answer caller-ID style lookups from a
+ * ContactPhoneIndex keyed by the numeric phone, maintained the same way. A sorted set of
+ * contactIds backs getContactsPage. The indexes hold per-contact data on the heap, so they
+ * can be turned off together for an off-heap store.
+ *
+ * Reading everything: streamContacts() walks the store lazily through its spliterator,
+ * which splits for parallel streams; getContactsPage() pages through contacts in contactId
+ * order from a cursor. Both are weakly consistent and never copy the store.
+ *
+ * Change feed: every add, update and delete is also published to getChangeFeed() from
+ * inside the same map operation, so subscribers see the changes of one ID in order.
+ * The same call files the change in getSyncIndex(), which serves delta syncs
+ * (getContactChanges) from a sync token.
+ *
+ * Metrics: getMetrics() counts calls and failures of the public mutations and samples their
+ * latency (see ServiceMetrics); it records nothing until enabled.
  */
 public class ContactService {
 
-    private final Map<String, Contact> contacts = new HashMap<>();
+    /** Journal record types owned by this service. */
+    static final byte OP_PUT = 0x11;
+    static final byte OP_REMOVE = 0x12;
+    static final byte OP_VERSION_FLOOR = 0x13;
+    static final byte OP_SYNC_STATE = 0x14;
+
+    /** expectedVersion of a staged update that applies to whatever version is stored. */
+    static final long ANY_VERSION = -1;
+
+    /** Binary form of a contact (the journal's record layout), for DiskRecordStore. */
+    public static final RecordCodec<Contact> RECORD_CODEC = new RecordCodec<>() {
+        @Override
+        public int maxSize() {
+            return Long.BYTES
+                    + BinaryFields.maxSizeOf(Contact.MAX_ID_LENGTH)
+                    + BinaryFields.maxSizeOf(Contact.MAX_FIRST_NAME_LENGTH)
+                    + BinaryFields.maxSizeOf(Contact.MAX_LAST_NAME_LENGTH)
+                    + BinaryFields.maxSizeOf(Contact.PHONE_LENGTH)
+                    + BinaryFields.maxSizeOf(Contact.MAX_ADDRESS_LENGTH);
+        }
+
+        @Override
+        public String idOf(Contact contact) {
+            return contact.getContactId();
+        }
+
+        @Override
+        public void encode(ByteBuffer buffer, Contact contact) {
+            encodeTo(buffer, contact);
+        }
+
+        @Override
+        public Contact decode(ByteBuffer buffer) {
+            return ContactService.decode(buffer);
+        }
+    };
+
+    private final RecordStore<Contact> contacts;
+    private final Journal journal; // null when memory-only
+    private final MutationGate gate = new MutationGate();
+    private final ContactSearchIndex searchIndex; // null when indexes are disabled
+    private final ContactPhoneIndex phoneIndex;   // null when indexes are disabled
+    private final NavigableSet<String> idIndex;   // null when indexes are disabled
+    private final ChangeFeed<Contact> changes = new ChangeFeed<>();
+    private final SyncIndex<Contact> sync = new SyncIndex<>(changes, this::getContact);
+    private final WriteIntents intents = new WriteIntents(); // contacts reserved by units of work
+    // highest version a deleted contact had: an ID added again starts above it, so a
+    // conditional update still holding a version from before the delete cannot match
+    private final AtomicLong versionFloor = new AtomicLong();
+    private final ServiceMetrics metrics = new ServiceMetrics("ContactService", "add", "update", "delete");
+    private final ServiceMetrics.Operation addOp = metrics.operation("add");
+    private final ServiceMetrics.Operation updateOp = metrics.operation("update");
+    private final ServiceMetrics.Operation deleteOp = metrics.operation("delete");
+
+    public ContactService() {
+        this(new HeapContactStore(), true);
+    }
+
+    /**
+     * Memory-only service over store; indexes false disables searchContacts and the phone
+     * lookups, leaving only lookups by ID.
+     */
+    public ContactService(RecordStore<Contact> store, boolean indexes) {
+        this.contacts = Objects.requireNonNull(store, "store must not be null");
+        this.journal = null;
+        this.searchIndex = indexes ? new ContactSearchIndex() : null;
+        this.phoneIndex = indexes ? new ContactPhoneIndex() : null;
+        this.idIndex = indexes ? new ConcurrentSkipListSet<>() : null;
+        indexLoadedContacts();
+    }
+
+    /** Durable service: replays the journal into memory, then logs every mutation to it. */
+    public ContactService(Journal journal) {
+        this(new HeapContactStore(), true, journal);
+    }
+
+    /** Durable service over store; see ContactService(Journal). */
+    public ContactService(RecordStore<Contact> store, boolean indexes, Journal journal) {
+        this.contacts = Objects.requireNonNull(store, "store must not be null");
+        this.journal = Objects.requireNonNull(journal, "journal must not be null");
+        this.searchIndex = indexes ? new ContactSearchIndex() : null;
+        this.phoneIndex = indexes ? new ContactPhoneIndex() : null;
+        this.idIndex = indexes ? new ConcurrentSkipListSet<>() : null;
+        journal.replay(this::applyRecord);
+        finishRestore();
+        indexLoadedContacts();
+    }
+
+    /**
+     * Durable service that starts from a snapshot written by writeSnapshot (if the file
+     * exists) and replays only the journal records written after it.
+     */
+    public ContactService(Journal journal, Path snapshot) {
+        this(new HeapContactStore(), true, journal, snapshot);
+    }
 
+    /** Durable service over store; see ContactService(Journal, Path). */
+    public ContactService(RecordStore<Contact> store, boolean indexes, Journal journal, Path snapshot) {
+        this.contacts = Objects.requireNonNull(store, "store must not be null");
+        this.journal = Objects.requireNonNull(journal, "journal must not be null");
+        this.searchIndex = indexes ? new ContactSearchIndex() : null;
+        this.phoneIndex = indexes ? new ContactPhoneIndex() : null;
+        this.idIndex = indexes ? new ConcurrentSkipListSet<>() : null;
+        Objects.requireNonNull(snapshot, "snapshot must not be null");
+        long from = journal.startPosition();
+        if (Files.exists(snapshot)) {
+            try {
+                from = SnapshotFile.read(snapshot, record -> put(decode(record)));
+            } catch (IOException e) {
+                throw new UncheckedIOException("cannot load contact snapshot " + snapshot, e);
+            }
+        }
+        journal.replay(from, this::applyRecord);
+        finishRestore();
+        indexLoadedContacts();
+    }
+
+    /**
+     * Stores contact. If any contact was deleted before, the stored copy gets a version above
+     * every version a deleted contact had, so a re-added ID never repeats an old version.
+     */
     public void addContact(Contact contact) {
-        Objects.requireNonNull(contact, "contact must not be null");
+        long start = addOp.start();
+        try {
+            Objects.requireNonNull(contact, "contact must not be null");
 
-        String id = contact.getContactId();
-        if (contacts.containsKey(id)) {
-            throw new DuplicateIdException("Contact ID already exists: " + id);
+            long logged = insert(contact);
+            if (logged == BulkImport.NOT_INSERTED) {
+                throw new DuplicateIdException("Contact ID already exists: " + contact.getContactId());
+            }
+            sync(logged);
+        } catch (RuntimeException e) {
+            throw addOp.failed(start, e);
         }
-        contacts.put(id, contact);
+        addOp.succeeded(start);
+    }
+
+    /**
+     * Bulk add of already built contacts. Duplicate IDs (already stored or repeated in the
+     * batch) are reported in the result instead of thrown, and the journal, if any, is synced
+     * once for the whole batch.
+     */
+    public BulkResult addContacts(Collection<Contact> contacts) {
+        return importContacts(contacts, c -> c);
+    }
+
+    /**
+     * Bulk import: builds a contact from every row with factory, in parallel so validation
+     * uses all cores, then stores the valid ones in parallel. Validation errors and duplicate
+     * IDs are reported per row in the result; the batch is never aborted by a bad row.
+     */
+    public <T> BulkResult importContacts(Collection<? extends T> rows, Function<? super T, Contact> factory) {
+        return BulkImport.run(rows, factory, Contact.ValidationException.class, Contact::getContactId,
+                this::insert, this::sync);
     }
 
     public void deleteContact(String contactId) {
-        String id = requireId(contactId);
-        if (!contacts.containsKey(id)) {
-            throw new NotFoundException("Contact not found: " + id);
+        long start = deleteOp.start();
+        try {
+            String id = requireId(contactId);
+            long logged = remove(id);
+            if (logged < 0) {
+                throw new NotFoundException("Contact not found: " + id);
+            }
+            sync(logged);
+        } catch (RuntimeException e) {
+            throw deleteOp.failed(start, e);
         }
-        contacts.remove(id);
+        deleteOp.succeeded(start);
     }
 
     /**
      * Updates allowed fields for the contact with the given ID.
      * All provided values must be non-null and valid.
+     * The new values are validated before the stored contact is touched, and the
+     * new version is swapped in with a single compare-and-set, so readers see
+     * either the old or the new contact and never a mix of both.
      */
     public void updateContact(String contactId, String firstName, String lastName, String phone, String address) {
-        Contact c = getContactOrThrow(contactId);
+        long start = updateOp.start();
+        try {
+            String id = requireId(contactId);
+            while (true) {
+                Contact current = getContactOrThrow(id);
+                Contact next = current.withUpdates(firstName, lastName, phone, address);
+                if (replace(id, current, next)) {
+                    break;
+                }
+            }
+        } catch (RuntimeException e) {
+            throw updateOp.failed(start, e);
+        }
+        updateOp.succeeded(start);
+    }
 
-        c.setFirstName(firstName);
-        c.setLastName(lastName);
-        c.setPhone(phone);
-        c.setAddress(address);
+    /**
+     * Optimistic update: applies the new values only if the stored contact still has
+     * the expected version, otherwise throws VersionConflictException.
+     *
+     * @return the updated contact (its version is expectedVersion + 1)
+     */
+    public Contact updateContact(String contactId, long expectedVersion,
+                                 String firstName, String lastName, String phone, String address) {
+        long start = updateOp.start();
+        try {
+            String id = requireId(contactId);
+            while (true) {
+                Contact current = getContactOrThrow(id);
+                if (current.getVersion() != expectedVersion) {
+                    throw new VersionConflictException("Contact " + id + " is at version " + current.getVersion()
+                            + ", expected " + expectedVersion);
+                }
+                Contact next = current.withUpdates(firstName, lastName, phone, address);
+                if (replace(id, current, next)) {
+                    updateOp.succeeded(start);
+                    return next;
+                }
+            }
+        } catch (RuntimeException e) {
+            throw updateOp.failed(start, e);
+        }
     }
 
-    /** Convenience method for unit tests / internal use. */
+    /** Convenience method for unit tests / internal use. Never blocks. */
     public Contact getContact(String contactId) {
         String id = requireId(contactId);
         return contacts.get(id);
     }
 
-    /** Read-only view (useful for debugging / testing). */
+    /**
+     * First page of contacts whose firstName, lastName or phone starts with prefix
+     * (case-insensitive), ordered by the matching value and then contactId.
+     */
+    public SearchPage searchContacts(String prefix, int limit) {
+        return searchContacts(prefix, null, limit);
+    }
+
+    /**
+     * Next page of a prefix search; cursor is SearchPage.getNextCursor() of the previous page
+     * for the same prefix. Pages are read from the live index without locking, so a contact
+     * changed between two pages may be missed or reported at its new position.
+     *
+     * @throws IllegalStateException if the service was built without indexes
+     */
+    public SearchPage searchContacts(String prefix, String cursor, int limit) {
+        requireIndexes();
+        return searchIndex.search(prefix, cursor, limit, contacts::get);
+    }
+
+    /**
+     * Contacts whose phone is exactly phone (10 digits); usually zero or one, but several
+     * contacts may share a number.
+     *
+     * @throws IllegalStateException if the service was built without indexes
+     */
+    public List<Contact> findContactsByPhone(String phone) {
+        return findContactsByPhone(Contact.validatePhone(phone));
+    }
+
+    /** findContactsByPhone for a number already held as a long, without parsing. */
+    public List<Contact> findContactsByPhone(long phone) {
+        requireIndexes();
+        if (phone < 0 || phone > 9_999_999_999L) {
+            throw new IllegalArgumentException("phone must have at most " + Contact.PHONE_LENGTH + " digits: " + phone);
+        }
+        return phoneIndex.find(phone, contacts::get);
+    }
+
+    /**
+     * Up to limit contacts whose phone starts with prefix, 1 to 10 digits (an area code such
+     * as "212", or more digits to narrow it down), in no particular order.
+     *
+     * @throws IllegalStateException if the service was built without indexes
+     */
+    public List<Contact> findContactsByPhonePrefix(String prefix, int limit) {
+        Objects.requireNonNull(prefix, "prefix must not be null");
+        requireIndexes();
+        String digits = prefix.trim();
+        if (digits.length() > Contact.PHONE_LENGTH || Validation.digits(digits, digits.length()) != Validation.OK) {
+            throw new IllegalArgumentException("phone prefix must be 1 to " + Contact.PHONE_LENGTH + " digits: " + prefix);
+        }
+        return phoneIndex.findByPrefix(Validation.digitsValue(digits), digits.length(), limit, contacts::get);
+    }
+
+    /**
+     * Ordered feed of add, update and delete events, for caches and indexes that follow this
+     * service instead of polling getAllContactsView(). Events restored from a journal or
+     * snapshot at startup are not published; sequences start at 0 for every new service.
+     */
+    public ChangeFeed<Contact> getChangeFeed() {
+        return changes;
+    }
+
+    /**
+     * Index of the latest change to every contact, deletes included as tombstones, for
+     * clients that sync only what changed; see SyncIndex.
+     */
+    public SyncIndex<Contact> getSyncIndex() {
+        return sync;
+    }
+
+    /** Contacts changed since syncToken, at most limit of them, oldest change first. */
+    public SyncIndex.Delta<Contact> getContactChanges(String syncToken, int limit) {
+        return sync.changesSince(syncToken, limit);
+    }
+
+    /**
+     * Call counts, failures and latency of addContact, updateContact and deleteContact; disabled until
+     * getMetrics().setEnabled(true), and published over JMX by getMetrics().registerMBean().
+     */
+    public ServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Read-only view (useful for debugging / testing).
+     * Iteration is weakly consistent and safe while other threads write.
+     */
     public Map<String, Contact> getAllContactsView() {
-        return Collections.unmodifiableMap(contacts);
+        return contacts.asMap();
     }
 
-    private Contact getContactOrThrow(String contactId) {
-        String id = requireId(contactId);
+    /**
+     * Lazy stream over all contacts, for exports and analytics: nothing is copied up front,
+     * and a parallel stream splits the store evenly. Weakly consistent: contacts changed
+     * during the walk may be seen in either state.
+     */
+    public Stream<Contact> streamContacts() {
+        return StreamSupport.stream(contacts.spliterator(), false);
+    }
+
+    /**
+     * Up to limit contacts in contactId order, after cursor: null for the first page,
+     * otherwise Page.getNextCursor() of the previous page.
+     *
+     * @throws IllegalStateException if the service was built without indexes
+     */
+    public Page<Contact> getContactsPage(String cursor, int limit) {
+        requireIndexes();
+        return Page.ofIds(idIndex, cursor, limit, contacts::get);
+    }
+
+    /** Stores contact unless its ID is taken; returns its journal position or BulkImport.NOT_INSERTED. */
+    private long insert(Contact contact) {
+        ByteBuffer record = journal == null ? null : journalRecord(contact);
+        while (true) {
+            long[] logged = {BulkImport.NOT_INSERTED};
+            WriteIntents.Commit[] blocker = {null};
+            int ticket = enterMutation();
+            try {
+                contacts.computeIfAbsent(contact.getContactId(), key -> {
+                    if ((blocker[0] = intents.holder(key)) != null) {
+                        return null;
+                    }
+                    Contact stored = aboveVersionFloor(contact);
+                    if (record != null) {
+                        record.putLong(0, stored.getVersion()); // the record starts with the version
+                    }
+                    long sequence = sync.claim();
+                    logged[0] = log(OP_PUT, record, sequence);
+                    added(key, stored, sequence);
+                    return stored;
+                });
+            } finally {
+                exitMutation(ticket);
+            }
+            if (blocker[0] == null) {
+                return logged[0];
+            }
+            blocker[0].await();
+        }
+    }
+
+    /** Removes id; returns the journal position of the removal, or -1 if id is not stored. */
+    private long remove(String id) {
+        ByteBuffer record = journal == null ? null : encodeRemoval(id, 0);
+        while (true) {
+            long[] logged = {-1};
+            WriteIntents.Commit[] blocker = {null};
+            int ticket = enterMutation();
+            try {
+                contacts.computeIfPresent(id, (key, existing) -> {
+                    if ((blocker[0] = intents.holder(key)) != null) {
+                        return existing;
+                    }
+                    if (record != null) {
+                        record.putLong(record.limit() - SyncIndex.STAMP_SIZE - Long.BYTES, existing.getVersion());
+                    }
+                    long sequence = sync.claim();
+                    logged[0] = log(OP_REMOVE, record, sequence);
+                    removed(key, existing, sequence);
+                    return null;
+                });
+            } finally {
+                exitMutation(ticket);
+            }
+            if (blocker[0] == null) {
+                return logged[0];
+            }
+            blocker[0].await();
+        }
+    }
+
+    // publish and index a change while its entry is held, so events and indexes follow the store
+
+    private void added(String key, Contact contact, long sequence) {
+        sync.publish(sequence, ChangeEvent.Type.ADD, key, contact);
+        if (searchIndex != null) {
+            searchIndex.add(contact);
+            phoneIndex.add(contact);
+            idIndex.add(key);
+        }
+    }
+
+    private void replaced(String key, Contact stored, Contact next, long sequence) {
+        sync.publish(sequence, ChangeEvent.Type.UPDATE, key, next);
+        if (searchIndex != null) {
+            searchIndex.replace(stored, next);
+            phoneIndex.replace(stored, next);
+        }
+    }
+
+    private void removed(String key, Contact existing, long sequence) {
+        versionFloor.accumulateAndGet(existing.getVersion(), Math::max);
+        sync.publish(sequence, ChangeEvent.Type.DELETE, key, existing);
+        if (searchIndex != null) {
+            searchIndex.remove(existing);
+            phoneIndex.remove(existing);
+            idIndex.remove(key);
+        }
+    }
+
+    /**
+     * Swaps next in if current is still stored; false if another writer got there first
+     * (or a unit of work holds the contact, in which case this waits for it first).
+     * The swap runs inside computeIfPresent so the search index changes with the entry.
+     * current is compared by value: stores other than HeapContactStore return copies.
+     */
+    private boolean replace(String id, Contact current, Contact next) {
+        ByteBuffer record = journal == null ? null : journalRecord(next);
+        long[] logged = {-1};
+        WriteIntents.Commit[] blocker = {null};
+        int ticket = enterMutation();
+        try {
+            contacts.computeIfPresent(id, (key, stored) -> {
+                if ((blocker[0] = intents.holder(key)) != null
+                        || (stored != current && !stored.equals(current))) {
+                    return stored;
+                }
+                long sequence = sync.claim();
+                logged[0] = log(OP_PUT, record, sequence);
+                replaced(key, stored, next, sequence);
+                return next;
+            });
+        } finally {
+            exitMutation(ticket);
+        }
+        if (blocker[0] != null) {
+            blocker[0].await();
+            return false;
+        }
+        if (logged[0] < 0) {
+            return false;
+        }
+        sync(logged[0]);
+        return true;
+    }
+
+    private void requireIndexes() {
+        if (searchIndex == null) {
+            throw new IllegalStateException("indexes are disabled for this ContactService");
+        }
+    }
+
+    private Contact getContactOrThrow(String id) {
         Contact c = contacts.get(id);
         if (c == null) {
             throw new NotFoundException("Contact not found: " + id);
@@ -67,22 +541,408 @@ public class ContactService {
     }
 
     private static String requireId(String id) {
-        Objects.requireNonNull(id, "contactId must not be null");
-        String trimmed = id.trim();
-        if (trimmed.isEmpty()) {
-            throw new Contact.ValidationException("contactId must not be blank");
+        return Contact.validateId(id);
+    }
+
+    // -------- Units of work --------
+
+    /** UnitOfWork step that adds contact. */
+    TransactionStep stageAdd(Contact contact) {
+        Objects.requireNonNull(contact, "contact must not be null");
+        return new TransactionStep(intents, contact.getContactId(), journal, gate) {
+            private Contact stored; // contact above the version floor, fixed once so record and apply agree
+            private long sequence = -1;
+
+            @Override
+            WriteIntents.Commit prepare(WriteIntents.Commit commit) {
+                WriteIntents.Commit[] blocker = {null};
+                // reserves the absent ID while computeIfAbsent holds its entry, without storing anything
+                Contact existing = contacts.computeIfAbsent(id, key -> {
+                    if ((blocker[0] = intents.holder(key)) == null) {
+                        intents.hold(key, commit);
+                    }
+                    return null;
+                });
+                if (existing != null) {
+                    throw new DuplicateIdException("Contact ID already exists: " + id);
+                }
+                return blocker[0];
+            }
+
+            @Override
+            byte type() {
+                return OP_PUT;
+            }
+
+            @Override
+            ByteBuffer record() {
+                sequence = sync.claim();
+                return stamped(journalRecord(stored()), sequence);
+            }
+
+            @Override
+            void apply() {
+                contacts.computeIfAbsent(id, key -> {
+                    added(key, stored(), claimed(sequence));
+                    return stored;
+                });
+                intents.release(id);
+            }
+
+            @Override
+            void abort() {
+                release(sequence);
+                super.abort();
+            }
+
+            private Contact stored() {
+                if (stored == null) {
+                    stored = aboveVersionFloor(contact);
+                }
+                return stored;
+            }
+        };
+    }
+
+    /**
+     * UnitOfWork step that updates a contact's fields, only if it is still at expectedVersion
+     * unless that is ANY_VERSION; the stored contact gets the next version.
+     */
+    TransactionStep stageUpdate(String contactId, long expectedVersion,
+                                String firstName, String lastName, String phone, String address) {
+        return new TransactionStep(intents, requireId(contactId), journal, gate) {
+            private Contact next;
+            private long sequence = -1;
+
+            @Override
+            WriteIntents.Commit prepare(WriteIntents.Commit commit) {
+                while (true) {
+                    Contact current = getContactOrThrow(id);
+                    if (expectedVersion != ANY_VERSION && current.getVersion() != expectedVersion) {
+                        throw new VersionConflictException("Contact " + id + " is at version " + current.getVersion()
+                                + ", expected " + expectedVersion);
+                    }
+                    Contact updated = current.withUpdates(firstName, lastName, phone, address);
+                    WriteIntents.Commit[] blocker = {null};
+                    boolean[] reserved = {false};
+                    contacts.computeIfPresent(id, (key, stored) -> {
+                        if ((blocker[0] = intents.holder(key)) == null && (stored == current || stored.equals(current))) {
+                            intents.hold(key, commit);
+                            reserved[0] = true;
+                        }
+                        return stored;
+                    });
+                    if (blocker[0] != null) {
+                        return blocker[0];
+                    }
+                    if (reserved[0]) {
+                        next = updated;
+                        return null;
+                    }
+                    // changed or deleted since it was read; check again
+                }
+            }
+
+            @Override
+            byte type() {
+                return OP_PUT;
+            }
+
+            @Override
+            ByteBuffer record() {
+                sequence = sync.claim();
+                return stamped(journalRecord(next), sequence);
+            }
+
+            @Override
+            void apply() {
+                contacts.computeIfPresent(id, (key, stored) -> {
+                    replaced(key, stored, next, claimed(sequence));
+                    return next;
+                });
+                intents.release(id);
+            }
+
+            @Override
+            void abort() {
+                release(sequence);
+                super.abort();
+            }
+        };
+    }
+
+    /** UnitOfWork step that deletes a contact. */
+    TransactionStep stageDelete(String contactId) {
+        return new TransactionStep(intents, requireId(contactId), journal, gate) {
+            private long sequence = -1;
+
+            @Override
+            WriteIntents.Commit prepare(WriteIntents.Commit commit) {
+                WriteIntents.Commit[] blocker = {null};
+                Contact stored = contacts.computeIfPresent(id, (key, c) -> {
+                    if ((blocker[0] = intents.holder(key)) == null) {
+                        intents.hold(key, commit);
+                    }
+                    return c;
+                });
+                if (stored == null) {
+                    throw new NotFoundException("Contact not found: " + id);
+                }
+                return blocker[0];
+            }
+
+            @Override
+            byte type() {
+                return OP_REMOVE;
+            }
+
+            @Override
+            ByteBuffer record() {
+                sequence = sync.claim();
+                // held, so the version cannot change
+                return stamped(encodeRemoval(id, getContactOrThrow(id).getVersion()), sequence);
+            }
+
+            @Override
+            void apply() {
+                contacts.computeIfPresent(id, (key, existing) -> {
+                    removed(key, existing, claimed(sequence));
+                    return null;
+                });
+                intents.release(id);
+            }
+
+            @Override
+            void abort() {
+                release(sequence);
+                super.abort();
+            }
+        };
+    }
+
+    // -------- Persistence --------
+
+    /**
+     * Writes all contacts to a snapshot file and returns the journal position it covers;
+     * pass that position to Journal.compact to drop the records the snapshot replaces.
+     * Writers are never paused (the snapshot only waits for mutations already in flight),
+     * so this is meant to run on a background thread.
+     */
+    public long writeSnapshot(Path file) {
+        if (journal == null) {
+            throw new IllegalStateException("snapshots require a journaled ContactService");
+        }
+        long position = journal.position();
+        long floor = versionFloor.get();
+        if (floor > 0) { // the removals that raised it may be compacted away with the snapshot
+            ByteBuffer record = ByteBuffer.allocate(Long.BYTES).putLong(floor).flip();
+            log(OP_VERSION_FLOOR, record);
         }
-        if (trimmed.length() > Contact.MAX_ID_LENGTH) {
-            throw new Contact.ValidationException("contactId must be <= " + Contact.MAX_ID_LENGTH + " characters");
+        sync(logSyncState()); // likewise the stamps of the records it replaces
+        gate.awaitQuiescence();
+        try (SnapshotFile.Writer writer = SnapshotFile.create(file, position)) {
+            for (Contact c : contacts.asMap().values()) {
+                encodeTo(writer.beginRecord(encodedSize(c)), c);
+            }
+            writer.commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot write contact snapshot " + file, e);
         }
-        return trimmed;
+        return position;
+    }
+
+    private int enterMutation() {
+        return journal == null ? -1 : gate.enter();
+    }
+
+    private void exitMutation(int ticket) {
+        if (ticket >= 0) {
+            gate.exit(ticket);
+        }
+    }
+
+    private long log(byte type, ByteBuffer record) {
+        return journal == null ? 0 : journal.append(type, record);
     }
 
+    /** Logs a change stamped with its claimed sync sequence, which is released if the write fails. */
+    private long log(byte type, ByteBuffer record, long sequence) {
+        if (journal == null) {
+            return 0;
+        }
+        try {
+            return journal.append(type, stamped(record, sequence));
+        } catch (RuntimeException e) {
+            sync.release(sequence);
+            throw e;
+        }
+    }
+
+    private ByteBuffer stamped(ByteBuffer record, long sequence) {
+        sync.stamp(record, sequence);
+        return record;
+    }
+
+    /** The sequence a staged change claimed with its journal record, or a new one without a journal. */
+    private long claimed(long sequence) {
+        return sequence >= 0 ? sequence : sync.claim();
+    }
+
+    private void release(long sequence) {
+        if (sequence >= 0) {
+            sync.release(sequence);
+        }
+    }
+
+    /** Logs the sync index's state; returns the journal position after it. */
+    private long logSyncState() {
+        long[] logged = {0};
+        sync.writeState(record -> logged[0] = log(OP_SYNC_STATE, record));
+        return logged[0];
+    }
+
+    /** Ends replay: sync tokens continue from the restored index, or a first state is logged for new ones. */
+    private void finishRestore() {
+        if (!sync.finishRestore()) {
+            sync(logSyncState());
+        }
+    }
+
+    private void sync(long position) {
+        if (journal != null) {
+            journal.sync(position);
+        }
+    }
+
+    /** Replays one journal record; only used while constructing, before the search index is built. */
+    private void applyRecord(byte type, ByteBuffer payload) {
+        if (type == OP_PUT) {
+            Contact c = decode(payload);
+            put(c);
+            sync.restore(payload, ChangeEvent.Type.UPDATE, c.getContactId());
+        } else if (type == OP_REMOVE) {
+            String id = BinaryFields.getString(payload);
+            contacts.remove(id);
+            if (payload.remaining() >= Long.BYTES) { // removals logged before the version floor end here
+                versionFloor.accumulateAndGet(payload.getLong(), Math::max);
+            }
+            sync.restore(payload, ChangeEvent.Type.DELETE, id);
+        } else if (type == OP_SYNC_STATE) {
+            sync.restoreState(payload);
+        } else if (type == OP_VERSION_FLOOR) {
+            versionFloor.accumulateAndGet(payload.getLong(), Math::max);
+        } else if (type == JournalBatch.TYPE) {
+            JournalBatch.forEach(payload, this::applyRecord);
+        }
+    }
+
+    /** contact, or a copy numbered above every version a deleted contact reached. */
+    private Contact aboveVersionFloor(Contact contact) {
+        long floor = versionFloor.get();
+        return contact.getVersion() > floor ? contact : contact.atVersion(floor + 1);
+    }
+
+    private void put(Contact c) {
+        contacts.put(c.getContactId(), c);
+    }
+
+    /** Builds the indexes after the store was loaded, the search index in one sorted pass. */
+    private void indexLoadedContacts() {
+        if (searchIndex != null && contacts.size() > 0) {
+            searchIndex.addAll(contacts.asMap().values());
+            String[] ids = contacts.asMap().keySet().toArray(new String[0]);
+            Arrays.parallelSort(ids);
+            idIndex.addAll(Arrays.asList(ids));
+            for (Contact c : contacts.asMap().values()) {
+                phoneIndex.add(c);
+            }
+        }
+    }
+
+    static ByteBuffer encode(Contact c) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(c));
+        encodeTo(buffer, c);
+        return buffer.flip();
+    }
+
+    static int encodedSize(Contact c) {
+        return Long.BYTES
+                + BinaryFields.sizeOf(c.getContactId())
+                + BinaryFields.sizeOf(c.getFirstName())
+                + BinaryFields.sizeOf(c.getLastName())
+                + BinaryFields.sizeOf(c.getPhone())
+                + BinaryFields.sizeOf(c.getAddress());
+    }
+
+    /** Record layout: version (long), contactId, firstName, lastName, phone, address. */
+    static void encodeTo(ByteBuffer buffer, Contact c) {
+        buffer.putLong(c.getVersion());
+        BinaryFields.putString(buffer, c.getContactId());
+        BinaryFields.putString(buffer, c.getFirstName());
+        BinaryFields.putString(buffer, c.getLastName());
+        BinaryFields.putString(buffer, c.getPhone());
+        BinaryFields.putString(buffer, c.getAddress());
+    }
+
+    static Contact decode(ByteBuffer buffer) {
+        long version = buffer.getLong();
+        return Contact.restore(
+                BinaryFields.getString(buffer),
+                BinaryFields.getString(buffer),
+                BinaryFields.getString(buffer),
+                BinaryFields.getString(buffer),
+                BinaryFields.getString(buffer),
+                version);
+    }
+
+    /** Journal record of c: the record layout, then room for the sync stamp. */
+    private static ByteBuffer journalRecord(Contact c) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(c) + SyncIndex.STAMP_SIZE);
+        encodeTo(buffer, c);
+        return buffer.clear();
+    }
+
+    /**
+     * Removal record layout: contactId, the version the contact had when it was removed,
+     * then room for the sync stamp.
+     */
+    private static ByteBuffer encodeRemoval(String id, long version) {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryFields.sizeOf(id) + Long.BYTES + SyncIndex.STAMP_SIZE);
+        BinaryFields.putString(buffer, id);
+        buffer.putLong(version);
+        return buffer.clear();
+    }
+
+    /** One page of searchContacts results. */
+    public static final class SearchPage {
+
+        private final List<Contact> contacts;
+        private final String nextCursor;
+
+        SearchPage(List<Contact> contacts, String nextCursor) {
+            this.contacts = Collections.unmodifiableList(contacts);
+            this.nextCursor = nextCursor;
+        }
+
+        public List<Contact> getContacts() { return contacts; }
+
+        /** Cursor for the next page, or null if this is the last one. */
+        public String getNextCursor() { return nextCursor; }
+
+        public boolean hasMore() { return nextCursor != null; }
+    }
+
+    // Duplicate and not-found are everyday answers (the HTTP front end turns them into 409 and
+    // 404), so they skip the stack trace, which would cost more than the lookup itself.
     public static class DuplicateIdException extends RuntimeException {
-        public DuplicateIdException(String message) { super(message); }
+        public DuplicateIdException(String message) { super(message, null, false, false); }
     }
 
     public static class NotFoundException extends RuntimeException {
-        public NotFoundException(String message) { super(message); }
+        public NotFoundException(String message) { super(message, null, false, false); }
+    }
+
+    public static class VersionConflictException extends RuntimeException {
+        public VersionConflictException(String message) { super(message); }
     }
 }
@@ -0,0 +1,96 @@
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contention benchmark for ContactService.
+ *
+ * Runs a mixed workload (80% getContact, 10% addContact, 5% updateContact, 5% deleteContact)
+ * against one shared service for 1, 2, 4, 8, 16 and 32 threads and prints throughput per
+ * thread count, so scaling can be compared between runs.
+ *
+ * Usage: java ContactServiceContentionBenchmark [secondsPerRun] [keySpace]
+ */
+public class ContactServiceContentionBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32};
+
+    public static void main(String[] args) throws InterruptedException {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        int keySpace = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+
+        // warm-up so the first measured run is not dominated by JIT compilation
+        run(4, 1, keySpace);
+
+        System.out.printf("%-8s %15s %12s%n", "threads", "ops/sec", "scaling");
+        double baseline = 0;
+        for (int threads : THREAD_COUNTS) {
+            double opsPerSec = run(threads, seconds, keySpace);
+            if (baseline == 0) {
+                baseline = opsPerSec;
+            }
+            System.out.printf("%-8d %15.0f %11.2fx%n", threads, opsPerSec, opsPerSec / baseline);
+        }
+    }
+
+    private static double run(int threads, int seconds, int keySpace) throws InterruptedException {
+        ContactService service = new ContactService();
+        for (int i = 0; i < keySpace; i += 2) {
+            service.addContact(newContact(i));
+        }
+
+        LongAdder ops = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                try {
+                    start.await();
+                    long local = 0;
+                    while ((local & 0xFF) != 0 || System.nanoTime() < deadline) {
+                        operation(service, random.nextInt(keySpace), random.nextInt(100));
+                        local++;
+                    }
+                    ops.add(local);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+            worker.setDaemon(true);
+            worker.start();
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        return ops.sum() * 1e9 / elapsed;
+    }
+
+    private static void operation(ContactService service, int key, int dice) {
+        String id = Integer.toString(key);
+        try {
+            if (dice < 80) {
+                service.getContact(id);
+            } else if (dice < 90) {
+                service.addContact(newContact(key));
+            } else if (dice < 95) {
+                service.updateContact(id, "Paul", "McCartney", "0987654321", "New Address");
+            } else {
+                service.deleteContact(id);
+            }
+        } catch (ContactService.DuplicateIdException | ContactService.NotFoundException expected) {
+            // part of the workload: keys collide on purpose
+        }
+    }
+
+    private static Contact newContact(int key) {
+        return new Contact(Integer.toString(key), "John", "Lennon", "1234567890", "Address");
+    }
+}
@@ -1,4 +1,18 @@
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -75,4 +89,718 @@ public class ContactServiceTest {
         assertThrows(Contact.ValidationException.class, () ->
                 service.updateContact("1", "Paul", "McCartney", "BADPHONE", "New Address"));
     }
+
+    @Test
+    void testFailedUpdateShouldLeaveContactUnchanged() {
+        ContactService service = new ContactService();
+        Contact original = new Contact("1", "John", "Lennon", "1234567890", "Address");
+        service.addContact(original);
+
+        assertThrows(Contact.ValidationException.class, () ->
+                service.updateContact("1", "Paul", "McCartney", "0987654321", "a".repeat(31)));
+
+        assertSame(original, service.getContact("1"));
+        assertEquals("John", service.getContact("1").getFirstName());
+    }
+
+    @Test
+    void testUpdateShouldNotChangePreviouslyReadSnapshot() {
+        ContactService service = new ContactService();
+        service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+        Contact before = service.getContact("1");
+
+        service.updateContact("1", "Paul", "McCartney", "0987654321", "New Address");
+
+        assertEquals("John", before.getFirstName());
+        assertEquals(before.getVersion() + 1, service.getContact("1").getVersion());
+    }
+
+    @Test
+    void testVersionedUpdateWithCurrentVersionShouldSucceed() {
+        ContactService service = new ContactService();
+        service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+
+        Contact updated = service.updateContact("1", Contact.INITIAL_VERSION,
+                "Paul", "McCartney", "0987654321", "New Address");
+
+        assertEquals(Contact.INITIAL_VERSION + 1, updated.getVersion());
+        assertSame(updated, service.getContact("1"));
+    }
+
+    @Test
+    void testVersionedUpdateWithStaleVersionShouldThrowConflict() {
+        ContactService service = new ContactService();
+        service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+        service.updateContact("1", "Paul", "McCartney", "0987654321", "New Address");
+
+        assertThrows(ContactService.VersionConflictException.class, () ->
+                service.updateContact("1", Contact.INITIAL_VERSION, "George", "Harrison", "1111111111", "Elsewhere"));
+        assertEquals("Paul", service.getContact("1").getFirstName());
+    }
+
+    @Test
+    void testVersionedUpdateNonExistingContactShouldThrowNotFound() {
+        ContactService service = new ContactService();
+        assertThrows(ContactService.NotFoundException.class, () ->
+                service.updateContact("999", 1, "Paul", "McCartney", "0987654321", "New Address"));
+    }
+
+    @Test
+    void testReAddedContactShouldNotMatchAVersionFromBeforeTheDelete() {
+        ContactService service = new ContactService();
+        service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+        long stale = service.getContact("1").getVersion();
+        service.deleteContact("1");
+        service.addContact(new Contact("1", "Paul", "McCartney", "0987654321", "Address"));
+
+        assertTrue(service.getContact("1").getVersion() > stale);
+        assertThrows(ContactService.VersionConflictException.class, () ->
+                service.updateContact("1", stale, "George", "Harrison", "1111111111", "Elsewhere"));
+        assertEquals("Paul", service.getContact("1").getFirstName());
+    }
+
+    @Test
+    void testVersionFloorShouldSurviveASnapshotAndCompaction(@TempDir Path dir) throws IOException {
+        Path log = dir.resolve("contacts.log");
+        Path snapshot = dir.resolve("contacts.snap");
+        try (Journal journal = Journal.open(log)) {
+            ContactService service = new ContactService(journal, snapshot);
+            service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+            service.updateContact("1", "Johnny", "Lennon", "1234567890", "Address");
+            service.deleteContact("1");
+            journal.compact(service.writeSnapshot(snapshot));
+        }
+
+        try (Journal journal = Journal.open(log)) {
+            ContactService restored = new ContactService(journal, snapshot);
+            restored.addContact(new Contact("1", "Paul", "McCartney", "0987654321", "Address"));
+
+            assertEquals(Contact.INITIAL_VERSION + 2, restored.getContact("1").getVersion());
+        }
+        try (Journal journal = Journal.open(log)) {
+            assertEquals(Contact.INITIAL_VERSION + 2, new ContactService(journal, snapshot).getContact("1").getVersion());
+        }
+    }
+
+    // ---- Concurrency tests ----
+
+    @Test
+    void testConcurrentAddSameIdShouldAcceptExactlyOne() throws Exception {
+        ContactService service = new ContactService();
+        int threads = 16;
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger duplicates = new AtomicInteger();
+
+        runConcurrently(threads, i -> {
+            try {
+                service.addContact(new Contact("1", "T" + i, "Lennon", "1234567890", "Address"));
+                accepted.incrementAndGet();
+            } catch (ContactService.DuplicateIdException e) {
+                duplicates.incrementAndGet();
+            }
+        });
+
+        assertEquals(1, accepted.get());
+        assertEquals(threads - 1, duplicates.get());
+        assertEquals(1, service.getAllContactsView().size());
+    }
+
+    @Test
+    void testConcurrentDeleteSameIdShouldSucceedExactlyOnce() throws Exception {
+        ContactService service = new ContactService();
+        service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+        AtomicInteger deleted = new AtomicInteger();
+        AtomicInteger notFound = new AtomicInteger();
+
+        runConcurrently(16, i -> {
+            try {
+                service.deleteContact("1");
+                deleted.incrementAndGet();
+            } catch (ContactService.NotFoundException e) {
+                notFound.incrementAndGet();
+            }
+        });
+
+        assertEquals(1, deleted.get());
+        assertEquals(15, notFound.get());
+        assertNull(service.getContact("1"));
+    }
+
+    @Test
+    void testConcurrentAddsOfDistinctIdsShouldAllBeStored() throws Exception {
+        ContactService service = new ContactService();
+
+        runConcurrently(8, t -> {
+            for (int i = 0; i < 1000; i++) {
+                service.addContact(new Contact(t + "-" + i, "John", "Lennon", "1234567890", "Address"));
+            }
+        });
+
+        assertEquals(8000, service.getAllContactsView().size());
+    }
+
+    @Test
+    void testConcurrentOptimisticUpdatesShouldNotLoseWrites() throws Exception {
+        ContactService service = new ContactService();
+        service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+        int threads = 8;
+        int updatesPerThread = 200;
+
+        runConcurrently(threads, t -> {
+            int applied = 0;
+            while (applied < updatesPerThread) {
+                Contact current = service.getContact("1");
+                try {
+                    service.updateContact("1", current.getVersion(), "T" + t, "Lennon", "1234567890", "Address");
+                    applied++;
+                } catch (ContactService.VersionConflictException retry) {
+                    // another writer won; re-read and try again
+                }
+            }
+        });
+
+        assertEquals(Contact.INITIAL_VERSION + threads * updatesPerThread, service.getContact("1").getVersion());
+    }
+
+    private interface IndexedTask {
+        void run(int index) throws Exception;
+    }
+
+    private static void runConcurrently(int threads, IndexedTask task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int index = i;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    task.run(index);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // ---- Journal tests ----
+
+    @Test
+    void testJournaledServiceShouldRestoreStateAfterRestart(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("contacts.log");
+        try (Journal journal = Journal.open(file)) {
+            ContactService service = new ContactService(journal);
+            service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+            service.addContact(new Contact("2", "Paul", "McCartney", "0987654321", "Address 2"));
+            service.addContact(new Contact("3", "George", "Harrison", "1111111111", "Address 3"));
+            service.updateContact("1", "Johnny", "Lennon", "1234567890", "New Address");
+            service.deleteContact("2");
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            ContactService restored = new ContactService(journal);
+
+            assertEquals(2, restored.getAllContactsView().size());
+            assertNull(restored.getContact("2"));
+            Contact c = restored.getContact("1");
+            assertEquals("Johnny", c.getFirstName());
+            assertEquals("New Address", c.getAddress());
+            assertEquals(Contact.INITIAL_VERSION + 1, c.getVersion());
+            assertEquals("Harrison", restored.getContact("3").getLastName());
+        }
+    }
+
+    @Test
+    void testSyncTokenShouldSurviveARestart(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("contacts.log");
+        String token;
+        try (Journal journal = Journal.open(file)) {
+            ContactService service = new ContactService(journal);
+            service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+            service.addContact(new Contact("2", "Paul", "McCartney", "0987654321", "Address 2"));
+            token = service.getSyncIndex().currentToken();
+            service.updateContact("1", "Johnny", "Lennon", "1234567890", "New Address");
+            service.deleteContact("2");
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            ContactService restored = new ContactService(journal);
+            List<ChangeEvent<Contact>> changes = restored.getContactChanges(token, 10).getChanges();
+
+            assertEquals(2, changes.size());
+            assertEquals("Johnny", changes.get(0).getValue().getFirstName());
+            assertEquals(ChangeEvent.Type.DELETE, changes.get(1).getType());
+            assertEquals("2", changes.get(1).getId());
+        }
+    }
+
+    @Test
+    void testRejectedOperationsShouldNotBeJournaled(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("contacts.log");
+        try (Journal journal = Journal.open(file)) {
+            ContactService service = new ContactService(journal);
+            service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+            long position = journal.position();
+
+            assertThrows(ContactService.DuplicateIdException.class, () ->
+                    service.addContact(new Contact("1", "Paul", "McCartney", "0987654321", "Address 2")));
+            assertThrows(ContactService.NotFoundException.class, () -> service.deleteContact("2"));
+            assertThrows(Contact.ValidationException.class, () ->
+                    service.updateContact("1", "Paul", "McCartney", "BADPHONE", "Address"));
+
+            assertEquals(position, journal.position());
+        }
+    }
+
+    // ---- Snapshot tests ----
+
+    @Test
+    void testSnapshotPlusJournalTailShouldRestoreState(@TempDir Path dir) throws IOException {
+        Path log = dir.resolve("contacts.log");
+        Path snapshot = dir.resolve("contacts.snap");
+        try (Journal journal = Journal.open(log)) {
+            ContactService service = new ContactService(journal, snapshot);
+            service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+            service.addContact(new Contact("2", "Paul", "McCartney", "0987654321", "Address 2"));
+
+            long position = service.writeSnapshot(snapshot);
+            journal.compact(position);
+
+            service.updateContact("1", "Johnny", "Lennon", "1234567890", "New Address");
+            service.deleteContact("2");
+            service.addContact(new Contact("3", "George", "Harrison", "1111111111", "Address 3"));
+        }
+
+        try (Journal journal = Journal.open(log)) {
+            ContactService restored = new ContactService(journal, snapshot);
+
+            assertEquals(2, restored.getAllContactsView().size());
+            assertEquals("Johnny", restored.getContact("1").getFirstName());
+            assertEquals(Contact.INITIAL_VERSION + 1, restored.getContact("1").getVersion());
+            assertNull(restored.getContact("2"));
+            assertEquals("George", restored.getContact("3").getFirstName());
+        }
+    }
+
+    @Test
+    void testSyncTokenShouldSurviveASnapshotAndCompaction(@TempDir Path dir) throws IOException {
+        Path log = dir.resolve("contacts.log");
+        Path snapshot = dir.resolve("contacts.snap");
+        String token;
+        try (Journal journal = Journal.open(log)) {
+            ContactService service = new ContactService(journal, snapshot);
+            service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+            token = service.getSyncIndex().currentToken();
+            service.addContact(new Contact("2", "Paul", "McCartney", "0987654321", "Address 2"));
+            journal.compact(service.writeSnapshot(snapshot)); // drops the record that stamped 2
+            service.addContact(new Contact("3", "George", "Harrison", "1111111111", "Address 3"));
+        }
+
+        try (Journal journal = Journal.open(log)) {
+            ContactService restored = new ContactService(journal, snapshot);
+            SyncIndex.Delta<Contact> delta = restored.getContactChanges(token, 10);
+
+            assertEquals(List.of("2", "3"), delta.getChanges().stream().map(ChangeEvent::getId).collect(Collectors.toList()));
+            restored.deleteContact("1");
+            assertEquals("1", restored.getContactChanges(delta.getToken(), 10).getChanges().get(0).getId());
+        }
+    }
+
+    @Test
+    void testSnapshotWhileWritersRunShouldLoseNothing(@TempDir Path dir) throws Exception {
+        Path log = dir.resolve("contacts.log");
+        Path snapshot = dir.resolve("contacts.snap");
+        try (Journal journal = Journal.open(log)) {
+            ContactService service = new ContactService(journal);
+
+            runConcurrently(5, t -> {
+                if (t == 0) {
+                    for (int i = 0; i < 5; i++) {
+                        journal.compact(service.writeSnapshot(snapshot));
+                    }
+                    return;
+                }
+                for (int i = 0; i < 300; i++) {
+                    service.addContact(new Contact(t + "-" + i, "John", "Lennon", "1234567890", "Address"));
+                }
+            });
+        }
+
+        try (Journal journal = Journal.open(log)) {
+            assertEquals(1200, new ContactService(journal, snapshot).getAllContactsView().size());
+        }
+    }
+
+    @Test
+    void testSnapshotOfMemoryOnlyServiceShouldThrow(@TempDir Path dir) {
+        ContactService service = new ContactService();
+        assertThrows(IllegalStateException.class, () -> service.writeSnapshot(dir.resolve("contacts.snap")));
+    }
+
+    // ---- Bulk import tests ----
+
+    @Test
+    void testImportContactsShouldStoreValidRowsAndReportFailures() {
+        ContactService service = new ContactService();
+        service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+        List<String[]> rows = List.of(
+                new String[] {"2", "Paul", "McCartney", "0987654321", "Address 2"},
+                new String[] {"1", "Dup", "Dup", "1111111111", "Address"},
+                new String[] {"3", "George", "Harrison", "BADPHONE", "Address 3"},
+                new String[] {"4", "Ringo", "Starr", "2222222222", "Address 4"});
+
+        BulkResult result = service.importContacts(rows, r -> new Contact(r[0], r[1], r[2], r[3], r[4]));
+
+        assertEquals(4, result.getSubmitted());
+        assertEquals(2, result.getImported());
+        assertEquals(BulkResult.Reason.DUPLICATE_ID, result.getFailures().get(0).getReason());
+        assertEquals(1, result.getFailures().get(0).getIndex());
+        assertEquals(BulkResult.Reason.VALIDATION_ERROR, result.getFailures().get(1).getReason());
+        assertEquals(2, result.getFailures().get(1).getIndex());
+        assertEquals("John", service.getContact("1").getFirstName());
+        assertNotNull(service.getContact("4"));
+        assertNull(service.getContact("3"));
+    }
+
+    @Test
+    void testAddContactsShouldBeJournaled(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("contacts.log");
+        List<Contact> batch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            batch.add(new Contact("c" + i, "John", "Lennon", "1234567890", "Address"));
+        }
+        try (Journal journal = Journal.open(file)) {
+            assertEquals(500, new ContactService(journal).addContacts(batch).getImported());
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            assertEquals(500, new ContactService(journal).getAllContactsView().size());
+        }
+    }
+
+    // ---- Search tests ----
+
+    @Test
+    void testSearchShouldFollowAddUpdateAndDelete() {
+        ContactService service = new ContactService();
+        service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+        service.addContact(new Contact("2", "Paul", "McCartney", "0987654321", "Address"));
+
+        assertEquals(List.of("1"), ids(service.searchContacts("jo", 10)));
+        assertEquals(List.of("2"), ids(service.searchContacts("098", 10)));
+
+        service.updateContact("1", "Yoko", "Ono", "1234567890", "Address");
+        assertTrue(service.searchContacts("jo", 10).getContacts().isEmpty());
+        assertEquals(List.of("1"), ids(service.searchContacts("yo", 10)));
+
+        service.deleteContact("1");
+        assertTrue(service.searchContacts("yo", 10).getContacts().isEmpty());
+    }
+
+    @Test
+    void testSearchShouldPageThroughAllMatches() {
+        ContactService service = new ContactService();
+        for (int i = 0; i < 25; i++) {
+            service.addContact(new Contact(String.format("%02d", i), "Anna", "Smith", "5550000000", "Address"));
+        }
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            ContactService.SearchPage page = service.searchContacts("an", cursor, 10);
+            seen.addAll(ids(page));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(25, seen.size());
+        assertEquals("00", seen.get(0));
+        assertEquals("24", seen.get(24));
+    }
+
+    @Test
+    void testSearchIndexShouldBeRebuiltFromJournal(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("contacts.log");
+        try (Journal journal = Journal.open(file)) {
+            ContactService service = new ContactService(journal);
+            service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+            service.addContact(new Contact("2", "Paul", "McCartney", "0987654321", "Address"));
+            service.updateContact("2", "Paula", "McCartney", "0987654321", "Address");
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            ContactService service = new ContactService(journal);
+            assertEquals(List.of("2"), ids(service.searchContacts("paula", 10)));
+            assertEquals(List.of("1"), ids(service.searchContacts("LEN", 10)));
+        }
+    }
+
+    // ---- Phone lookup tests ----
+
+    @Test
+    void testPhoneLookupShouldFollowAddUpdateAndDelete() {
+        ContactService service = new ContactService();
+        service.addContact(new Contact("1", "John", "Lennon", "2125550100", "Address"));
+        service.addContact(new Contact("2", "Paul", "McCartney", "3105550100", "Address"));
+
+        assertEquals(List.of("1"), ids(service.findContactsByPhone("2125550100")));
+        assertEquals(List.of("2"), ids(service.findContactsByPhone(3105550100L)));
+
+        service.updateContact("1", "John", "Lennon", "3105550199", "Address");
+        assertTrue(service.findContactsByPhone("2125550100").isEmpty());
+        assertEquals(List.of("1"), ids(service.findContactsByPhone("3105550199")));
+        assertEquals(2, service.findContactsByPhonePrefix("310", 10).size());
+        assertEquals(List.of("1"), ids(service.findContactsByPhonePrefix("310555019", 10)));
+
+        service.deleteContact("1");
+        assertTrue(service.findContactsByPhone("3105550199").isEmpty());
+        assertEquals(List.of("2"), ids(service.findContactsByPhonePrefix("310", 10)));
+    }
+
+    @Test
+    void testBadPhoneQueriesShouldThrow() {
+        ContactService service = new ContactService();
+
+        assertThrows(Contact.ValidationException.class, () -> service.findContactsByPhone("555"));
+        assertThrows(IllegalArgumentException.class, () -> service.findContactsByPhone(-1));
+        assertThrows(IllegalArgumentException.class, () -> service.findContactsByPhonePrefix("", 10));
+        assertThrows(IllegalArgumentException.class, () -> service.findContactsByPhonePrefix("21a", 10));
+        assertThrows(IllegalArgumentException.class, () -> service.findContactsByPhonePrefix("12345678901", 10));
+    }
+
+    @Test
+    void testPhoneIndexShouldBeRebuiltFromJournal(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("contacts.log");
+        try (Journal journal = Journal.open(file)) {
+            ContactService service = new ContactService(journal);
+            service.addContact(new Contact("1", "John", "Lennon", "2125550100", "Address"));
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            ContactService service = new ContactService(journal);
+            assertEquals(List.of("1"), ids(service.findContactsByPhone("2125550100")));
+        }
+    }
+
+    // ---- Paging and streaming tests ----
+
+    @Test
+    void testContactsPageShouldWalkAllContactsInIdOrder() {
+        ContactService service = new ContactService();
+        for (String id : List.of("e", "b", "d", "a", "c")) {
+            service.addContact(new Contact(id, "John", "Lennon", "1234567890", "Address"));
+        }
+        service.deleteContact("d");
+
+        Page<Contact> first = service.getContactsPage(null, 2);
+        Page<Contact> second = service.getContactsPage(first.getNextCursor(), 2);
+
+        assertEquals(List.of("a", "b"), ids(first.getItems()));
+        assertEquals(List.of("c", "e"), ids(second.getItems()));
+        assertFalse(second.hasMore());
+    }
+
+    @Test
+    void testContactsPageShouldBeRebuiltFromJournal(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("contacts.log");
+        try (Journal journal = Journal.open(file)) {
+            ContactService service = new ContactService(journal);
+            service.addContact(new Contact("2", "John", "Lennon", "1234567890", "Address"));
+            service.addContact(new Contact("1", "Paul", "McCartney", "1234567890", "Address"));
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            ContactService service = new ContactService(journal);
+            assertEquals(List.of("1", "2"), ids(service.getContactsPage(null, 10).getItems()));
+        }
+    }
+
+    @Test
+    void testContactsPageShouldRequireIndexes() {
+        ContactService service = new ContactService(new OffHeapContactStore(), false);
+        assertThrows(IllegalStateException.class, () -> service.getContactsPage(null, 10));
+    }
+
+    @Test
+    void testParallelStreamShouldSeeEveryContactOfEitherStore() {
+        for (ContactStore store : List.of(new HeapContactStore(), new OffHeapContactStore())) {
+            ContactService service = new ContactService(store, false);
+            for (int i = 0; i < 5000; i++) {
+                service.addContact(new Contact("c" + i, "John", "Lennon", "1234567890", "Address"));
+            }
+
+            assertEquals(5000, service.streamContacts().parallel().map(Contact::getContactId).distinct().count());
+            assertEquals(1, service.streamContacts().filter(c -> c.getContactId().equals("c42")).count());
+        }
+    }
+
+    // ---- Change feed tests ----
+
+    @Test
+    void testChangeFeedShouldPublishAddUpdateAndDeleteInOrder() {
+        ContactService service = new ContactService();
+        ChangeFeed<Contact>.Subscription feed = service.getChangeFeed().subscribe();
+        service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+        service.updateContact("1", "Johnny", "Lennon", "1234567890", "Address");
+        assertThrows(ContactService.DuplicateIdException.class, () ->
+                service.addContact(new Contact("1", "Paul", "McCartney", "0987654321", "Address")));
+        service.deleteContact("1");
+
+        ChangeEvent<Contact> added = feed.poll();
+        ChangeEvent<Contact> updated = feed.poll();
+        ChangeEvent<Contact> deleted = feed.poll();
+
+        assertEquals(ChangeEvent.Type.ADD, added.getType());
+        assertEquals("John", added.getValue().getFirstName());
+        assertEquals(ChangeEvent.Type.UPDATE, updated.getType());
+        assertEquals("Johnny", updated.getValue().getFirstName());
+        assertEquals(ChangeEvent.Type.DELETE, deleted.getType());
+        assertEquals("1", deleted.getId());
+        assertEquals(2, deleted.getSequence());
+        assertNull(feed.poll()); // the rejected add published nothing
+    }
+
+    @Test
+    void testContactChangesShouldExpireTokensOfAnotherInstance() {
+        ContactService service = new ContactService();
+        String token = service.getSyncIndex().currentToken();
+        service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+        service.updateContact("1", "Johnny", "Lennon", "1234567890", "Address");
+
+        List<ChangeEvent<Contact>> changes = service.getContactChanges(token, 10).getChanges();
+        assertEquals(1, changes.size()); // the add and the update, as one upsert
+        assertEquals("Johnny", changes.get(0).getValue().getFirstName());
+        assertEquals(1, changes.get(0).getSequence());
+
+        ContactService restarted = new ContactService();
+        assertThrows(SyncIndex.TokenExpiredException.class, () -> restarted.getContactChanges(token, 10));
+    }
+
+    // ---- Metrics tests ----
+
+    @Test
+    void testMetricsShouldCountCallsAndFailuresByType() {
+        ContactService service = new ContactService();
+        service.addContact(new Contact("0", "Ringo", "Starr", "2222222222", "Address")); // before enabling
+        ServiceMetrics metrics = service.getMetrics();
+        metrics.setEnabled(true);
+        metrics.setSampleInterval(1);
+
+        service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+        assertThrows(ContactService.DuplicateIdException.class, () ->
+                service.addContact(new Contact("1", "Paul", "McCartney", "0987654321", "Address")));
+        service.updateContact("1", "Johnny", "Lennon", "1234567890", "Address");
+        assertThrows(Contact.ValidationException.class, () ->
+                service.updateContact("1", "FirstNameTooLong", "Lennon", "1234567890", "Address"));
+        assertThrows(ContactService.VersionConflictException.class, () ->
+                service.updateContact("1", Contact.INITIAL_VERSION, "X", "Y", "1234567890", "Z"));
+        assertThrows(ContactService.NotFoundException.class, () -> service.deleteContact("missing"));
+        service.deleteContact("1");
+
+        ServiceMetrics.OperationStats add = metrics.getOperation("add");
+        ServiceMetrics.OperationStats update = metrics.getOperation("update");
+        ServiceMetrics.OperationStats delete = metrics.getOperation("delete");
+        assertEquals(2, add.getCalls());
+        assertEquals(Map.of("DuplicateIdException", 1L), add.getFailures());
+        assertEquals(3, update.getCalls());
+        assertEquals(Map.of("ValidationException", 1L, "VersionConflictException", 1L), update.getFailures());
+        assertEquals(2, delete.getCalls());
+        assertEquals(Map.of("NotFoundException", 1L), delete.getFailures());
+        assertEquals(2, delete.getTimedCalls());
+    }
+
+    // ---- Off-heap store tests ----
+
+    @Test
+    void testOffHeapServiceShouldSupportUpdatesAndSearch() {
+        ContactService service = new ContactService(new OffHeapContactStore(), true);
+        service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+        service.updateContact("1", "Johnny", "Lennon", "1234567890", "New Address");
+        Contact updated = service.updateContact("1", Contact.INITIAL_VERSION + 1, "Julian", "Lennon",
+                "1234567890", "New Address");
+
+        assertEquals(updated, service.getContact("1"));
+        assertEquals(List.of("1"), ids(service.searchContacts("jul", 10)));
+        assertThrows(ContactService.VersionConflictException.class, () ->
+                service.updateContact("1", Contact.INITIAL_VERSION, "X", "Y", "1234567890", "Z"));
+        service.deleteContact("1");
+        assertTrue(service.getAllContactsView().isEmpty());
+    }
+
+    @Test
+    void testSearchWithoutIndexShouldThrow() {
+        ContactService service = new ContactService(new OffHeapContactStore(), false);
+        service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+
+        assertThrows(IllegalStateException.class, () -> service.searchContacts("jo", 10));
+        assertThrows(IllegalStateException.class, () -> service.findContactsByPhone("1234567890"));
+        assertEquals("John", service.getContact("1").getFirstName());
+    }
+
+    @Test
+    void testOffHeapServiceShouldRestoreFromSnapshotAndJournal(@TempDir Path dir) throws IOException {
+        Path log = dir.resolve("contacts.log");
+        Path snapshot = dir.resolve("contacts.snap");
+        try (Journal journal = Journal.open(log)) {
+            ContactService service = new ContactService(new OffHeapContactStore(), false, journal, snapshot);
+            service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+            service.addContact(new Contact("2", "Paul", "McCartney", "0987654321", "Address 2"));
+            journal.compact(service.writeSnapshot(snapshot));
+            service.updateContact("1", "Johnny", "Lennon", "1234567890", "Address");
+            service.deleteContact("2");
+        }
+
+        try (Journal journal = Journal.open(log)) {
+            ContactService restored = new ContactService(new OffHeapContactStore(), true, journal, snapshot);
+
+            assertEquals(1, restored.getAllContactsView().size());
+            assertEquals("Johnny", restored.getContact("1").getFirstName());
+            assertEquals(List.of("1"), ids(restored.searchContacts("johnny", 10)));
+        }
+    }
+
+    // ---- Disk store tests ----
+
+    @Test
+    void testDiskStoreServiceShouldReopenAfterCleanClose(@TempDir Path dir) throws IOException {
+        Path log = dir.resolve("contacts.log");
+        try (Journal journal = Journal.open(log);
+             DiskRecordStore<Contact> store = DiskRecordStore.open(dir.resolve("store"), ContactService.RECORD_CODEC, 100)) {
+            ContactService service = new ContactService(store, true, journal);
+            service.addContact(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+            service.addContact(new Contact("2", "Paul", "McCartney", "0987654321", "Address 2"));
+            assertEquals("John", service.getContact("1").getFirstName());
+            service.updateContact("1", "Johnny", "Lennon", "1234567890", "Address");
+            assertEquals("Johnny", service.getContact("1").getFirstName());
+            service.deleteContact("2");
+        }
+
+        try (Journal journal = Journal.open(log);
+             DiskRecordStore<Contact> store = DiskRecordStore.open(dir.resolve("store"), ContactService.RECORD_CODEC, 100)) {
+            ContactService restored = new ContactService(store, true, journal);
+
+            assertEquals(1, restored.getAllContactsView().size());
+            assertEquals(Contact.INITIAL_VERSION + 1, restored.getContact("1").getVersion());
+            assertEquals(List.of("1"), ids(restored.searchContacts("johnny", 10)));
+        }
+    }
+
+    private static List<String> ids(ContactService.SearchPage page) {
+        return ids(page.getContacts());
+    }
+
+    private static List<String> ids(List<Contact> contacts) {
+        List<String> ids = new ArrayList<>();
+        for (Contact c : contacts) {
+            ids.add(c.getContactId());
+        }
+        return ids;
+    }
 }
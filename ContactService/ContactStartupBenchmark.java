@@ -0,0 +1,77 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Cold-start benchmark for a journaled ContactService.
+ *
+ * Builds a journal with the given number of contacts, then measures:
+ * - startup by replaying the full journal
+ * - writing a snapshot (and compacting the journal)
+ * - startup from the snapshot plus a 1% journal tail written after it
+ *
+ * Usage: java ContactStartupBenchmark [contacts] [directory]
+ */
+public class ContactStartupBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 10_000_000;
+        Path dir = args.length > 1 ? Files.createDirectories(Path.of(args[1]))
+                : Files.createTempDirectory("contact-startup");
+        Path log = dir.resolve("contacts.log");
+        Path snapshot = dir.resolve("contacts.snap");
+        try {
+            long start = System.nanoTime();
+            try (Journal journal = Journal.open(log)) {
+                long end = 0;
+                for (int i = 0; i < count; i++) {
+                    end = journal.append(ContactService.OP_PUT, ContactService.encode(newContact(i)));
+                }
+                journal.sync(end);
+            }
+            report("build journal", start, count, Files.size(log));
+
+            start = System.nanoTime();
+            try (Journal journal = Journal.open(log)) {
+                ContactService service = new ContactService(journal);
+                report("startup: full journal replay", start, service.getAllContactsView().size(), Files.size(log));
+
+                start = System.nanoTime();
+                long position = service.writeSnapshot(snapshot);
+                journal.compact(position);
+                report("write snapshot + compact", start, count, Files.size(snapshot));
+
+                int tail = Math.max(1, count / 100);
+                for (int i = 0; i < tail; i++) {
+                    journal.append(ContactService.OP_PUT, ContactService.encode(newContact(count + i)));
+                }
+                journal.sync(journal.position());
+            }
+
+            start = System.nanoTime();
+            try (Journal journal = Journal.open(log)) {
+                ContactService service = new ContactService(journal, snapshot);
+                report("startup: snapshot + journal tail", start, service.getAllContactsView().size(),
+                        Files.size(snapshot) + Files.size(log));
+            }
+        } finally {
+            if (args.length < 2) {
+                try (Stream<Path> files = Files.walk(dir)) {
+                    files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+                }
+            }
+        }
+    }
+
+    private static Contact newContact(int i) {
+        return new Contact(Integer.toString(i, 36), "John", "Lennon", "1234567890", "1 W 72nd St, New York");
+    }
+
+    private static void report(String step, long startNanos, long records, long bytes) {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        System.out.printf("%-34s %8.2f s %12d records %10.0f records/s %8d MiB%n",
+                step, seconds, records, records / seconds, bytes >> 20);
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * Storage behind ContactService: a RecordStore of contacts keyed by contactId. See
+ * RecordStore for the contract the service relies on.
+ *
+ * Implementations:
+ * - HeapContactStore: a ConcurrentHashMap of Contact objects (the default)
+ * - OffHeapContactStore: fixed-width records in direct memory, for very large data sets
+ * ContactService accepts any RecordStore of contacts, so a DiskRecordStore built with
+ * ContactService.RECORD_CODEC works as well.
+ */
+public interface ContactStore extends RecordStore<Contact> {
+
+    /** Stores contact under its ID unconditionally; returns the previous one or null. */
+    default Contact put(Contact contact) {
+        return put(contact.getContactId(), contact);
+    }
+}
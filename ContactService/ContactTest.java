@@ -19,6 +19,15 @@ public class ContactTest {
         assertEquals("1 W 72nd St, New York", c.getAddress());
     }
 
+    @Test
+    void testPhoneShouldBeStoredAsNumberAndKeepLeadingZeros() {
+        Contact c = new Contact("1", "John", "Lennon", " 0012345678 ", "Address");
+
+        assertEquals(12345678L, c.getPhoneNumber());
+        assertEquals("0012345678", c.getPhone());
+        assertEquals(9876543210L, c.withPhone("9876543210").getPhoneNumber());
+    }
+
     // ---- Boundary tests ----
 
     @Test
@@ -101,20 +110,80 @@ public class ContactTest {
     void testUpdatesShouldValidate() {
         Contact c = new Contact("1", "John", "Lennon", "1234567890", "Address");
 
-        c.setFirstName("Paul");
-        c.setLastName("McCartney");
-        c.setPhone("0987654321");
-        c.setAddress("Somewhere 123");
+        Contact updated = c.withFirstName("Paul")
+                .withLastName("McCartney")
+                .withPhone("0987654321")
+                .withAddress("Somewhere 123");
 
-        assertEquals("Paul", c.getFirstName());
-        assertEquals("McCartney", c.getLastName());
-        assertEquals("0987654321", c.getPhone());
-        assertEquals("Somewhere 123", c.getAddress());
+        assertEquals("Paul", updated.getFirstName());
+        assertEquals("McCartney", updated.getLastName());
+        assertEquals("0987654321", updated.getPhone());
+        assertEquals("Somewhere 123", updated.getAddress());
     }
 
     @Test
     void testUpdatePhoneInvalidShouldThrow() {
         Contact c = new Contact("1", "John", "Lennon", "1234567890", "Address");
-        assertThrows(Contact.ValidationException.class, () -> c.setPhone("111"));
+        assertThrows(Contact.ValidationException.class, () -> c.withPhone("111"));
+    }
+
+    // ---- Snapshot / version tests ----
+
+    @Test
+    void testNewContactShouldStartAtInitialVersion() {
+        Contact c = new Contact("1", "John", "Lennon", "1234567890", "Address");
+        assertEquals(Contact.INITIAL_VERSION, c.getVersion());
+    }
+
+    @Test
+    void testWithUpdatesShouldReturnNextVersionAndLeaveOriginalUnchanged() {
+        Contact c = new Contact("1", "John", "Lennon", "1234567890", "Address");
+
+        Contact updated = c.withUpdates("Paul", "McCartney", "0987654321", "New Address");
+
+        assertEquals("1", updated.getContactId());
+        assertEquals(c.getVersion() + 1, updated.getVersion());
+        assertEquals("Paul", updated.getFirstName());
+        assertEquals("John", c.getFirstName());
+        assertEquals("1234567890", c.getPhone());
+    }
+
+    @Test
+    void testWithUpdatesInvalidLastFieldShouldNotProduceContact() {
+        Contact c = new Contact("1", "John", "Lennon", "1234567890", "Address");
+
+        assertThrows(Contact.ValidationException.class, () ->
+                c.withUpdates("Paul", "McCartney", "0987654321", s(31)));
+        assertEquals("John", c.getFirstName());
+        assertEquals(Contact.INITIAL_VERSION, c.getVersion());
+    }
+
+    // ---- Error-code validation ----
+
+    @Test
+    void testCheckShouldAcceptValidValues() {
+        assertEquals(Validation.OK, Contact.check("1", "John", "Lennon", "1234567890", "Address"));
+        assertTrue(Contact.isValid("1", "John", "Lennon", "1234567890", "Address"));
+    }
+
+    @Test
+    void testCheckShouldReportFirstFailingField() {
+        int code = Contact.check("1", "John", "Lennon", "12345", s(31));
+
+        assertEquals(Contact.FIELD_PHONE, Validation.fieldOf(code));
+        assertEquals(Validation.WRONG_LENGTH, Validation.kindOf(code));
+        assertEquals("phone must be exactly 10 digits", Contact.describe(code));
+        assertFalse(Contact.isValid("1", "John", "Lennon", "12345", "Address"));
+    }
+
+    @Test
+    void testCheckShouldAgreeWithConstructor() {
+        int code = Contact.check("1", "John", s(11), "1234567890", "Address");
+
+        Contact.ValidationException e = assertThrows(Contact.ValidationException.class, () ->
+                new Contact("1", "John", s(11), "1234567890", "Address"));
+        assertEquals(Contact.describe(code), e.getMessage());
+        assertEquals(Validation.code(Contact.FIELD_ADDRESS, Validation.NULL),
+                Contact.check("1", "John", "Lennon", "1234567890", null));
     }
 }
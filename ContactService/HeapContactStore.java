@@ -0,0 +1,8 @@
+/**
+ * Default ContactStore: a ConcurrentHashMap of Contact objects.
+ *
+ * get never blocks and returns the stored instance itself, so a caller can compare
+ * contacts by identity. Each record costs a map node plus the Contact and its Strings.
+ */
+public class HeapContactStore extends HeapRecordStore<Contact> implements ContactStore {
+}
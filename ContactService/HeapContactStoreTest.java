@@ -0,0 +1,37 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HeapContactStoreTest {
+
+    private final HeapContactStore store = new HeapContactStore();
+
+    @Test
+    void testGetShouldReturnStoredInstance() {
+        Contact c = new Contact("1", "John", "Lennon", "1234567890", "Address");
+        assertNull(store.put(c));
+
+        assertSame(c, store.get("1"));
+        assertSame(c, store.remove("1"));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void testMapViewShouldBeReadOnly() {
+        store.put(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+
+        assertEquals(1, store.asMap().size());
+        assertThrows(UnsupportedOperationException.class, () -> store.asMap().remove("1"));
+    }
+
+    @Test
+    void testSpliteratorShouldVisitEveryContact() {
+        for (int i = 0; i < 100; i++) {
+            store.put(new Contact("c" + i, "John", "Lennon", "1234567890", "Address"));
+        }
+
+        assertEquals(100, StreamSupport.stream(store.spliterator(), true).map(Contact::getContactId).distinct().count());
+    }
+}
@@ -0,0 +1,788 @@
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * ContactStore that keeps records outside the Java heap, for data sets where a map of
+ * Contact objects (a map node, the Contact and five Strings per record) makes the heap
+ * large and GC pauses long.
+ *
+ * Every Contact field has a fixed maximum length, so each record fits a fixed-width slot.
+ * Slots live in direct ByteBuffer chunks laid out by column: a chunk holds the version
+ * column for all its slots, then the contactId column, and so on, so a scan of one field
+ * reads contiguous memory. A text cell is a length byte followed by up to max UTF-16 chars;
+ * the version and the phone number are longs.
+ *
+ * The ID index is an open-addressing hash table (linear probing, backward-shift deletion),
+ * also in direct memory: one long per entry holding the ID's hash and slot number. The
+ * only heap objects per store are a few arrays per segment, independent of record count.
+ *
+ * Concurrency: records are spread over segments by ID hash; each segment has a StampedLock.
+ * Writes (and the compute functions) run under the segment's write lock, so they are
+ * atomic per ID and call their function exactly once. Reads use an optimistic read that
+ * is validated against the lock and retried under the read lock if a write intervened,
+ * so readers do not block each other or writers in the common case.
+ *
+ * get returns a new Contact decoded from the slot (a snapshot that later writes cannot
+ * change). For allocation-free reads, View is a reusable flyweight: moveTo(id) copies one
+ * record into the view and its fields are read as CharSequences over that copy.
+ *
+ * Direct memory is limited by -XX:MaxDirectMemorySize (by default the maximum heap size).
+ */
+public class OffHeapContactStore implements ContactStore {
+
+    // columns; 1..5 match Contact.FIELD_ID .. Contact.FIELD_ADDRESS
+    private static final int VERSION = 0;
+    private static final int ID = Contact.FIELD_ID;
+    private static final int FIRST_NAME = Contact.FIELD_FIRST_NAME;
+    private static final int LAST_NAME = Contact.FIELD_LAST_NAME;
+    private static final int PHONE = Contact.FIELD_PHONE;
+    private static final int ADDRESS = Contact.FIELD_ADDRESS;
+
+    private static final int[] WIDTHS = {
+        Long.BYTES,
+        textWidth(Contact.MAX_ID_LENGTH),
+        textWidth(Contact.MAX_FIRST_NAME_LENGTH),
+        textWidth(Contact.MAX_LAST_NAME_LENGTH),
+        Long.BYTES,
+        textWidth(Contact.MAX_ADDRESS_LENGTH),
+    };
+    private static final int[] RECORD_OFFSETS = new int[WIDTHS.length];
+
+    /** Bytes per record (sum of the column widths). */
+    public static final int RECORD_WIDTH;
+
+    static {
+        int offset = 0;
+        for (int c = 0; c < WIDTHS.length; c++) {
+            RECORD_OFFSETS[c] = offset;
+            offset += WIDTHS[c];
+        }
+        RECORD_WIDTH = offset;
+    }
+
+    private static final int DEFAULT_SEGMENTS = 16;
+    private static final int DEFAULT_CHUNK_SLOTS = 1 << 14;
+    private static final int DEFAULT_INDEX_CAPACITY = 1 << 10;
+
+    private final Segment[] segments;
+    private final int segmentShift;
+    private final int chunkShift;
+    private final Map<String, Contact> view = new MapView();
+
+    public OffHeapContactStore() {
+        this(DEFAULT_SEGMENTS, DEFAULT_CHUNK_SLOTS, DEFAULT_INDEX_CAPACITY);
+    }
+
+    /** Sizes must be powers of two; small values are useful in tests to exercise growth. */
+    OffHeapContactStore(int segmentCount, int chunkSlots, int indexCapacity) {
+        requirePowerOfTwo(segmentCount, "segmentCount");
+        requirePowerOfTwo(chunkSlots, "chunkSlots");
+        requirePowerOfTwo(indexCapacity, "indexCapacity");
+        this.segments = new Segment[segmentCount];
+        this.segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+        this.chunkShift = Integer.numberOfTrailingZeros(chunkSlots);
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(chunkSlots, indexCapacity);
+        }
+    }
+
+    @Override
+    public Contact get(String contactId) {
+        int hash = hash(contactId);
+        Segment s = segmentFor(hash);
+        long stamp = s.lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                Contact c = s.read(contactId, hash);
+                if (s.lock.validate(stamp)) {
+                    return c;
+                }
+            } catch (RuntimeException raced) {
+                // the slot or index changed under the optimistic read; retry under the lock
+            }
+        }
+        stamp = s.lock.readLock();
+        try {
+            return s.read(contactId, hash);
+        } finally {
+            s.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public Contact computeIfAbsent(String contactId, Function<String, Contact> factory) {
+        int hash = hash(contactId);
+        Segment s = segmentFor(hash);
+        long stamp = s.lock.writeLock();
+        try {
+            int position = s.find(contactId, hash);
+            if (position >= 0) {
+                return s.decode(s.slotAt(position));
+            }
+            Contact created = factory.apply(contactId);
+            if (created != null) {
+                s.insert(hash, requireKey(contactId, created));
+            }
+            return created;
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Contact computeIfPresent(String contactId, BiFunction<String, Contact, Contact> remap) {
+        int hash = hash(contactId);
+        Segment s = segmentFor(hash);
+        long stamp = s.lock.writeLock();
+        try {
+            int position = s.find(contactId, hash);
+            if (position < 0) {
+                return null;
+            }
+            int slot = s.slotAt(position);
+            Contact current = s.decode(slot);
+            Contact next = remap.apply(contactId, current);
+            if (next == null) {
+                s.delete(position);
+            } else if (next != current) {
+                s.write(slot, requireKey(contactId, next));
+            }
+            return next;
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Contact put(String contactId, Contact contact) {
+        String id = requireKey(contactId, contact).getContactId();
+        int hash = hash(id);
+        Segment s = segmentFor(hash);
+        long stamp = s.lock.writeLock();
+        try {
+            int position = s.find(id, hash);
+            if (position < 0) {
+                s.insert(hash, contact);
+                return null;
+            }
+            int slot = s.slotAt(position);
+            Contact previous = s.decode(slot);
+            s.write(slot, contact);
+            return previous;
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Contact remove(String contactId) {
+        int hash = hash(contactId);
+        Segment s = segmentFor(hash);
+        long stamp = s.lock.writeLock();
+        try {
+            int position = s.find(contactId, hash);
+            if (position < 0) {
+                return null;
+            }
+            Contact removed = s.decode(s.slotAt(position));
+            s.delete(position);
+            return removed;
+        } finally {
+            s.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        long total = 0;
+        for (Segment s : segments) {
+            total += s.size;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total);
+    }
+
+    @Override
+    public Map<String, Contact> asMap() {
+        return view;
+    }
+
+    /**
+     * Splits by segments, then by slot ranges within one segment, so a parallel stream gets
+     * balanced parts without first counting records. Each record is decoded under its
+     * segment's read lock and handed to the stream after the lock is released.
+     */
+    @Override
+    public Spliterator<Contact> spliterator() {
+        return new SlotSpliterator(0, segments.length, 0, -1, size());
+    }
+
+    /** A new flyweight for allocation-free reads; not thread-safe, use one per thread. */
+    public View newView() {
+        return new View();
+    }
+
+    /**
+     * Calls action once for every stored record, reusing one View. Each record is copied
+     * consistently; records changed during the scan may be seen in either state.
+     */
+    public void forEach(Consumer<View> action) {
+        View v = new View();
+        for (Segment s : segments) {
+            for (int slot = 0; slot < s.highWaterMark(); slot++) {
+                if (v.load(s, slot)) {
+                    action.accept(v);
+                }
+            }
+        }
+    }
+
+    /** Direct memory reserved by this store (record chunks plus index tables), in bytes. */
+    public long reservedBytes() {
+        long total = 0;
+        for (Segment s : segments) {
+            long stamp = s.lock.readLock();
+            try {
+                total += (long) s.chunks.length * s.chunkSlots * RECORD_WIDTH + s.table.capacity();
+            } finally {
+                s.lock.unlockRead(stamp);
+            }
+        }
+        return total;
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments.length == 1 ? segments[0] : segments[hash >>> segmentShift];
+    }
+
+    private static Contact requireKey(String contactId, Contact contact) {
+        if (!contact.getContactId().equals(contactId)) {
+            throw new IllegalArgumentException("contact " + contact.getContactId() + " stored under key " + contactId);
+        }
+        return contact;
+    }
+
+    /** murmur3 finalizer: the segment uses the high bits, the index the low bits. */
+    private static int hash(String contactId) {
+        int h = contactId.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    private static int textWidth(int maxChars) {
+        return 1 + 2 * maxChars;
+    }
+
+    private static void requirePowerOfTwo(int value, String name) {
+        if (value <= 0 || Integer.bitCount(value) != 1) {
+            throw new IllegalArgumentException(name + " must be a power of two: " + value);
+        }
+    }
+
+    /** One lock, its record chunks and its slice of the ID index. */
+    private final class Segment {
+
+        final StampedLock lock = new StampedLock();
+        final int chunkSlots;
+
+        // written under the write lock; read under a read lock or an optimistic read
+        ByteBuffer[] chunks = new ByteBuffer[0];
+        ByteBuffer table;
+        int mask;
+        int used;                      // slots handed out so far (high-water mark)
+        int[] free = new int[16];
+        int freeCount;
+        volatile int size;
+
+        Segment(int chunkSlots, int indexCapacity) {
+            this.chunkSlots = chunkSlots;
+            this.table = ByteBuffer.allocateDirect(indexCapacity * Long.BYTES);
+            this.mask = indexCapacity - 1;
+        }
+
+        int highWaterMark() {
+            long stamp = lock.readLock();
+            try {
+                return used;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        Contact read(String contactId, int hash) {
+            int position = find(contactId, hash);
+            return position < 0 ? null : decode(slotAt(position));
+        }
+
+        /** Index position holding contactId, or -1. */
+        int find(String contactId, int hash) {
+            ByteBuffer t = table;
+            int m = mask;
+            for (int i = hash & m, probes = 0; probes <= m; i = (i + 1) & m, probes++) {
+                long entry = t.getLong(i * Long.BYTES);
+                if (entry == 0) {
+                    return -1;
+                }
+                if ((int) (entry >>> 32) == hash && idEquals((int) entry - 1, contactId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int slotAt(int position) {
+            return (int) table.getLong(position * Long.BYTES) - 1;
+        }
+
+        void insert(int hash, Contact contact) {
+            if (size + 1 > (mask + 1) - ((mask + 1) >>> 2)) {
+                growIndex();
+            }
+            int slot = allocateSlot();
+            write(slot, contact);
+            place(table, mask, hash, slot);
+            size++;
+        }
+
+        /** Removes the entry at position, shifting later entries of its probe run back. */
+        void delete(int position) {
+            int slot = slotAt(position);
+            chunk(slot).putLong(cell(VERSION, slot), 0);
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount * 2);
+            }
+            free[freeCount++] = slot;
+
+            ByteBuffer t = table;
+            int m = mask;
+            int hole = position;
+            for (int j = (hole + 1) & m; ; j = (j + 1) & m) {
+                long entry = t.getLong(j * Long.BYTES);
+                if (entry == 0) {
+                    break;
+                }
+                int home = (int) (entry >>> 32) & m;
+                if (((j - home) & m) >= ((j - hole) & m)) {
+                    t.putLong(hole * Long.BYTES, entry);
+                    hole = j;
+                }
+            }
+            t.putLong(hole * Long.BYTES, 0);
+            size--;
+        }
+
+        void write(int slot, Contact c) {
+            ByteBuffer chunk = chunk(slot);
+            putText(chunk, cell(ID, slot), c.getContactId());
+            putText(chunk, cell(FIRST_NAME, slot), c.getFirstName());
+            putText(chunk, cell(LAST_NAME, slot), c.getLastName());
+            chunk.putLong(cell(PHONE, slot), c.getPhoneNumber());
+            putText(chunk, cell(ADDRESS, slot), c.getAddress());
+            chunk.putLong(cell(VERSION, slot), c.getVersion());
+        }
+
+        Contact decode(int slot) {
+            ByteBuffer chunk = chunk(slot);
+            return Contact.trusted(
+                    getText(chunk, cell(ID, slot)),
+                    getText(chunk, cell(FIRST_NAME, slot)),
+                    getText(chunk, cell(LAST_NAME, slot)),
+                    chunk.getLong(cell(PHONE, slot)),
+                    getText(chunk, cell(ADDRESS, slot)),
+                    chunk.getLong(cell(VERSION, slot)));
+        }
+
+        ByteBuffer chunk(int slot) {
+            return chunks[slot >>> chunkShift];
+        }
+
+        /** Byte offset of column's cell for slot inside its chunk. */
+        int cell(int column, int slot) {
+            return chunkSlots * RECORD_OFFSETS[column] + (slot & (chunkSlots - 1)) * WIDTHS[column];
+        }
+
+        private boolean idEquals(int slot, String contactId) {
+            ByteBuffer chunk = chunk(slot);
+            int offset = cell(ID, slot);
+            int length = chunk.get(offset);
+            if (length != contactId.length()) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (chunk.getChar(offset + 1 + 2 * i) != contactId.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int allocateSlot() {
+            if (freeCount > 0) {
+                return free[--freeCount];
+            }
+            if (used == chunks.length * chunkSlots) {
+                ByteBuffer[] grown = Arrays.copyOf(chunks, chunks.length + 1);
+                grown[chunks.length] = ByteBuffer.allocateDirect(chunkSlots * RECORD_WIDTH);
+                chunks = grown;
+            }
+            return used++;
+        }
+
+        private void growIndex() {
+            int capacity = (mask + 1) * 2;
+            ByteBuffer grown = ByteBuffer.allocateDirect(capacity * Long.BYTES);
+            for (int i = 0; i <= mask; i++) {
+                long entry = table.getLong(i * Long.BYTES);
+                if (entry != 0) {
+                    place(grown, capacity - 1, (int) (entry >>> 32), (int) entry - 1);
+                }
+            }
+            table = grown;
+            mask = capacity - 1;
+        }
+
+        private void place(ByteBuffer t, int m, int hash, int slot) {
+            int i = hash & m;
+            while (t.getLong(i * Long.BYTES) != 0) {
+                i = (i + 1) & m;
+            }
+            t.putLong(i * Long.BYTES, (long) hash << 32 | (slot + 1));
+        }
+    }
+
+    private static void putText(ByteBuffer chunk, int offset, String value) {
+        chunk.put(offset, (byte) value.length());
+        for (int i = 0; i < value.length(); i++) {
+            chunk.putChar(offset + 1 + 2 * i, value.charAt(i));
+        }
+    }
+
+    private static String getText(ByteBuffer chunk, int offset) {
+        char[] chars = new char[chunk.get(offset)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = chunk.getChar(offset + 1 + 2 * i);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Reusable flyweight over one record. moveTo copies the record into the view (a
+     * consistent copy, even while writers run), so reading its fields allocates nothing and
+     * is not affected by later writes. The CharSequences returned by the getters are reused
+     * too and show the view's current record; call toString() to keep a value.
+     */
+    public final class View {
+
+        private final ByteBuffer record = ByteBuffer.allocate(RECORD_WIDTH);
+        private final Text id = new Text(ID);
+        private final Text firstName = new Text(FIRST_NAME);
+        private final Text lastName = new Text(LAST_NAME);
+        private final Text address = new Text(ADDRESS);
+        private boolean positioned;
+
+        private View() { }
+
+        /** Positions the view on contactId; false (and no current record) if it is absent. */
+        public boolean moveTo(String contactId) {
+            int hash = hash(contactId);
+            Segment s = segmentFor(hash);
+            long stamp = s.lock.tryOptimisticRead();
+            if (stamp != 0) {
+                try {
+                    int position = s.find(contactId, hash);
+                    if (position >= 0) {
+                        copy(s, s.slotAt(position));
+                    }
+                    if (s.lock.validate(stamp)) {
+                        positioned = position >= 0;
+                        return positioned;
+                    }
+                } catch (RuntimeException raced) {
+                    // retry under the lock
+                }
+            }
+            stamp = s.lock.readLock();
+            try {
+                int position = s.find(contactId, hash);
+                if (position >= 0) {
+                    copy(s, s.slotAt(position));
+                }
+                positioned = position >= 0;
+                return positioned;
+            } finally {
+                s.lock.unlockRead(stamp);
+            }
+        }
+
+        public long getVersion() {
+            requirePositioned();
+            return record.getLong(RECORD_OFFSETS[VERSION]);
+        }
+
+        public CharSequence getContactId() { return requirePositioned(id); }
+        public CharSequence getFirstName() { return requirePositioned(firstName); }
+        public CharSequence getLastName() { return requirePositioned(lastName); }
+        public CharSequence getAddress() { return requirePositioned(address); }
+
+        public long getPhoneNumber() {
+            requirePositioned();
+            return record.getLong(RECORD_OFFSETS[PHONE]);
+        }
+
+        /** Materializes the current record as a Contact. */
+        public Contact toContact() {
+            requirePositioned();
+            return Contact.trusted(id.toString(), firstName.toString(), lastName.toString(),
+                    getPhoneNumber(), address.toString(), getVersion());
+        }
+
+        /** Copies slot into the view if it holds a record; used by forEach. */
+        boolean load(Segment s, int slot) {
+            long stamp = s.lock.readLock();
+            try {
+                positioned = s.chunk(slot).getLong(s.cell(VERSION, slot)) != 0;
+                if (positioned) {
+                    copy(s, slot);
+                }
+                return positioned;
+            } finally {
+                s.lock.unlockRead(stamp);
+            }
+        }
+
+        private void copy(Segment s, int slot) {
+            ByteBuffer chunk = s.chunk(slot);
+            for (int c = 0; c < WIDTHS.length; c++) {
+                record.put(RECORD_OFFSETS[c], chunk, s.cell(c, slot), WIDTHS[c]);
+            }
+        }
+
+        private Text requirePositioned(Text text) {
+            requirePositioned();
+            return text;
+        }
+
+        private void requirePositioned() {
+            if (!positioned) {
+                throw new IllegalStateException("view is not positioned on a record");
+            }
+        }
+
+        /** One text cell of the view's record. */
+        private final class Text implements CharSequence {
+
+            private final int offset;
+
+            Text(int column) {
+                this.offset = RECORD_OFFSETS[column];
+            }
+
+            @Override
+            public int length() {
+                return record.get(offset);
+            }
+
+            @Override
+            public char charAt(int index) {
+                if (index < 0 || index >= length()) {
+                    throw new IndexOutOfBoundsException("index " + index + ", length " + length());
+                }
+                return record.getChar(offset + 1 + 2 * index);
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                return toString().substring(start, end);
+            }
+
+            @Override
+            public String toString() {
+                return getText(record, offset);
+            }
+        }
+    }
+
+    /** Read-only Map over the store; iteration decodes each record as it goes. */
+    private final class MapView extends AbstractMap<String, Contact> {
+
+        @Override
+        public Contact get(Object key) {
+            return key instanceof String ? OffHeapContactStore.this.get((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return OffHeapContactStore.this.size();
+        }
+
+        @Override
+        public Set<Entry<String, Contact>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Contact>> iterator() {
+                    return new RecordIterator();
+                }
+
+                @Override
+                public int size() {
+                    return OffHeapContactStore.this.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * Weakly consistent walk over the slots of segments [segment, segmentEnd). slotEnd bounds
+     * the current segment's slots once a split fixed it; otherwise the walk runs to the
+     * segment's high-water mark as it is when reached.
+     */
+    private final class SlotSpliterator implements Spliterator<Contact> {
+
+        private static final int MIN_SPLIT_SLOTS = 1024;
+
+        private int segment;
+        private final int segmentEnd;
+        private int slot;
+        private int slotEnd;
+        private long estimate;
+
+        SlotSpliterator(int segment, int segmentEnd, int slot, int slotEnd, long estimate) {
+            this.segment = segment;
+            this.segmentEnd = segmentEnd;
+            this.slot = slot;
+            this.slotEnd = slotEnd;
+            this.estimate = estimate;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super Contact> action) {
+            while (segment < segmentEnd) {
+                Segment s = segments[segment];
+                Contact found = null;
+                long stamp = s.lock.readLock();
+                try {
+                    int end = slotEnd < 0 ? s.used : slotEnd;
+                    while (slot < end && found == null) {
+                        int current = slot++;
+                        if (s.chunk(current).getLong(s.cell(VERSION, current)) != 0) {
+                            found = s.decode(current);
+                        }
+                    }
+                } finally {
+                    s.lock.unlockRead(stamp);
+                }
+                if (found != null) {
+                    action.accept(found);
+                    return true;
+                }
+                segment++;
+                slot = 0;
+                slotEnd = -1;
+            }
+            return false;
+        }
+
+        @Override
+        public Spliterator<Contact> trySplit() {
+            SlotSpliterator prefix;
+            if (segmentEnd - segment > 1) {
+                // the prefix takes the lower segments, including the one in progress
+                int mid = (segment + segmentEnd) >>> 1;
+                prefix = new SlotSpliterator(segment, mid, slot, slotEnd, estimate >>> 1);
+                segment = mid;
+                slot = 0;
+                slotEnd = -1;
+            } else if (segment < segmentEnd) {
+                if (slotEnd < 0) {
+                    slotEnd = segments[segment].highWaterMark();
+                }
+                if (slotEnd - slot < 2 * MIN_SPLIT_SLOTS) {
+                    return null;
+                }
+                int mid = (slot + slotEnd) >>> 1;
+                prefix = new SlotSpliterator(segment, segment + 1, slot, mid, estimate >>> 1);
+                slot = mid;
+            } else {
+                return null;
+            }
+            estimate -= prefix.estimate;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return CONCURRENT | NONNULL;
+        }
+    }
+
+    /** Weakly consistent walk over all segments' slots. */
+    private final class RecordIterator implements Iterator<Map.Entry<String, Contact>> {
+
+        private int segment;
+        private int slot;
+        private Contact next;
+
+        RecordIterator() {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, Contact> next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            Contact c = next;
+            advance();
+            return new AbstractMap.SimpleImmutableEntry<>(c.getContactId(), c);
+        }
+
+        private void advance() {
+            next = null;
+            while (segment < segments.length) {
+                Segment s = segments[segment];
+                long stamp = s.lock.readLock();
+                try {
+                    while (slot < s.used) {
+                        int current = slot++;
+                        if (s.chunk(current).getLong(s.cell(VERSION, current)) != 0) {
+                            next = s.decode(current);
+                            return;
+                        }
+                    }
+                } finally {
+                    s.lock.unlockRead(stamp);
+                }
+                segment++;
+                slot = 0;
+            }
+        }
+    }
+}
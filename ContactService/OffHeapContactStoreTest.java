@@ -0,0 +1,238 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OffHeapContactStoreTest {
+
+    // tiny sizes so chunk allocation, index growth and probe runs are exercised
+    private final OffHeapContactStore store = new OffHeapContactStore(2, 4, 4);
+
+    private static Contact contact(String id) {
+        return new Contact(id, "First" + id.length(), "Last", "1234567890", "Address of " + id);
+    }
+
+    @Test
+    void testPutAndGetShouldRoundTripAllFields() {
+        Contact c = new Contact("1234567890", "Zoe", "O'Brien", "0987654321", "A 30 character address line..");
+        assertNull(store.put(c));
+
+        Contact read = store.get("1234567890");
+
+        assertNotSame(c, read);
+        assertEquals(c, read);
+        assertEquals("O'Brien", read.getLastName());
+        assertEquals("A 30 character address line..", read.getAddress());
+        assertEquals(Contact.INITIAL_VERSION, read.getVersion());
+        assertNull(store.get("missing"));
+    }
+
+    @Test
+    void testNonAsciiTextShouldRoundTrip() {
+        Contact c = new Contact("\u00e9\u4e2d", "J\u00fcrgen", "\u00d8ster", "1234567890", "\u6771\u4eac");
+        store.put(c);
+
+        assertEquals(c, store.get("\u00e9\u4e2d"));
+    }
+
+    @Test
+    void testRandomOperationsShouldMatchHashMap() {
+        Map<String, Contact> model = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            String id = "id" + random.nextInt(500);
+            switch (random.nextInt(4)) {
+                case 0:
+                    Contact c = model.containsKey(id) ? model.get(id).withFirstName("N" + i % 1000) : contact(id);
+                    assertEquals(model.put(id, c), store.put(c));
+                    break;
+                case 1:
+                    assertEquals(model.remove(id), store.remove(id));
+                    break;
+                case 2:
+                    Contact created = contact(id);
+                    Contact expected = model.computeIfAbsent(id, k -> created);
+                    assertEquals(expected, store.computeIfAbsent(id, k -> created));
+                    break;
+                default:
+                    assertEquals(model.get(id), store.get(id));
+            }
+            assertEquals(model.size(), store.size());
+        }
+        assertEquals(model, new HashMap<>(store.asMap()));
+    }
+
+    @Test
+    void testRemovedSlotsShouldBeReused() {
+        for (int i = 0; i < 100; i++) {
+            store.put(contact("c" + i));
+        }
+        long reserved = store.reservedBytes();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 100; i++) {
+                store.remove("c" + i);
+            }
+            for (int i = 0; i < 100; i++) {
+                store.put(contact("c" + i));
+            }
+        }
+
+        assertEquals(100, store.size());
+        assertEquals(reserved, store.reservedBytes());
+    }
+
+    @Test
+    void testComputeIfPresentShouldReplaceOrRemove() {
+        store.put(contact("1"));
+
+        Contact updated = store.computeIfPresent("1", (id, c) -> c.withLastName("Other"));
+        assertEquals("Other", store.get("1").getLastName());
+        assertEquals(updated, store.get("1"));
+
+        assertNull(store.computeIfPresent("1", (id, c) -> null));
+        assertNull(store.get("1"));
+        assertNull(store.computeIfPresent("1", (id, c) -> fail("absent IDs must not be remapped")));
+    }
+
+    @Test
+    void testComputeIfAbsentShouldNotCallFactoryForPresentId() {
+        store.put(contact("1"));
+
+        Contact existing = store.computeIfAbsent("1", id -> fail("factory must not run"));
+
+        assertEquals(contact("1"), existing);
+    }
+
+    @Test
+    void testContactStoredUnderOtherKeyShouldBeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> store.computeIfAbsent("1", id -> contact("2")));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void testViewShouldReadFieldsWithoutMaterializing() {
+        store.put(new Contact("1", "John", "Lennon", "1234567890", "Address"));
+        OffHeapContactStore.View view = store.newView();
+
+        assertFalse(view.moveTo("2"));
+        assertThrows(IllegalStateException.class, view::getFirstName);
+        assertTrue(view.moveTo("1"));
+
+        CharSequence first = view.getFirstName();
+        assertEquals(4, first.length());
+        assertEquals('J', first.charAt(0));
+        assertEquals("John", first.toString());
+        assertEquals("ohn", first.subSequence(1, 4).toString());
+        assertEquals("Lennon", view.getLastName().toString());
+        assertEquals(Contact.INITIAL_VERSION, view.getVersion());
+        assertEquals(store.get("1"), view.toContact());
+        assertThrows(IndexOutOfBoundsException.class, () -> first.charAt(4));
+
+        // the view holds a copy: a later write does not change it until the next moveTo
+        store.put(store.get("1").withFirstName("Julian"));
+        assertEquals("John", view.getFirstName().toString());
+        assertTrue(view.moveTo("1"));
+        assertEquals("Julian", view.getFirstName().toString());
+    }
+
+    @Test
+    void testForEachShouldVisitEveryRecordOnce() {
+        for (int i = 0; i < 50; i++) {
+            store.put(contact("c" + i));
+        }
+        store.remove("c7");
+        List<String> seen = new ArrayList<>();
+
+        store.forEach(v -> seen.add(v.getContactId().toString()));
+
+        assertEquals(49, seen.size());
+        assertFalse(seen.contains("c7"));
+    }
+
+    @Test
+    void testConcurrentComputesShouldRunExactlyOncePerId() throws Exception {
+        OffHeapContactStore shared = new OffHeapContactStore();
+        AtomicInteger factoryCalls = new AtomicInteger();
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        String id = "c" + i;
+                        shared.computeIfAbsent(id, k -> {
+                            factoryCalls.incrementAndGet();
+                            return contact(k);
+                        });
+                        shared.computeIfPresent(id, (k, c) -> c.withPhone("0987654321"));
+                        assertNotNull(shared.get(id));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(2000, factoryCalls.get());
+        assertEquals(2000, shared.size());
+        assertEquals(Contact.INITIAL_VERSION + threads, shared.get("c0").getVersion());
+    }
+
+    @Test
+    void testSizesMustBePowersOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapContactStore(3, 4, 4));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapContactStore(2, 0, 4));
+    }
+
+    @Test
+    void testSpliteratorShouldSplitAndCoverEveryRecordOnce() {
+        OffHeapContactStore large = new OffHeapContactStore(4, 1024, 1024);
+        for (int i = 0; i < 20_000; i++) {
+            large.put(contact("c" + i));
+        }
+        for (int i = 0; i < 20_000; i += 3) {
+            large.remove("c" + i);
+        }
+
+        List<Spliterator<Contact>> parts = new ArrayList<>(List.of(large.spliterator()));
+        for (int round = 0; round < 4; round++) {
+            List<Spliterator<Contact>> next = new ArrayList<>();
+            for (Spliterator<Contact> part : parts) {
+                Spliterator<Contact> prefix = part.trySplit();
+                if (prefix != null) {
+                    next.add(prefix);
+                }
+                next.add(part);
+            }
+            parts = next;
+        }
+        assertTrue(parts.size() >= 8, "split into " + parts.size() + " parts");
+
+        Set<String> seen = new HashSet<>();
+        for (Spliterator<Contact> part : parts) {
+            part.forEachRemaining(c -> assertTrue(seen.add(c.getContactId()), "seen twice: " + c.getContactId()));
+        }
+        assertEquals(large.size(), seen.size());
+        assertFalse(seen.contains("c0"));
+        assertEquals(large.size(), StreamSupport.stream(large.spliterator(), true).count());
+    }
+}
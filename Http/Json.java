@@ -0,0 +1,278 @@
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The JSON that ServiceHttpServer speaks: one flat object per request and response, whose
+ * values are strings, integers, booleans or null. That covers every field of the three
+ * models, so the server needs no JSON library; anything else (nested objects, arrays,
+ * fractions) is rejected with ParseException.
+ *
+ * parseObject is public so the wire-format benchmarks can use it as their JSON baseline.
+ */
+public final class Json {
+
+    private Json() {
+    }
+
+    /** Parses a flat object into its fields in document order (String, Long, Boolean or null values). */
+    public static Map<String, Object> parseObject(String text) {
+        Parser parser = new Parser(text);
+        Map<String, Object> fields = parser.object();
+        parser.skipWhitespace();
+        if (parser.pos != text.length()) {
+            throw parser.error("unexpected content after the object");
+        }
+        return fields;
+    }
+
+    /** The string field name, or null if it is absent or null. */
+    static String string(Map<String, Object> fields, String name) {
+        Object value = fields.get(name);
+        if (value != null && !(value instanceof String)) {
+            throw new ParseException(name + " must be a string");
+        }
+        return (String) value;
+    }
+
+    /** The string field name; absent or null is an error. */
+    static String requiredString(Map<String, Object> fields, String name) {
+        String value = string(fields, name);
+        if (value == null) {
+            throw new ParseException(name + " is required");
+        }
+        return value;
+    }
+
+    /** The integer field name, or null if it is absent or null. */
+    static Long number(Map<String, Object> fields, String name) {
+        Object value = fields.get(name);
+        if (value != null && !(value instanceof Long)) {
+            throw new ParseException(name + " must be an integer");
+        }
+        return (Long) value;
+    }
+
+    static long requiredNumber(Map<String, Object> fields, String name) {
+        Long value = number(fields, name);
+        if (value == null) {
+            throw new ParseException(name + " is required");
+        }
+        return value;
+    }
+
+    /** Builds one flat object; fields are written in the order they are added. */
+    static final class ObjectWriter {
+
+        private final StringBuilder out = new StringBuilder(128).append('{');
+
+        ObjectWriter field(String name, String value) {
+            name(name);
+            if (value == null) {
+                out.append("null");
+            } else {
+                quote(value);
+            }
+            return this;
+        }
+
+        ObjectWriter field(String name, long value) {
+            name(name);
+            out.append(value);
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return out + "}";
+        }
+
+        private void name(String name) {
+            if (out.length() > 1) {
+                out.append(',');
+            }
+            quote(name);
+            out.append(':');
+        }
+
+        private void quote(String s) {
+            out.append('"');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '"' -> out.append("\\\"");
+                    case '\\' -> out.append("\\\\");
+                    case '\n' -> out.append("\\n");
+                    case '\r' -> out.append("\\r");
+                    case '\t' -> out.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            out.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            out.append(c);
+                        }
+                    }
+                }
+            }
+            out.append('"');
+        }
+    }
+
+    private static final class Parser {
+
+        private final String text;
+        private int pos;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Map<String, Object> object() {
+            skipWhitespace();
+            expect('{');
+            Map<String, Object> fields = new LinkedHashMap<>();
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return fields;
+            }
+            while (true) {
+                skipWhitespace();
+                String name = string();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                if (fields.put(name, value()) != null) {
+                    throw error("duplicate field " + name);
+                }
+                skipWhitespace();
+                char c = next();
+                if (c == '}') {
+                    return fields;
+                }
+                if (c != ',') {
+                    throw error("expected ',' or '}'");
+                }
+            }
+        }
+
+        private Object value() {
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            if (c == '-' || (c >= '0' && c <= '9')) {
+                return number();
+            }
+            if (text.startsWith("true", pos)) {
+                pos += 4;
+                return Boolean.TRUE;
+            }
+            if (text.startsWith("false", pos)) {
+                pos += 5;
+                return Boolean.FALSE;
+            }
+            if (text.startsWith("null", pos)) {
+                pos += 4;
+                return null;
+            }
+            throw error(c == '{' || c == '[' ? "nested values are not supported" : "unexpected character");
+        }
+
+        private Long number() {
+            int start = pos;
+            if (peek() == '-') {
+                pos++;
+            }
+            while (pos < text.length() && text.charAt(pos) >= '0' && text.charAt(pos) <= '9') {
+                pos++;
+            }
+            if (pos < text.length() && ".eE".indexOf(text.charAt(pos)) >= 0) {
+                throw error("numbers must be integers");
+            }
+            try {
+                return Long.parseLong(text, start, pos, 10);
+            } catch (NumberFormatException e) {
+                throw error("invalid number");
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder s = null; // only built when the string has escapes
+            int start = pos;
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return s == null ? text.substring(start, pos - 1) : s.toString();
+                }
+                if (c < 0x20) {
+                    throw error("control character in string");
+                }
+                if (c != '\\') {
+                    if (s != null) {
+                        s.append(c);
+                    }
+                    continue;
+                }
+                if (s == null) {
+                    s = new StringBuilder(text.length() - start).append(text, start, pos - 1);
+                }
+                char e = next();
+                switch (e) {
+                    case '"', '\\', '/' -> s.append(e);
+                    case 'b' -> s.append('\b');
+                    case 'f' -> s.append('\f');
+                    case 'n' -> s.append('\n');
+                    case 'r' -> s.append('\r');
+                    case 't' -> s.append('\t');
+                    case 'u' -> {
+                        if (pos + 4 > text.length()) {
+                            throw error("truncated escape");
+                        }
+                        try {
+                            s.append((char) Integer.parseInt(text, pos, pos + 4, 16));
+                        } catch (NumberFormatException ex) {
+                            throw error("invalid escape");
+                        }
+                        pos += 4;
+                    }
+                    default -> throw error("invalid escape");
+                }
+            }
+        }
+
+        void skipWhitespace() {
+            while (pos < text.length() && " \t\r\n".indexOf(text.charAt(pos)) >= 0) {
+                pos++;
+            }
+        }
+
+        private char peek() {
+            if (pos >= text.length()) {
+                throw error("unexpected end of input");
+            }
+            return text.charAt(pos);
+        }
+
+        private char next() {
+            char c = peek();
+            pos++;
+            return c;
+        }
+
+        private void expect(char c) {
+            if (next() != c) {
+                throw error("expected '" + c + "'");
+            }
+        }
+
+        ParseException error(String message) {
+            return new ParseException(message + " at offset " + pos);
+        }
+    }
+
+    /** Malformed or unsupported JSON, or a missing or mistyped field. */
+    static class ParseException extends RuntimeException {
+        ParseException(String message) { super(message, null, false, false); }
+    }
+}
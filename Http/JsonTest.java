@@ -0,0 +1,59 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonTest {
+
+    @Test
+    void testParseObjectShouldReadFlatValues() {
+        Map<String, Object> fields = Json.parseObject(" { \"a\" : \"x\\\"y\\u0041\", \"b\": -12, \"c\": true, \"d\": null } ");
+
+        Map<String, Object> expected = new LinkedHashMap<>();
+        expected.put("a", "x\"yA");
+        expected.put("b", -12L);
+        expected.put("c", true);
+        expected.put("d", null);
+        assertEquals(expected, fields);
+        assertEquals(Map.of(), Json.parseObject("{}"));
+    }
+
+    @Test
+    void testParseObjectShouldRejectWhatTheServerDoesNotSpeak() {
+        for (String bad : Arrays.asList("", "[]", "{\"a\": {}}", "{\"a\": [1]}", "{\"a\": 1.5}", "{\"a\": 1e3}",
+                "{\"a\": 1} x", "{\"a\": 1, \"a\": 2}", "{\"a\": \"open", "{a: 1}", "{\"a\": 99999999999999999999}")) {
+            assertThrows(Json.ParseException.class, () -> Json.parseObject(bad), bad);
+        }
+    }
+
+    @Test
+    void testFieldAccessorsShouldCheckTypes() {
+        Map<String, Object> fields = Json.parseObject("{\"s\": \"x\", \"n\": 5, \"z\": null}");
+
+        assertEquals("x", Json.requiredString(fields, "s"));
+        assertEquals(5L, Json.requiredNumber(fields, "n"));
+        assertNull(Json.string(fields, "z"));
+        assertNull(Json.number(fields, "missing"));
+        assertThrows(Json.ParseException.class, () -> Json.string(fields, "n"));
+        assertThrows(Json.ParseException.class, () -> Json.number(fields, "s"));
+        assertThrows(Json.ParseException.class, () -> Json.requiredString(fields, "z"));
+    }
+
+    @Test
+    void testObjectWriterShouldEscapeAndRoundTrip() {
+        String json = new Json.ObjectWriter()
+                .field("text", "quote \" backslash \\ newline \n bell \u0007")
+                .field("number", Long.MIN_VALUE)
+                .field("none", null)
+                .toString();
+
+        assertEquals("{\"text\":\"quote \\\" backslash \\\\ newline \\n bell \\u0007\",\"number\":" + Long.MIN_VALUE
+                + ",\"none\":null}", json);
+        Map<String, Object> back = Json.parseObject(json);
+        assertEquals("quote \" backslash \\ newline \n bell \u0007", back.get("text"));
+        assertEquals(Long.MIN_VALUE, back.get("number"));
+    }
+}
@@ -0,0 +1,404 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded HTTP/JSON front end for the three services, on the JDK's built-in HttpServer.
+ *
+ *   POST   /contacts          add; the body is the contact           201, 400, 409
+ *   GET    /contacts/{id}                                            200, 404
+ *   PUT    /contacts/{id}     update firstName, lastName, phone and
+ *                             address, only at "version" if given    204, 400, 404, 409
+ *   DELETE /contacts/{id}                                            204, 404
+ *
+ * and the same for /tasks (PUT takes name and description, plus priority and dueTime
+ * together) and /appointments (no PUT: appointments cannot be updated). Bodies are flat
+ * JSON objects with the models' getter names as fields; errors come back as
+ * {"error": message}.
+ *
+ * Each request runs on its own virtual thread when the runtime has them (Java 21 and
+ * later), so a request waiting for a journal sync holds no platform thread. On older
+ * runtimes requests share a fixed pool of platform threads instead. Not found, duplicate
+ * and conflict outcomes map straight to status codes; the services throw those exceptions
+ * without stack traces, so a 404 or 409 costs about as much as a 200.
+ */
+public final class ServiceHttpServer implements AutoCloseable {
+
+    /** Pending connections the listening socket queues; enough for bursts of thousands of clients. */
+    static final int BACKLOG = 4096;
+    static final int MAX_BODY_BYTES = 64 * 1024;
+    static final int FALLBACK_THREADS = 64; // per server, when virtual threads are unavailable
+
+    /** Keep-alive connections the JDK server keeps open between requests; its default is 200. */
+    static final int MAX_IDLE_CONNECTIONS = 20_000;
+
+    private static final System.Logger LOG = System.getLogger(ServiceHttpServer.class.getName());
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ContactService contacts;
+    private final TaskService tasks;
+    private final AppointmentService appointments;
+
+    /**
+     * A server on address (port 0 picks a free port) for the given services; a null service
+     * gets no endpoints. Call start() to accept requests.
+     */
+    public ServiceHttpServer(InetSocketAddress address, ContactService contacts, TaskService tasks,
+                             AppointmentService appointments) throws IOException {
+        this.contacts = contacts;
+        this.tasks = tasks;
+        this.appointments = appointments;
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = newRequestExecutor();
+        server.setExecutor(executor);
+        if (contacts != null) {
+            server.createContext("/contacts", exchange -> handle(exchange, "/contacts", this::contacts));
+        }
+        if (tasks != null) {
+            server.createContext("/tasks", exchange -> handle(exchange, "/tasks", this::tasks));
+        }
+        if (appointments != null) {
+            server.createContext("/appointments", exchange -> handle(exchange, "/appointments", this::appointments));
+        }
+    }
+
+    /**
+     * Opt-in tuning of the JDK server, for applications that own their JVM: turns on
+     * TCP_NODELAY and raises maxIdleConnections to MAX_IDLE_CONNECTIONS through the
+     * sun.net.httpserver system properties, leaving any value already set alone.
+     *
+     * The properties are JVM-global and read once, when the first HttpServer in the JVM is
+     * created, so call this before that. The JDK server writes a response's headers and body
+     * separately, so with Nagle's algorithm on the body waits for the client's delayed ACK,
+     * about 40 ms per response. Past maxIdleConnections it closes every connection after its
+     * response, and clients that reuse one see it reset.
+     */
+    public static void tuneJdkServer() {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        if (System.getProperty("sun.net.httpserver.maxIdleConnections") == null) {
+            System.setProperty("sun.net.httpserver.maxIdleConnections", Integer.toString(MAX_IDLE_CONNECTIONS));
+        }
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /** The port the server listens on. */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /** Stops accepting requests, lets requests in progress finish for up to a second and shuts down. */
+    @Override
+    public void close() {
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // -------- Resources --------
+
+    private Response contacts(String method, String id, Map<String, Object> body) {
+        if (id == null) {
+            requireMethod(method, "POST");
+            Contact c = new Contact(Json.requiredString(body, "contactId"), Json.requiredString(body, "firstName"),
+                    Json.requiredString(body, "lastName"), Json.requiredString(body, "phone"),
+                    Json.requiredString(body, "address"));
+            contacts.addContact(c);
+            return Response.created(toJson(c));
+        }
+        switch (method) {
+            case "GET":
+                Contact c = contacts.getContact(id);
+                return c == null ? Response.notFound("Contact not found: " + id) : Response.ok(toJson(c));
+            case "PUT":
+                String firstName = Json.requiredString(body, "firstName");
+                String lastName = Json.requiredString(body, "lastName");
+                String phone = Json.requiredString(body, "phone");
+                String address = Json.requiredString(body, "address");
+                Long version = Json.number(body, "version");
+                if (version == null) {
+                    contacts.updateContact(id, firstName, lastName, phone, address);
+                } else {
+                    contacts.updateContact(id, version, firstName, lastName, phone, address);
+                }
+                return Response.NO_CONTENT;
+            case "DELETE":
+                contacts.deleteContact(id);
+                return Response.NO_CONTENT;
+            default:
+                throw new MethodNotAllowedException("GET, PUT, DELETE");
+        }
+    }
+
+    private Response tasks(String method, String id, Map<String, Object> body) {
+        if (id == null) {
+            requireMethod(method, "POST");
+            Long priority = Json.number(body, "priority");
+            Long dueTime = Json.number(body, "dueTime");
+            Task t = new Task(Json.requiredString(body, "taskId"), Json.requiredString(body, "name"),
+                    Json.requiredString(body, "description"),
+                    priority == null ? 0 : toInt("priority", priority), dueTime == null ? Task.NO_DUE_TIME : dueTime);
+            tasks.addTask(t);
+            return Response.created(toJson(t));
+        }
+        switch (method) {
+            case "GET":
+                Task t = tasks.getTask(id);
+                return t == null ? Response.notFound("Task not found: " + id) : Response.ok(toJson(t));
+            case "PUT":
+                String name = Json.requiredString(body, "name");
+                String description = Json.requiredString(body, "description");
+                if (body.containsKey("priority") || body.containsKey("dueTime")) {
+                    int priority = toInt("priority", Json.requiredNumber(body, "priority"));
+                    tasks.updateTask(id, name, description, priority, Json.requiredNumber(body, "dueTime"));
+                } else {
+                    tasks.updateTask(id, name, description);
+                }
+                return Response.NO_CONTENT;
+            case "DELETE":
+                tasks.deleteTask(id);
+                return Response.NO_CONTENT;
+            default:
+                throw new MethodNotAllowedException("GET, PUT, DELETE");
+        }
+    }
+
+    private Response appointments(String method, String id, Map<String, Object> body) {
+        if (id == null) {
+            requireMethod(method, "POST");
+            String appointmentId = Json.requiredString(body, "appointmentId");
+            long time = Json.requiredNumber(body, "appointmentTime");
+            String description = Json.requiredString(body, "description");
+            Long duration = Json.number(body, "durationMillis");
+            String owner = Json.string(body, "owner");
+            Appointment a = duration == null && owner == null
+                    ? new Appointment(appointmentId, time, description)
+                    : new Appointment(appointmentId, time, duration == null ? 0 : duration, owner, description);
+            appointments.addAppointment(a);
+            return Response.created(toJson(a));
+        }
+        switch (method) {
+            case "GET":
+                Appointment a = appointments.getAppointment(id);
+                return a == null ? Response.notFound("Appointment not found: " + id) : Response.ok(toJson(a));
+            case "DELETE":
+                appointments.deleteAppointment(id);
+                return Response.NO_CONTENT;
+            default:
+                throw new MethodNotAllowedException("GET, DELETE");
+        }
+    }
+
+    /** The body a GET or POST answers with for c. */
+    public static String toJson(Contact c) {
+        return new Json.ObjectWriter()
+                .field("contactId", c.getContactId())
+                .field("firstName", c.getFirstName())
+                .field("lastName", c.getLastName())
+                .field("phone", c.getPhone())
+                .field("address", c.getAddress())
+                .field("version", c.getVersion())
+                .toString();
+    }
+
+    private static String toJson(Task t) {
+        Json.ObjectWriter json = new Json.ObjectWriter()
+                .field("taskId", t.getTaskId())
+                .field("name", t.getName())
+                .field("description", t.getDescription())
+                .field("priority", t.getPriority());
+        if (t.getDueTime() != Task.NO_DUE_TIME) {
+            json.field("dueTime", t.getDueTime());
+        }
+        return json.field("status", t.getStatus().name()).toString();
+    }
+
+    private static String toJson(Appointment a) {
+        Json.ObjectWriter json = new Json.ObjectWriter()
+                .field("appointmentId", a.getAppointmentId())
+                .field("appointmentTime", a.getAppointmentTime())
+                .field("description", a.getDescription());
+        if (a.getDurationMillis() != 0) { // each booking field on its own, as the wire encoding does
+            json.field("durationMillis", a.getDurationMillis());
+        }
+        if (a.getOwner() != null) {
+            json.field("owner", a.getOwner());
+        }
+        return json.toString();
+    }
+
+    // -------- Plumbing --------
+
+    /** One resource: answers method on id (null for the collection) with the parsed body (empty for none). */
+    private interface Resource {
+        Response handle(String method, String id, Map<String, Object> body);
+    }
+
+    private static void handle(HttpExchange exchange, String prefix, Resource resource) throws IOException {
+        Response response;
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String id = path.length() <= prefix.length() + 1 ? null : path.substring(prefix.length() + 1);
+            if (path.length() > prefix.length() && path.charAt(prefix.length()) != '/') {
+                response = Response.notFound("No such resource: " + path);
+            } else {
+                String method = exchange.getRequestMethod();
+                response = resource.handle(method, id, readBody(exchange, method));
+            }
+        } catch (RuntimeException e) {
+            response = Response.error(e);
+        }
+        send(exchange, response);
+    }
+
+    private static Map<String, Object> readBody(HttpExchange exchange, String method) throws IOException {
+        if (!method.equals("POST") && !method.equals("PUT")) {
+            return Map.of();
+        }
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (body.length > MAX_BODY_BYTES) {
+                throw new Json.ParseException("request body is larger than " + MAX_BODY_BYTES + " bytes");
+            }
+            return Json.parseObject(new String(body, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        // The server keeps a connection only if the request was read to the end; a request that
+        // was answered unread (a GET, or a 404 before the body was parsed) must be drained first.
+        exchange.getRequestBody().close();
+        if (response.allow != null) {
+            exchange.getResponseHeaders().set("Allow", response.allow);
+        }
+        if (response.body == null) {
+            exchange.sendResponseHeaders(response.status, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static void requireMethod(String method, String allowed) {
+        if (!method.equals(allowed)) {
+            throw new MethodNotAllowedException(allowed);
+        }
+    }
+
+    private static int toInt(String field, long value) {
+        if (value != (int) value) {
+            throw new Json.ParseException(field + " is out of range");
+        }
+        return (int) value;
+    }
+
+    /**
+     * A virtual thread per request when the runtime has them; looked up reflectively because
+     * the project still compiles for Java 17.
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newFixedThreadPool(FALLBACK_THREADS, task -> {
+                Thread thread = new Thread(task, "http-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** Status code of an exception a service (or the request parsing) threw. */
+    static int statusOf(RuntimeException e) {
+        if (e instanceof ContactService.NotFoundException || e instanceof TaskService.NotFoundException
+                || e instanceof AppointmentService.NotFoundException) {
+            return 404;
+        }
+        if (e instanceof ContactService.DuplicateIdException || e instanceof TaskService.DuplicateIdException
+                || e instanceof AppointmentService.DuplicateIdException
+                || e instanceof ContactService.VersionConflictException
+                || e instanceof TaskService.StatusConflictException
+                || e instanceof AppointmentService.ConflictException) {
+            return 409;
+        }
+        if (e instanceof Contact.ValidationException || e instanceof Task.ValidationException
+                || e instanceof Appointment.ValidationException || e instanceof Json.ParseException) {
+            return 400;
+        }
+        if (e instanceof MethodNotAllowedException) {
+            return 405;
+        }
+        return 500;
+    }
+
+    private static final class Response {
+
+        static final Response NO_CONTENT = new Response(204, null, null);
+
+        final int status;
+        final String body; // null for none
+        final String allow; // Allow header of a 405, else null
+
+        private Response(int status, String body, String allow) {
+            this.status = status;
+            this.body = body;
+            this.allow = allow;
+        }
+
+        static Response ok(String json) {
+            return new Response(200, json, null);
+        }
+
+        static Response created(String json) {
+            return new Response(201, json, null);
+        }
+
+        static Response notFound(String message) {
+            return new Response(404, errorJson(message), null);
+        }
+
+        static Response error(RuntimeException e) {
+            int status = statusOf(e);
+            if (status == 500) { // a bug, not a bad request: the client learns nothing, so the log must
+                LOG.log(System.Logger.Level.ERROR, "request failed with an unexpected exception", e);
+            }
+            String message = status == 500 ? "internal error" : String.valueOf(e.getMessage());
+            return new Response(status, errorJson(message),
+                    e instanceof MethodNotAllowedException ? e.getMessage() : null);
+        }
+
+        private static String errorJson(String message) {
+            return new Json.ObjectWriter().field("error", message).toString();
+        }
+    }
+
+    /** The method is not supported on the path; the message is the Allow header. */
+    private static class MethodNotAllowedException extends RuntimeException {
+        MethodNotAllowedException(String allow) { super(allow, null, false, false); }
+    }
+}
@@ -0,0 +1,181 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServiceHttpServerTest {
+
+    private static final long FUTURE = System.currentTimeMillis() + 365L * 24 * 3_600_000L;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private ContactService contacts;
+    private TaskService tasks;
+    private AppointmentService appointments;
+    private ServiceHttpServer server;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        contacts = new ContactService();
+        tasks = new TaskService();
+        appointments = new AppointmentService();
+        server = new ServiceHttpServer(new InetSocketAddress("127.0.0.1", 0), contacts, tasks, appointments);
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    private HttpResponse<String> send(String method, String path, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path))
+                .method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void testContactLifecycleShouldMapToStatusCodes() throws Exception {
+        String john = "{\"contactId\":\"1\",\"firstName\":\"John\",\"lastName\":\"Lennon\","
+                + "\"phone\":\"1234567890\",\"address\":\"Address\"}";
+
+        HttpResponse<String> created = send("POST", "/contacts", john);
+        assertEquals(201, created.statusCode());
+        assertEquals("John", Json.parseObject(created.body()).get("firstName"));
+        assertEquals(409, send("POST", "/contacts", john).statusCode());
+
+        HttpResponse<String> got = send("GET", "/contacts/1", null);
+        assertEquals(200, got.statusCode());
+        long version = (Long) Json.parseObject(got.body()).get("version");
+
+        String paul = "{\"firstName\":\"Paul\",\"lastName\":\"McCartney\",\"phone\":\"0987654321\",\"address\":\"Address\"";
+        assertEquals(204, send("PUT", "/contacts/1", paul + ",\"version\":" + version + "}").statusCode());
+        assertEquals(409, send("PUT", "/contacts/1", paul + ",\"version\":" + version + "}").statusCode());
+        assertEquals("Paul", contacts.getContact("1").getFirstName());
+
+        assertEquals(204, send("DELETE", "/contacts/1", null).statusCode());
+        HttpResponse<String> gone = send("DELETE", "/contacts/1", null);
+        assertEquals(404, gone.statusCode());
+        assertEquals("Contact not found: 1", Json.parseObject(gone.body()).get("error"));
+        assertEquals(404, send("GET", "/contacts/1", null).statusCode());
+    }
+
+    @Test
+    void testTaskEndpointsShouldCarryPriorityAndDueTime() throws Exception {
+        assertEquals(201, send("POST", "/tasks", "{\"taskId\":\"t1\",\"name\":\"Name\",\"description\":\"Desc\"}").statusCode());
+        assertEquals(204, send("PUT", "/tasks/t1",
+                "{\"name\":\"New\",\"description\":\"Desc\",\"priority\":7,\"dueTime\":1000}").statusCode());
+        assertEquals(400, send("PUT", "/tasks/t1", "{\"name\":\"New\",\"description\":\"Desc\",\"priority\":7}").statusCode());
+
+        Map<String, Object> task = Json.parseObject(send("GET", "/tasks/t1", null).body());
+        assertEquals("New", task.get("name"));
+        assertEquals(7L, task.get("priority"));
+        assertEquals(1000L, task.get("dueTime"));
+        assertEquals("OPEN", task.get("status"));
+    }
+
+    @Test
+    void testAppointmentBookingConflictShouldBe409() throws Exception {
+        String first = "{\"appointmentId\":\"a1\",\"appointmentTime\":" + FUTURE
+                + ",\"durationMillis\":3600000,\"owner\":\"room\",\"description\":\"Meeting\"}";
+        String overlapping = first.replace("a1", "a2");
+
+        assertEquals(201, send("POST", "/appointments", first).statusCode());
+        assertEquals(409, send("POST", "/appointments", overlapping).statusCode());
+        assertEquals("room", Json.parseObject(send("GET", "/appointments/a1", null).body()).get("owner"));
+
+        HttpResponse<String> put = send("PUT", "/appointments/a1", "{}");
+        assertEquals(405, put.statusCode());
+        assertEquals("GET, DELETE", put.headers().firstValue("Allow").orElse(null));
+    }
+
+    @Test
+    void testAppointmentWithOnlyOneBookingFieldShouldKeepIt() throws Exception {
+        assertEquals(201, send("POST", "/appointments", "{\"appointmentId\":\"a1\",\"appointmentTime\":" + FUTURE
+                + ",\"durationMillis\":3600000,\"description\":\"Timed\"}").statusCode());
+        assertEquals(201, send("POST", "/appointments", "{\"appointmentId\":\"a2\",\"appointmentTime\":" + FUTURE
+                + ",\"owner\":\"room\",\"description\":\"Owned\"}").statusCode());
+
+        Map<String, Object> timed = Json.parseObject(send("GET", "/appointments/a1", null).body());
+        assertEquals(3600000L, timed.get("durationMillis"));
+        assertFalse(timed.containsKey("owner"));
+        Map<String, Object> owned = Json.parseObject(send("GET", "/appointments/a2", null).body());
+        assertEquals("room", owned.get("owner"));
+        assertFalse(owned.containsKey("durationMillis"));
+    }
+
+    @Test
+    void testBadRequestsShouldBe400Or404() throws Exception {
+        assertEquals(400, send("POST", "/contacts", "{\"contactId\":\"1\"").statusCode());
+        assertEquals(400, send("POST", "/contacts", "{\"contactId\":\"1\"}").statusCode());
+        assertEquals(400, send("POST", "/tasks", "{\"taskId\":\"t1\",\"name\":\"\",\"description\":\"Desc\"}").statusCode());
+        assertEquals(405, send("GET", "/tasks", null).statusCode());
+        assertEquals(404, send("GET", "/tasksX/1", null).statusCode());
+        assertEquals(404, send("GET", "/nothing", null).statusCode());
+    }
+
+    @Test
+    void testNullServiceShouldHaveNoEndpoints() throws Exception {
+        server.close();
+        server = new ServiceHttpServer(new InetSocketAddress("127.0.0.1", 0), null, tasks, null);
+        server.start();
+
+        assertEquals(404, send("GET", "/contacts/1", null).statusCode());
+        assertEquals(404, send("GET", "/tasks/1", null).statusCode());
+    }
+
+    @Test
+    void testUnexpectedExceptionShouldBeLoggedAndHidden() throws Exception {
+        IllegalStateException bug = new IllegalStateException("bug");
+        server.close();
+        server = new ServiceHttpServer(new InetSocketAddress("127.0.0.1", 0), new ContactService() {
+            @Override
+            public Contact getContact(String contactId) {
+                throw bug;
+            }
+        }, null, null);
+        server.start();
+        List<LogRecord> logged = new CopyOnWriteArrayList<>();
+        Handler handler = new Handler() {
+            @Override public void publish(LogRecord record) { logged.add(record); }
+            @Override public void flush() { }
+            @Override public void close() { }
+        };
+        Logger logger = Logger.getLogger(ServiceHttpServer.class.getName());
+        logger.addHandler(handler);
+        try {
+            HttpResponse<String> response = send("GET", "/contacts/1", null);
+
+            assertEquals(500, response.statusCode());
+            assertEquals("internal error", Json.parseObject(response.body()).get("error"));
+            assertEquals(1, logged.size());
+            assertEquals(Level.SEVERE, logged.get(0).getLevel());
+            assertSame(bug, logged.get(0).getThrown());
+        } finally {
+            logger.removeHandler(handler);
+        }
+    }
+
+    @Test
+    void testNotFoundShouldCarryNoStackTrace() {
+        assertEquals(0, new ContactService.NotFoundException("x").getStackTrace().length);
+        assertEquals(0, new TaskService.DuplicateIdException("x").getStackTrace().length);
+        assertEquals(404, ServiceHttpServer.statusOf(new AppointmentService.NotFoundException("x")));
+        assertEquals(500, ServiceHttpServer.statusOf(new IllegalStateException("x")));
+    }
+}
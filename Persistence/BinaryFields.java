@@ -0,0 +1,137 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helpers for the length-prefixed string fields used in journal and snapshot records.
+ *
+ * A string is written as an unsigned short byte length followed by its UTF-8 bytes.
+ * All model fields are at most 50 chars, so lengths always fit. The wire format uses tiny
+ * strings instead, with a one-byte length: 50 chars take at most 150 UTF-8 bytes.
+ */
+public final class BinaryFields {
+
+    public static final int MAX_STRING_BYTES = 0xFFFF;
+    public static final int MAX_TINY_STRING_BYTES = 0xFF;
+
+    private BinaryFields() { }
+
+    /** Encoded size of value in bytes, including the length prefix. */
+    public static int sizeOf(String value) {
+        return 2 + utf8Length(value);
+    }
+
+    /** Largest encoded size of a string of at most maxChars chars (3 UTF-8 bytes per char). */
+    public static int maxSizeOf(int maxChars) {
+        return 2 + 3 * maxChars;
+    }
+
+    public static void putString(ByteBuffer buffer, String value) {
+        int length = utf8Length(value);
+        if (length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("string too long to encode: " + length + " bytes");
+        }
+        buffer.putShort((short) length);
+        putUtf8(buffer, value);
+    }
+
+    public static String getString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        if (buffer.hasArray()) {
+            int offset = buffer.arrayOffset() + buffer.position();
+            buffer.position(buffer.position() + length);
+            return new String(buffer.array(), offset, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Encoded size of value as a tiny string, including the length byte. */
+    public static int sizeOfTiny(String value) {
+        return 1 + utf8Length(value);
+    }
+
+    /** Largest encoded size of a tiny string of at most maxChars chars. */
+    public static int maxSizeOfTiny(int maxChars) {
+        return 1 + 3 * maxChars;
+    }
+
+    public static void putTinyString(ByteBuffer buffer, String value) {
+        int length = value.length() <= MAX_TINY_STRING_BYTES / 3 ? -1 : utf8Length(value);
+        if (length > MAX_TINY_STRING_BYTES) {
+            throw new IllegalArgumentException("string too long to encode: " + length + " bytes");
+        }
+        if (length >= 0) {
+            buffer.put((byte) length);
+            putUtf8(buffer, value);
+            return;
+        }
+        // short enough to fit whatever its chars are: write the bytes, then the length in front
+        int start = buffer.position();
+        buffer.position(start + 1);
+        putUtf8(buffer, value);
+        buffer.put(start, (byte) (buffer.position() - start - 1));
+    }
+
+    /** The tiny string at absolute index of buffer; the buffer's position is not used or changed. */
+    public static String tinyStringAt(ByteBuffer buffer, int index) {
+        int length = Byte.toUnsignedInt(buffer.get(index));
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + index + 1, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(index + 1, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Index just past the tiny string at absolute index of buffer. */
+    public static int skipTinyString(ByteBuffer buffer, int index) {
+        return index + 1 + Byte.toUnsignedInt(buffer.get(index));
+    }
+
+    private static void putUtf8(ByteBuffer buffer, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                buffer.put((byte) c);
+            } else if (c < 0x800) {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, value.charAt(++i));
+                buffer.put((byte) (0xF0 | (cp >> 18)));
+                buffer.put((byte) (0x80 | ((cp >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((cp >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (cp & 0x3F)));
+            } else if (Character.isSurrogate(c)) {
+                buffer.put((byte) '?'); // unpaired surrogate, same as String.getBytes
+            } else {
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    private static int utf8Length(String value) {
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length += 1;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                length += 1;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
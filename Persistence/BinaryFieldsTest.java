@@ -0,0 +1,78 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryFieldsTest {
+
+    private static String roundTrip(String value) {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryFields.sizeOf(value));
+        BinaryFields.putString(buffer, value);
+        assertFalse(buffer.hasRemaining(), "sizeOf must match the encoded size");
+        buffer.flip();
+        return BinaryFields.getString(buffer);
+    }
+
+    @Test
+    void testAsciiShouldRoundTrip() {
+        assertEquals("1 W 72nd St, New York", roundTrip("1 W 72nd St, New York"));
+        assertEquals(2 + 5, BinaryFields.sizeOf("Hello"));
+    }
+
+    @Test
+    void testEmptyStringShouldRoundTrip() {
+        assertEquals("", roundTrip(""));
+    }
+
+    @Test
+    void testMultiByteCharactersShouldRoundTrip() {
+        assertEquals("M\u00FCller", roundTrip("M\u00FCller"));
+        assertEquals("\u6771\u4EAC\u90FD", roundTrip("\u6771\u4EAC\u90FD"));
+        assertEquals("Hi \uD83D\uDE00", roundTrip("Hi \uD83D\uDE00"));
+    }
+
+    @Test
+    void testMaxSizeShouldBoundAnyStringOfThatLength() {
+        assertTrue(BinaryFields.sizeOf("\u6771\u4EAC\u90FD") <= BinaryFields.maxSizeOf(3));
+        assertTrue(BinaryFields.sizeOf("\uD83D\uDE00\uD83D\uDE00") <= BinaryFields.maxSizeOf(4));
+        assertEquals(2, BinaryFields.maxSizeOf(0));
+    }
+
+    @Test
+    void testUnpairedSurrogateShouldBecomeQuestionMark() {
+        assertEquals("a?b", roundTrip("a\uD800b"));
+    }
+
+    @Test
+    void testDirectBufferShouldDecode() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BinaryFields.sizeOf("M\u00FCller"));
+        BinaryFields.putString(buffer, "M\u00FCller");
+        buffer.flip();
+        assertEquals("M\u00FCller", BinaryFields.getString(buffer));
+    }
+
+    @Test
+    void testTinyStringShouldRoundTripInPlaceOnHeapAndDirectBuffers() {
+        String[] values = {"", "abc", "M\u00FCller", "\u6771".repeat(85), "x".repeat(255)};
+        for (ByteBuffer buffer : new ByteBuffer[] {ByteBuffer.allocate(2048), ByteBuffer.allocateDirect(2048)}) {
+            buffer.put((byte) 7); // tiny strings are read at absolute indexes, not at the position
+            int index = buffer.position();
+            for (String value : values) {
+                BinaryFields.putTinyString(buffer, value);
+                assertEquals(index + BinaryFields.sizeOfTiny(value), buffer.position(), "sizeOfTiny must match");
+                assertEquals(value, BinaryFields.tinyStringAt(buffer, index));
+                index = BinaryFields.skipTinyString(buffer, index);
+            }
+        }
+    }
+
+    @Test
+    void testTinyStringShouldRejectMoreThan255Bytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        assertThrows(IllegalArgumentException.class, () -> BinaryFields.putTinyString(buffer, "\u6771".repeat(86)));
+        assertThrows(IllegalArgumentException.class, () -> BinaryFields.putTinyString(buffer, "x".repeat(256)));
+        assertEquals(0, buffer.position());
+        assertEquals(1 + 3 * 50, BinaryFields.maxSizeOfTiny(50));
+    }
+}
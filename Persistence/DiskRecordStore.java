@@ -0,0 +1,666 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * RecordStore that keeps records in files, with a TinyLfuCache of decoded records in front,
+ * for data sets that do not fit in the heap.
+ *
+ * Records are spread over SEGMENTS files by ID hash. A segment file is a header followed by
+ * fixed-width slots of codec.maxSize() bytes plus an int length (0 marks a free slot);
+ * freed slots are reused before the file grows. Slots never move, so the heap only holds
+ * each segment's ID index: an open-addressing table (linear probing, backward-shift
+ * deletion) of longs packing the ID hash and the slot number, about 16 bytes per record
+ * whatever the record size.
+ *
+ * Concurrency: each segment has a ReentrantReadWriteLock. Reads of the file take the read
+ * lock; writes and the compute functions run under the write lock, so they are atomic per
+ * ID and call their function once. get goes through the cache, which runs one disk read
+ * for concurrent misses of an ID. A write updates the file first and invalidates the ID's
+ * cache entry after releasing the segment lock (a load waiting on that lock is dropped by
+ * the invalidation too), so a read that starts after a write returns sees the new record.
+ *
+ * Records are decoded copies: get returns the cached instance, the compute functions get a
+ * fresh one. Callers must treat records from get as read-only when they are mutable.
+ *
+ * Durability: writes go to the OS page cache and are not forced, since the services' journal
+ * is the durable record. close() marks the files clean; open() reuses files only after a
+ * clean close and otherwise starts empty, for the service to rebuild from its journal.
+ */
+public class DiskRecordStore<V> implements RecordStore<V>, Closeable {
+
+    public static final int SEGMENTS = 16;
+
+    static final int MAGIC = 0x44524543; // "DREC"
+    static final int HEADER_SIZE = 16;   // magic, slot width, slots used, clean flag
+
+    private static final int INITIAL_INDEX_CAPACITY = 1 << 8;
+    private static final int SCAN_BATCH_SLOTS = 64;
+
+    private final Path directory;
+    private final RecordCodec<V> codec;
+    private final int slotWidth;
+    private final Segment[] segments;
+    private final TinyLfuCache<String, V> cache; // null when caching is off
+    private final Map<String, V> view = new MapView();
+
+    private DiskRecordStore(Path directory, RecordCodec<V> codec, int cacheCapacity) {
+        this.directory = directory;
+        this.codec = codec;
+        this.slotWidth = Integer.BYTES + codec.maxSize();
+        @SuppressWarnings("unchecked")
+        Segment[] segments = (Segment[]) new DiskRecordStore<?>.Segment[SEGMENTS];
+        this.segments = segments;
+        this.cache = cacheCapacity > 0 ? new TinyLfuCache<>(cacheCapacity) : null;
+    }
+
+    /**
+     * Opens (creating if needed) the store in directory. cacheCapacity is the number of
+     * records cached on the heap; 0 turns the cache off so every get reads the file.
+     */
+    public static <V> DiskRecordStore<V> open(Path directory, RecordCodec<V> codec, int cacheCapacity)
+            throws IOException {
+        Objects.requireNonNull(directory, "directory must not be null");
+        Objects.requireNonNull(codec, "codec must not be null");
+        if (cacheCapacity < 0) {
+            throw new IllegalArgumentException("cacheCapacity must not be negative: " + cacheCapacity);
+        }
+        Files.createDirectories(directory);
+        DiskRecordStore<V> store = new DiskRecordStore<>(directory, codec, cacheCapacity);
+        try {
+            for (int i = 0; i < SEGMENTS; i++) {
+                store.segments[i] = store.new Segment(directory.resolve(String.format("segment-%02d.dat", i)));
+            }
+        } catch (IOException | RuntimeException e) {
+            store.closeQuietly();
+            throw e;
+        }
+        return store;
+    }
+
+    @Override
+    public V get(String id) {
+        return cache == null ? load(id) : cache.get(id, this::load);
+    }
+
+    @Override
+    public V computeIfAbsent(String id, Function<String, V> factory) {
+        int hash = hash(id);
+        Segment s = segmentFor(hash);
+        s.lock.writeLock().lock();
+        try {
+            int[] position = new int[1];
+            V existing = s.lookup(id, hash, position);
+            if (existing != null) {
+                return existing;
+            }
+            V created = factory.apply(id);
+            if (created != null) {
+                s.insert(hash, requireKey(id, created));
+            }
+            return created;
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public V computeIfPresent(String id, BiFunction<String, V, V> remap) {
+        int hash = hash(id);
+        Segment s = segmentFor(hash);
+        V next;
+        s.lock.writeLock().lock();
+        try {
+            int[] position = new int[1];
+            V current = s.lookup(id, hash, position);
+            if (current == null) {
+                return null;
+            }
+            next = remap.apply(id, current);
+            if (next == null) {
+                s.delete(position[0]);
+            } else {
+                // written even if remap returned current: mutable records may have been changed in place
+                s.write(s.slotAt(position[0]), requireKey(id, next));
+            }
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+        invalidate(id);
+        return next;
+    }
+
+    @Override
+    public V put(String id, V value) {
+        requireKey(id, value);
+        int hash = hash(id);
+        Segment s = segmentFor(hash);
+        V previous;
+        s.lock.writeLock().lock();
+        try {
+            int[] position = new int[1];
+            previous = s.lookup(id, hash, position);
+            if (previous == null) {
+                s.insert(hash, value);
+            } else {
+                s.write(s.slotAt(position[0]), value);
+            }
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+        if (previous != null) {
+            invalidate(id);
+        }
+        return previous;
+    }
+
+    @Override
+    public V remove(String id) {
+        int hash = hash(id);
+        Segment s = segmentFor(hash);
+        V removed;
+        s.lock.writeLock().lock();
+        try {
+            int[] position = new int[1];
+            removed = s.lookup(id, hash, position);
+            if (removed != null) {
+                s.delete(position[0]);
+            }
+        } finally {
+            s.lock.writeLock().unlock();
+        }
+        if (removed != null) {
+            invalidate(id);
+        }
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        long total = 0;
+        for (Segment s : segments) {
+            total += s.size;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total);
+    }
+
+    @Override
+    public Map<String, V> asMap() {
+        return view;
+    }
+
+    /**
+     * Splits by segments, then by slot ranges within one segment. Records are read in
+     * batches of slots under the segment's read lock, bypassing the cache so a full scan
+     * does not displace the records that are read often.
+     */
+    @Override
+    public Spliterator<V> spliterator() {
+        return new SlotSpliterator(0, SEGMENTS, 0, -1, size());
+    }
+
+    /** Hit, miss and eviction counts of the record cache; all zero when it is off. */
+    public CacheStats cacheStats() {
+        return cache == null ? new CacheStats(0, 0, 0, 0, 0) : cache.stats();
+    }
+
+    /** Bytes of slots in use or free across the segment files. */
+    public long fileBytes() {
+        long total = 0;
+        for (Segment s : segments) {
+            total += (long) s.used * slotWidth;
+        }
+        return total;
+    }
+
+    /** Marks the files clean and closes them; the store must not be used afterwards. */
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Segment s : segments) {
+            if (s == null) {
+                continue;
+            }
+            s.lock.writeLock().lock();
+            try {
+                s.writeHeader(true);
+                s.channel.force(false);
+                s.channel.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            } finally {
+                s.lock.writeLock().unlock();
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void closeQuietly() {
+        for (Segment s : segments) {
+            if (s != null) {
+                try {
+                    s.channel.close();
+                } catch (IOException ignored) {
+                    // already failing to open
+                }
+            }
+        }
+    }
+
+    /** Reads id from its segment file; the cache's loader. */
+    private V load(String id) {
+        int hash = hash(id);
+        Segment s = segmentFor(hash);
+        s.lock.readLock().lock();
+        try {
+            return s.lookup(id, hash, new int[1]);
+        } finally {
+            s.lock.readLock().unlock();
+        }
+    }
+
+    private void invalidate(String id) {
+        if (cache != null) {
+            cache.invalidate(id);
+        }
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash >>> 28];
+    }
+
+    private V requireKey(String id, V record) {
+        if (!codec.idOf(record).equals(id)) {
+            throw new IllegalArgumentException("record " + codec.idOf(record) + " stored under key " + id);
+        }
+        return record;
+    }
+
+    private UncheckedIOException failure(String action, IOException e) {
+        return new UncheckedIOException("cannot " + action + " record store " + directory, e);
+    }
+
+    /** murmur3 finalizer: the segment uses the top bits, the index the low bits. */
+    private static int hash(String id) {
+        int h = id.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    /** One file, its lock, its free slots and its ID index. */
+    private final class Segment {
+
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final FileChannel channel;
+        volatile int size;
+        volatile int used;          // slots ever allocated (the file's high-water mark)
+        private int[] free = new int[16];
+        private int freeCount;
+        private long[] table = new long[INITIAL_INDEX_CAPACITY]; // hash << 32 | slot + 1; 0 = empty
+
+        Segment(Path file) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (!reopen()) {
+                channel.truncate(0);
+                used = 0;
+            }
+            writeHeader(false);
+            channel.force(false);
+        }
+
+        /** Loads the index from a cleanly closed file with the same slot width. */
+        private boolean reopen() throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (channel.read(header, 0) < HEADER_SIZE) {
+                return false;
+            }
+            header.flip();
+            if (header.getInt() != MAGIC || header.getInt() != slotWidth) {
+                return false;
+            }
+            int slots = header.getInt();
+            if (header.getInt() != 1 || channel.size() < HEADER_SIZE + (long) slots * slotWidth) {
+                return false;
+            }
+            used = slots;
+            for (int slot = 0; slot < slots; slot++) {
+                V record = read(slot);
+                if (record == null) {
+                    pushFree(slot);
+                } else {
+                    index(hash(codec.idOf(record)), slot);
+                    size = size + 1;
+                }
+            }
+            return true;
+        }
+
+        void writeHeader(boolean clean) throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(slotWidth).putInt(used).putInt(clean ? 1 : 0).flip();
+            channel.write(header, 0);
+        }
+
+        /** The record stored under id, or null; position receives its index position. */
+        V lookup(String id, int hash, int[] position) {
+            int mask = table.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                long entry = table[i];
+                if (entry == 0) {
+                    return null;
+                }
+                if ((int) (entry >>> 32) == hash) {
+                    V record = read((int) entry - 1);
+                    if (record != null && codec.idOf(record).equals(id)) {
+                        position[0] = i;
+                        return record;
+                    }
+                }
+            }
+        }
+
+        int slotAt(int position) {
+            return (int) table[position] - 1;
+        }
+
+        void insert(int hash, V record) {
+            int slot = freeCount > 0 ? free[--freeCount] : used;
+            write(slot, record);
+            if (slot == used) {
+                used = slot + 1;
+            }
+            index(hash, slot);
+            size = size + 1;
+        }
+
+        void delete(int position) {
+            int slot = slotAt(position);
+            try {
+                channel.write(ByteBuffer.allocate(Integer.BYTES), offsetOf(slot));
+            } catch (IOException e) {
+                throw failure("write", e);
+            }
+            pushFree(slot);
+            unindex(position);
+            size = size - 1;
+        }
+
+        void write(int slot, V record) {
+            ByteBuffer buffer = ByteBuffer.allocate(slotWidth);
+            buffer.position(Integer.BYTES);
+            try {
+                codec.encode(buffer, record);
+            } catch (BufferOverflowException e) {
+                throw new IllegalArgumentException("record " + codec.idOf(record) + " exceeds codec.maxSize()", e);
+            }
+            int length = buffer.position() - Integer.BYTES;
+            if (length == 0) {
+                throw new IllegalArgumentException("record " + codec.idOf(record) + " encoded to 0 bytes");
+            }
+            buffer.putInt(0, length).clear(); // the whole slot, so the file always ends on a slot boundary
+            try {
+                long offset = offsetOf(slot);
+                while (buffer.hasRemaining()) {
+                    offset += channel.write(buffer, offset);
+                }
+            } catch (IOException e) {
+                throw failure("write", e);
+            }
+        }
+
+        /** The record in slot, or null if the slot is free. */
+        V read(int slot) {
+            ByteBuffer buffer = ByteBuffer.allocate(slotWidth);
+            try {
+                readFully(buffer, offsetOf(slot));
+            } catch (IOException e) {
+                throw failure("read", e);
+            }
+            buffer.flip();
+            int length = buffer.getInt();
+            if (length == 0) {
+                return null;
+            }
+            return codec.decode(buffer.limit(Integer.BYTES + length));
+        }
+
+        /** Decodes the records in slots [from, to) into out, with one file read. */
+        void readRange(int from, int to, ArrayDeque<V> out) {
+            ByteBuffer buffer = ByteBuffer.allocate((to - from) * slotWidth);
+            try {
+                readFully(buffer, offsetOf(from));
+            } catch (IOException e) {
+                throw failure("read", e);
+            }
+            for (int slot = 0; slot < to - from; slot++) {
+                int base = slot * slotWidth;
+                int length = buffer.getInt(base);
+                if (length != 0) {
+                    out.add(codec.decode(buffer.limit(base + Integer.BYTES + length).position(base + Integer.BYTES)));
+                }
+                buffer.limit(buffer.capacity());
+            }
+        }
+
+        private void readFully(ByteBuffer buffer, long offset) throws IOException {
+            while (buffer.hasRemaining()) {
+                int n = channel.read(buffer, offset + buffer.position());
+                if (n < 0) {
+                    throw new IOException("unexpected end of " + directory + " segment file");
+                }
+            }
+        }
+
+        private long offsetOf(int slot) {
+            return HEADER_SIZE + (long) slot * slotWidth;
+        }
+
+        private void pushFree(int slot) {
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, free.length * 2);
+            }
+            free[freeCount++] = slot;
+        }
+
+        private void index(int hash, int slot) {
+            if ((size + 1) * 4L > table.length * 3L) {
+                long[] old = table;
+                table = new long[old.length * 2];
+                for (long entry : old) {
+                    if (entry != 0) {
+                        place(entry);
+                    }
+                }
+            }
+            place(((long) hash << 32) | (slot + 1L));
+        }
+
+        private void place(long entry) {
+            int mask = table.length - 1;
+            int i = (int) (entry >>> 32) & mask;
+            while (table[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            table[i] = entry;
+        }
+
+        /** Backward-shift deletion: pulls later entries of the probe run into the gap. */
+        private void unindex(int position) {
+            int mask = table.length - 1;
+            int gap = position;
+            for (int i = (gap + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+                int home = (int) (table[i] >>> 32) & mask;
+                if (((i - home) & mask) >= ((i - gap) & mask)) {
+                    table[gap] = table[i];
+                    gap = i;
+                }
+            }
+            table[gap] = 0;
+        }
+    }
+
+    /** Read-only Map over the store; get goes through the cache, iteration reads the files. */
+    private final class MapView extends AbstractMap<String, V> {
+
+        @Override
+        public V get(Object key) {
+            return key instanceof String ? DiskRecordStore.this.get((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return DiskRecordStore.this.size();
+        }
+
+        @Override
+        public Set<Entry<String, V>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, V>> iterator() {
+                    Iterator<V> records = Spliterators.iterator(DiskRecordStore.this.spliterator());
+                    return new Iterator<Entry<String, V>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return records.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, V> next() {
+                            V record = records.next();
+                            return new AbstractMap.SimpleImmutableEntry<>(codec.idOf(record), record);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return DiskRecordStore.this.size();
+                }
+            };
+        }
+    }
+
+    /**
+     * Weakly consistent walk over the slots of segments [segment, segmentEnd), like
+     * OffHeapContactStore's: slotEnd bounds the current segment once a split fixed it.
+     */
+    private final class SlotSpliterator implements Spliterator<V> {
+
+        private static final int MIN_SPLIT_SLOTS = 1024;
+
+        private int segment;
+        private final int segmentEnd;
+        private int slot;
+        private int slotEnd;
+        private long estimate;
+        private final ArrayDeque<V> batch = new ArrayDeque<>();
+
+        SlotSpliterator(int segment, int segmentEnd, int slot, int slotEnd, long estimate) {
+            this.segment = segment;
+            this.segmentEnd = segmentEnd;
+            this.slot = slot;
+            this.slotEnd = slotEnd;
+            this.estimate = estimate;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super V> action) {
+            while (batch.isEmpty() && segment < segmentEnd) {
+                Segment s = segments[segment];
+                s.lock.readLock().lock();
+                try {
+                    int end = slotEnd < 0 ? s.used : slotEnd;
+                    if (slot < end) {
+                        int to = Math.min(end, slot + SCAN_BATCH_SLOTS);
+                        s.readRange(slot, to, batch);
+                        slot = to;
+                        continue;
+                    }
+                } finally {
+                    s.lock.readLock().unlock();
+                }
+                segment++;
+                slot = 0;
+                slotEnd = -1;
+            }
+            V next = batch.poll();
+            if (next == null) {
+                return false;
+            }
+            action.accept(next);
+            return true;
+        }
+
+        @Override
+        public Spliterator<V> trySplit() {
+            if (!batch.isEmpty()) {
+                return null;
+            }
+            SlotSpliterator prefix;
+            if (segmentEnd - segment > 1) {
+                int mid = (segment + segmentEnd) >>> 1;
+                prefix = new SlotSpliterator(segment, mid, slot, slotEnd, estimate >>> 1);
+                segment = mid;
+                slot = 0;
+                slotEnd = -1;
+            } else if (segment < segmentEnd) {
+                if (slotEnd < 0) {
+                    slotEnd = segments[segment].used;
+                }
+                if (slotEnd - slot < 2 * MIN_SPLIT_SLOTS) {
+                    return null;
+                }
+                int mid = (slot + slotEnd) >>> 1;
+                prefix = new SlotSpliterator(segment, segment + 1, slot, mid, estimate >>> 1);
+                slot = mid;
+            } else {
+                return null;
+            }
+            estimate -= prefix.estimate;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return estimate;
+        }
+
+        @Override
+        public int characteristics() {
+            return CONCURRENT | NONNULL;
+        }
+    }
+}
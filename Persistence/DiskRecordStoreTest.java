@@ -0,0 +1,270 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.StreamSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DiskRecordStoreTest {
+
+    /** Records are "id=value" strings of at most 40 chars. */
+    private static final RecordCodec<String> CODEC = new RecordCodec<>() {
+        @Override
+        public int maxSize() {
+            return BinaryFields.maxSizeOf(40);
+        }
+
+        @Override
+        public String idOf(String record) {
+            return record.substring(0, record.indexOf('='));
+        }
+
+        @Override
+        public void encode(ByteBuffer buffer, String record) {
+            BinaryFields.putString(buffer, record);
+        }
+
+        @Override
+        public String decode(ByteBuffer buffer) {
+            return BinaryFields.getString(buffer);
+        }
+    };
+
+    @TempDir
+    Path dir;
+
+    private final List<DiskRecordStore<String>> opened = new ArrayList<>();
+
+    private DiskRecordStore<String> open(Path directory, int cacheCapacity) throws IOException {
+        DiskRecordStore<String> store = DiskRecordStore.open(directory, CODEC, cacheCapacity);
+        opened.add(store);
+        return store;
+    }
+
+    @AfterEach
+    void closeStores() throws IOException {
+        for (DiskRecordStore<String> store : opened) {
+            store.close();
+        }
+    }
+
+    @Test
+    void testPutAndGetShouldRoundTrip() throws IOException {
+        DiskRecordStore<String> store = open(dir, 10);
+
+        assertNull(store.put("a", "a=1"));
+        assertEquals("a=1", store.put("a", "a=2"));
+
+        assertEquals("a=2", store.get("a"));
+        assertNull(store.get("missing"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void testRandomOperationsShouldMatchHashMap() throws IOException {
+        // a cache much smaller than the data, so gets mix hits, misses and evictions
+        for (DiskRecordStore<String> store : List.of(open(dir.resolve("cached"), 16), open(dir.resolve("uncached"), 0))) {
+            Map<String, String> model = new HashMap<>();
+            Random random = new Random(42);
+            for (int i = 0; i < 20_000; i++) {
+                String id = "id" + random.nextInt(500);
+                switch (random.nextInt(5)) {
+                    case 0:
+                        String record = id + "=" + i;
+                        assertEquals(model.put(id, record), store.put(id, record));
+                        break;
+                    case 1:
+                        assertEquals(model.remove(id), store.remove(id));
+                        break;
+                    case 2:
+                        String created = id + "=new";
+                        assertEquals(model.computeIfAbsent(id, k -> created), store.computeIfAbsent(id, k -> created));
+                        break;
+                    case 3:
+                        assertEquals(model.computeIfPresent(id, (k, v) -> v + "+"),
+                                store.computeIfPresent(id, (k, v) -> v + "+"));
+                        break;
+                    default:
+                        assertEquals(model.get(id), store.get(id));
+                }
+                assertEquals(model.size(), store.size());
+            }
+            assertEquals(model, new HashMap<>(store.asMap()));
+        }
+    }
+
+    @Test
+    void testWritesShouldInvalidateCachedRecords() throws IOException {
+        DiskRecordStore<String> store = open(dir, 10);
+        store.put("a", "a=1");
+        assertEquals("a=1", store.get("a"));
+        assertEquals("a=1", store.get("a"));
+
+        store.computeIfPresent("a", (id, v) -> "a=2");
+        assertEquals("a=2", store.get("a"));
+        store.put("a", "a=3");
+        assertEquals("a=3", store.get("a"));
+        store.remove("a");
+        assertNull(store.get("a"));
+
+        CacheStats stats = store.cacheStats();
+        assertEquals(1, stats.getHits());
+        assertEquals(4, stats.getMisses());
+    }
+
+    @Test
+    void testRemovedSlotsShouldBeReused() throws IOException {
+        DiskRecordStore<String> store = open(dir, 0);
+        for (int i = 0; i < 100; i++) {
+            store.put("c" + i, "c" + i + "=x");
+        }
+        long bytes = store.fileBytes();
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 100; i++) {
+                store.remove("c" + i);
+            }
+            for (int i = 0; i < 100; i++) {
+                store.put("c" + i, "c" + i + "=y");
+            }
+        }
+
+        assertEquals(100, store.size());
+        assertEquals(bytes, store.fileBytes());
+    }
+
+    @Test
+    void testComputeIfAbsentShouldNotCallFactoryForPresentId() throws IOException {
+        DiskRecordStore<String> store = open(dir, 10);
+        store.put("a", "a=1");
+
+        assertEquals("a=1", store.computeIfAbsent("a", id -> fail("factory must not run")));
+        assertNull(store.computeIfPresent("b", (id, v) -> fail("absent IDs must not be remapped")));
+    }
+
+    @Test
+    void testRecordsThatDoNotFitShouldBeRejected() throws IOException {
+        DiskRecordStore<String> store = open(dir, 10);
+
+        assertThrows(IllegalArgumentException.class, () -> store.put("a", "b=1"));
+        assertThrows(IllegalArgumentException.class, () -> store.put("a", "a=" + "x".repeat(200)));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void testCleanlyClosedStoreShouldReopenWithItsRecords() throws IOException {
+        DiskRecordStore<String> store = DiskRecordStore.open(dir, CODEC, 10);
+        for (int i = 0; i < 500; i++) {
+            store.put("c" + i, "c" + i + "=" + i);
+        }
+        store.remove("c7");
+        store.close();
+
+        DiskRecordStore<String> reopened = open(dir, 10);
+
+        assertEquals(499, reopened.size());
+        assertEquals("c8=8", reopened.get("c8"));
+        assertNull(reopened.get("c7"));
+        reopened.put("c7", "c7=back"); // reuses the freed slot
+        assertEquals(500, reopened.size());
+    }
+
+    @Test
+    void testStoreThatWasNotClosedShouldReopenEmpty() throws IOException {
+        DiskRecordStore<String> crashed = open(dir, 10);
+        crashed.put("a", "a=1");
+
+        DiskRecordStore<String> reopened = open(dir, 10);
+
+        assertEquals(0, reopened.size());
+        assertNull(reopened.get("a"));
+    }
+
+    @Test
+    void testConcurrentComputesShouldRunExactlyOncePerId() throws Exception {
+        DiskRecordStore<String> store = open(dir, 64);
+        AtomicInteger factoryCalls = new AtomicInteger();
+        int threads = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < 500; i++) {
+                        String id = "c" + i;
+                        store.computeIfAbsent(id, k -> {
+                            factoryCalls.incrementAndGet();
+                            return k + "=";
+                        });
+                        store.computeIfPresent(id, (k, v) -> v + "+");
+                        assertTrue(store.get(id).startsWith(id + "=+"));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(500, factoryCalls.get());
+        assertEquals(500, store.size());
+        assertEquals("c0=" + "+".repeat(threads), store.get("c0"));
+    }
+
+    @Test
+    void testSpliteratorShouldSplitAndCoverEveryRecordOnce() throws IOException {
+        DiskRecordStore<String> store = open(dir, 0);
+        for (int i = 0; i < 20_000; i++) {
+            store.put("c" + i, "c" + i + "=x");
+        }
+        for (int i = 0; i < 20_000; i += 3) {
+            store.remove("c" + i);
+        }
+
+        List<Spliterator<String>> parts = new ArrayList<>(List.of(store.spliterator()));
+        for (int round = 0; round < 6; round++) {
+            List<Spliterator<String>> next = new ArrayList<>();
+            for (Spliterator<String> part : parts) {
+                Spliterator<String> prefix = part.trySplit();
+                if (prefix != null) {
+                    next.add(prefix);
+                }
+                next.add(part);
+            }
+            parts = next;
+        }
+        assertTrue(parts.size() >= 16, "split into " + parts.size() + " parts");
+
+        Set<String> seen = new HashSet<>();
+        for (Spliterator<String> part : parts) {
+            part.forEachRemaining(r -> assertTrue(seen.add(r), "seen twice: " + r));
+        }
+        assertEquals(store.size(), seen.size());
+        assertFalse(seen.contains("c0=x"));
+        assertEquals(store.size(), StreamSupport.stream(store.spliterator(), true).count());
+    }
+
+    @Test
+    void testCacheCapacityMustNotBeNegative() {
+        assertThrows(IllegalArgumentException.class, () -> DiskRecordStore.open(dir, CODEC, -1));
+    }
+}
@@ -0,0 +1,332 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only write-ahead journal backed by a FileChannel.
+ *
+ * File layout:
+ * - header: magic (int), format version (int), base (long)
+ * - records: payload length (int), CRC32C of type + payload (int), type (byte), payload
+ *
+ * Positions handed out by append() and position() are logical: file offset + base.
+ * compact() drops the records before a position (already covered by a snapshot) and
+ * raises base by the same amount, so positions stay valid across compactions.
+ *
+ * Durability uses group commit: append() only writes the record, and sync(position)
+ * makes it durable. A thread that arrives while another thread is forcing the channel
+ * waits for that force and, if it covered its record, returns without forcing again,
+ * so concurrent writers share fsyncs instead of paying one each.
+ *
+ * On open, a torn or corrupt tail (from a crash in the middle of a write) is cut off.
+ * Several services may share one journal; each one ignores record types it does not own.
+ *
+ * I/O failures after open are reported as UncheckedIOException.
+ */
+public class Journal implements Closeable {
+
+    public static final int MAGIC = 0x4A524E4C; // "JRNL"
+    public static final int FORMAT_VERSION = 1;
+    public static final int FILE_HEADER_SIZE = 16;
+    public static final int RECORD_HEADER_SIZE = 9;
+
+    private static final int SCAN_BUFFER_SIZE = 1 << 20;
+
+    private final Path path;
+    private final Object writeLock = new Object();
+    private final Object syncLock = new Object();
+
+    private FileChannel channel;         // replaced by compact(); guarded by writeLock and syncLock
+    private long base;                   // guarded by writeLock
+    private long writePosition;          // logical; guarded by writeLock
+    private volatile long syncedPosition;
+
+    private Journal(Path path, FileChannel channel, long base, long end) {
+        this.path = path;
+        this.channel = channel;
+        this.base = base;
+        this.writePosition = base + end;
+        this.syncedPosition = base + end;
+    }
+
+    /** Opens (or creates) the journal at path and truncates any torn tail. */
+    public static Journal open(Path path) throws IOException {
+        Objects.requireNonNull(path, "path must not be null");
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            long base = 0;
+            if (channel.size() == 0) {
+                writeHeader(channel, base);
+                channel.force(true);
+            } else {
+                base = readHeader(channel);
+            }
+            long end = scan(channel, FILE_HEADER_SIZE, null);
+            if (end < channel.size()) {
+                channel.truncate(end);
+                channel.force(true);
+            }
+            return new Journal(path, channel, base, end);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes one record (not yet durable, see sync).
+     *
+     * @return the journal position just after the record, to pass to sync
+     */
+    public long append(byte type, ByteBuffer payload) {
+        int length = payload.remaining();
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+        record.putInt(length).putInt(checksum(type, payload.duplicate())).put(type).put(payload).flip();
+        synchronized (writeLock) {
+            try {
+                writeFully(channel, record, writePosition - base);
+            } catch (IOException e) {
+                throw new UncheckedIOException("journal append failed", e);
+            }
+            writePosition += record.capacity();
+            return writePosition;
+        }
+    }
+
+    /** Blocks until every record up to position is on stable storage (group commit). */
+    public void sync(long position) {
+        if (syncedPosition >= position) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (syncedPosition >= position) {
+                return; // the force we waited for covered this record
+            }
+            long target;
+            synchronized (writeLock) {
+                target = writePosition;
+            }
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                throw new UncheckedIOException("journal sync failed", e);
+            }
+            syncedPosition = target;
+        }
+    }
+
+    /** append followed by sync. */
+    public void appendAndSync(byte type, ByteBuffer payload) {
+        sync(append(type, payload));
+    }
+
+    /** Feeds every record still in the journal, in write order, to handler. */
+    public void replay(RecordHandler handler) {
+        replay(startPosition(), handler);
+    }
+
+    /**
+     * Feeds the records from position (a value returned by append or position) onwards.
+     *
+     * @throws IllegalArgumentException if the records at position were already compacted away
+     */
+    public void replay(long position, RecordHandler handler) {
+        Objects.requireNonNull(handler, "handler must not be null");
+        synchronized (writeLock) {
+            if (position < base + FILE_HEADER_SIZE || position > writePosition) {
+                throw new IllegalArgumentException("position " + position + " is outside the journal ["
+                        + (base + FILE_HEADER_SIZE) + ", " + writePosition + "]");
+            }
+            try {
+                scan(channel, position - base, handler);
+            } catch (IOException e) {
+                throw new UncheckedIOException("journal replay failed", e);
+            }
+        }
+    }
+
+    /** Position of the first record still in the journal. */
+    public long startPosition() {
+        synchronized (writeLock) {
+            return base + FILE_HEADER_SIZE;
+        }
+    }
+
+    /** Position just after the last record written. */
+    public long position() {
+        synchronized (writeLock) {
+            return writePosition;
+        }
+    }
+
+    /**
+     * Drops every record before position, which must be a record boundary (a value returned
+     * by append or position), typically the position a snapshot covers. The remaining tail is
+     * copied to a new file that atomically replaces the journal; writers wait for the copy.
+     */
+    public void compact(long position) {
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                if (position > writePosition) {
+                    throw new IllegalArgumentException("position " + position + " is beyond the journal end "
+                            + writePosition);
+                }
+                if (position <= base + FILE_HEADER_SIZE) {
+                    return; // nothing to drop
+                }
+                long newBase = position - FILE_HEADER_SIZE;
+                Path tmp = path.resolveSibling(path.getFileName() + ".compact");
+                try {
+                    try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                        writeHeader(out, newBase);
+                        out.position(FILE_HEADER_SIZE);
+                        long from = position - base;
+                        long to = writePosition - base;
+                        long copied = 0;
+                        while (from + copied < to) {
+                            copied += channel.transferTo(from + copied, to - from - copied, out);
+                        }
+                        out.force(true);
+                    }
+                    channel.close();
+                    Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    base = newBase;
+                    syncedPosition = writePosition;
+                } catch (IOException e) {
+                    throw new UncheckedIOException("journal compaction failed", e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (writeLock) {
+                if (channel.isOpen()) {
+                    channel.force(false);
+                    channel.close();
+                }
+            }
+        }
+    }
+
+    /** Receives journal records during replay; payload is positioned at the record data. */
+    public interface RecordHandler {
+        void onRecord(byte type, ByteBuffer payload);
+    }
+
+    // -------- Internals --------
+
+    /** Reads records from the file offset start and returns the end of the last intact one. */
+    private static long scan(FileChannel channel, long start, RecordHandler handler) throws IOException {
+        long size = channel.size();
+        long position = start;          // file offset of the record at buffer.position()
+        long readPosition = start;      // file offset of the next byte to read into buffer
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        buffer.flip();
+        while (position + RECORD_HEADER_SIZE <= size) {
+            if (buffer.remaining() < RECORD_HEADER_SIZE) {
+                readPosition = refill(channel, buffer, readPosition, RECORD_HEADER_SIZE);
+            }
+            int length = buffer.getInt(buffer.position());
+            if (length < 0 || position + RECORD_HEADER_SIZE + length > size) {
+                break; // torn write
+            }
+            if (buffer.remaining() < RECORD_HEADER_SIZE + length) {
+                if (buffer.capacity() < RECORD_HEADER_SIZE + length) {
+                    ByteBuffer larger = ByteBuffer.allocate(RECORD_HEADER_SIZE + length);
+                    larger.put(buffer).flip();
+                    buffer = larger;
+                }
+                readPosition = refill(channel, buffer, readPosition, RECORD_HEADER_SIZE + length);
+            }
+            int crc = buffer.getInt(buffer.position() + 4);
+            byte type = buffer.get(buffer.position() + 8);
+            buffer.position(buffer.position() + RECORD_HEADER_SIZE);
+            ByteBuffer payload = buffer.slice().limit(length);
+            if (checksum(type, payload.duplicate()) != crc) {
+                break; // corrupt tail
+            }
+            if (handler != null) {
+                handler.onRecord(type, payload);
+            }
+            buffer.position(buffer.position() + length);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /** Moves unread bytes to the front of buffer and reads until at least needed bytes are available. */
+    private static long refill(FileChannel channel, ByteBuffer buffer, long readPosition, int needed)
+            throws IOException {
+        buffer.compact();
+        while (buffer.position() < needed) {
+            int n = channel.read(buffer, readPosition);
+            if (n < 0) {
+                throw new IOException("unexpected end of journal");
+            }
+            readPosition += n;
+        }
+        buffer.flip();
+        return readPosition;
+    }
+
+    private static void writeHeader(FileChannel channel, long base) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(base).flip();
+        writeFully(channel, header, 0);
+    }
+
+    /** Validates the header and returns the base position. */
+    private static long readHeader(FileChannel channel) throws IOException {
+        if (channel.size() < FILE_HEADER_SIZE) {
+            throw new IOException("journal file too short for header");
+        }
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        readFully(channel, header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("not a journal file");
+        }
+        int version = header.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("unsupported journal format version: " + version);
+        }
+        return header.getLong();
+    }
+
+    private static int checksum(byte type, ByteBuffer payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) {
+                throw new IOException("unexpected end of journal");
+            }
+            position += n;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Several journal records written as one, so they become durable (and are replayed) all
+ * together or not at all.
+ *
+ * Layout of the batch payload: for every record, its type (byte), payload length (int) and
+ * payload. The batch is appended with record type TYPE; a service replaying the journal
+ * hands a TYPE record to forEach with its own record handler, which then sees the records
+ * inside exactly as if they had been appended one by one, and ignores the types it does
+ * not own as usual.
+ */
+public final class JournalBatch {
+
+    /** Journal record type of a batch; not owned by any one service. */
+    public static final byte TYPE = 0x01;
+
+    private final List<ByteBuffer> records = new ArrayList<>();
+    private final List<Byte> types = new ArrayList<>();
+    private int size;
+
+    /** Adds a record; payload is read from its position to its limit when the batch is encoded. */
+    public void add(byte type, ByteBuffer payload) {
+        if (type == TYPE) {
+            throw new IllegalArgumentException("batches cannot be nested");
+        }
+        types.add(type);
+        records.add(payload.duplicate());
+        size += 1 + Integer.BYTES + payload.remaining();
+    }
+
+    public boolean isEmpty() {
+        return records.isEmpty();
+    }
+
+    /** The payload to append with type TYPE. */
+    public ByteBuffer encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (int i = 0; i < records.size(); i++) {
+            ByteBuffer record = records.get(i).duplicate();
+            buffer.put(types.get(i)).putInt(record.remaining()).put(record);
+        }
+        return buffer.flip();
+    }
+
+    /** Feeds the records of a batch payload to handler in the order they were added. */
+    public static void forEach(ByteBuffer payload, Journal.RecordHandler handler) {
+        ByteBuffer batch = payload.duplicate();
+        while (batch.hasRemaining()) {
+            byte type = batch.get();
+            int length = batch.getInt();
+            ByteBuffer record = batch.slice().limit(length);
+            batch.position(batch.position() + length);
+            handler.onRecord(type, record);
+        }
+    }
+}
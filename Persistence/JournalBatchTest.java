@@ -0,0 +1,46 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalBatchTest {
+
+    @Test
+    void testForEachShouldSeeRecordsInOrderWithTheirOwnLimits() {
+        JournalBatch batch = new JournalBatch();
+        batch.add((byte) 0x11, ByteBuffer.wrap(new byte[] {1, 2, 3}));
+        batch.add((byte) 0x22, ByteBuffer.allocate(0));
+        batch.add((byte) 0x33, ByteBuffer.wrap(new byte[] {4}));
+
+        List<String> seen = new ArrayList<>();
+        JournalBatch.forEach(batch.encode(), (type, payload) -> {
+            StringBuilder s = new StringBuilder(Integer.toHexString(type)).append(':');
+            while (payload.hasRemaining()) {
+                s.append(payload.get());
+            }
+            seen.add(s.toString());
+        });
+
+        assertEquals(List.of("11:123", "22:", "33:4"), seen);
+    }
+
+    @Test
+    void testAddShouldNotConsumeThePayload() {
+        ByteBuffer payload = ByteBuffer.wrap(new byte[] {7, 8});
+        JournalBatch batch = new JournalBatch();
+        batch.add((byte) 0x11, payload);
+
+        assertEquals(2, payload.remaining());
+        assertEquals(1 + Integer.BYTES + 2, batch.encode().remaining());
+    }
+
+    @Test
+    void testBatchesShouldNotNest() {
+        JournalBatch batch = new JournalBatch();
+        assertTrue(batch.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> batch.add(JournalBatch.TYPE, ByteBuffer.allocate(0)));
+    }
+}
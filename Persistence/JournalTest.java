@@ -0,0 +1,183 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JournalTest {
+
+    @TempDir
+    Path dir;
+
+    private static ByteBuffer payload(String text) {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryFields.sizeOf(text));
+        BinaryFields.putString(buffer, text);
+        return buffer.flip();
+    }
+
+    private static List<String> replayAll(Journal journal) {
+        List<String> records = new ArrayList<>();
+        journal.replay((type, data) -> records.add(type + ":" + BinaryFields.getString(data)));
+        return records;
+    }
+
+    @Test
+    void testAppendedRecordsShouldReplayInOrderAfterReopen() throws IOException {
+        Path file = dir.resolve("journal.log");
+        try (Journal journal = Journal.open(file)) {
+            journal.appendAndSync((byte) 1, payload("first"));
+            journal.appendAndSync((byte) 2, payload("second"));
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            assertEquals(List.of("1:first", "2:second"), replayAll(journal));
+        }
+    }
+
+    @Test
+    void testNewJournalShouldReplayNothing() throws IOException {
+        try (Journal journal = Journal.open(dir.resolve("journal.log"))) {
+            assertTrue(replayAll(journal).isEmpty());
+            assertEquals(Journal.FILE_HEADER_SIZE, journal.position());
+        }
+    }
+
+    @Test
+    void testTornTailShouldBeTruncatedOnOpen() throws IOException {
+        Path file = dir.resolve("journal.log");
+        long intactEnd;
+        try (Journal journal = Journal.open(file)) {
+            intactEnd = journal.append((byte) 1, payload("kept"));
+            journal.appendAndSync((byte) 1, payload("torn"));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 2);
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            assertEquals(List.of("1:kept"), replayAll(journal));
+            assertEquals(intactEnd, Files.size(file));
+            journal.appendAndSync((byte) 1, payload("after"));
+        }
+        try (Journal journal = Journal.open(file)) {
+            assertEquals(List.of("1:kept", "1:after"), replayAll(journal));
+        }
+    }
+
+    @Test
+    void testCorruptRecordShouldEndReplay() throws IOException {
+        Path file = dir.resolve("journal.log");
+        long firstEnd;
+        try (Journal journal = Journal.open(file)) {
+            firstEnd = journal.append((byte) 1, payload("good"));
+            journal.appendAndSync((byte) 1, payload("bad"));
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {'X'}), Files.size(file) - 1);
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            assertEquals(List.of("1:good"), replayAll(journal));
+            assertEquals(firstEnd, journal.position());
+        }
+    }
+
+    @Test
+    void testNonJournalFileShouldBeRejected() throws IOException {
+        Path file = dir.resolve("other.bin");
+        Files.write(file, new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 9});
+        assertThrows(IOException.class, () -> Journal.open(file));
+    }
+
+    @Test
+    void testConcurrentAppendAndSyncShouldKeepEveryRecord() throws Exception {
+        Path file = dir.resolve("journal.log");
+        int threads = 8;
+        int perThread = 200;
+        try (Journal journal = Journal.open(file)) {
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                futures.add(pool.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        journal.appendAndSync((byte) 1, payload(thread + "-" + i));
+                    }
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+            pool.shutdown();
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            List<String> records = replayAll(journal);
+            assertEquals(threads * perThread, records.size());
+            assertEquals(threads * perThread, records.stream().distinct().count());
+        }
+    }
+
+    // ---- Compaction ----
+
+    @Test
+    void testCompactShouldDropRecordsBeforePositionAndKeepPositions() throws IOException {
+        Path file = dir.resolve("journal.log");
+        long mark;
+        try (Journal journal = Journal.open(file)) {
+            journal.appendAndSync((byte) 1, payload("old-1"));
+            mark = journal.append((byte) 1, payload("old-2"));
+            long tailEnd = journal.append((byte) 1, payload("tail"));
+            journal.sync(tailEnd);
+            long sizeBefore = Files.size(file);
+
+            journal.compact(mark);
+
+            assertTrue(Files.size(file) < sizeBefore);
+            assertEquals(mark, journal.startPosition());
+            assertEquals(tailEnd, journal.position());
+            assertEquals(List.of("1:tail"), replayAll(journal));
+
+            journal.appendAndSync((byte) 1, payload("after"));
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            assertEquals(mark, journal.startPosition());
+            assertEquals(List.of("1:tail", "1:after"), replayAll(journal));
+            assertThrows(IllegalArgumentException.class, () -> journal.replay(mark - 1, (type, data) -> { }));
+        }
+    }
+
+    @Test
+    void testReplayFromPositionShouldSkipEarlierRecords() throws IOException {
+        try (Journal journal = Journal.open(dir.resolve("journal.log"))) {
+            long first = journal.append((byte) 1, payload("a"));
+            journal.appendAndSync((byte) 1, payload("b"));
+
+            List<String> records = new ArrayList<>();
+            journal.replay(first, (type, data) -> records.add(BinaryFields.getString(data)));
+
+            assertEquals(List.of("b"), records);
+        }
+    }
+
+    @Test
+    void testCompactBeyondEndShouldThrow() throws IOException {
+        try (Journal journal = Journal.open(dir.resolve("journal.log"))) {
+            long end = journal.append((byte) 1, payload("a"));
+            assertThrows(IllegalArgumentException.class, () -> journal.compact(end + 1));
+        }
+    }
+}
@@ -0,0 +1,63 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lets a snapshot wait for in-flight mutations without blocking new ones.
+ *
+ * A journaled mutation writes its record while holding the map entry and publishes the
+ * new value when it lets go, so there is a short window where a record is in the journal
+ * but not yet visible in the map. Writers bracket that window with enter()/exit().
+ * A snapshot reads the journal position first and then calls awaitQuiescence(), which
+ * waits only for the writers that entered before it; afterwards every record before that
+ * position is visible in the map, and later records are replayed from the journal tail.
+ *
+ * Counters are striped per thread and padded to separate cache lines, and a thread always
+ * uses the same stripe, so writers do not contend on a shared atomic.
+ */
+public final class MutationGate {
+
+    private static final int PAD = 8; // longs per 64-byte cache line
+    private static final int STRIPES =
+            Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 4 - 1)) << 1;
+
+    private final AtomicLongArray active = new AtomicLongArray(2 * STRIPES * PAD);
+    private volatile int epoch;
+
+    /** Marks the start of a mutation; pass the returned ticket to exit(). */
+    public int enter() {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        while (true) {
+            int e = epoch;
+            int slot = slot(e, stripe);
+            active.incrementAndGet(slot);
+            if (epoch == e) {
+                return slot;
+            }
+            active.decrementAndGet(slot); // a snapshot flipped the epoch meanwhile; join the new one
+        }
+    }
+
+    public void exit(int ticket) {
+        active.decrementAndGet(ticket);
+    }
+
+    /** Blocks until every mutation that entered before this call has exited. */
+    public synchronized void awaitQuiescence() {
+        int previous = epoch;
+        epoch = previous + 1;
+        while (activeIn(previous) != 0) {
+            Thread.yield();
+        }
+    }
+
+    private long activeIn(int e) {
+        long sum = 0;
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            sum += active.get(slot(e, stripe));
+        }
+        return sum;
+    }
+
+    private static int slot(int e, int stripe) {
+        return ((e & 1) * STRIPES + stripe) * PAD;
+    }
+}
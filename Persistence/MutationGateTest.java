@@ -0,0 +1,58 @@
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MutationGateTest {
+
+    @Test
+    void testQuiescenceWithoutWritersShouldReturnImmediately() {
+        MutationGate gate = new MutationGate();
+        gate.awaitQuiescence();
+        gate.awaitQuiescence();
+    }
+
+    @Test
+    void testQuiescenceShouldWaitForWriterThatEnteredBefore() throws Exception {
+        MutationGate gate = new MutationGate();
+        int ticket = gate.enter();
+        AtomicBoolean done = new AtomicBoolean();
+        CountDownLatch finished = new CountDownLatch(1);
+
+        Thread snapshot = new Thread(() -> {
+            gate.awaitQuiescence();
+            done.set(true);
+            finished.countDown();
+        });
+        snapshot.start();
+
+        assertFalse(finished.await(200, TimeUnit.MILLISECONDS));
+        assertFalse(done.get());
+
+        gate.exit(ticket);
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testQuiescenceShouldNotWaitForWriterThatEnteredAfter() throws Exception {
+        MutationGate gate = new MutationGate();
+        int before = gate.enter();
+        CountDownLatch finished = new CountDownLatch(1);
+
+        Thread snapshot = new Thread(() -> {
+            gate.awaitQuiescence();
+            finished.countDown();
+        });
+        snapshot.start();
+        Thread.sleep(100); // let the snapshot flip the epoch
+
+        int after = gate.enter(); // joins the new epoch
+        gate.exit(before);
+
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        gate.exit(after);
+    }
+}
@@ -0,0 +1,22 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Binary form of one kind of record, for stores that keep records outside the heap.
+ *
+ * Every record must encode to at most maxSize() bytes, so a store can give each one a
+ * fixed-width slot. The services' codecs use the same layout as their journal records.
+ */
+public interface RecordCodec<V> {
+
+    /** Upper bound of encode's output for any valid record, in bytes. */
+    int maxSize();
+
+    /** The ID the record is stored under. */
+    String idOf(V record);
+
+    /** Writes record at buffer's position, advancing it. */
+    void encode(ByteBuffer buffer, V record);
+
+    /** Reads a record written by encode from buffer's position, advancing it. */
+    V decode(ByteBuffer buffer);
+}
@@ -0,0 +1,177 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Point-in-time snapshot of one service's records in a memory-mapped file.
+ *
+ * File layout:
+ * - header: magic (int), format version (int), journal position (long), record count (long)
+ * - records: payload length (int), payload
+ *
+ * The journal position is where replay has to continue after loading the snapshot.
+ * A snapshot is written to a temporary file and renamed over the target once complete,
+ * so a crash mid-write leaves the previous snapshot in place.
+ *
+ * Reading maps the file in windows of up to 1 GiB and hands each record to the caller as
+ * a read-only slice of the mapping, so record bytes are not copied onto the heap first.
+ */
+public final class SnapshotFile {
+
+    public static final int MAGIC = 0x534E4150; // "SNAP"
+    public static final int FORMAT_VERSION = 1;
+    public static final int HEADER_SIZE = 24;
+
+    private static final long WRITE_WINDOW = 64L << 20;
+    private static final long READ_WINDOW = 1L << 30;
+
+    private SnapshotFile() { }
+
+    /** Starts a snapshot that will replace target when committed. */
+    public static Writer create(Path target, long journalPosition) throws IOException {
+        return new Writer(target, journalPosition);
+    }
+
+    /**
+     * Feeds every record of the snapshot at path to handler, in the order written.
+     *
+     * @return the journal position the snapshot covers
+     */
+    public static long read(Path path, Consumer<ByteBuffer> handler) throws IOException {
+        Objects.requireNonNull(handler, "handler must not be null");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IOException("snapshot file too short for header");
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("not a snapshot file");
+            }
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("unsupported snapshot format version: " + version);
+            }
+            long journalPosition = header.getLong();
+            long count = header.getLong();
+
+            long windowStart = HEADER_SIZE;
+            MappedByteBuffer window = map(channel, windowStart, size);
+            for (long i = 0; i < count; i++) {
+                long recordStart = windowStart + window.position();
+                if (recordStart + Integer.BYTES > size) {
+                    throw new IOException("snapshot record " + i + " is truncated");
+                }
+                if (window.remaining() < Integer.BYTES) {
+                    windowStart = recordStart;
+                    window = map(channel, windowStart, size);
+                }
+                int length = window.getInt(window.position());
+                if (length < 0 || recordStart + Integer.BYTES + length > size) {
+                    throw new IOException("snapshot record " + i + " is truncated");
+                }
+                if (window.remaining() < Integer.BYTES + length) {
+                    windowStart = recordStart;
+                    window = map(channel, windowStart, size);
+                }
+                window.position(window.position() + Integer.BYTES);
+                ByteBuffer record = window.slice().limit(length).asReadOnlyBuffer();
+                handler.accept(record);
+                window.position(window.position() + length);
+            }
+            return journalPosition;
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, long start, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(READ_WINDOW, size - start));
+    }
+
+    /** Sequential snapshot writer; call beginRecord for each record, then commit. */
+    public static final class Writer implements Closeable {
+
+        private final Path target;
+        private final Path tmp;
+        private final long journalPosition;
+        private final FileChannel channel;
+
+        private MappedByteBuffer window;
+        private long windowStart = HEADER_SIZE;
+        private long count;
+        private int recordEnd = -1;
+        private boolean committed;
+
+        private Writer(Path target, long journalPosition) throws IOException {
+            this.target = target;
+            this.tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            this.journalPosition = journalPosition;
+            this.channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, WRITE_WINDOW);
+        }
+
+        /**
+         * Reserves a record of exactly length bytes and returns the buffer to write it into;
+         * the caller must put exactly length bytes before the next call.
+         */
+        public ByteBuffer beginRecord(int length) throws IOException {
+            checkRecordComplete();
+            int needed = Integer.BYTES + length;
+            if (window.remaining() < needed) {
+                window.force();
+                windowStart += window.position();
+                window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, Math.max(WRITE_WINDOW, needed));
+            }
+            window.putInt(length);
+            recordEnd = window.position() + length;
+            count++;
+            return window;
+        }
+
+        /** Writes the header, makes the file durable and atomically replaces the target. */
+        public void commit() throws IOException {
+            checkRecordComplete();
+            window.force();
+            long end = windowStart + window.position();
+            window = null;
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(journalPosition).putLong(count).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.truncate(end);
+            channel.force(true);
+            channel.close();
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            committed = true;
+        }
+
+        public long recordCount() {
+            return count;
+        }
+
+        /** Abandons an uncommitted snapshot; the previous one at target stays in place. */
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                window = null;
+                channel.close();
+                Files.deleteIfExists(tmp);
+            }
+        }
+
+        private void checkRecordComplete() {
+            if (recordEnd >= 0 && window.position() != recordEnd) {
+                throw new IllegalStateException("record size does not match its declared length");
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotFileTest {
+
+    @TempDir
+    Path dir;
+
+    private static void putRecord(SnapshotFile.Writer writer, String text) throws IOException {
+        BinaryFields.putString(writer.beginRecord(BinaryFields.sizeOf(text)), text);
+    }
+
+    private static List<String> readAll(Path file, long[] position) throws IOException {
+        List<String> records = new ArrayList<>();
+        position[0] = SnapshotFile.read(file, record -> records.add(BinaryFields.getString(record)));
+        return records;
+    }
+
+    @Test
+    void testCommittedSnapshotShouldReadBackRecordsAndPosition() throws IOException {
+        Path file = dir.resolve("contacts.snap");
+        try (SnapshotFile.Writer writer = SnapshotFile.create(file, 1234)) {
+            putRecord(writer, "first");
+            putRecord(writer, "second");
+            writer.commit();
+            assertEquals(2, writer.recordCount());
+        }
+
+        long[] position = new long[1];
+        assertEquals(List.of("first", "second"), readAll(file, position));
+        assertEquals(1234, position[0]);
+    }
+
+    @Test
+    void testEmptySnapshotShouldReadNothing() throws IOException {
+        Path file = dir.resolve("empty.snap");
+        try (SnapshotFile.Writer writer = SnapshotFile.create(file, 16)) {
+            writer.commit();
+        }
+
+        long[] position = new long[1];
+        assertTrue(readAll(file, position).isEmpty());
+        assertEquals(SnapshotFile.HEADER_SIZE, Files.size(file));
+    }
+
+    @Test
+    void testUncommittedSnapshotShouldKeepPreviousOne() throws IOException {
+        Path file = dir.resolve("contacts.snap");
+        try (SnapshotFile.Writer writer = SnapshotFile.create(file, 100)) {
+            putRecord(writer, "old");
+            writer.commit();
+        }
+        try (SnapshotFile.Writer writer = SnapshotFile.create(file, 200)) {
+            putRecord(writer, "new");
+            // no commit: simulates a failure half way
+        }
+
+        long[] position = new long[1];
+        assertEquals(List.of("old"), readAll(file, position));
+        assertEquals(100, position[0]);
+        assertFalse(Files.exists(dir.resolve("contacts.snap.tmp")));
+    }
+
+    @Test
+    void testRecordShorterThanDeclaredShouldBeRejected() throws IOException {
+        Path file = dir.resolve("bad.snap");
+        try (SnapshotFile.Writer writer = SnapshotFile.create(file, 16)) {
+            writer.beginRecord(8).putInt(1);
+            assertThrows(IllegalStateException.class, writer::commit);
+        }
+    }
+
+    @Test
+    void testRecordsSpanningManyWindowsShouldReadBack() throws IOException {
+        Path file = dir.resolve("large.snap");
+        int records = 200_000;
+        try (SnapshotFile.Writer writer = SnapshotFile.create(file, 16)) {
+            for (int i = 0; i < records; i++) {
+                ByteBuffer buffer = writer.beginRecord(400);
+                buffer.putInt(i);
+                buffer.position(buffer.position() + 396);
+            }
+            writer.commit();
+        }
+
+        int[] expected = {0};
+        SnapshotFile.read(file, record -> assertEquals(expected[0]++, record.getInt()));
+        assertEquals(records, expected[0]);
+    }
+
+    @Test
+    void testNonSnapshotFileShouldBeRejected() throws IOException {
+        Path file = dir.resolve("other.bin");
+        Files.write(file, new byte[SnapshotFile.HEADER_SIZE]);
+        assertThrows(IOException.class, () -> SnapshotFile.read(file, record -> { }));
+    }
+}
@@ -0,0 +1,46 @@
+import java.nio.ByteBuffer;
+
+/**
+ * One change staged in a UnitOfWork, made by the service that owns the record.
+ *
+ * UnitOfWork prepares all steps of a commit, writes the records of the journaled ones as
+ * one JournalBatch, and then applies them; if a step cannot be prepared, the steps already
+ * prepared are aborted instead. prepare reserves the record in intents and checks that the
+ * change can be made, so apply cannot fail.
+ */
+public abstract class TransactionStep {
+
+    final WriteIntents intents;
+    final String id;
+    final Journal journal;    // null when the service is memory-only
+    final MutationGate gate;
+
+    TransactionStep(WriteIntents intents, String id, Journal journal, MutationGate gate) {
+        this.intents = intents;
+        this.id = id;
+        this.journal = journal;
+        this.gate = gate;
+    }
+
+    /**
+     * Reserves the record for commit and returns null, or returns the other commit that holds
+     * it without reserving anything.
+     *
+     * @throws RuntimeException the service's exception if the change cannot be made
+     */
+    abstract WriteIntents.Commit prepare(WriteIntents.Commit commit);
+
+    /** Journal record type of the change. */
+    abstract byte type();
+
+    /** Journal record of the change; called only after prepare succeeded and with a journal. */
+    abstract ByteBuffer record();
+
+    /** Makes the prepared change visible and releases the reservation. */
+    abstract void apply();
+
+    /** Undoes prepare. */
+    void abort() {
+        intents.release(id);
+    }
+}
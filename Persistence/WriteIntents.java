@@ -0,0 +1,68 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The records of one service that a committing UnitOfWork has reserved (its write intents).
+ *
+ * A unit of work reserves each record it changes while holding the record's store entry,
+ * then writes its journal batch and applies the changes. The service's own single-record
+ * mutations check for a reservation while holding the entry too; when they find one they
+ * leave the entry as it is, wait for that commit to finish and retry. Reads do not look at
+ * reservations: they see the record as it was until the change is applied.
+ *
+ * While no unit of work is committing the table is empty, and the check is a lookup in an
+ * empty map.
+ */
+public final class WriteIntents {
+
+    private static final AtomicLong INSTANCES = new AtomicLong();
+
+    private final long order = INSTANCES.getAndIncrement();
+    private final ConcurrentHashMap<String, Commit> held = new ConcurrentHashMap<>();
+
+    /** The commit holding id, or null; call while holding id's store entry. */
+    public Commit holder(String id) {
+        return held.get(id);
+    }
+
+    /** Reserves id for commit; call while holding id's store entry after holder(id) was null. */
+    public void hold(String id, Commit commit) {
+        held.put(id, commit);
+    }
+
+    public void release(String id) {
+        held.remove(id);
+    }
+
+    /** Fixed rank of this table among all tables, so units of work reserve in one order. */
+    long order() {
+        return order;
+    }
+
+    /** One attempt of a unit of work to commit; finished when it has committed or backed off. */
+    public static final class Commit {
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        public void finish() {
+            done.countDown();
+        }
+
+        /** Waits until the commit has finished; commits never wait for user code, so this is short. */
+        public void await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+import java.util.Arrays;
+
+/**
+ * Maps IDs to shards 0..shardCount-1 by consistent hashing.
+ *
+ * Every shard owns VIRTUAL_NODES points on a 32-bit ring, placed by hashing the shard's
+ * number, and an ID belongs to the shard of the first point at or after the ID's hash. The
+ * points of a shard depend only on its number, so going from n to n + 1 shards moves only
+ * the IDs that land on the new shard's points (about 1/(n + 1) of them), all onto the new
+ * shard; shrinking moves only the removed shards' IDs. The many points per shard keep the
+ * shards within a few percent of an even share.
+ *
+ * Immutable; lookups are a binary search over a sorted int array.
+ */
+public final class ConsistentHashRing {
+
+    static final int VIRTUAL_NODES = 160;
+
+    private final int shardCount;
+    private final int[] points; // sorted
+    private final int[] owners; // owners[i] owns points[i]
+
+    public ConsistentHashRing(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be positive: " + shardCount);
+        }
+        this.shardCount = shardCount;
+        long[] ring = new long[shardCount * VIRTUAL_NODES];
+        int n = 0;
+        for (int shard = 0; shard < shardCount; shard++) {
+            for (int node = 0; node < VIRTUAL_NODES; node++) {
+                int point = mix(((long) shard << 32) | node);
+                ring[n++] = ((long) point << 32) | shard; // sorts by point, then shard
+            }
+        }
+        Arrays.sort(ring);
+        this.points = new int[ring.length];
+        this.owners = new int[ring.length];
+        for (int i = 0; i < ring.length; i++) {
+            points[i] = (int) (ring[i] >> 32);
+            owners[i] = (int) ring[i];
+        }
+    }
+
+    public int shardCount() {
+        return shardCount;
+    }
+
+    /** Shard of id. */
+    public int shardOf(String id) {
+        return shardOfHash(hash(id));
+    }
+
+    /** Shard of an ID with the given hash(id). */
+    int shardOfHash(int hash) {
+        int i = Arrays.binarySearch(points, hash);
+        if (i < 0) {
+            i = -i - 1;
+        }
+        return owners[i == points.length ? 0 : i];
+    }
+
+    /** Well-spread hash of id: String.hashCode through the murmur3 finalizer. */
+    static int hash(String id) {
+        int h = id.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    /** 64-bit to 32-bit mix (SplitMix64 finalizer) for placing virtual nodes. */
+    private static int mix(long x) {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return (int) (x ^ (x >>> 31));
+    }
+}
@@ -0,0 +1,55 @@
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConsistentHashRingTest {
+
+    @Test
+    void testShardsShouldGetNearlyEvenShares() {
+        ConsistentHashRing ring = new ConsistentHashRing(8);
+        int[] counts = new int[8];
+        int ids = 200_000;
+        for (int i = 0; i < ids; i++) {
+            counts[ring.shardOf("t" + i)]++;
+        }
+
+        for (int count : counts) {
+            assertEquals(ids / 8.0, count, ids / 8.0 * 0.2, "share " + count);
+        }
+    }
+
+    @Test
+    void testGrowingShouldOnlyMoveIdsOntoTheNewShard() {
+        ConsistentHashRing four = new ConsistentHashRing(4);
+        ConsistentHashRing five = new ConsistentHashRing(5);
+        int ids = 100_000;
+        int moved = 0;
+        for (int i = 0; i < ids; i++) {
+            String id = "c" + i;
+            int before = four.shardOf(id);
+            int after = five.shardOf(id);
+            if (before != after) {
+                assertEquals(4, after, id);
+                moved++;
+            }
+        }
+
+        assertEquals(ids / 5.0, moved, ids * 0.05);
+    }
+
+    @Test
+    void testSameShardCountShouldMapIdsTheSameWay() {
+        ConsistentHashRing a = new ConsistentHashRing(16);
+        ConsistentHashRing b = new ConsistentHashRing(16);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(a.shardOf("id" + i), b.shardOf("id" + i));
+        }
+        assertEquals(0, new ConsistentHashRing(1).shardOf("anything"));
+    }
+
+    @Test
+    void testShardCountMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(0));
+    }
+}
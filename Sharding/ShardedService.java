@@ -0,0 +1,484 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Partitions records by ID across independent service instances (shards), for data sets
+ * and write rates one service cannot carry.
+ *
+ * Routing: a ConsistentHashRing maps every ID to one shard. call(id, op) runs op against
+ * that shard on the calling thread; submit(id, op) runs it on the shard's own executor, a
+ * single thread per shard, so the work of different shards runs on different cores without
+ * sharing a queue. op must only touch the record with that ID: each shard is a complete
+ * service of its own and knows nothing of the others.
+ *
+ * Resizing: resize(n) rebalances online. Consistent hashing moves only the IDs whose owner
+ * changes (about 1/n of them when one shard is added). Each moving record is copied to its
+ * new shard and deleted from its old one while its lock stripe is held exclusively; all
+ * routed calls hold their ID's stripe shared, so a call sees a record either before or after
+ * its move, never in between. While a resize runs, an ID is routed to its old shard if that
+ * shard still has it and to its new shard otherwise, which is also where new records go.
+ * Moves show up as a DELETE on the old shard's change feed and an ADD on the new one's.
+ *
+ * Fan-out: exportAll and getPage run on every shard's executor at once and merge the
+ * results; getPage merges in ID order, so a cursor works across all shards. Like the
+ * services' own listings they are weakly consistent, and during a resize a moving record
+ * may be missed or seen twice.
+ *
+ * Appointments are not offered: their per-owner booking conflicts are only detected
+ * within one service, and hashing by appointment ID spreads an owner over all shards.
+ */
+public final class ShardedService<S, R> implements AutoCloseable {
+
+    private static final int STRIPES = 1024; // power of two
+
+    private final Binding<S, R> binding;
+    private final IntFunction<S> factory;
+    private final ReentrantReadWriteLock[] stripes = new ReentrantReadWriteLock[STRIPES];
+    private final ReentrantLock resizeLock = new ReentrantLock();
+    private volatile Layout<S> layout;
+    private volatile boolean closed; // written under resizeLock
+
+    /**
+     * shardCount shards made by factory (called with each new shard's number, also when
+     * resize adds shards), accessed through binding.
+     */
+    public ShardedService(int shardCount, IntFunction<S> factory, Binding<S, R> binding) {
+        this.factory = Objects.requireNonNull(factory, "factory must not be null");
+        this.binding = Objects.requireNonNull(binding, "binding must not be null");
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantReadWriteLock();
+        }
+        List<Shard<S>> shards = new ArrayList<>();
+        for (int i = 0; i < requirePositive(shardCount); i++) {
+            shards.add(newShard(i));
+        }
+        this.layout = new Layout<>(new ConsistentHashRing(shardCount), shards, null);
+    }
+
+    /** shardCount memory-only TaskServices. */
+    public static ShardedService<TaskService, Task> ofTasks(int shardCount) {
+        return new ShardedService<>(shardCount, i -> new TaskService(), new TaskBinding());
+    }
+
+    /** shardCount memory-only ContactServices with their indexes. */
+    public static ShardedService<ContactService, Contact> ofContacts(int shardCount) {
+        return new ShardedService<>(shardCount, i -> new ContactService(), new ContactBinding());
+    }
+
+    public int getShardCount() {
+        return layout.ring.shardCount();
+    }
+
+    /** Shard number index, for per-shard state such as metrics and change feeds. */
+    public S getShard(int index) {
+        return layout.shards.get(index).service;
+    }
+
+    /** The record with id, or null. */
+    public R get(String id) {
+        return call(id, s -> binding.get(s, id));
+    }
+
+    /** Adds record to the shard that owns its ID; duplicates fail as the service's add does. */
+    public void add(R record) {
+        String id = binding.idOf(record);
+        run(id, s -> binding.add(s, record));
+    }
+
+    /** Runs op against the shard holding id, on the calling thread. */
+    public <T> T call(String id, Function<? super S, ? extends T> op) {
+        Objects.requireNonNull(op, "op must not be null");
+        int hash = ConsistentHashRing.hash(Objects.requireNonNull(id, "id must not be null"));
+        ReentrantReadWriteLock.ReadLock lock = stripes[hash & (STRIPES - 1)].readLock();
+        lock.lock();
+        try {
+            return op.apply(route(id, hash));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** call for operations without a result. */
+    public void run(String id, Consumer<? super S> op) {
+        Objects.requireNonNull(op, "op must not be null");
+        call(id, s -> {
+            op.accept(s);
+            return null;
+        });
+    }
+
+    /**
+     * Runs op against the shard holding id on that shard's executor. The future completes
+     * with op's result, or exceptionally with what op threw.
+     */
+    public <T> CompletableFuture<T> submit(String id, Function<? super S, ? extends T> op) {
+        Objects.requireNonNull(op, "op must not be null");
+        int hash = ConsistentHashRing.hash(Objects.requireNonNull(id, "id must not be null"));
+        Layout<S> current = layout;
+        Shard<S> owner = current.shards.get(current.ring.shardOfHash(hash));
+        // routed again under the stripe lock; the executor only picks the thread
+        return supplyOn(owner, () -> call(id, op));
+    }
+
+    /** Number of records in all shards. */
+    public long size() {
+        long size = 0;
+        for (Shard<S> shard : layout.shards) {
+            size += binding.size(shard.service);
+        }
+        return size;
+    }
+
+    /**
+     * Streams every shard's records into sink, all shards in parallel on their executors, and
+     * returns the number of records exported. sink is called from several threads at once.
+     */
+    public long exportAll(Consumer<? super R> sink) {
+        Objects.requireNonNull(sink, "sink must not be null");
+        long exported = 0;
+        for (long n : fanOut(s -> {
+            long count = 0;
+            try (Stream<R> records = binding.stream(s)) {
+                for (R r : (Iterable<R>) records::iterator) {
+                    sink.accept(r);
+                    count++;
+                }
+            }
+            return count;
+        })) {
+            exported += n;
+        }
+        return exported;
+    }
+
+    /**
+     * Up to limit records of all shards in ID order, after cursor: null for the first page,
+     * otherwise Page.getNextCursor() of the previous page. Every shard reads its own page of
+     * limit records in parallel and the pages are merged.
+     */
+    public Page<R> getPage(String cursor, int limit) {
+        Page.requirePositive(limit);
+        List<Page<R>> pages = fanOut(s -> binding.page(s, cursor, limit));
+        List<R> merged = new ArrayList<>();
+        boolean more = false;
+        for (Page<R> page : pages) {
+            merged.addAll(page.getItems());
+            more |= page.hasMore();
+        }
+        merged.sort((a, b) -> binding.idOf(a).compareTo(binding.idOf(b)));
+        List<R> items = new ArrayList<>(Math.min(limit, merged.size()));
+        String last = null;
+        for (R r : merged) {
+            String id = binding.idOf(r);
+            if (id.equals(last)) {
+                continue; // seen on both shards while moving
+            }
+            if (items.size() == limit) {
+                more = true;
+                break;
+            }
+            items.add(r);
+            last = id;
+        }
+        return new Page<>(items, more && last != null ? last : null);
+    }
+
+    /**
+     * Runs op on every shard at once, each on its own executor, and returns the results in
+     * shard order. Exceptions from op are rethrown once all shards are done.
+     */
+    public <T> List<T> fanOut(Function<? super S, ? extends T> op) {
+        Objects.requireNonNull(op, "op must not be null");
+        List<Shard<S>> shards = layout.shards;
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+        for (Shard<S> shard : shards) {
+            futures.add(supplyOn(shard, () -> op.apply(shard.service)));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        for (CompletableFuture<T> f : futures) {
+            results.add(f.join());
+        }
+        return results;
+    }
+
+    /**
+     * Changes the number of shards to shardCount while calls keep running, and returns the
+     * number of records moved. Added shards come from the factory; removed shards (the
+     * highest numbers) are drained, and then their executors are shut down.
+     * Blocks until every moving record is in place; concurrent resizes run one after the
+     * other. If moving a record fails, the exception propagates with routing still correct,
+     * and the next resize finishes the interrupted one first.
+     */
+    public long resize(int shardCount) {
+        requirePositive(shardCount);
+        resizeLock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("sharded service is closed");
+            }
+            long moved = 0;
+            if (layout.previous != null) {
+                moved += rebalance(layout);
+            }
+            Layout<S> before = layout;
+            int oldCount = before.ring.shardCount();
+            if (shardCount == oldCount) {
+                return moved;
+            }
+            List<Shard<S>> shards = new ArrayList<>(before.shards);
+            for (int i = oldCount; i < shardCount; i++) {
+                shards.add(newShard(i));
+            }
+            layout = new Layout<>(new ConsistentHashRing(shardCount), shards, before);
+            // wait out calls that routed by the old layout, so none of them adds to an old
+            // shard after rebalance has scanned it
+            for (ReentrantReadWriteLock stripe : stripes) {
+                stripe.writeLock().lock();
+                stripe.writeLock().unlock();
+            }
+            return moved + rebalance(layout);
+        } finally {
+            resizeLock.unlock();
+        }
+    }
+
+    /** Shuts down the shards' executors; the shards themselves stay readable through getShard. */
+    @Override
+    public void close() {
+        resizeLock.lock();
+        try {
+            closed = true;
+            List<Shard<S>> all = layout.shards;
+            for (Shard<S> shard : all) {
+                shard.executor.shutdown();
+            }
+            for (Shard<S> shard : all) {
+                shard.executor.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            resizeLock.unlock();
+        }
+    }
+
+    /**
+     * Moves every record of target.previous whose owner in target.ring differs to that owner,
+     * one lock stripe at a time, then makes target the stable layout. Returns the records moved.
+     */
+    private long rebalance(Layout<S> target) {
+        long moved = 0;
+        String[] moving = movingIds(target.previous, target.ring);
+        for (int from = 0; from < moving.length; ) {
+            int stripe = stripeOf(moving[from]);
+            int to = from;
+            while (to < moving.length && stripeOf(moving[to]) == stripe) {
+                to++;
+            }
+            moved += move(Arrays.asList(moving).subList(from, to), stripe, target);
+            from = to;
+        }
+        int shardCount = target.ring.shardCount();
+        layout = new Layout<>(target.ring, new ArrayList<>(target.shards.subList(0, shardCount)), null);
+        // drained and out of the layout; tasks already queued still run, later ones run in place
+        for (Shard<S> removed : target.shards.subList(shardCount, target.shards.size())) {
+            removed.executor.shutdown();
+        }
+        return moved;
+    }
+
+    /** The shard holding id, or the shard that should get it; called under id's stripe lock. */
+    private S route(String id, int hash) {
+        Layout<S> current = layout;
+        Shard<S> owner = current.shards.get(current.ring.shardOfHash(hash));
+        Layout<S> previous = current.previous;
+        if (previous != null) {
+            Shard<S> old = previous.shards.get(previous.ring.shardOfHash(hash));
+            if (old != owner && binding.get(old.service, id) != null) {
+                return old.service; // not moved yet
+            }
+        }
+        return owner.service;
+    }
+
+    /** IDs whose owner differs between before and ring, sorted by lock stripe. */
+    private String[] movingIds(Layout<S> before, ConsistentHashRing ring) {
+        List<List<String>> perShard = new ArrayList<>();
+        List<Shard<S>> shards = before.shards;
+        List<CompletableFuture<List<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            int index = i;
+            Shard<S> shard = shards.get(i);
+            futures.add(CompletableFuture.supplyAsync(() -> {
+                List<String> ids = new ArrayList<>();
+                try (Stream<R> records = binding.stream(shard.service)) {
+                    records.map(binding::idOf)
+                            .filter(id -> ring.shardOfHash(ConsistentHashRing.hash(id)) != index)
+                            .forEach(ids::add);
+                }
+                return ids;
+            }, shard.executor));
+        }
+        int total = 0;
+        for (CompletableFuture<List<String>> f : futures) {
+            List<String> ids = f.join();
+            perShard.add(ids);
+            total += ids.size();
+        }
+        String[] moving = new String[total];
+        int n = 0;
+        for (List<String> ids : perShard) {
+            for (String id : ids) {
+                moving[n++] = id;
+            }
+        }
+        Arrays.sort(moving, (a, b) -> Integer.compare(stripeOf(a), stripeOf(b)));
+        return moving;
+    }
+
+    /** Moves ids, all in one stripe, from their shard in target.previous to their shard in target. */
+    private long move(List<String> ids, int stripe, Layout<S> target) {
+        Layout<S> before = target.previous;
+        long moved = 0;
+        ReentrantReadWriteLock.WriteLock lock = stripes[stripe].writeLock();
+        lock.lock();
+        try {
+            for (String id : ids) {
+                int hash = ConsistentHashRing.hash(id);
+                S from = before.shards.get(before.ring.shardOfHash(hash)).service;
+                R record = binding.get(from, id);
+                if (record == null) {
+                    continue; // deleted since the scan
+                }
+                binding.add(target.shards.get(target.ring.shardOfHash(hash)).service, record);
+                binding.delete(from, id);
+                moved++;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return moved;
+    }
+
+    /**
+     * Runs task on shard's executor, or on the calling thread if a resize retired the shard
+     * after the caller picked it from an older layout.
+     */
+    private <T> CompletableFuture<T> supplyOn(Shard<S> shard, Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, shard.executor);
+        } catch (RejectedExecutionException e) {
+            if (closed) {
+                throw e;
+            }
+            return CompletableFuture.supplyAsync(task, Runnable::run);
+        }
+    }
+
+    private Shard<S> newShard(int index) {
+        ExecutorService executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "shard-" + index);
+            thread.setDaemon(true);
+            return thread;
+        });
+        return new Shard<>(factory.apply(index), executor);
+    }
+
+    private static int stripeOf(String id) {
+        return ConsistentHashRing.hash(id) & (STRIPES - 1);
+    }
+
+    private static int requirePositive(int shardCount) {
+        if (shardCount <= 0) {
+            throw new IllegalArgumentException("shardCount must be positive: " + shardCount);
+        }
+        return shardCount;
+    }
+
+    /**
+     * How ShardedService reads and writes one kind of service. page must list records in ID
+     * order with the last returned ID as the cursor, as Page.ofIds does.
+     */
+    public interface Binding<S, R> {
+        String idOf(R record);
+        R get(S shard, String id);
+        void add(S shard, R record);
+        void delete(S shard, String id);
+        long size(S shard);
+        Stream<R> stream(S shard);
+        Page<R> page(S shard, String cursor, int limit);
+    }
+
+    static final class TaskBinding implements Binding<TaskService, Task> {
+        @Override public String idOf(Task task) { return task.getTaskId(); }
+        @Override public Task get(TaskService shard, String id) { return shard.getTask(id); }
+        @Override public void add(TaskService shard, Task task) { shard.addTask(task); }
+        @Override public void delete(TaskService shard, String id) { shard.deleteTask(id); }
+        @Override public long size(TaskService shard) { return shard.getAllTasksView().size(); }
+        @Override public Stream<Task> stream(TaskService shard) { return shard.streamTasks(); }
+        @Override public Page<Task> page(TaskService shard, String cursor, int limit) {
+            return shard.getTasksPage(cursor, limit);
+        }
+    }
+
+    static final class ContactBinding implements Binding<ContactService, Contact> {
+        @Override public String idOf(Contact contact) { return contact.getContactId(); }
+        @Override public Contact get(ContactService shard, String id) { return shard.getContact(id); }
+        @Override public void add(ContactService shard, Contact contact) { shard.addContact(contact); }
+        @Override public void delete(ContactService shard, String id) { shard.deleteContact(id); }
+        @Override public long size(ContactService shard) { return shard.getAllContactsView().size(); }
+        @Override public Stream<Contact> stream(ContactService shard) { return shard.streamContacts(); }
+        @Override public Page<Contact> page(ContactService shard, String cursor, int limit) {
+            return shard.getContactsPage(cursor, limit);
+        }
+    }
+
+    private static final class Shard<S> {
+
+        final S service;
+        final ExecutorService executor;
+
+        Shard(S service, ExecutorService executor) {
+            this.service = service;
+            this.executor = executor;
+        }
+    }
+
+    /**
+     * Ring and shards; previous is the layout being rebalanced away from, null when no
+     * resize is running. While it runs, shards holds the old and the new shards.
+     */
+    private static final class Layout<S> {
+
+        final ConsistentHashRing ring;
+        final List<Shard<S>> shards;
+        final Layout<S> previous;
+
+        Layout(ConsistentHashRing ring, List<Shard<S>> shards, Layout<S> previous) {
+            this.ring = ring;
+            this.shards = Collections.unmodifiableList(shards);
+            this.previous = previous;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShardedServiceTest {
+
+    private final List<ShardedService<?, ?>> opened = new ArrayList<>();
+
+    private ShardedService<TaskService, Task> tasks(int shards) {
+        ShardedService<TaskService, Task> service = ShardedService.ofTasks(shards);
+        opened.add(service);
+        return service;
+    }
+
+    @AfterEach
+    void close() {
+        opened.forEach(ShardedService::close);
+    }
+
+    @Test
+    void testRecordsShouldBeSpreadOverShardsAndFoundById() {
+        ShardedService<TaskService, Task> service = tasks(4);
+        for (int i = 0; i < 1000; i++) {
+            service.add(new Task("t" + i, "Name", "Description"));
+        }
+
+        assertEquals(1000, service.size());
+        for (int s = 0; s < 4; s++) {
+            assertTrue(service.getShard(s).getAllTasksView().size() > 150);
+        }
+        assertEquals("t42", service.get("t42").getTaskId());
+        assertNull(service.get("missing"));
+        assertThrows(TaskService.DuplicateIdException.class, () -> service.add(new Task("t7", "Name", "Description")));
+
+        service.run("t7", s -> s.updateTask("t7", "Renamed", "Description"));
+        assertEquals("Renamed", service.call("t7", s -> s.getTask("t7").getName()));
+    }
+
+    @Test
+    void testSubmitShouldRunOnTheShardsExecutor() throws Exception {
+        ShardedService<TaskService, Task> service = tasks(2);
+        service.add(new Task("a", "Name", "Description"));
+
+        String thread = service.submit("a", s -> Thread.currentThread().getName()).get(10, TimeUnit.SECONDS);
+        assertTrue(thread.startsWith("shard-"), thread);
+
+        Future<?> failed = service.submit("missing", s -> {
+            s.deleteTask("missing");
+            return null;
+        });
+        Exception e = assertThrows(Exception.class, () -> failed.get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof TaskService.NotFoundException);
+    }
+
+    @Test
+    void testPagesShouldMergeShardsInIdOrder() {
+        ShardedService<ContactService, Contact> service = ShardedService.ofContacts(3);
+        opened.add(service);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 95; i++) {
+            String id = String.format("c%03d", i);
+            service.add(new Contact(id, "First", "Last", "5555555555", "1 Main St"));
+            expected.add(id);
+        }
+
+        List<String> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            Page<Contact> page = service.getPage(cursor, 10);
+            assertTrue(page.getItems().size() <= 10);
+            page.getItems().forEach(c -> seen.add(c.getContactId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void testExportShouldVisitEveryRecordOnce() {
+        ShardedService<TaskService, Task> service = tasks(4);
+        for (int i = 0; i < 5000; i++) {
+            service.add(new Task("t" + i, "Name", "Description"));
+        }
+        Set<String> exported = ConcurrentHashMap.newKeySet();
+
+        long count = service.exportAll(t -> assertTrue(exported.add(t.getTaskId())));
+
+        assertEquals(5000, count);
+        assertEquals(5000, exported.size());
+    }
+
+    @Test
+    void testResizeShouldMoveOnlyTheRecordsOfChangedOwners() {
+        ShardedService<TaskService, Task> service = tasks(4);
+        for (int i = 0; i < 10_000; i++) {
+            service.add(new Task("t" + i, "Name", "Description", i % 10, Task.NO_DUE_TIME));
+        }
+        service.call("t1", TaskService::claimNextTask);
+
+        long grown = service.resize(5);
+
+        assertEquals(5, service.getShardCount());
+        assertEquals(10_000, service.size());
+        assertEquals(10_000 / 5.0, grown, 10_000 * 0.05);
+        ConsistentHashRing ring = new ConsistentHashRing(5);
+        for (int i = 0; i < 10_000; i += 97) {
+            String id = "t" + i;
+            assertNotNull(service.getShard(ring.shardOf(id)).getTask(id), id);
+        }
+
+        service.resize(2);
+
+        assertEquals(2, service.getShardCount());
+        assertEquals(10_000, service.size());
+        assertEquals(9, service.get("t9").getPriority());
+        long claimed = 0;
+        for (int s = 0; s < 2; s++) {
+            claimed += service.getShard(s).streamTasks().filter(t -> t.getStatus() == Task.Status.CLAIMED).count();
+        }
+        assertEquals(1, claimed);
+        assertEquals(0, service.resize(2));
+    }
+
+    @Test
+    void testCallsDuringResizeShouldNeitherLoseNorDuplicateRecords() throws Exception {
+        ShardedService<TaskService, Task> service = tasks(2);
+        for (int i = 0; i < 5000; i++) {
+            service.add(new Task("t" + i, "Name", "Description"));
+        }
+        AtomicBoolean resizing = new AtomicBoolean(true);
+        int writers = 4;
+        ExecutorService pool = Executors.newFixedThreadPool(writers);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (int w = 0; w < writers; w++) {
+                int writer = w;
+                futures.add(pool.submit(() -> {
+                    int added = 0;
+                    while (resizing.get() || added < 100) {
+                        service.add(new Task("w" + writer + "-" + added, "Name", "Description"));
+                        String id = "t" + (added * 7 + writer) % 5000;
+                        service.run(id, s -> s.updateTask(id, "Writer" + writer, "Description"));
+                        assertNotNull(service.get(id), id);
+                        added++;
+                    }
+                    return added;
+                }));
+            }
+            service.resize(6);
+            service.resize(3);
+            resizing.set(false);
+
+            long added = 0;
+            for (Future<Integer> f : futures) {
+                added += f.get(30, TimeUnit.SECONDS);
+            }
+            assertEquals(5000 + added, service.size());
+            Set<String> ids = ConcurrentHashMap.newKeySet();
+            service.exportAll(t -> assertTrue(ids.add(t.getTaskId()), t.getTaskId()));
+            assertEquals(5000 + added, ids.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void testShrinkingShouldStopTheRemovedShardsThreads() throws Exception {
+        Set<Thread> before = Thread.getAllStackTraces().keySet();
+        ShardedService<TaskService, Task> service = tasks(4);
+        assertEquals(4, service.fanOut(s -> Thread.currentThread()).size()); // starts every shard's thread
+        List<Thread> removed = new ArrayList<>();
+        for (Thread t : Thread.getAllStackTraces().keySet()) {
+            if (!before.contains(t) && (t.getName().equals("shard-2") || t.getName().equals("shard-3"))) {
+                removed.add(t);
+            }
+        }
+        assertEquals(2, removed.size());
+
+        service.resize(2);
+
+        for (Thread t : removed) {
+            t.join(TimeUnit.SECONDS.toMillis(10));
+            assertFalse(t.isAlive(), t.getName());
+        }
+        assertEquals(2, service.fanOut(s -> Thread.currentThread().getName()).size());
+    }
+
+    @Test
+    void testShardCountMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> ShardedService.ofTasks(0));
+        ShardedService<TaskService, Task> service = tasks(1);
+        assertThrows(IllegalArgumentException.class, () -> service.resize(-1));
+    }
+}
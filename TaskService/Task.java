@@ -1,5 +1,3 @@
-import java.util.Objects;
-
 /**
  * Task model that stores task data and enforces validation rules.
  *
@@ -7,16 +5,41 @@ import java.util.Objects;
  * - taskId: required, unique (enforced by TaskService), not null, max 10 chars, NOT updatable
  * - name: required, not null, max 20 chars
  * - description: required, not null, max 50 chars
+ * - priority: optional, 0 (the default, least urgent) to 9 (most urgent)
+ * - dueTime: optional epoch millis, NO_DUE_TIME when not given; may be in the past (overdue)
+ * - status: OPEN when created; TaskService moves it to CLAIMED and DONE as workers claim
+ *   and complete the task
+ *
+ * Validation runs on the allocation-free checks in Validation; check() exposes them
+ * directly as error codes for callers that do not want exceptions.
  */
 public class Task {
 
     public static final int MAX_ID_LENGTH = 10;
     public static final int MAX_NAME_LENGTH = 20;
     public static final int MAX_DESCRIPTION_LENGTH = 50;
+    public static final int MAX_PRIORITY = 9;
+    /** dueTime of a task without a due date; sorts after every real due time. */
+    public static final long NO_DUE_TIME = Long.MAX_VALUE;
+
+    /** Field numbers in the codes returned by check(). */
+    public static final int FIELD_ID = 1;
+    public static final int FIELD_NAME = 2;
+    public static final int FIELD_DESCRIPTION = 3;
+    public static final int FIELD_PRIORITY = 4;
+
+    private static final String[] FIELD_NAMES = {null, "taskId", "name", "description", "priority"};
+    private static final int[] FIELD_LIMITS = {0, MAX_ID_LENGTH, MAX_NAME_LENGTH, MAX_DESCRIPTION_LENGTH, MAX_PRIORITY};
+
+    /** Where a task is in its life cycle; only TaskService changes it. */
+    public enum Status { OPEN, CLAIMED, DONE }
 
     private final String taskId; // not updatable
     private String name;
     private String description;
+    private int priority;
+    private long dueTime = NO_DUE_TIME;
+    private Status status = Status.OPEN;
 
     public Task(String taskId, String name, String description) {
         this.taskId = validateId(taskId);
@@ -24,44 +47,123 @@ public class Task {
         this.description = validateDescription(description);
     }
 
+    /** Task with a priority (0 to MAX_PRIORITY) and a due time (NO_DUE_TIME for none). */
+    public Task(String taskId, String name, String description, int priority, long dueTime) {
+        this(taskId, name, description);
+        this.priority = validatePriority(priority);
+        this.dueTime = dueTime;
+    }
+
+    /** Copy of an already validated task, for snapshots of a task that may change later. */
+    private Task(Task source) {
+        this.taskId = source.taskId;
+        this.name = source.name;
+        this.description = source.description;
+        this.priority = source.priority;
+        this.dueTime = source.dueTime;
+        this.status = source.status;
+    }
+
     public String getTaskId() { return taskId; }
     public String getName() { return name; }
     public String getDescription() { return description; }
+    public int getPriority() { return priority; }
+    public long getDueTime() { return dueTime; }
+    public boolean hasDueTime() { return dueTime != NO_DUE_TIME; }
+    public Status getStatus() { return status; }
 
     public void setName(String name) { this.name = validateName(name); }
     public void setDescription(String description) { this.description = validateDescription(description); }
 
-    private static String validateId(String id) {
-        String value = requireNonBlank(id, "taskId");
-        if (value.length() > MAX_ID_LENGTH) {
-            throw new ValidationException("taskId must be <= " + MAX_ID_LENGTH + " characters");
+    // priority, due time and status position the task in TaskService's claim queue, so only
+    // the service changes them, while it holds the task
+    void setPriority(int priority) { this.priority = validatePriority(priority); }
+    void setDueTime(long dueTime) { this.dueTime = dueTime; }
+    void setStatus(Status status) { this.status = status; }
+
+    /** An independent copy with the current values (tasks are mutable). */
+    Task copy() {
+        return new Task(this);
+    }
+
+    /**
+     * Allocation-free check of the values new Task(...) would accept: returns Validation.OK,
+     * or Validation.code(FIELD_..., kind) for the first failing field, without building an
+     * exception or a message; describe(code) explains a failure.
+     */
+    public static int check(String taskId, String name, String description) {
+        int kind = Validation.text(taskId, MAX_ID_LENGTH);
+        if (kind != Validation.OK) {
+            return Validation.code(FIELD_ID, kind);
+        }
+        kind = Validation.text(name, MAX_NAME_LENGTH);
+        if (kind != Validation.OK) {
+            return Validation.code(FIELD_NAME, kind);
         }
-        return value;
+        return Validation.code(FIELD_DESCRIPTION, Validation.text(description, MAX_DESCRIPTION_LENGTH));
     }
 
-    private static String validateName(String name) {
-        String value = requireNonBlank(name, "name");
-        if (value.length() > MAX_NAME_LENGTH) {
-            throw new ValidationException("name must be <= " + MAX_NAME_LENGTH + " characters");
+    /** check for the constructor that takes a priority and a due time. */
+    public static int check(String taskId, String name, String description, int priority) {
+        int code = check(taskId, name, description);
+        if (code != Validation.OK) {
+            return code;
         }
-        return value;
+        return Validation.code(FIELD_PRIORITY, Validation.inRange(priority, MAX_PRIORITY));
+    }
+
+    /** Pass/fail form of check. */
+    public static boolean isValid(String taskId, String name, String description) {
+        return check(taskId, name, description) == Validation.OK;
+    }
+
+    /** The message the constructor would throw for a non-OK code returned by check. */
+    public static String describe(int code) {
+        int field = Validation.fieldOf(code);
+        if (field < FIELD_ID || field > FIELD_PRIORITY) {
+            throw new IllegalArgumentException("not a Task validation code: " + code);
+        }
+        return Validation.message(FIELD_NAMES[field], Validation.kindOf(code), FIELD_LIMITS[field]);
+    }
+
+    /** Validates and trims a taskId; also used by TaskService for lookups. */
+    static String validateId(String id) {
+        return validateText(FIELD_ID, id);
+    }
+
+    /**
+     * Validates a new name and description the way the constructor does, so TaskService can
+     * reject an update before it changes anything.
+     */
+    static void validateUpdate(String name, String description) {
+        validateName(name);
+        validateDescription(description);
+    }
+
+    private static String validateName(String name) {
+        return validateText(FIELD_NAME, name);
     }
 
     private static String validateDescription(String description) {
-        String value = requireNonBlank(description, "description");
-        if (value.length() > MAX_DESCRIPTION_LENGTH) {
-            throw new ValidationException("description must be <= " + MAX_DESCRIPTION_LENGTH + " characters");
+        return validateText(FIELD_DESCRIPTION, description);
+    }
+
+    /** Validates a priority; also used by TaskService before it changes a stored task. */
+    static int validatePriority(int priority) {
+        int kind = Validation.inRange(priority, MAX_PRIORITY);
+        if (kind != Validation.OK) {
+            throw new ValidationException(Validation.message(FIELD_NAMES[FIELD_PRIORITY], kind, MAX_PRIORITY));
         }
-        return value;
+        return priority;
     }
 
-    private static String requireNonBlank(String s, String fieldName) {
-        Objects.requireNonNull(s, fieldName + " must not be null");
-        String trimmed = s.trim();
-        if (trimmed.isEmpty()) {
-            throw new ValidationException(fieldName + " must not be blank");
+    private static String validateText(int field, String value) {
+        int kind = Validation.text(value, FIELD_LIMITS[field]);
+        if (kind != Validation.OK) {
+            String message = Validation.message(FIELD_NAMES[field], kind, FIELD_LIMITS[field]);
+            throw kind == Validation.NULL ? new NullPointerException(message) : new ValidationException(message);
         }
-        return trimmed;
+        return Validation.trim(value);
     }
 
     public static class ValidationException extends RuntimeException {
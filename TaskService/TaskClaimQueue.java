@@ -0,0 +1,85 @@
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Open tasks in claim order: highest priority first, then earliest due time (tasks without
+ * one last), then taskId.
+ *
+ * The queue holds small immutable keys in a ConcurrentSkipListSet, so add, remove and
+ * pollFirst are lock-free and O(log n): a priority or due-time change re-positions one task
+ * by removing its old key and adding the new one, and pollFirst hands each key to exactly
+ * one caller however many workers poll at once.
+ *
+ * TaskService adds and removes keys while holding the task's entry in its store, so the
+ * queue always matches the stored tasks' fields. A claimer that polled a key re-checks the
+ * task's status under the same entry; a key that went stale in between (the task was
+ * claimed, re-positioned or deleted) is simply skipped.
+ */
+final class TaskClaimQueue {
+
+    private final ConcurrentSkipListSet<Key> keys = new ConcurrentSkipListSet<>();
+    private final LongAdder size = new LongAdder();
+
+    /** Queues task at the position of its current priority and due time. */
+    void add(Task task) {
+        if (keys.add(new Key(task))) {
+            size.increment();
+        }
+    }
+
+    /** Removes task's key for its current priority and due time, if queued. */
+    void remove(Task task) {
+        if (keys.remove(new Key(task))) {
+            size.decrement();
+        }
+    }
+
+    /** Removes and returns the taskId of the most urgent key, or null if none is queued. */
+    String pollFirst() {
+        Key first = keys.pollFirst();
+        if (first == null) {
+            return null;
+        }
+        size.decrement();
+        return first.taskId;
+    }
+
+    int size() {
+        return (int) Math.max(0, size.sum());
+    }
+
+    /** Position of one task; equal keys are the same task at the same position. */
+    private static final class Key implements Comparable<Key> {
+
+        final int priority;
+        final long dueTime;
+        final String taskId;
+
+        Key(Task task) {
+            this.priority = task.getPriority();
+            this.dueTime = task.getDueTime();
+            this.taskId = task.getTaskId();
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            if (priority != other.priority) {
+                return Integer.compare(other.priority, priority);
+            }
+            if (dueTime != other.dueTime) {
+                return Long.compare(dueTime, other.dueTime);
+            }
+            return taskId.compareTo(other.taskId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && compareTo((Key) o) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return taskId.hashCode();
+        }
+    }
+}
@@ -1,7 +1,21 @@
-import java.util.Collections;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * In-memory service for managing Task objects by taskId.
@@ -9,71 +23,890 @@ import java.util.Objects;
  * Requirements:
  * - Add tasks with unique ID
  * - Delete tasks by taskId
- * - Update (name, description) by taskId
+ * - Update (name, description, and optionally priority and due time) by taskId
+ *
+ * Tasks are kept in a RecordStore (by default a ConcurrentHashMap, see HeapRecordStore)
+ * and every mutation runs while holding the task's entry, so add, delete and update are
+ * atomic per taskId. A DiskRecordStore opened with RECORD_CODEC keeps tasks in files with
+ * a bounded cache of the popular ones on the heap; getTask then returns a cached copy, so
+ * tasks must be changed through updateTask rather than through their setters.
+ *
+ * Persistence (optional): when constructed with a Journal, the service replays it on
+ * startup and logs every add, update and delete before returning. writeSnapshot() stores
+ * all tasks in a SnapshotFile without pausing writers; a restart from (journal, snapshot)
+ * loads the snapshot and replays only the journal tail after it.
+ *
+ * Change feed: every add, update and delete is also published to getChangeFeed() from
+ * inside the same map operation. Tasks are mutable, so events carry a copy of the task;
+ * likewise addTask stores a copy, getTask returns one, and an update stores a changed copy
+ * instead of changing the stored task, so a failed update leaves nothing half-applied.
+ * getSyncIndex() files each change under its modification sequence, so getTaskChanges() answers
+ * "what changed since this sync token" without scanning the store.
+ *
+ * Claiming: open tasks wait in a TaskClaimQueue ordered by priority, then due time.
+ * claimNextTask() hands the most urgent one to exactly one of any number of concurrent
+ * workers and marks it CLAIMED; the worker then calls completeTask, or releaseTask to put
+ * it back. There is no lease: a claimed task stays claimed, across restarts too, until its
+ * worker completes or releases it. The queue is rebuilt from the stored tasks on startup.
+ *
+ * Metrics: once enabled, getMetrics() counts addTask, updateTask, deleteTask and the claim
+ * calls and their failures and samples their latency (see ServiceMetrics).
+ *
+ * Reading everything: streamTasks() walks the store lazily and splits for parallel streams;
+ * getTasksPage() pages through tasks in taskId order from a sorted ID index, so a client
+ * can resume from a cursor. Both are weakly consistent and never copy the store.
  */
 public class TaskService {
 
-    private final Map<String, Task> tasks = new HashMap<>();
+    /** Journal record types owned by this service. */
+    static final byte OP_PUT = 0x21;
+    static final byte OP_REMOVE = 0x22;
+    static final byte OP_SYNC_STATE = 0x23;
+
+    private static final Task.Status[] STATUSES = Task.Status.values();
+
+    /** Binary form of a task (the journal's record layout), for DiskRecordStore. */
+    public static final RecordCodec<Task> RECORD_CODEC = new RecordCodec<>() {
+        @Override
+        public int maxSize() {
+            return BinaryFields.maxSizeOf(Task.MAX_ID_LENGTH)
+                    + BinaryFields.maxSizeOf(Task.MAX_NAME_LENGTH)
+                    + BinaryFields.maxSizeOf(Task.MAX_DESCRIPTION_LENGTH)
+                    + 1 + Long.BYTES + 1;
+        }
+
+        @Override
+        public String idOf(Task task) {
+            return task.getTaskId();
+        }
+
+        @Override
+        public void encode(ByteBuffer buffer, Task task) {
+            encodeTo(buffer, task);
+        }
+
+        @Override
+        public Task decode(ByteBuffer buffer) {
+            return TaskService.decode(buffer);
+        }
+    };
+
+    private final RecordStore<Task> tasks;
+    private final NavigableSet<String> ids = new ConcurrentSkipListSet<>(); // for paging
+    private final TaskClaimQueue queue = new TaskClaimQueue(); // OPEN tasks
+    private final WriteIntents intents = new WriteIntents(); // tasks reserved by units of work
+    private final Journal journal; // null when memory-only
+    private final MutationGate gate = new MutationGate();
+    private final ChangeFeed<Task> changes = new ChangeFeed<>();
+    private final SyncIndex<Task> sync = new SyncIndex<>(changes, this::getTask);
+    private final Map<String, Task> view = new CopyingView();
+    private final ServiceMetrics metrics = new ServiceMetrics("TaskService", "add", "update", "delete",
+            "claim", "complete", "release");
+    private final ServiceMetrics.Operation addOp = metrics.operation("add");
+    private final ServiceMetrics.Operation updateOp = metrics.operation("update");
+    private final ServiceMetrics.Operation deleteOp = metrics.operation("delete");
+    private final ServiceMetrics.Operation claimOp = metrics.operation("claim");
+    private final ServiceMetrics.Operation completeOp = metrics.operation("complete");
+    private final ServiceMetrics.Operation releaseOp = metrics.operation("release");
+
+    public TaskService() {
+        this(new HeapRecordStore<>());
+    }
+
+    /** Memory-only service over store, which may already hold tasks. */
+    public TaskService(RecordStore<Task> store) {
+        this.tasks = Objects.requireNonNull(store, "store must not be null");
+        this.journal = null;
+        indexLoadedTasks();
+    }
+
+    /** Durable service: replays the journal into memory, then logs every mutation to it. */
+    public TaskService(Journal journal) {
+        this(new HeapRecordStore<>(), journal);
+    }
+
+    /** Durable service over store; see TaskService(Journal). */
+    public TaskService(RecordStore<Task> store, Journal journal) {
+        this.tasks = Objects.requireNonNull(store, "store must not be null");
+        this.journal = Objects.requireNonNull(journal, "journal must not be null");
+        journal.replay(this::applyRecord);
+        finishRestore();
+        indexLoadedTasks();
+    }
+
+    /**
+     * Durable service that starts from a snapshot written by writeSnapshot (if the file
+     * exists) and replays only the journal records written after it.
+     */
+    public TaskService(Journal journal, Path snapshot) {
+        this(new HeapRecordStore<>(), journal, snapshot);
+    }
+
+    /** Durable service over store; see TaskService(Journal, Path). */
+    public TaskService(RecordStore<Task> store, Journal journal, Path snapshot) {
+        this.tasks = Objects.requireNonNull(store, "store must not be null");
+        this.journal = Objects.requireNonNull(journal, "journal must not be null");
+        Objects.requireNonNull(snapshot, "snapshot must not be null");
+        long from = journal.startPosition();
+        if (Files.exists(snapshot)) {
+            try {
+                from = SnapshotFile.read(snapshot, record -> {
+                    Task t = decode(record);
+                    tasks.put(t.getTaskId(), t);
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException("cannot load task snapshot " + snapshot, e);
+            }
+        }
+        journal.replay(from, this::applyRecord);
+        finishRestore();
+        indexLoadedTasks();
+    }
 
     public void addTask(Task task) {
-        Objects.requireNonNull(task, "task must not be null");
+        long start = addOp.start();
+        try {
+            Objects.requireNonNull(task, "task must not be null");
 
-        String id = task.getTaskId();
-        if (tasks.containsKey(id)) {
-            throw new DuplicateIdException("Task ID already exists: " + id);
+            long logged = insert(task);
+            if (logged == BulkImport.NOT_INSERTED) {
+                throw new DuplicateIdException("Task ID already exists: " + task.getTaskId());
+            }
+            sync(logged);
+        } catch (RuntimeException e) {
+            throw addOp.failed(start, e);
         }
-        tasks.put(id, task);
+        addOp.succeeded(start);
+    }
+
+    /**
+     * Bulk add of already built tasks. Duplicate IDs (already stored or repeated in the
+     * batch) are reported in the result instead of thrown, and the journal, if any, is synced
+     * once for the whole batch.
+     */
+    public BulkResult addTasks(Collection<Task> tasks) {
+        return importTasks(tasks, t -> t);
+    }
+
+    /**
+     * Bulk import: builds a task from every row with factory, in parallel so validation
+     * uses all cores, then stores the valid ones in parallel. Validation errors and duplicate
+     * IDs are reported per row in the result; the batch is never aborted by a bad row.
+     */
+    public <T> BulkResult importTasks(Collection<? extends T> rows, Function<? super T, Task> factory) {
+        return BulkImport.run(rows, factory, Task.ValidationException.class, Task::getTaskId,
+                this::insert, this::sync);
     }
 
     public void deleteTask(String taskId) {
-        String id = requireId(taskId);
-        if (!tasks.containsKey(id)) {
-            throw new NotFoundException("Task not found: " + id);
+        long start = deleteOp.start();
+        try {
+            String id = requireId(taskId);
+            long logged = remove(id);
+            if (logged < 0) {
+                throw new NotFoundException("Task not found: " + id);
+            }
+            sync(logged);
+        } catch (RuntimeException e) {
+            throw deleteOp.failed(start, e);
         }
-        tasks.remove(id);
+        deleteOp.succeeded(start);
     }
 
     public void updateTask(String taskId, String name, String description) {
-        Task t = getTaskOrThrow(taskId);
-        t.setName(name);
-        t.setDescription(description);
+        long start = updateOp.start();
+        try {
+            update(requireId(taskId), name, description, false, 0, 0);
+        } catch (RuntimeException e) {
+            throw updateOp.failed(start, e);
+        }
+        updateOp.succeeded(start);
+    }
+
+    /**
+     * Also sets priority and due time; an open task moves to its new place in the claim
+     * queue in O(log n).
+     */
+    public void updateTask(String taskId, String name, String description, int priority, long dueTime) {
+        long start = updateOp.start();
+        try {
+            Task.validatePriority(priority);
+            update(requireId(taskId), name, description, true, priority, dueTime);
+        } catch (RuntimeException e) {
+            throw updateOp.failed(start, e);
+        }
+        updateOp.succeeded(start);
+    }
+
+    private void update(String id, String name, String description, boolean reposition, int priority, long dueTime) {
+        Task.validateUpdate(name, description);
+        long[] logged = {-1};
+        WriteIntents.Commit[] blocker = {null};
+        int ticket = enterMutation();
+        try {
+            tasks.computeIfPresent(id, (key, t) -> {
+                if ((blocker[0] = intents.holder(key)) != null) {
+                    return t;
+                }
+                Task next = t.copy(); // the stored task is replaced, never changed in place
+                next.setName(name);
+                next.setDescription(description);
+                if (reposition && (t.getPriority() != priority || t.getDueTime() != dueTime)) {
+                    next.setPriority(priority);
+                    next.setDueTime(dueTime);
+                    if (t.getStatus() == Task.Status.OPEN) {
+                        queue.remove(t);
+                        queue.add(next);
+                    }
+                }
+                long sequence = sync.claim();
+                logged[0] = log(OP_PUT, journal == null ? null : journalRecord(next), sequence);
+                sync.publish(sequence, ChangeEvent.Type.UPDATE, key, next.copy());
+                return next;
+            });
+        } finally {
+            exitMutation(ticket);
+        }
+        if (blocker[0] != null) {
+            blocker[0].await();
+            update(id, name, description, reposition, priority, dueTime);
+            return;
+        }
+        if (logged[0] < 0) {
+            throw new NotFoundException("Task not found: " + id);
+        }
+        sync(logged[0]);
+    }
+
+    /**
+     * Claims the open task with the highest priority (then the earliest due time) and returns
+     * a copy of it, now CLAIMED, or null if no task is open. However many workers call this
+     * at once, each open task is returned to exactly one of them.
+     */
+    public Task claimNextTask() {
+        long start = claimOp.start();
+        Task claimed = null;
+        try {
+            String id;
+            // a polled ID whose task was deleted or claimed since it was queued is skipped
+            while (claimed == null && (id = queue.pollFirst()) != null) {
+                claimed = changeStatus(id, Task.Status.OPEN, Task.Status.CLAIMED);
+            }
+        } catch (RuntimeException e) {
+            throw claimOp.failed(start, e);
+        }
+        claimOp.succeeded(start);
+        return claimed;
+    }
+
+    /** Marks a claimed task DONE. */
+    public void completeTask(String taskId) {
+        long start = completeOp.start();
+        try {
+            String id = requireId(taskId);
+            if (changeStatus(id, Task.Status.CLAIMED, Task.Status.DONE) == null) {
+                throw notClaimed(id);
+            }
+        } catch (RuntimeException e) {
+            throw completeOp.failed(start, e);
+        }
+        completeOp.succeeded(start);
+    }
+
+    /** Puts a claimed task back in the claim queue, OPEN again, at its priority and due time. */
+    public void releaseTask(String taskId) {
+        long start = releaseOp.start();
+        try {
+            String id = requireId(taskId);
+            if (changeStatus(id, Task.Status.CLAIMED, Task.Status.OPEN) == null) {
+                throw notClaimed(id);
+            }
+        } catch (RuntimeException e) {
+            throw releaseOp.failed(start, e);
+        }
+        releaseOp.succeeded(start);
+    }
+
+    /** Number of OPEN tasks, i.e. tasks claimNextTask can still hand out. */
+    public int getOpenTaskCount() {
+        return queue.size();
     }
 
+    /** A copy of the stored task, or null; changing it does not change the service. */
     public Task getTask(String taskId) {
-        String id = requireId(taskId);
-        return tasks.get(id);
+        return copyOf(tasks.get(requireId(taskId)));
+    }
+
+    /**
+     * Ordered feed of add, update and delete events, for caches and indexes that follow this
+     * service instead of polling getAllTasksView(). Events restored at startup are not
+     * published; sequences start at 0 for every new service.
+     */
+    public ChangeFeed<Task> getChangeFeed() {
+        return changes;
     }
 
+    /**
+     * What changed since a client's last sync, by modification sequence, with tombstones for
+     * deleted tasks; getSyncIndex().currentToken() starts a client off after a full read.
+     */
+    public SyncIndex<Task> getSyncIndex() {
+        return sync;
+    }
+
+    /** Up to limit tasks changed since syncToken; see SyncIndex.changesSince. */
+    public SyncIndex.Delta<Task> getTaskChanges(String syncToken, int limit) {
+        return sync.changesSince(syncToken, limit);
+    }
+
+    /**
+     * Call counts, failures and latency of addTask, updateTask, deleteTask, claimNextTask,
+     * completeTask and releaseTask; disabled until getMetrics().setEnabled(true), and
+     * published over JMX by getMetrics().registerMBean().
+     */
+    public ServiceMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Read-only live view of the stored tasks. Lookups and iteration hand out copies, as
+     * getTask does, so changing one does not change the service.
+     */
     public Map<String, Task> getAllTasksView() {
-        return Collections.unmodifiableMap(tasks);
+        return view;
     }
 
-    private Task getTaskOrThrow(String taskId) {
-        String id = requireId(taskId);
+    /**
+     * Lazy stream over all tasks, for exports and analytics: nothing is copied up front, and
+     * a parallel stream splits the underlying store evenly. Weakly consistent: tasks changed
+     * during the walk may be seen in either state.
+     */
+    public Stream<Task> streamTasks() {
+        return StreamSupport.stream(tasks.spliterator(), false).map(Task::copy);
+    }
+
+    /**
+     * Up to limit tasks in taskId order, after cursor: null for the first page, otherwise
+     * Page.getNextCursor() of the previous page.
+     */
+    public Page<Task> getTasksPage(String cursor, int limit) {
+        return Page.ofIds(ids, cursor, limit, id -> copyOf(tasks.get(id)));
+    }
+
+    /** Stores task unless its ID is taken; returns its journal position or BulkImport.NOT_INSERTED. */
+    private long insert(Task task) {
+        Task stored = task.copy(); // the caller keeps a task it may change; the store gets its own
+        ByteBuffer record = journal == null ? null : journalRecord(stored);
+        while (true) {
+            long[] logged = {BulkImport.NOT_INSERTED};
+            WriteIntents.Commit[] blocker = {null};
+            int ticket = enterMutation();
+            try {
+                tasks.computeIfAbsent(task.getTaskId(), key -> {
+                    if ((blocker[0] = intents.holder(key)) != null) {
+                        return null;
+                    }
+                    long sequence = sync.claim();
+                    logged[0] = log(OP_PUT, record, sequence);
+                    added(key, stored, sequence);
+                    return stored;
+                });
+            } finally {
+                exitMutation(ticket);
+            }
+            if (blocker[0] == null) {
+                return logged[0];
+            }
+            blocker[0].await();
+        }
+    }
+
+    /** Removes id; returns the journal position of the removal, or -1 if id is not stored. */
+    private long remove(String id) {
+        ByteBuffer record = journal == null ? null : encodeRemoval(id);
+        while (true) {
+            long[] logged = {-1};
+            WriteIntents.Commit[] blocker = {null};
+            int ticket = enterMutation();
+            try {
+                tasks.computeIfPresent(id, (key, existing) -> {
+                    if ((blocker[0] = intents.holder(key)) != null) {
+                        return existing;
+                    }
+                    long sequence = sync.claim();
+                    logged[0] = log(OP_REMOVE, record, sequence);
+                    removed(key, existing, sequence);
+                    return null;
+                });
+            } finally {
+                exitMutation(ticket);
+            }
+            if (blocker[0] == null) {
+                return logged[0];
+            }
+            blocker[0].await();
+        }
+    }
+
+    /** Publishes and indexes a task just stored under key; called while holding the entry. */
+    private void added(String key, Task task, long sequence) {
+        sync.publish(sequence, ChangeEvent.Type.ADD, key, task.copy());
+        ids.add(key);
+        if (task.getStatus() == Task.Status.OPEN) {
+            queue.add(task);
+        }
+    }
+
+    /** Publishes and unindexes a task just removed from key; called while holding the entry. */
+    private void removed(String key, Task existing, long sequence) {
+        sync.publish(sequence, ChangeEvent.Type.DELETE, key, existing.copy());
+        ids.remove(key);
+        if (existing.getStatus() == Task.Status.OPEN) {
+            queue.remove(existing);
+        }
+    }
+
+    /**
+     * Moves task id from status from to status to, keeping the claim queue in step; returns a
+     * copy of the changed task, or null if id is absent or not in status from.
+     */
+    private Task changeStatus(String id, Task.Status from, Task.Status to) {
+        Task[] changed = {null};
+        long[] logged = {-1};
+        WriteIntents.Commit[] blocker = {null};
+        int ticket = enterMutation();
+        try {
+            tasks.computeIfPresent(id, (key, t) -> {
+                if ((blocker[0] = intents.holder(key)) != null || t.getStatus() != from) {
+                    return t;
+                }
+                Task next = t.copy();
+                next.setStatus(to);
+                if (from == Task.Status.OPEN) {
+                    queue.remove(t); // a no-op when the caller just polled it
+                }
+                if (to == Task.Status.OPEN) {
+                    queue.add(next);
+                }
+                long sequence = sync.claim();
+                logged[0] = log(OP_PUT, journal == null ? null : journalRecord(next), sequence);
+                sync.publish(sequence, ChangeEvent.Type.UPDATE, key, next.copy());
+                changed[0] = next.copy();
+                return next;
+            });
+        } finally {
+            exitMutation(ticket);
+        }
+        if (blocker[0] != null) {
+            blocker[0].await();
+            return changeStatus(id, from, to);
+        }
+        if (changed[0] != null) {
+            sync(logged[0]);
+        }
+        return changed[0];
+    }
+
+    private RuntimeException notClaimed(String id) {
         Task t = tasks.get(id);
         if (t == null) {
-            throw new NotFoundException("Task not found: " + id);
+            return new NotFoundException("Task not found: " + id);
         }
-        return t;
+        return new StatusConflictException("Task " + id + " is " + t.getStatus() + ", not CLAIMED");
     }
 
     private static String requireId(String id) {
-        Objects.requireNonNull(id, "taskId must not be null");
-        String trimmed = id.trim();
-        if (trimmed.isEmpty()) {
-            throw new Task.ValidationException("taskId must not be blank");
+        return Task.validateId(id);
+    }
+
+    private static Task copyOf(Task t) {
+        return t == null ? null : t.copy();
+    }
+
+    // -------- Units of work --------
+
+    /** UnitOfWork step that adds task. */
+    TransactionStep stageAdd(Task task) {
+        Objects.requireNonNull(task, "task must not be null");
+        return new TransactionStep(intents, task.getTaskId(), journal, gate) {
+            private long sequence = -1;
+
+            @Override
+            WriteIntents.Commit prepare(WriteIntents.Commit commit) {
+                WriteIntents.Commit[] blocker = {null};
+                // reserves the absent ID while computeIfAbsent holds its entry, without storing anything
+                Task existing = tasks.computeIfAbsent(id, key -> {
+                    if ((blocker[0] = intents.holder(key)) == null) {
+                        intents.hold(key, commit);
+                    }
+                    return null;
+                });
+                if (existing != null) {
+                    throw new DuplicateIdException("Task ID already exists: " + id);
+                }
+                return blocker[0];
+            }
+
+            @Override
+            byte type() {
+                return OP_PUT;
+            }
+
+            @Override
+            ByteBuffer record() {
+                sequence = sync.claim();
+                return stamped(journalRecord(task), sequence);
+            }
+
+            @Override
+            void apply() {
+                Task stored = task.copy();
+                tasks.computeIfAbsent(id, key -> {
+                    added(key, stored, claimed(sequence));
+                    return stored;
+                });
+                intents.release(id);
+            }
+
+            @Override
+            void abort() {
+                release(sequence);
+                super.abort();
+            }
+        };
+    }
+
+    /** UnitOfWork step that sets a task's name and description. */
+    TransactionStep stageUpdate(String taskId, String name, String description) {
+        String id = requireId(taskId);
+        Task.validateUpdate(name, description);
+        return new TransactionStep(intents, id, journal, gate) {
+            private Task updated; // the stored task as it will be
+            private long sequence = -1;
+
+            @Override
+            WriteIntents.Commit prepare(WriteIntents.Commit commit) {
+                WriteIntents.Commit[] blocker = {null};
+                Task stored = tasks.computeIfPresent(id, (key, t) -> {
+                    if ((blocker[0] = intents.holder(key)) == null) {
+                        intents.hold(key, commit);
+                        updated = t.copy();
+                        updated.setName(name);
+                        updated.setDescription(description);
+                    }
+                    return t;
+                });
+                if (stored == null) {
+                    throw new NotFoundException("Task not found: " + id);
+                }
+                return blocker[0];
+            }
+
+            @Override
+            byte type() {
+                return OP_PUT;
+            }
+
+            @Override
+            ByteBuffer record() {
+                sequence = sync.claim();
+                return stamped(journalRecord(updated), sequence);
+            }
+
+            @Override
+            void apply() {
+                tasks.computeIfPresent(id, (key, t) -> {
+                    sync.publish(claimed(sequence), ChangeEvent.Type.UPDATE, key, updated.copy());
+                    return updated; // held since prepare, so t is the task updated was copied from
+                });
+                intents.release(id);
+            }
+
+            @Override
+            void abort() {
+                release(sequence);
+                super.abort();
+            }
+        };
+    }
+
+    /** UnitOfWork step that deletes a task. */
+    TransactionStep stageDelete(String taskId) {
+        return new TransactionStep(intents, requireId(taskId), journal, gate) {
+            private long sequence = -1;
+
+            @Override
+            WriteIntents.Commit prepare(WriteIntents.Commit commit) {
+                WriteIntents.Commit[] blocker = {null};
+                Task stored = tasks.computeIfPresent(id, (key, t) -> {
+                    if ((blocker[0] = intents.holder(key)) == null) {
+                        intents.hold(key, commit);
+                    }
+                    return t;
+                });
+                if (stored == null) {
+                    throw new NotFoundException("Task not found: " + id);
+                }
+                return blocker[0];
+            }
+
+            @Override
+            byte type() {
+                return OP_REMOVE;
+            }
+
+            @Override
+            ByteBuffer record() {
+                sequence = sync.claim();
+                return stamped(encodeRemoval(id), sequence);
+            }
+
+            @Override
+            void apply() {
+                tasks.computeIfPresent(id, (key, existing) -> {
+                    removed(key, existing, claimed(sequence));
+                    return null;
+                });
+                intents.release(id);
+            }
+
+            @Override
+            void abort() {
+                release(sequence);
+                super.abort();
+            }
+        };
+    }
+
+    // -------- Persistence --------
+
+    /**
+     * Writes all tasks to a snapshot file and returns the journal position it covers;
+     * pass that position to Journal.compact to drop the records the snapshot replaces.
+     * Writers are never paused, so this is meant to run on a background thread.
+     */
+    public long writeSnapshot(Path file) {
+        if (journal == null) {
+            throw new IllegalStateException("snapshots require a journaled TaskService");
+        }
+        long position = journal.position();
+        sync(logSyncState()); // after position, so compacting to it keeps the stamps of the records it replaces
+        gate.awaitQuiescence();
+        try (SnapshotFile.Writer writer = SnapshotFile.create(file, position)) {
+            for (Task t : tasks.asMap().values()) {
+                encodeTo(writer.beginRecord(encodedSize(t)), t);
+            }
+            writer.commit();
+        } catch (IOException e) {
+            throw new UncheckedIOException("cannot write task snapshot " + file, e);
+        }
+        return position;
+    }
+
+    private int enterMutation() {
+        return journal == null ? -1 : gate.enter();
+    }
+
+    private void exitMutation(int ticket) {
+        if (ticket >= 0) {
+            gate.exit(ticket);
+        }
+    }
+
+    private long log(byte type, ByteBuffer record) {
+        return journal == null ? 0 : journal.append(type, record);
+    }
+
+    /** Logs a change stamped with its claimed sync sequence, which is released if the write fails. */
+    private long log(byte type, ByteBuffer record, long sequence) {
+        if (journal == null) {
+            return 0;
+        }
+        try {
+            return journal.append(type, stamped(record, sequence));
+        } catch (RuntimeException e) {
+            sync.release(sequence);
+            throw e;
+        }
+    }
+
+    private ByteBuffer stamped(ByteBuffer record, long sequence) {
+        sync.stamp(record, sequence);
+        return record;
+    }
+
+    /** The sequence a staged change claimed with its journal record, or a new one without a journal. */
+    private long claimed(long sequence) {
+        return sequence >= 0 ? sequence : sync.claim();
+    }
+
+    private void release(long sequence) {
+        if (sequence >= 0) {
+            sync.release(sequence);
+        }
+    }
+
+    /** Logs the sync index's state; returns the journal position after it. */
+    private long logSyncState() {
+        long[] logged = {0};
+        sync.writeState(record -> logged[0] = log(OP_SYNC_STATE, record));
+        return logged[0];
+    }
+
+    /** Ends replay: sync tokens continue from the restored index, or a first state is logged for new ones. */
+    private void finishRestore() {
+        if (!sync.finishRestore()) {
+            sync(logSyncState());
         }
-        if (trimmed.length() > Task.MAX_ID_LENGTH) {
-            throw new Task.ValidationException("taskId must be <= " + Task.MAX_ID_LENGTH + " characters");
+    }
+
+    private void sync(long position) {
+        if (journal != null) {
+            journal.sync(position);
         }
-        return trimmed;
     }
 
+    /** Builds the ID index, in one sorted pass, and the claim queue after loading. */
+    private void indexLoadedTasks() {
+        if (tasks.size() == 0) {
+            return;
+        }
+        String[] loaded = new String[tasks.size()];
+        int n = 0;
+        for (Task t : tasks.asMap().values()) {
+            if (n == loaded.length) {
+                loaded = Arrays.copyOf(loaded, n * 2);
+            }
+            loaded[n++] = t.getTaskId();
+            if (t.getStatus() == Task.Status.OPEN) {
+                queue.add(t);
+            }
+        }
+        Arrays.parallelSort(loaded, 0, n);
+        ids.addAll(Arrays.asList(loaded).subList(0, n));
+    }
+
+    /** Replays one journal record; only used while constructing, before the ID index is built. */
+    private void applyRecord(byte type, ByteBuffer payload) {
+        if (type == OP_PUT) {
+            Task t = decode(payload);
+            tasks.put(t.getTaskId(), t);
+            sync.restore(payload, ChangeEvent.Type.UPDATE, t.getTaskId());
+        } else if (type == OP_REMOVE) {
+            String id = BinaryFields.getString(payload);
+            tasks.remove(id);
+            sync.restore(payload, ChangeEvent.Type.DELETE, id);
+        } else if (type == OP_SYNC_STATE) {
+            sync.restoreState(payload);
+        } else if (type == JournalBatch.TYPE) {
+            JournalBatch.forEach(payload, this::applyRecord);
+        }
+    }
+
+    static ByteBuffer encode(Task t) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(t));
+        encodeTo(buffer, t);
+        return buffer.flip();
+    }
+
+    static int encodedSize(Task t) {
+        return BinaryFields.sizeOf(t.getTaskId())
+                + BinaryFields.sizeOf(t.getName())
+                + BinaryFields.sizeOf(t.getDescription())
+                + 1 + Long.BYTES + 1;
+    }
+
+    /** Record layout: taskId, name, description, priority (byte), dueTime (long), status (byte). */
+    static void encodeTo(ByteBuffer buffer, Task t) {
+        BinaryFields.putString(buffer, t.getTaskId());
+        BinaryFields.putString(buffer, t.getName());
+        BinaryFields.putString(buffer, t.getDescription());
+        buffer.put((byte) t.getPriority());
+        buffer.putLong(t.getDueTime());
+        buffer.put((byte) t.getStatus().ordinal());
+    }
+
+    static Task decode(ByteBuffer buffer) {
+        Task t = new Task(BinaryFields.getString(buffer), BinaryFields.getString(buffer), BinaryFields.getString(buffer));
+        if (buffer.hasRemaining()) { // records written before tasks had a priority end here
+            t.setPriority(buffer.get());
+            t.setDueTime(buffer.getLong());
+            t.setStatus(STATUSES[buffer.get()]);
+        }
+        return t;
+    }
+
+    /** Journal record of t: the record layout, then room for the sync stamp. */
+    private static ByteBuffer journalRecord(Task t) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(t) + SyncIndex.STAMP_SIZE);
+        encodeTo(buffer, t);
+        return buffer.clear();
+    }
+
+    /** Removal record layout: taskId, then room for the sync stamp. */
+    private static ByteBuffer encodeRemoval(String id) {
+        ByteBuffer buffer = ByteBuffer.allocate(BinaryFields.sizeOf(id) + SyncIndex.STAMP_SIZE);
+        BinaryFields.putString(buffer, id);
+        return buffer.clear();
+    }
+
+    /** getAllTasksView(): the store's map, with every task copied on the way out. */
+    private final class CopyingView extends AbstractMap<String, Task> {
+
+        @Override
+        public Task get(Object key) {
+            return copyOf(tasks.asMap().get(key));
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return tasks.asMap().containsKey(key);
+        }
+
+        @Override
+        public int size() {
+            return tasks.size();
+        }
+
+        @Override
+        public Set<Entry<String, Task>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, Task>> iterator() {
+                    Iterator<Task> stored = tasks.asMap().values().iterator();
+                    return new Iterator<Entry<String, Task>>() {
+                        @Override
+                        public boolean hasNext() {
+                            return stored.hasNext();
+                        }
+
+                        @Override
+                        public Entry<String, Task> next() {
+                            Task t = stored.next().copy();
+                            return new AbstractMap.SimpleImmutableEntry<>(t.getTaskId(), t);
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return tasks.size();
+                }
+            };
+        }
+    }
+
+    // thrown without a stack trace: callers branch on these, and filling one in is the slow part
     public static class DuplicateIdException extends RuntimeException {
-        public DuplicateIdException(String message) { super(message); }
+        public DuplicateIdException(String message) { super(message, null, false, false); }
     }
 
     public static class NotFoundException extends RuntimeException {
-        public NotFoundException(String message) { super(message); }
+        public NotFoundException(String message) { super(message, null, false, false); }
+    }
+
+    /** The task exists but is not in the status the call requires. */
+    public static class StatusConflictException extends RuntimeException {
+        public StatusConflictException(String message) { super(message); }
     }
 }
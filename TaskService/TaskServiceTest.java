@@ -1,4 +1,22 @@
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 public class TaskServiceTest {
@@ -70,4 +88,398 @@ public class TaskServiceTest {
         assertThrows(Task.ValidationException.class, () ->
                 service.updateTask("1", " ".repeat(5), "Updated Desc"));
     }
+
+    @Test
+    void testUpdateWithInvalidDescriptionShouldLeaveTheTaskUnchanged() {
+        TaskService service = new TaskService();
+        service.addTask(new Task("1", "Task1", "Description1"));
+        String token = service.getSyncIndex().currentToken();
+
+        assertThrows(Task.ValidationException.class, () ->
+                service.updateTask("1", "Updated", "x".repeat(Task.MAX_DESCRIPTION_LENGTH + 1)));
+        assertEquals("Task1", service.getTask("1").getName());
+        assertEquals(List.of(), service.getTaskChanges(token, 10).getChanges());
+    }
+
+    @Test
+    void testUpdateWithNullDescriptionShouldThrowNullPointer() {
+        TaskService service = new TaskService();
+        service.addTask(new Task("1", "Task1", "Description1"));
+
+        assertThrows(NullPointerException.class, () -> service.updateTask("1", "Updated", null));
+        assertEquals("Task1", service.getTask("1").getName());
+    }
+
+    @Test
+    void testCallersShouldNotShareTheStoredTask() {
+        TaskService service = new TaskService();
+        Task added = new Task("1", "Task1", "Description1");
+        service.addTask(added);
+
+        added.setName("Changed");
+        service.getTask("1").setDescription("Changed too");
+        service.getAllTasksView().get("1").setName("Via view");
+        service.getAllTasksView().values().forEach(t -> t.setDescription("Via iteration"));
+
+        assertEquals("Task1", service.getTask("1").getName());
+        assertEquals("Description1", service.getTask("1").getDescription());
+        assertThrows(UnsupportedOperationException.class, () -> service.getAllTasksView().remove("1"));
+    }
+
+    @Test
+    void testJournaledServiceShouldRestoreStateAfterRestart(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("tasks.log");
+        try (Journal journal = Journal.open(file)) {
+            TaskService service = new TaskService(journal);
+            service.addTask(new Task("1", "Task1", "Description1"));
+            service.addTask(new Task("2", "Task2", "Description2"));
+            service.updateTask("1", "Updated", "Updated Desc");
+            service.deleteTask("2");
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            TaskService restored = new TaskService(journal);
+
+            assertEquals(1, restored.getAllTasksView().size());
+            assertEquals("Updated", restored.getTask("1").getName());
+            assertEquals("Updated Desc", restored.getTask("1").getDescription());
+            assertNull(restored.getTask("2"));
+        }
+    }
+
+    @Test
+    void testSnapshotPlusJournalTailShouldRestoreState(@TempDir Path dir) throws IOException {
+        Path log = dir.resolve("tasks.log");
+        Path snapshot = dir.resolve("tasks.snap");
+        try (Journal journal = Journal.open(log)) {
+            TaskService service = new TaskService(journal, snapshot);
+            service.addTask(new Task("1", "Task1", "Description1"));
+            service.addTask(new Task("2", "Task2", "Description2"));
+            journal.compact(service.writeSnapshot(snapshot));
+            service.updateTask("1", "Updated", "Updated Desc");
+            service.deleteTask("2");
+        }
+
+        try (Journal journal = Journal.open(log)) {
+            TaskService restored = new TaskService(journal, snapshot);
+
+            assertEquals(1, restored.getAllTasksView().size());
+            assertEquals("Updated", restored.getTask("1").getName());
+            assertNull(restored.getTask("2"));
+        }
+    }
+
+    @Test
+    void testImportTasksShouldStoreValidRowsAndReportFailures() {
+        TaskService service = new TaskService();
+        List<String[]> rows = List.of(
+                new String[] {"1", "Task1", "Description1"},
+                new String[] {"2", " ", "Description2"},
+                new String[] {"1", "Task3", "Description3"});
+
+        BulkResult result = service.importTasks(rows, r -> new Task(r[0], r[1], r[2]));
+
+        assertEquals(1, result.getImported());
+        assertEquals(2, result.getFailures().size());
+        assertEquals(BulkResult.Reason.VALIDATION_ERROR, result.getFailures().get(0).getReason());
+        assertEquals(BulkResult.Reason.DUPLICATE_ID, result.getFailures().get(1).getReason());
+        assertEquals("Task1", service.getTask("1").getName());
+    }
+
+    @Test
+    void testChangeFeedShouldCarrySnapshotsOfMutableTasks() {
+        TaskService service = new TaskService();
+        ChangeFeed<Task>.Subscription feed = service.getChangeFeed().subscribe();
+        service.addTask(new Task("1", "Name", "Description"));
+        service.updateTask("1", "New Name", "New Description");
+        service.deleteTask("1");
+
+        ChangeEvent<Task> added = feed.poll();
+        ChangeEvent<Task> updated = feed.poll();
+        ChangeEvent<Task> deleted = feed.poll();
+
+        assertEquals(ChangeEvent.Type.ADD, added.getType());
+        assertEquals("Name", added.getValue().getName()); // not changed by the later update
+        assertEquals(ChangeEvent.Type.UPDATE, updated.getType());
+        assertEquals("New Name", updated.getValue().getName());
+        assertEquals(ChangeEvent.Type.DELETE, deleted.getType());
+        assertNull(feed.poll());
+    }
+
+    @Test
+    void testTaskChangesShouldReturnOnlyWhatChangedSinceTheToken() {
+        TaskService service = new TaskService();
+        for (int i = 0; i < 100; i++) {
+            service.addTask(new Task(Integer.toString(i), "Name", "Description"));
+        }
+        String token = service.getSyncIndex().currentToken();
+        service.updateTask("7", "New Name", "Description");
+        Task claimed = service.claimNextTask();
+        service.deleteTask("42");
+
+        SyncIndex.Delta<Task> delta = service.getTaskChanges(token, 10);
+        List<ChangeEvent<Task>> changes = delta.getChanges();
+
+        assertEquals(3, changes.size());
+        assertEquals("7", changes.get(0).getId());
+        assertEquals("New Name", changes.get(0).getValue().getName());
+        assertEquals(claimed.getTaskId(), changes.get(1).getId());
+        assertEquals(Task.Status.CLAIMED, changes.get(1).getValue().getStatus());
+        assertEquals(ChangeEvent.Type.DELETE, changes.get(2).getType());
+        assertNull(changes.get(2).getValue());
+        assertTrue(service.getTaskChanges(delta.getToken(), 10).getChanges().isEmpty());
+    }
+
+    @Test
+    void testTasksPageShouldWalkAllTasksInIdOrder() {
+        TaskService service = new TaskService();
+        for (String id : List.of("3", "1", "4", "2")) {
+            service.addTask(new Task(id, "Name", "Description"));
+        }
+        service.deleteTask("3");
+
+        Page<Task> first = service.getTasksPage(null, 2);
+        Page<Task> second = service.getTasksPage(first.getNextCursor(), 2);
+
+        assertEquals(List.of("1", "2"), first.getItems().stream().map(Task::getTaskId).collect(Collectors.toList()));
+        assertEquals(List.of("4"), second.getItems().stream().map(Task::getTaskId).collect(Collectors.toList()));
+        assertFalse(second.hasMore());
+    }
+
+    @Test
+    void testTasksPageShouldBeRebuiltFromJournal(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("tasks.log");
+        try (Journal journal = Journal.open(file)) {
+            TaskService service = new TaskService(journal);
+            service.addTask(new Task("2", "Name", "Description"));
+            service.addTask(new Task("1", "Name", "Description"));
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            TaskService service = new TaskService(journal);
+            assertEquals("1", service.getTasksPage(null, 1).getItems().get(0).getTaskId());
+            assertEquals("2", service.getTasksPage("1", 1).getItems().get(0).getTaskId());
+        }
+    }
+
+    @Test
+    void testParallelStreamShouldSeeEveryTask() {
+        TaskService service = new TaskService();
+        for (int i = 0; i < 5000; i++) {
+            service.addTask(new Task("t" + i, "Name", "Description"));
+        }
+
+        assertEquals(5000, service.streamTasks().parallel().map(Task::getTaskId).distinct().count());
+    }
+
+    @Test
+    void testMetricsShouldCountCallsAndFailures() {
+        TaskService service = new TaskService();
+        ServiceMetrics metrics = service.getMetrics();
+        metrics.setEnabled(true);
+
+        service.addTask(new Task("1", "Name", "Description"));
+        assertThrows(TaskService.DuplicateIdException.class, () ->
+                service.addTask(new Task("1", "Name", "Description")));
+        assertThrows(Task.ValidationException.class, () -> service.updateTask("1", "A name that is far too long", "Description"));
+        assertThrows(TaskService.NotFoundException.class, () -> service.deleteTask("2"));
+
+        assertEquals(2, metrics.getOperation("add").getCalls());
+        assertEquals(1, metrics.getOperation("add").getFailureCount());
+        assertEquals(Map.of("ValidationException", 1L), metrics.getOperation("update").getFailures());
+        assertEquals(Map.of("NotFoundException", 1L), metrics.getOperation("delete").getFailures());
+    }
+
+    // ---- Claim queue ----
+
+    @Test
+    void testClaimNextTaskShouldFollowPriorityThenDueTime() {
+        TaskService service = new TaskService();
+        service.addTask(new Task("low", "Name", "Description"));
+        service.addTask(new Task("late", "Name", "Description", 5, 2_000));
+        service.addTask(new Task("early", "Name", "Description", 5, 1_000));
+        service.addTask(new Task("urgent", "Name", "Description", 9, Task.NO_DUE_TIME));
+
+        assertEquals(4, service.getOpenTaskCount());
+        assertEquals("urgent", service.claimNextTask().getTaskId());
+        assertEquals("early", service.claimNextTask().getTaskId());
+        assertEquals("late", service.claimNextTask().getTaskId());
+        Task last = service.claimNextTask();
+        assertEquals("low", last.getTaskId());
+        assertEquals(Task.Status.CLAIMED, last.getStatus());
+        assertNull(service.claimNextTask());
+        assertEquals(0, service.getOpenTaskCount());
+    }
+
+    @Test
+    void testUpdateTaskShouldRepositionOpenTask() {
+        TaskService service = new TaskService();
+        service.addTask(new Task("a", "Name", "Description", 5, Task.NO_DUE_TIME));
+        service.addTask(new Task("b", "Name", "Description", 3, Task.NO_DUE_TIME));
+        service.addTask(new Task("c", "Name", "Description", 1, Task.NO_DUE_TIME));
+
+        service.updateTask("c", "Renamed", "Description", 7, 500);
+        service.updateTask("b", "Name", "Description"); // keeps its priority and place
+
+        assertEquals(3, service.getOpenTaskCount());
+        Task first = service.claimNextTask();
+        assertEquals("c", first.getTaskId());
+        assertEquals(7, first.getPriority());
+        assertEquals(500, first.getDueTime());
+        assertEquals("a", service.claimNextTask().getTaskId());
+        assertEquals("b", service.claimNextTask().getTaskId());
+        assertThrows(Task.ValidationException.class, () -> service.updateTask("a", "Name", "Description", 10, 0));
+    }
+
+    @Test
+    void testDeletedTaskShouldNotBeClaimed() {
+        TaskService service = new TaskService();
+        service.addTask(new Task("a", "Name", "Description", 9, Task.NO_DUE_TIME));
+        service.addTask(new Task("b", "Name", "Description"));
+
+        service.deleteTask("a");
+
+        assertEquals(1, service.getOpenTaskCount());
+        assertEquals("b", service.claimNextTask().getTaskId());
+    }
+
+    @Test
+    void testCompleteAndReleaseShouldRequireAClaimedTask() {
+        TaskService service = new TaskService();
+        service.addTask(new Task("a", "Name", "Description"));
+
+        assertThrows(TaskService.StatusConflictException.class, () -> service.completeTask("a"));
+        assertThrows(TaskService.NotFoundException.class, () -> service.releaseTask("missing"));
+
+        service.claimNextTask();
+        service.releaseTask("a");
+        assertEquals(Task.Status.OPEN, service.getTask("a").getStatus());
+        assertEquals("a", service.claimNextTask().getTaskId());
+        service.completeTask("a");
+        assertEquals(Task.Status.DONE, service.getTask("a").getStatus());
+        assertThrows(TaskService.StatusConflictException.class, () -> service.releaseTask("a"));
+        assertNull(service.claimNextTask());
+    }
+
+    @Test
+    void testConcurrentClaimsShouldHandOutEveryTaskExactlyOnce() throws Exception {
+        TaskService service = new TaskService();
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            service.addTask(new Task("t" + i, "Name", "Description", i % 10, Task.NO_DUE_TIME));
+        }
+        Set<String> claimed = ConcurrentHashMap.newKeySet();
+        AtomicInteger duplicates = new AtomicInteger();
+        int workers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                futures.add(pool.submit(() -> {
+                    for (Task t; (t = service.claimNextTask()) != null; ) {
+                        if (!claimed.add(t.getTaskId())) {
+                            duplicates.incrementAndGet();
+                        }
+                        // repositioning open tasks while others claim must not duplicate them
+                        int other = ThreadLocalRandom.current().nextInt(count);
+                        service.updateTask("t" + other, "Name", "Description", other % 7, other);
+                        service.completeTask(t.getTaskId());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> f : futures) {
+                f.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(0, duplicates.get());
+        assertEquals(count, claimed.size());
+        assertEquals(0, service.getOpenTaskCount());
+        assertTrue(service.streamTasks().allMatch(t -> t.getStatus() == Task.Status.DONE));
+    }
+
+    @Test
+    void testClaimStateShouldSurviveRestart(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("tasks.log");
+        try (Journal journal = Journal.open(file)) {
+            TaskService service = new TaskService(journal);
+            service.addTask(new Task("a", "Name", "Description", 4, 1_000));
+            service.addTask(new Task("b", "Name", "Description", 8, Task.NO_DUE_TIME));
+            service.addTask(new Task("c", "Name", "Description", 2, Task.NO_DUE_TIME));
+            service.claimNextTask(); // b
+        }
+
+        try (Journal journal = Journal.open(file)) {
+            TaskService restored = new TaskService(journal);
+
+            assertEquals(Task.Status.CLAIMED, restored.getTask("b").getStatus());
+            assertEquals(8, restored.getTask("b").getPriority());
+            assertEquals(1_000, restored.getTask("a").getDueTime());
+            assertEquals(2, restored.getOpenTaskCount());
+            assertEquals("a", restored.claimNextTask().getTaskId());
+        }
+    }
+
+    @Test
+    void testDecodeShouldReadRecordsWrittenBeforeClaimFields() {
+        ByteBuffer old = ByteBuffer.allocate(64);
+        BinaryFields.putString(old, "1");
+        BinaryFields.putString(old, "Name");
+        BinaryFields.putString(old, "Description");
+
+        Task t = TaskService.decode(old.flip());
+
+        assertEquals("Name", t.getName());
+        assertEquals(0, t.getPriority());
+        assertFalse(t.hasDueTime());
+        assertEquals(Task.Status.OPEN, t.getStatus());
+    }
+
+    // ---- Disk store ----
+
+    @Test
+    void testDiskStoreServiceShouldServeUpdatesThroughItsCache(@TempDir Path dir) throws IOException {
+        try (DiskRecordStore<Task> store = DiskRecordStore.open(dir, TaskService.RECORD_CODEC, 10)) {
+            TaskService service = new TaskService(store);
+            for (int i = 0; i < 50; i++) {
+                service.addTask(new Task("t" + i, "Name", "Description"));
+            }
+
+            assertEquals("Name", service.getTask("t1").getName());
+            service.updateTask("t1", "Renamed", "Description");
+            assertEquals("Renamed", service.getTask("t1").getName());
+            assertNotSame(service.getTask("t1"), service.getTask("t1")); // copies of the cached task
+            service.deleteTask("t2");
+            assertNull(service.getTask("t2"));
+
+            assertEquals(49, service.streamTasks().count());
+            assertEquals(List.of("t0", "t1", "t10"), service.getTasksPage(null, 3).getItems().stream()
+                    .map(Task::getTaskId).collect(Collectors.toList()));
+            assertTrue(store.cacheStats().getHits() >= 1);
+        }
+    }
+
+    @Test
+    void testDiskStoreServiceShouldRebuildFromJournalAfterCrash(@TempDir Path dir) throws IOException {
+        Path log = dir.resolve("tasks.log");
+        DiskRecordStore<Task> crashed = DiskRecordStore.open(dir.resolve("store"), TaskService.RECORD_CODEC, 10);
+        try (Journal journal = Journal.open(log)) {
+            TaskService service = new TaskService(crashed, journal);
+            service.addTask(new Task("1", "Name", "Description"));
+            service.updateTask("1", "Renamed", "Description");
+        }
+
+        try (Journal journal = Journal.open(log);
+             DiskRecordStore<Task> store = DiskRecordStore.open(dir.resolve("store"), TaskService.RECORD_CODEC, 10)) {
+            TaskService restored = new TaskService(store, journal);
+
+            assertEquals("Renamed", restored.getTask("1").getName());
+            assertEquals(1, store.size());
+        } finally {
+            crashed.close();
+        }
+    }
 }
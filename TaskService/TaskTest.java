@@ -36,6 +36,18 @@ public class TaskTest {
         assertEquals(s(50), task.getDescription());
     }
 
+    @Test
+    void testPriorityAndDueTimeShouldBeOptional() {
+        Task plain = new Task("1", "Name", "Description");
+        Task urgent = new Task("2", "Name", "Description", Task.MAX_PRIORITY, 1_700_000_000_000L);
+
+        assertEquals(0, plain.getPriority());
+        assertFalse(plain.hasDueTime());
+        assertEquals(Task.Status.OPEN, plain.getStatus());
+        assertEquals(Task.MAX_PRIORITY, urgent.getPriority());
+        assertEquals(1_700_000_000_000L, urgent.getDueTime());
+    }
+
     // ---- Negative ----
 
     @Test
@@ -58,6 +70,12 @@ public class TaskTest {
         assertThrows(Task.ValidationException.class, () -> new Task("1", "Name", s(51)));
     }
 
+    @Test
+    void testPriorityOutOfRangeShouldThrow() {
+        assertThrows(Task.ValidationException.class, () -> new Task("1", "Name", "Description", 10, Task.NO_DUE_TIME));
+        assertThrows(Task.ValidationException.class, () -> new Task("1", "Name", "Description", -1, Task.NO_DUE_TIME));
+    }
+
     @Test
     void testUpdatesShouldValidate() {
         Task task = new Task("1", "Name", "Description");
@@ -73,4 +91,40 @@ public class TaskTest {
         Task task = new Task("1", "Name", "Description");
         assertThrows(Task.ValidationException.class, () -> task.setDescription(s(51)));
     }
+
+    // ---- Error-code validation ----
+
+    @Test
+    void testCheckShouldAcceptValidValues() {
+        assertEquals(Validation.OK, Task.check("1", "Name", "Description"));
+        assertTrue(Task.isValid("1", "Name", "Description"));
+    }
+
+    @Test
+    void testCheckShouldReportFirstFailingField() {
+        int code = Task.check("1", "   ", "x".repeat(51));
+
+        assertEquals(Task.FIELD_NAME, Validation.fieldOf(code));
+        assertEquals(Validation.BLANK, Validation.kindOf(code));
+        assertEquals("name must not be blank", Task.describe(code));
+    }
+
+    @Test
+    void testCheckShouldAgreeWithConstructor() {
+        int code = Task.check("1", "Name", "x".repeat(51));
+
+        Task.ValidationException e = assertThrows(Task.ValidationException.class, () ->
+                new Task("1", "Name", "x".repeat(51)));
+        assertEquals(Task.describe(code), e.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> Task.describe(Validation.OK));
+    }
+
+    @Test
+    void testCheckShouldReportPriority() {
+        int code = Task.check("1", "Name", "Description", 10);
+
+        assertEquals(Task.FIELD_PRIORITY, Validation.fieldOf(code));
+        assertEquals("priority must be between 0 and 9", Task.describe(code));
+        assertEquals(Validation.OK, Task.check("1", "Name", "Description", 9));
+    }
 }
@@ -0,0 +1,249 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Changes to contacts, tasks and appointments that are committed all together or not at all.
+ *
+ * Changes are staged with the add/update/delete methods and made by commit(). commit
+ * prepares every change first: the owning service reserves the record (a write intent)
+ * and checks that the change can be made, so an invalid field, a duplicate ID, a missing
+ * record, a stale contact version or a booked slot fails the whole unit of work before
+ * anything is visible. Then the journal records of all changes are
+ * appended as one JournalBatch, so a restart replays all of them or none, and the changes
+ * are applied and the reservations released.
+ *
+ * There is no global lock: units of work touching different records commit in parallel.
+ * Records are reserved in one fixed order, and a unit of work that finds a record reserved
+ * by another one releases its own reservations, waits for the other to finish and starts
+ * over, so commits never deadlock. Single-record calls on the services wait for a
+ * reservation the same way. Reads are not isolated: while a commit applies its changes,
+ * a reader may see some of them and not yet the others, and a staged booking holds its
+ * slot from the moment it is prepared.
+ *
+ * Durability needs all journaled services of a unit of work to share one Journal (each
+ * service replays only its own records from it); commit rejects services with different
+ * journals. Changes to memory-only services are committed but not journaled.
+ *
+ * A UnitOfWork is used by one thread and committed once.
+ */
+public final class UnitOfWork {
+
+    /** Prepare order: by service, then by ID. */
+    private static final Comparator<TransactionStep> ORDER =
+            Comparator.<TransactionStep>comparingLong(s -> s.intents.order()).thenComparing(s -> s.id);
+
+    private final ContactService contacts;         // null when not used
+    private final TaskService tasks;               // null when not used
+    private final AppointmentService appointments; // null when not used
+    private final List<TransactionStep> steps = new ArrayList<>();
+    private boolean committed;
+
+    /** A unit of work over the given services; pass null for a service it does not change. */
+    public UnitOfWork(ContactService contacts, TaskService tasks, AppointmentService appointments) {
+        this.contacts = contacts;
+        this.tasks = tasks;
+        this.appointments = appointments;
+    }
+
+    public void addContact(Contact contact) {
+        stage(contacts().stageAdd(contact));
+    }
+
+    public void updateContact(String contactId, String firstName, String lastName, String phone, String address) {
+        stage(contacts().stageUpdate(contactId, ContactService.ANY_VERSION, firstName, lastName, phone, address));
+    }
+
+    /**
+     * Updates a contact only if it is still at expectedVersion when the unit of work commits;
+     * otherwise commit throws ContactService.VersionConflictException.
+     */
+    public void updateContact(String contactId, long expectedVersion,
+                              String firstName, String lastName, String phone, String address) {
+        if (expectedVersion < 0) {
+            throw new IllegalArgumentException("expectedVersion must not be negative: " + expectedVersion);
+        }
+        stage(contacts().stageUpdate(contactId, expectedVersion, firstName, lastName, phone, address));
+    }
+
+    public void deleteContact(String contactId) {
+        stage(contacts().stageDelete(contactId));
+    }
+
+    public void addTask(Task task) {
+        stage(tasks().stageAdd(task));
+    }
+
+    public void updateTask(String taskId, String name, String description) {
+        stage(tasks().stageUpdate(taskId, name, description));
+    }
+
+    public void deleteTask(String taskId) {
+        stage(tasks().stageDelete(taskId));
+    }
+
+    public void addAppointment(Appointment appointment) {
+        stage(appointments().stageAdd(appointment));
+    }
+
+    public void deleteAppointment(String appointmentId) {
+        stage(appointments().stageDelete(appointmentId));
+    }
+
+    /** Number of staged changes. */
+    public int size() {
+        return steps.size();
+    }
+
+    /**
+     * Makes all staged changes, or none of them if one cannot be made, in which case the
+     * exception of the service that refused it is thrown. Returns once the changes are
+     * visible and, with a journal, durable.
+     *
+     * @throws IllegalArgumentException if a record is changed twice
+     * @throws IllegalStateException if already committed or the services have different journals
+     */
+    public void commit() {
+        if (committed) {
+            throw new IllegalStateException("unit of work already committed");
+        }
+        committed = true;
+        List<TransactionStep> ordered = new ArrayList<>(steps);
+        ordered.sort(ORDER);
+        for (int i = 1; i < ordered.size(); i++) {
+            if (ORDER.compare(ordered.get(i - 1), ordered.get(i)) == 0) {
+                throw new IllegalArgumentException("a unit of work can change " + ordered.get(i).id + " only once");
+            }
+        }
+        Journal journal = sharedJournal(ordered);
+
+        WriteIntents.Commit commit = prepare(ordered);
+        long position;
+        int[] tickets = enterGates(ordered);
+        try {
+            position = append(journal, ordered);
+        } catch (RuntimeException e) {
+            exitGates(ordered, tickets);
+            abort(ordered, ordered.size());
+            commit.finish();
+            throw e;
+        }
+        try {
+            for (TransactionStep step : ordered) {
+                step.apply();
+            }
+        } finally {
+            exitGates(ordered, tickets);
+            commit.finish();
+        }
+        if (journal != null) {
+            journal.sync(position);
+        }
+    }
+
+    /** Prepares every step, backing off and retrying while another commit holds a record. */
+    private static WriteIntents.Commit prepare(List<TransactionStep> ordered) {
+        while (true) {
+            WriteIntents.Commit commit = new WriteIntents.Commit();
+            WriteIntents.Commit blocker = null;
+            int prepared = 0;
+            try {
+                for (; prepared < ordered.size(); prepared++) {
+                    if ((blocker = ordered.get(prepared).prepare(commit)) != null) {
+                        break;
+                    }
+                }
+            } catch (RuntimeException e) {
+                abort(ordered, prepared);
+                commit.finish();
+                throw e;
+            }
+            if (blocker == null) {
+                return commit;
+            }
+            // waiting while holding reservations could deadlock with the holder; let go first
+            abort(ordered, prepared);
+            commit.finish();
+            blocker.await();
+        }
+    }
+
+    /** Aborts the first count steps, last first. */
+    private static void abort(List<TransactionStep> ordered, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            ordered.get(i).abort();
+        }
+    }
+
+    private static long append(Journal journal, List<TransactionStep> ordered) {
+        if (journal == null) {
+            return 0;
+        }
+        JournalBatch batch = new JournalBatch();
+        for (TransactionStep step : ordered) {
+            if (step.journal != null) {
+                batch.add(step.type(), step.record());
+            }
+        }
+        return batch.isEmpty() ? 0 : journal.append(JournalBatch.TYPE, batch.encode());
+    }
+
+    private static Journal sharedJournal(List<TransactionStep> ordered) {
+        Journal journal = null;
+        for (TransactionStep step : ordered) {
+            if (step.journal != null) {
+                if (journal == null) {
+                    journal = step.journal;
+                } else if (journal != step.journal) {
+                    throw new IllegalStateException("journaled services of a unit of work must share one journal");
+                }
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * Enters the gate of every journaled service once, so a snapshot taken meanwhile waits
+     * until the whole batch is applied; tickets[i] belongs to the step i that entered.
+     */
+    private static int[] enterGates(List<TransactionStep> ordered) {
+        int[] tickets = new int[ordered.size()];
+        Map<MutationGate, Boolean> entered = new IdentityHashMap<>();
+        for (int i = 0; i < ordered.size(); i++) {
+            TransactionStep step = ordered.get(i);
+            boolean first = step.journal != null && entered.put(step.gate, Boolean.TRUE) == null;
+            tickets[i] = first ? step.gate.enter() : -1;
+        }
+        return tickets;
+    }
+
+    private static void exitGates(List<TransactionStep> ordered, int[] tickets) {
+        for (int i = 0; i < tickets.length; i++) {
+            if (tickets[i] >= 0) {
+                ordered.get(i).gate.exit(tickets[i]);
+            }
+        }
+    }
+
+    private void stage(TransactionStep step) {
+        if (committed) {
+            throw new IllegalStateException("unit of work already committed");
+        }
+        steps.add(step);
+    }
+
+    private ContactService contacts() {
+        return Objects.requireNonNull(contacts, "unit of work has no ContactService");
+    }
+
+    private TaskService tasks() {
+        return Objects.requireNonNull(tasks, "unit of work has no TaskService");
+    }
+
+    private AppointmentService appointments() {
+        return Objects.requireNonNull(appointments, "unit of work has no AppointmentService");
+    }
+}
@@ -0,0 +1,274 @@
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class UnitOfWorkTest {
+
+    private static final long HOUR = 3_600_000L;
+    private static final long FUTURE = System.currentTimeMillis() + 365L * 24 * HOUR;
+
+    private static Contact contact(String id) {
+        return new Contact(id, "John", "Lennon", "1234567890", "Address");
+    }
+
+    private static Appointment booking(String id, long start, String owner) {
+        return new Appointment(id, start, HOUR, owner, "Meeting");
+    }
+
+    @Test
+    void testCommitShouldApplyChangesAcrossServices() {
+        ContactService contacts = new ContactService();
+        TaskService tasks = new TaskService();
+        AppointmentService appointments = new AppointmentService();
+        tasks.addTask(new Task("t1", "Old", "Old description"));
+
+        UnitOfWork work = new UnitOfWork(contacts, tasks, appointments);
+        work.addContact(contact("c1"));
+        work.updateTask("t1", "New", "New description");
+        work.addAppointment(booking("a1", FUTURE, "room"));
+        work.commit();
+
+        assertNotNull(contacts.getContact("c1"));
+        assertEquals("New", tasks.getTask("t1").getName());
+        assertFalse(appointments.isAvailable("room", FUTURE, FUTURE + HOUR));
+    }
+
+    @Test
+    void testFailingChangeShouldLeaveEveryServiceUnchanged() {
+        ContactService contacts = new ContactService();
+        TaskService tasks = new TaskService();
+        AppointmentService appointments = new AppointmentService();
+        tasks.addTask(new Task("t1", "Old", "Old description"));
+        appointments.addAppointment(booking("a0", FUTURE, "room"));
+
+        UnitOfWork work = new UnitOfWork(contacts, tasks, appointments);
+        work.addContact(contact("c1"));
+        work.deleteTask("t1");
+        work.addAppointment(booking("a1", FUTURE + HOUR / 2, "room")); // overlaps a0
+
+        assertThrows(AppointmentService.ConflictException.class, work::commit);
+        assertNull(contacts.getContact("c1"));
+        assertNotNull(tasks.getTask("t1"));
+        assertNull(appointments.getAppointment("a1"));
+        assertEquals(List.of("a0"), appointments.getBookings("room", FUTURE, FUTURE + 2 * HOUR)
+                .stream().map(Appointment::getAppointmentId).toList());
+
+        // nothing stays reserved: single-record calls go through
+        contacts.addContact(contact("c1"));
+        tasks.deleteTask("t1");
+    }
+
+    @Test
+    void testDuplicateAndMissingRecordsShouldFailTheCommit() {
+        ContactService contacts = new ContactService();
+        TaskService tasks = new TaskService();
+        contacts.addContact(contact("c1"));
+
+        UnitOfWork duplicate = new UnitOfWork(contacts, tasks, null);
+        duplicate.addTask(new Task("t1", "Name", "Description"));
+        duplicate.addContact(contact("c1"));
+        assertThrows(ContactService.DuplicateIdException.class, duplicate::commit);
+        assertNull(tasks.getTask("t1"));
+
+        UnitOfWork missing = new UnitOfWork(contacts, tasks, null);
+        missing.deleteContact("c1");
+        missing.deleteTask("t9");
+        assertThrows(TaskService.NotFoundException.class, missing::commit);
+        assertNotNull(contacts.getContact("c1"));
+    }
+
+    @Test
+    void testStagingShouldValidateArgumentsRightAway() {
+        UnitOfWork work = new UnitOfWork(new ContactService(), new TaskService(), null);
+
+        assertThrows(NullPointerException.class, () -> work.updateTask("t1", null, "Description"));
+        assertThrows(Task.ValidationException.class, () -> work.updateTask("t1", " ", "Description"));
+        assertThrows(NullPointerException.class, () -> work.addAppointment(booking("a1", FUTURE, "room")));
+        assertEquals(0, work.size());
+    }
+
+    @Test
+    void testStaleContactVersionShouldFailTheCommit() {
+        ContactService contacts = new ContactService();
+        TaskService tasks = new TaskService();
+        contacts.addContact(contact("c1"));
+        long version = contacts.getContact("c1").getVersion();
+
+        UnitOfWork work = new UnitOfWork(contacts, tasks, null);
+        work.updateContact("c1", version, "Paul", "McCartney", "0987654321", "Address 2");
+        work.addTask(new Task("t1", "Name", "Description"));
+        contacts.updateContact("c1", "George", "Harrison", "1112223333", "Address 3");
+
+        assertThrows(ContactService.VersionConflictException.class, work::commit);
+        assertEquals("George", contacts.getContact("c1").getFirstName());
+        assertNull(tasks.getTask("t1"));
+    }
+
+    @Test
+    void testCommitShouldBeSingleUseAndRejectRepeatedRecords() {
+        TaskService tasks = new TaskService();
+        tasks.addTask(new Task("t1", "Name", "Description"));
+
+        UnitOfWork twice = new UnitOfWork(null, tasks, null);
+        twice.updateTask("t1", "A", "A");
+        twice.deleteTask("t1");
+        assertThrows(IllegalArgumentException.class, twice::commit);
+
+        UnitOfWork once = new UnitOfWork(null, tasks, null);
+        once.updateTask("t1", "A", "A");
+        once.commit();
+        assertThrows(IllegalStateException.class, once::commit);
+        assertThrows(IllegalStateException.class, () -> once.deleteTask("t1"));
+    }
+
+    @Test
+    void testSharedJournalShouldRestoreTheWholeBatch(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("shared.journal");
+        try (Journal journal = Journal.open(file)) {
+            ContactService contacts = new ContactService(journal);
+            TaskService tasks = new TaskService(journal);
+            AppointmentService appointments = new AppointmentService(journal);
+            contacts.addContact(contact("c1"));
+            tasks.addTask(new Task("t1", "Name", "Description"));
+
+            UnitOfWork work = new UnitOfWork(contacts, tasks, appointments);
+            work.deleteContact("c1");
+            work.deleteTask("t1");
+            work.addTask(new Task("t2", "Other", "Other description"));
+            work.addAppointment(booking("a1", FUTURE, "room"));
+            work.commit();
+        }
+        try (Journal journal = Journal.open(file)) {
+            ContactService contacts = new ContactService(journal);
+            TaskService tasks = new TaskService(journal);
+            AppointmentService appointments = new AppointmentService(journal);
+
+            assertNull(contacts.getContact("c1"));
+            assertNull(tasks.getTask("t1"));
+            assertEquals("Other", tasks.getTask("t2").getName());
+            assertFalse(appointments.isAvailable("room", FUTURE, FUTURE + HOUR));
+        }
+    }
+
+    @Test
+    void testServicesWithDifferentJournalsShouldBeRejected(@TempDir Path dir) throws IOException {
+        try (Journal first = Journal.open(dir.resolve("a.journal"));
+             Journal second = Journal.open(dir.resolve("b.journal"))) {
+            ContactService contacts = new ContactService(first);
+            TaskService tasks = new TaskService(second);
+
+            UnitOfWork work = new UnitOfWork(contacts, tasks, null);
+            work.addContact(contact("c1"));
+            work.addTask(new Task("t1", "Name", "Description"));
+
+            assertThrows(IllegalStateException.class, work::commit);
+            assertNull(contacts.getContact("c1"));
+        }
+    }
+
+    @Test
+    void testConcurrentUnitsOfWorkShouldNotLoseOrSplitChanges() throws Exception {
+        ContactService contacts = new ContactService();
+        TaskService tasks = new TaskService();
+        int workers = 8;
+        int rounds = 300;
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger committed = new AtomicInteger();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < rounds; i++) {
+                        // every worker competes for the same IDs, in a different order each time
+                        String id = Integer.toString(i % 50);
+                        UnitOfWork work = new UnitOfWork(contacts, tasks, null);
+                        work.addTask(new Task(id, "Name", "Description"));
+                        work.addContact(contact(id));
+                        try {
+                            work.commit();
+                            committed.incrementAndGet();
+                            UnitOfWork undo = new UnitOfWork(contacts, tasks, null);
+                            undo.deleteContact(id);
+                            undo.deleteTask(id);
+                            undo.commit();
+                        } catch (TaskService.DuplicateIdException | ContactService.DuplicateIdException e) {
+                            // another worker holds the pair; it removes both again
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> f : futures) {
+                f.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertTrue(committed.get() > 0);
+        assertEquals(0, contacts.getAllContactsView().size());
+        assertEquals(0, tasks.getAllTasksView().size());
+    }
+
+    @Test
+    void testSingleCallsShouldWaitForACommitInsteadOfBreakingIt() throws Exception {
+        TaskService tasks = new TaskService();
+        AppointmentService appointments = new AppointmentService();
+        int rounds = 500;
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Integer> units = pool.submit(() -> {
+                int booked = 0;
+                for (int i = 0; i < rounds; i++) {
+                    UnitOfWork work = new UnitOfWork(null, tasks, appointments);
+                    work.addTask(new Task("t" + i, "Name", "Description"));
+                    work.addAppointment(booking("u" + i, FUTURE + i * HOUR, "room"));
+                    try {
+                        work.commit();
+                        booked++;
+                    } catch (AppointmentService.ConflictException e) {
+                        assertNull(tasks.getTask("t" + i));
+                    }
+                }
+                return booked;
+            });
+            Future<Integer> singles = pool.submit(() -> {
+                int booked = 0;
+                for (int i = 0; i < rounds; i++) {
+                    try {
+                        appointments.addAppointment(booking("s" + i, FUTURE + i * HOUR, "room"));
+                        booked++;
+                    } catch (AppointmentService.ConflictException e) {
+                        // the unit of work got the slot
+                    }
+                }
+                return booked;
+            });
+
+            // every slot went to exactly one side, and every unit of work kept its task
+            assertEquals(rounds, units.get(60, TimeUnit.SECONDS) + singles.get(60, TimeUnit.SECONDS));
+            assertEquals(rounds, appointments.getBookings("room", FUTURE, FUTURE + rounds * HOUR).size());
+            for (Appointment a : appointments.getBookings("room", FUTURE, FUTURE + rounds * HOUR)) {
+                String id = a.getAppointmentId();
+                assertEquals(id.startsWith("u"), tasks.getTask("t" + id.substring(1)) != null);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
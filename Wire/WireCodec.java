@@ -0,0 +1,294 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Compact binary form of Contact, Task and Appointment for syncing to clients.
+ *
+ * A record is a kind byte, the record's fixed-width fields and then its strings as
+ * BinaryFields tiny strings (one length byte plus UTF-8), since no model field is longer
+ * than 50 chars:
+ *
+ *   CONTACT      version (long), phone (long), contactId, firstName, lastName, address
+ *   TASK         priority (byte), status (byte), dueTime (long), taskId, name, description
+ *   APPOINTMENT  appointmentTime (long), durationMillis (long), appointmentId, description,
+ *                owner ("" for none)
+ *
+ * encode writes straight into the caller's buffer and decode reads straight out of it. For
+ * readers that need only some fields, ContactView, TaskView and AppointmentView read a
+ * record in place: numbers cost one absolute load and a string is decoded only when its
+ * getter is called, so forwarding or filtering records builds no Strings at all. A view
+ * is a reusable flyweight; WireFrame.Reader hands out one per kind for a whole frame.
+ */
+public final class WireCodec {
+
+    public static final byte CONTACT = 1;
+    public static final byte TASK = 2;
+    public static final byte APPOINTMENT = 3;
+
+    public static final int MAX_CONTACT_SIZE = 1 + 2 * Long.BYTES
+            + BinaryFields.maxSizeOfTiny(Contact.MAX_ID_LENGTH)
+            + BinaryFields.maxSizeOfTiny(Contact.MAX_FIRST_NAME_LENGTH)
+            + BinaryFields.maxSizeOfTiny(Contact.MAX_LAST_NAME_LENGTH)
+            + BinaryFields.maxSizeOfTiny(Contact.MAX_ADDRESS_LENGTH);
+    public static final int MAX_TASK_SIZE = 1 + 2 + Long.BYTES
+            + BinaryFields.maxSizeOfTiny(Task.MAX_ID_LENGTH)
+            + BinaryFields.maxSizeOfTiny(Task.MAX_NAME_LENGTH)
+            + BinaryFields.maxSizeOfTiny(Task.MAX_DESCRIPTION_LENGTH);
+    public static final int MAX_APPOINTMENT_SIZE = 1 + 2 * Long.BYTES
+            + BinaryFields.maxSizeOfTiny(Appointment.MAX_ID_LENGTH)
+            + BinaryFields.maxSizeOfTiny(Appointment.MAX_DESCRIPTION_LENGTH)
+            + BinaryFields.maxSizeOfTiny(Appointment.MAX_OWNER_LENGTH);
+
+    private static final int CONTACT_STRINGS = 1 + 2 * Long.BYTES;     // offset of contactId
+    private static final int TASK_STRINGS = 1 + 2 + Long.BYTES;        // offset of taskId
+    private static final int APPOINTMENT_STRINGS = 1 + 2 * Long.BYTES; // offset of appointmentId
+    private static final Task.Status[] STATUSES = Task.Status.values();
+
+    private WireCodec() { }
+
+    // -------- Encoding --------
+
+    public static int sizeOf(Contact c) {
+        return CONTACT_STRINGS + BinaryFields.sizeOfTiny(c.getContactId()) + BinaryFields.sizeOfTiny(c.getFirstName())
+                + BinaryFields.sizeOfTiny(c.getLastName()) + BinaryFields.sizeOfTiny(c.getAddress());
+    }
+
+    public static int sizeOf(Task t) {
+        return TASK_STRINGS + BinaryFields.sizeOfTiny(t.getTaskId()) + BinaryFields.sizeOfTiny(t.getName())
+                + BinaryFields.sizeOfTiny(t.getDescription());
+    }
+
+    public static int sizeOf(Appointment a) {
+        return APPOINTMENT_STRINGS + BinaryFields.sizeOfTiny(a.getAppointmentId())
+                + BinaryFields.sizeOfTiny(a.getDescription()) + BinaryFields.sizeOfTiny(ownerField(a));
+    }
+
+    /** Writes c at buffer's position, advancing it; at most MAX_CONTACT_SIZE bytes. */
+    public static void encode(ByteBuffer buffer, Contact c) {
+        buffer.put(CONTACT).putLong(c.getVersion()).putLong(c.getPhoneNumber());
+        BinaryFields.putTinyString(buffer, c.getContactId());
+        BinaryFields.putTinyString(buffer, c.getFirstName());
+        BinaryFields.putTinyString(buffer, c.getLastName());
+        BinaryFields.putTinyString(buffer, c.getAddress());
+    }
+
+    /** Writes t at buffer's position, advancing it; at most MAX_TASK_SIZE bytes. */
+    public static void encode(ByteBuffer buffer, Task t) {
+        buffer.put(TASK).put((byte) t.getPriority()).put((byte) t.getStatus().ordinal()).putLong(t.getDueTime());
+        BinaryFields.putTinyString(buffer, t.getTaskId());
+        BinaryFields.putTinyString(buffer, t.getName());
+        BinaryFields.putTinyString(buffer, t.getDescription());
+    }
+
+    /** Writes a at buffer's position, advancing it; at most MAX_APPOINTMENT_SIZE bytes. */
+    public static void encode(ByteBuffer buffer, Appointment a) {
+        buffer.put(APPOINTMENT).putLong(a.getAppointmentTime()).putLong(a.getDurationMillis());
+        BinaryFields.putTinyString(buffer, a.getAppointmentId());
+        BinaryFields.putTinyString(buffer, a.getDescription());
+        BinaryFields.putTinyString(buffer, ownerField(a));
+    }
+
+    private static String ownerField(Appointment a) {
+        return a.getOwner() == null ? "" : a.getOwner();
+    }
+
+    // -------- Decoding --------
+
+    /** Kind byte of the record at absolute index of buffer. */
+    public static byte kindAt(ByteBuffer buffer, int index) {
+        return buffer.get(index);
+    }
+
+    /**
+     * Size of the record at absolute index of buffer, read from its length bytes without
+     * decoding anything.
+     *
+     * @throws FormatException if the kind is unknown or the record runs past the buffer's limit
+     */
+    public static int sizeAt(ByteBuffer buffer, int index) {
+        if (index >= buffer.limit()) {
+            throw new FormatException("record starts past the end of the buffer");
+        }
+        int kind = buffer.get(index);
+        int end;
+        switch (kind) {
+            case CONTACT -> end = skipStrings(buffer, index + CONTACT_STRINGS, 4);
+            case TASK -> end = skipStrings(buffer, index + TASK_STRINGS, 3);
+            case APPOINTMENT -> end = skipStrings(buffer, index + APPOINTMENT_STRINGS, 3);
+            default -> throw new FormatException("unknown record kind " + kind);
+        }
+        return end - index;
+    }
+
+    private static int skipStrings(ByteBuffer buffer, int index, int count) {
+        for (int i = 0; i < count; i++) {
+            if (index >= buffer.limit()) {
+                throw new FormatException("truncated record");
+            }
+            index = BinaryFields.skipTinyString(buffer, index);
+        }
+        if (index > buffer.limit()) {
+            throw new FormatException("truncated record");
+        }
+        return index;
+    }
+
+    /** Reads a contact written by encode from buffer's position, advancing it; fields are validated. */
+    public static Contact decodeContact(ByteBuffer buffer) {
+        ContactView view = new ContactView().wrap(buffer, buffer.position());
+        Contact c = view.toContact();
+        buffer.position(buffer.position() + view.size());
+        return c;
+    }
+
+    public static Task decodeTask(ByteBuffer buffer) {
+        TaskView view = new TaskView().wrap(buffer, buffer.position());
+        Task t = view.toTask();
+        buffer.position(buffer.position() + view.size());
+        return t;
+    }
+
+    public static Appointment decodeAppointment(ByteBuffer buffer) {
+        AppointmentView view = new AppointmentView().wrap(buffer, buffer.position());
+        Appointment a = view.toAppointment();
+        buffer.position(buffer.position() + view.size());
+        return a;
+    }
+
+    // -------- Views --------
+
+    /** A record read in place; wrap points it at a record, and it stays valid while the bytes do. */
+    public abstract static class View {
+
+        ByteBuffer buffer;
+        int offset;
+        private int size;
+
+        /** Points the view at the record at offset, whose size is size or, if negative, still to be read. */
+        final void point(ByteBuffer buffer, int offset, byte kind, int size) {
+            if (offset >= buffer.limit() || buffer.get(offset) != kind) {
+                throw new FormatException("no record of kind " + kind + " at " + offset);
+            }
+            this.size = size < 0 ? sizeAt(buffer, offset) : size;
+            this.buffer = buffer;
+            this.offset = offset;
+        }
+
+        /** The record's ID. */
+        public abstract String getId();
+
+        /** Encoded size of the record in bytes. */
+        public int size() {
+            return size;
+        }
+
+        /** Absolute index of the string field after the first skip strings. */
+        final int string(int first, int skip) {
+            int index = offset + first;
+            for (int i = 0; i < skip; i++) {
+                index = BinaryFields.skipTinyString(buffer, index);
+            }
+            return index;
+        }
+    }
+
+    public static final class ContactView extends View {
+
+        /** Points this view at the contact at absolute offset of buffer. */
+        public ContactView wrap(ByteBuffer buffer, int offset) {
+            point(buffer, offset, CONTACT, -1);
+            return this;
+        }
+
+        @Override
+        public String getId() { return BinaryFields.tinyStringAt(buffer, offset + CONTACT_STRINGS); }
+
+        public long getVersion() { return buffer.getLong(offset + 1); }
+        public long getPhoneNumber() { return buffer.getLong(offset + 1 + Long.BYTES); }
+        public String getPhone() { return Contact.formatPhone(getPhoneNumber()); }
+        public String getFirstName() { return BinaryFields.tinyStringAt(buffer, string(CONTACT_STRINGS, 1)); }
+        public String getLastName() { return BinaryFields.tinyStringAt(buffer, string(CONTACT_STRINGS, 2)); }
+        public String getAddress() { return BinaryFields.tinyStringAt(buffer, string(CONTACT_STRINGS, 3)); }
+
+        /** The contact, with every field validated as in journal replay. */
+        public Contact toContact() {
+            int first = string(CONTACT_STRINGS, 1);
+            int last = BinaryFields.skipTinyString(buffer, first);
+            int address = BinaryFields.skipTinyString(buffer, last);
+            return Contact.restore(getId(), BinaryFields.tinyStringAt(buffer, first),
+                    BinaryFields.tinyStringAt(buffer, last), getPhone(),
+                    BinaryFields.tinyStringAt(buffer, address), getVersion());
+        }
+    }
+
+    public static final class TaskView extends View {
+
+        /** Points this view at the task at absolute offset of buffer. */
+        public TaskView wrap(ByteBuffer buffer, int offset) {
+            point(buffer, offset, TASK, -1);
+            return this;
+        }
+
+        @Override
+        public String getId() { return BinaryFields.tinyStringAt(buffer, offset + TASK_STRINGS); }
+
+        public int getPriority() { return buffer.get(offset + 1); }
+        public long getDueTime() { return buffer.getLong(offset + 3); }
+        public String getName() { return BinaryFields.tinyStringAt(buffer, string(TASK_STRINGS, 1)); }
+        public String getDescription() { return BinaryFields.tinyStringAt(buffer, string(TASK_STRINGS, 2)); }
+
+        public Task.Status getStatus() {
+            int status = buffer.get(offset + 2);
+            if (status < 0 || status >= STATUSES.length) {
+                throw new FormatException("unknown task status " + status);
+            }
+            return STATUSES[status];
+        }
+
+        /** The task, with every field validated by the Task constructor. */
+        public Task toTask() {
+            int name = string(TASK_STRINGS, 1);
+            Task t = new Task(getId(), BinaryFields.tinyStringAt(buffer, name),
+                    BinaryFields.tinyStringAt(buffer, BinaryFields.skipTinyString(buffer, name)),
+                    getPriority(), getDueTime());
+            t.setStatus(getStatus());
+            return t;
+        }
+    }
+
+    public static final class AppointmentView extends View {
+
+        /** Points this view at the appointment at absolute offset of buffer. */
+        public AppointmentView wrap(ByteBuffer buffer, int offset) {
+            point(buffer, offset, APPOINTMENT, -1);
+            return this;
+        }
+
+        @Override
+        public String getId() { return BinaryFields.tinyStringAt(buffer, offset + APPOINTMENT_STRINGS); }
+
+        public long getAppointmentTime() { return buffer.getLong(offset + 1); }
+        public long getDurationMillis() { return buffer.getLong(offset + 1 + Long.BYTES); }
+        public String getDescription() { return BinaryFields.tinyStringAt(buffer, string(APPOINTMENT_STRINGS, 1)); }
+
+        /** The owner, or null if the appointment books no one. */
+        public String getOwner() {
+            String owner = BinaryFields.tinyStringAt(buffer, string(APPOINTMENT_STRINGS, 2));
+            return owner.isEmpty() ? null : owner;
+        }
+
+        /** The appointment, validated like a journal record (a date in the past is accepted). */
+        public Appointment toAppointment() {
+            String owner = getOwner();
+            if (owner == null && getDurationMillis() == 0) {
+                return new Appointment(getId(), getAppointmentTime(), getDescription(), AppointmentService.REPLAY_CLOCK);
+            }
+            return new Appointment(getId(), getAppointmentTime(), getDurationMillis(), owner, getDescription(),
+                    AppointmentService.REPLAY_CLOCK);
+        }
+    }
+
+    /** Bytes that are not a well-formed record. */
+    public static class FormatException extends RuntimeException {
+        public FormatException(String message) { super(message); }
+    }
+}
@@ -0,0 +1,104 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WireCodecTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    private static Contact updatedContact() {
+        return new Contact("c1", "Jürgen", "Lennon", "0123456789", "東京都 1")
+                .withUpdates("John", "Lennon", "0123456789", "1 W 72nd St");
+    }
+
+    @Test
+    void testContactShouldRoundTripWithVersion() {
+        Contact c = updatedContact();
+        ByteBuffer buffer = ByteBuffer.allocate(WireCodec.MAX_CONTACT_SIZE);
+
+        WireCodec.encode(buffer, c);
+        assertEquals(WireCodec.sizeOf(c), buffer.position());
+        buffer.flip();
+
+        assertEquals(c, WireCodec.decodeContact(buffer));
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void testTaskShouldRoundTripWithPriorityDueTimeAndStatus() {
+        Task t = new Task("t1", "Name", "Description é", 7, 123_456L);
+        t.setStatus(Task.Status.CLAIMED);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(WireCodec.MAX_TASK_SIZE);
+
+        WireCodec.encode(buffer, t);
+        buffer.flip();
+        Task back = WireCodec.decodeTask(buffer);
+
+        assertEquals("t1", back.getTaskId());
+        assertEquals("Description é", back.getDescription());
+        assertEquals(7, back.getPriority());
+        assertEquals(123_456L, back.getDueTime());
+        assertEquals(Task.Status.CLAIMED, back.getStatus());
+    }
+
+    @Test
+    void testPastAppointmentsShouldRoundTripWithAndWithoutBooking() {
+        long past = System.currentTimeMillis() - 24 * HOUR; // synced appointments may be over already
+        Appointment plain = new Appointment("a1", past, "Dentist", AppointmentService.REPLAY_CLOCK);
+        Appointment booking = new Appointment("a2", past, HOUR, "room", "Meeting", AppointmentService.REPLAY_CLOCK);
+        ByteBuffer buffer = ByteBuffer.allocate(2 * WireCodec.MAX_APPOINTMENT_SIZE);
+
+        WireCodec.encode(buffer, plain);
+        WireCodec.encode(buffer, booking);
+        buffer.flip();
+        Appointment first = WireCodec.decodeAppointment(buffer);
+        Appointment second = WireCodec.decodeAppointment(buffer);
+
+        assertEquals(past, first.getAppointmentTime());
+        assertNull(first.getOwner());
+        assertFalse(first.isBooking());
+        assertEquals("room", second.getOwner());
+        assertEquals(HOUR, second.getDurationMillis());
+        assertEquals("Meeting", second.getDescription());
+    }
+
+    @Test
+    void testViewShouldReadFieldsInPlace() {
+        Contact c = updatedContact();
+        ByteBuffer buffer = ByteBuffer.allocate(64 + WireCodec.MAX_CONTACT_SIZE);
+        buffer.position(64);
+        WireCodec.encode(buffer, c);
+
+        WireCodec.ContactView view = new WireCodec.ContactView().wrap(buffer, 64);
+
+        assertEquals(c.getVersion(), view.getVersion());
+        assertEquals("0123456789", view.getPhone());
+        assertEquals("c1", view.getId());
+        assertEquals("1 W 72nd St", view.getAddress());
+        assertEquals("John", view.getFirstName());
+        assertEquals(WireCodec.sizeOf(c), view.size());
+        assertEquals(64 + view.size(), buffer.position()); // reading did not move the buffer
+    }
+
+    @Test
+    void testMalformedRecordsShouldBeRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(WireCodec.MAX_TASK_SIZE);
+        WireCodec.encode(buffer, new Task("t1", "Name", "Description"));
+        int size = buffer.position();
+
+        ByteBuffer truncated = buffer.duplicate().flip().limit(size - 1);
+        assertThrows(WireCodec.FormatException.class, () -> WireCodec.sizeAt(truncated, 0));
+        assertThrows(WireCodec.FormatException.class, () -> new WireCodec.ContactView().wrap(buffer, 0));
+
+        buffer.put(0, (byte) 9);
+        assertThrows(WireCodec.FormatException.class, () -> WireCodec.sizeAt(buffer, 0));
+
+        buffer.put(0, WireCodec.TASK).put(2, (byte) 3); // status out of range
+        assertThrows(WireCodec.FormatException.class, () -> new WireCodec.TaskView().wrap(buffer, 0).toTask());
+
+        buffer.put(2, (byte) 0).put(1, (byte) 10); // priority out of range
+        assertThrows(Task.ValidationException.class, () -> new WireCodec.TaskView().wrap(buffer, 0).toTask());
+    }
+}
@@ -0,0 +1,178 @@
+import java.nio.ByteBuffer;
+
+/**
+ * Batch framing for streaming many WireCodec records at once.
+ *
+ * A frame is a header of its body length (int) and record count (int), followed by that
+ * many records back to back. Records carry their own kind and lengths, so the body needs
+ * no per-record framing, and a stream is just frames one after another: a receiver reads
+ * until frameLength reports a complete frame and then walks it with a Reader.
+ *
+ * A Writer fills one frame in the caller's buffer and refuses a record that does not fit,
+ * leaving the buffer as it was, so a sender fills a buffer, sends it and starts the next
+ * frame with the refused record.
+ */
+public final class WireFrame {
+
+    public static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+    private WireFrame() { }
+
+    /**
+     * Total size (header included) of the frame at buffer's position if all of it is there,
+     * else -1; the position is not changed.
+     */
+    public static int frameLength(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return -1;
+        }
+        int body = buffer.getInt(buffer.position());
+        if (body < 0) {
+            throw new WireCodec.FormatException("negative frame length " + body);
+        }
+        return buffer.remaining() - HEADER_SIZE >= body ? HEADER_SIZE + body : -1;
+    }
+
+    /** Writes one frame at the position of a buffer. */
+    public static final class Writer {
+
+        private final ByteBuffer buffer;
+        private final int start;
+        private int count;
+
+        /** Starts a frame at buffer's position; finish() completes it. */
+        public Writer(ByteBuffer buffer) {
+            if (buffer.remaining() < HEADER_SIZE) {
+                throw new IllegalArgumentException("buffer has no room for a frame header");
+            }
+            this.buffer = buffer;
+            this.start = buffer.position();
+            buffer.position(start + HEADER_SIZE);
+        }
+
+        /**
+         * Appends c if it fits; false (and the buffer unchanged) if not. The exact size is
+         * only computed when less than the largest possible record is left.
+         */
+        public boolean add(Contact c) {
+            if (buffer.remaining() < WireCodec.MAX_CONTACT_SIZE && buffer.remaining() < WireCodec.sizeOf(c)) {
+                return false;
+            }
+            WireCodec.encode(buffer, c);
+            count++;
+            return true;
+        }
+
+        public boolean add(Task t) {
+            if (buffer.remaining() < WireCodec.MAX_TASK_SIZE && buffer.remaining() < WireCodec.sizeOf(t)) {
+                return false;
+            }
+            WireCodec.encode(buffer, t);
+            count++;
+            return true;
+        }
+
+        public boolean add(Appointment a) {
+            if (buffer.remaining() < WireCodec.MAX_APPOINTMENT_SIZE && buffer.remaining() < WireCodec.sizeOf(a)) {
+                return false;
+            }
+            WireCodec.encode(buffer, a);
+            count++;
+            return true;
+        }
+
+        public int count() {
+            return count;
+        }
+
+        /** Writes the header; the buffer's position is then just past the frame. */
+        public void finish() {
+            buffer.putInt(start, buffer.position() - start - HEADER_SIZE).putInt(start + Integer.BYTES, count);
+        }
+    }
+
+    /**
+     * Walks the records of one frame in place. The views it returns are reused for every
+     * record of their kind, so read what is needed before calling next() again.
+     */
+    public static final class Reader {
+
+        private final ByteBuffer frame;
+        private final int count;
+        private final WireCodec.ContactView contact = new WireCodec.ContactView();
+        private final WireCodec.TaskView task = new WireCodec.TaskView();
+        private final WireCodec.AppointmentView appointment = new WireCodec.AppointmentView();
+        private int read;
+        private int current = -1; // offset of the current record in frame
+        private int size;         // and its size
+
+        /**
+         * Reads the frame at buffer's position and advances the position past it.
+         *
+         * @throws WireCodec.FormatException if the buffer does not hold a whole, well-formed frame header
+         */
+        public Reader(ByteBuffer buffer) {
+            int length = frameLength(buffer);
+            if (length < 0) {
+                throw new WireCodec.FormatException("incomplete frame");
+            }
+            this.count = buffer.getInt(buffer.position() + Integer.BYTES);
+            if (count < 0) {
+                throw new WireCodec.FormatException("negative record count " + count);
+            }
+            this.frame = buffer.slice(buffer.position() + HEADER_SIZE, length - HEADER_SIZE);
+            buffer.position(buffer.position() + length);
+        }
+
+        public int count() {
+            return count;
+        }
+
+        /**
+         * Moves to the next record; false after the last one.
+         *
+         * @throws WireCodec.FormatException if the records do not add up to the frame
+         */
+        public boolean next() {
+            int next = current < 0 ? 0 : current + size;
+            if (read == count) {
+                if (next != frame.limit()) {
+                    throw new WireCodec.FormatException("frame has bytes after its last record");
+                }
+                return false;
+            }
+            size = WireCodec.sizeAt(frame, next);
+            current = next;
+            read++;
+            return true;
+        }
+
+        /** Kind of the current record: WireCodec.CONTACT, TASK or APPOINTMENT. */
+        public byte kind() {
+            return WireCodec.kindAt(frame, checkCurrent());
+        }
+
+        /** The current record, which must be a contact. */
+        public WireCodec.ContactView contact() {
+            contact.point(frame, checkCurrent(), WireCodec.CONTACT, size);
+            return contact;
+        }
+
+        public WireCodec.TaskView task() {
+            task.point(frame, checkCurrent(), WireCodec.TASK, size);
+            return task;
+        }
+
+        public WireCodec.AppointmentView appointment() {
+            appointment.point(frame, checkCurrent(), WireCodec.APPOINTMENT, size);
+            return appointment;
+        }
+
+        private int checkCurrent() {
+            if (current < 0) {
+                throw new IllegalStateException("call next() first");
+            }
+            return current;
+        }
+    }
+}
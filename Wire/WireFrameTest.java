@@ -0,0 +1,97 @@
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WireFrameTest {
+
+    private static Contact contact(int i) {
+        return new Contact(Integer.toString(i), "First", "Last", "0123456789", "Address " + i);
+    }
+
+    @Test
+    void testFrameShouldCarryMixedRecordsInOrder() {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        WireFrame.Writer writer = new WireFrame.Writer(buffer);
+        assertTrue(writer.add(contact(1)));
+        assertTrue(writer.add(new Task("t1", "Name", "Description", 3, 99)));
+        assertTrue(writer.add(new Appointment("a1", Long.MAX_VALUE / 2, "Later")));
+        writer.finish();
+        buffer.flip();
+
+        assertEquals(buffer.limit(), WireFrame.frameLength(buffer));
+        WireFrame.Reader reader = new WireFrame.Reader(buffer);
+        assertEquals(3, reader.count());
+        assertFalse(buffer.hasRemaining());
+
+        assertTrue(reader.next());
+        assertEquals(WireCodec.CONTACT, reader.kind());
+        assertEquals("Address 1", reader.contact().getAddress());
+        assertTrue(reader.next());
+        assertEquals(WireCodec.TASK, reader.kind());
+        assertEquals(3, reader.task().getPriority());
+        assertThrows(WireCodec.FormatException.class, reader::contact);
+        assertTrue(reader.next());
+        assertEquals("a1", reader.appointment().getId());
+        assertFalse(reader.next());
+    }
+
+    @Test
+    void testWriterShouldRefuseARecordThatDoesNotFitAndLeaveTheFrameIntact() {
+        ByteBuffer buffer = ByteBuffer.allocate(WireFrame.HEADER_SIZE + 3 * WireCodec.sizeOf(contact(1)) + 5);
+        List<ByteBuffer> frames = new ArrayList<>();
+        int next = 0;
+        while (next < 10) {
+            buffer.clear();
+            WireFrame.Writer writer = new WireFrame.Writer(buffer);
+            while (next < 10 && writer.add(contact(next))) {
+                next++;
+            }
+            writer.finish();
+            frames.add(ByteBuffer.allocate(buffer.position()).put(buffer.flip()).flip());
+        }
+
+        // a stream of frames, read back frame by frame
+        ByteBuffer stream = ByteBuffer.allocate(frames.stream().mapToInt(ByteBuffer::remaining).sum());
+        frames.forEach(stream::put);
+        stream.flip();
+        List<String> ids = new ArrayList<>();
+        while (WireFrame.frameLength(stream) > 0) {
+            WireFrame.Reader reader = new WireFrame.Reader(stream);
+            assertTrue(reader.count() <= 3);
+            while (reader.next()) {
+                ids.add(reader.contact().getId());
+            }
+        }
+        assertEquals(List.of("0", "1", "2", "3", "4", "5", "6", "7", "8", "9"), ids);
+        assertEquals(4, frames.size());
+    }
+
+    @Test
+    void testIncompleteOrInconsistentFramesShouldBeRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        WireFrame.Writer writer = new WireFrame.Writer(buffer);
+        writer.add(contact(1));
+        writer.add(contact(2));
+        writer.finish();
+        buffer.flip();
+
+        ByteBuffer partial = buffer.duplicate().limit(buffer.limit() - 1);
+        assertEquals(-1, WireFrame.frameLength(partial));
+        assertThrows(WireCodec.FormatException.class, () -> new WireFrame.Reader(partial));
+
+        buffer.putInt(Integer.BYTES, 1); // claims one record but holds two
+        WireFrame.Reader reader = new WireFrame.Reader(buffer.duplicate());
+        assertTrue(reader.next());
+        assertThrows(WireCodec.FormatException.class, reader::next);
+
+        buffer.putInt(Integer.BYTES, 3); // claims three records but holds two
+        WireFrame.Reader overlong = new WireFrame.Reader(buffer.duplicate());
+        overlong.next();
+        overlong.next();
+        assertThrows(WireCodec.FormatException.class, overlong::next);
+    }
+}
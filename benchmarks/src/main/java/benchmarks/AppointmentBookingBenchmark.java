@@ -0,0 +1,124 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static benchmarks.ServiceHandles.ADD_APPOINTMENT;
+import static benchmarks.ServiceHandles.APPOINTMENT_END;
+import static benchmarks.ServiceHandles.APPOINTMENT_OWNER;
+import static benchmarks.ServiceHandles.APPOINTMENT_TIME;
+import static benchmarks.ServiceHandles.FREE_SLOTS;
+import static benchmarks.ServiceHandles.NEW_APPOINTMENT_SERVICE;
+import static benchmarks.ServiceHandles.NEW_BOOKING;
+
+/**
+ * Booking checks of AppointmentService on one owner's calendar of size back-to-back
+ * half-hour bookings (every third half hour stays free): the conflict check of
+ * addAppointment, with attempts that always conflict so the calendar does not change,
+ * against a linear scan over all bookings, and a free-slot query over one day.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppointmentBookingBenchmark {
+
+    private static final long START = 1_700_000_000_000L;
+    private static final long HALF_HOUR = 30 * 60_000L;
+    private static final long DAY = 24 * 60 * 60_000L;
+
+    @Param({"10000", "1000000"})
+    int size;
+
+    Object service;
+    Object[] bookings;
+    Object[] attempts;
+    long span;
+
+    @Setup(Level.Trial)
+    public void load() throws Throwable {
+        Clock clock = Clock.fixed(Instant.ofEpochMilli(START), ZoneOffset.UTC);
+        service = (Object) NEW_APPOINTMENT_SERVICE.invokeExact();
+        bookings = new Object[size];
+        for (int i = 0; i < size; i++) {
+            bookings[i] = (Object) NEW_BOOKING.invokeExact(Integer.toString(i), START + (i + i / 2) * HALF_HOUR,
+                    HALF_HOUR, "room", "Booking", clock);
+            ADD_APPOINTMENT.invokeExact(service, bookings[i]);
+        }
+        span = (size + size / 2) * HALF_HOUR;
+        Random random = new Random(42);
+        attempts = new Object[4096];
+        for (int i = 0; i < attempts.length; i++) {
+            // lands on a booked half hour, so every attempt conflicts
+            long booked = (long) APPOINTMENT_TIME.invokeExact(bookings[random.nextInt(size)]);
+            attempts[i] = (Object) NEW_BOOKING.invokeExact("x" + i, booked + 60_000, HALF_HOUR / 2,
+                    "room", "Attempt", clock);
+        }
+        try {
+            ADD_APPOINTMENT.invokeExact(service, attempts[0]);
+            throw new IllegalStateException("attempt did not conflict");
+        } catch (RuntimeException e) {
+            if (!e.getClass().getSimpleName().equals("ConflictException")) {
+                throw e;
+            }
+        }
+    }
+
+    /** addAppointment rejected by the owner's booking index. */
+    @Benchmark
+    public Object indexedCheck() throws Throwable {
+        try {
+            ADD_APPOINTMENT.invokeExact(service, randomAttempt());
+            throw new IllegalStateException("attempt did not conflict");
+        } catch (RuntimeException e) { // ConflictException, checked once in load
+            return e;
+        }
+    }
+
+    /** The same check by comparing the attempt with every booking. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public boolean scan() throws Throwable {
+        Object candidate = randomAttempt();
+        String owner = (String) APPOINTMENT_OWNER.invokeExact(candidate);
+        long start = (long) APPOINTMENT_TIME.invokeExact(candidate);
+        long end = (long) APPOINTMENT_END.invokeExact(candidate);
+        for (Object b : bookings) {
+            if (((String) APPOINTMENT_OWNER.invokeExact(b)).equals(owner)
+                    && (long) APPOINTMENT_TIME.invokeExact(b) < end && start < (long) APPOINTMENT_END.invokeExact(b)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public int freeSlotsOfOneDay() throws Throwable {
+        long from = START + ThreadLocalRandom.current().nextLong(span - DAY);
+        return ((List<?>) FREE_SLOTS.invokeExact(service, "room", from, from + DAY, HALF_HOUR)).size();
+    }
+
+    private Object randomAttempt() {
+        return attempts[ThreadLocalRandom.current().nextInt(attempts.length)];
+    }
+}
@@ -0,0 +1,116 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static benchmarks.ServiceHandles.ADD_APPOINTMENT;
+import static benchmarks.ServiceHandles.APPOINTMENT_METRICS;
+import static benchmarks.ServiceHandles.DELETE_APPOINTMENT;
+import static benchmarks.ServiceHandles.GET_APPOINTMENT;
+import static benchmarks.ServiceHandles.NEW_APPOINTMENT;
+import static benchmarks.ServiceHandles.NEW_APPOINTMENT_SERVICE;
+import static benchmarks.ServiceHandles.SET_METRICS_ENABLED;
+
+/**
+ * Throughput and latency of AppointmentService add, get and delete (appointments cannot
+ * be updated) on a service pre-loaded with size appointments, one minute apart starting
+ * tomorrow. add and delete keep the size constant like in ContactServiceBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppointmentServiceBenchmark {
+
+    private static final long MINUTE = 60_000;
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    /** Whether the service records ServiceMetrics, to measure their overhead. */
+    @Param({"false", "true"})
+    boolean metrics;
+
+    Object service;
+    String[] ids;
+    long start;
+
+    @Setup(Level.Trial)
+    public void load() throws Throwable {
+        service = (Object) NEW_APPOINTMENT_SERVICE.invokeExact();
+        SET_METRICS_ENABLED.invokeExact((Object) APPOINTMENT_METRICS.invokeExact(service), metrics);
+        ids = Keys.shuffled(size);
+        start = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(1);
+        for (int i = 0; i < size; i++) {
+            Object appointment = (Object) NEW_APPOINTMENT.invokeExact(ids[i], start + i * MINUTE, "Dentist");
+            ADD_APPOINTMENT.invokeExact(service, appointment);
+        }
+    }
+
+    @Benchmark
+    public Object get(Keys.Cursor cursor) throws Throwable {
+        return (Object) GET_APPOINTMENT.invokeExact(service, cursor.next(ids));
+    }
+
+    @Benchmark
+    public void add(Unstored fresh) throws Throwable {
+        ADD_APPOINTMENT.invokeExact(service, fresh.appointment);
+    }
+
+    @Benchmark
+    public void delete(Stored fresh) throws Throwable {
+        DELETE_APPOINTMENT.invokeExact(service, fresh.id);
+    }
+
+    /** A new appointment for add, at a random loaded minute; removed again after each call. */
+    @State(Scope.Thread)
+    public static class Unstored {
+
+        final Keys.FreshIds ids = new Keys.FreshIds();
+        String id;
+        Object appointment;
+
+        @Setup(Level.Invocation)
+        public void create(AppointmentServiceBenchmark bench, Keys.Cursor cursor) throws Throwable {
+            id = ids.next();
+            long time = bench.start + Long.parseLong(cursor.next(bench.ids)) * MINUTE;
+            appointment = (Object) NEW_APPOINTMENT.invokeExact(id, time, "Check-up");
+        }
+
+        @TearDown(Level.Invocation)
+        public void remove(AppointmentServiceBenchmark bench) throws Throwable {
+            DELETE_APPOINTMENT.invokeExact(bench.service, id);
+        }
+    }
+
+    /** An appointment stored just before each delete call. */
+    @State(Scope.Thread)
+    public static class Stored {
+
+        final Keys.FreshIds ids = new Keys.FreshIds();
+        String id;
+
+        @Setup(Level.Invocation)
+        public void store(AppointmentServiceBenchmark bench, Keys.Cursor cursor) throws Throwable {
+            id = ids.next();
+            long time = bench.start + Long.parseLong(cursor.next(bench.ids)) * MINUTE;
+            Object appointment = (Object) NEW_APPOINTMENT.invokeExact(id, time, "Check-up");
+            ADD_APPOINTMENT.invokeExact(bench.service, appointment);
+        }
+    }
+}
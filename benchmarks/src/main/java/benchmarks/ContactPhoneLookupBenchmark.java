@@ -0,0 +1,99 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static benchmarks.ServiceHandles.ADD_CONTACT;
+import static benchmarks.ServiceHandles.ALL_CONTACTS_VIEW;
+import static benchmarks.ServiceHandles.CONTACT_PHONE_NUMBER;
+import static benchmarks.ServiceHandles.FIND_CONTACTS_BY_PHONE;
+import static benchmarks.ServiceHandles.FIND_CONTACTS_BY_PHONE_PREFIX;
+import static benchmarks.ServiceHandles.NEW_CONTACT;
+import static benchmarks.ServiceHandles.NEW_CONTACT_SERVICE;
+
+/**
+ * Caller-ID latency for ContactService.findContactsByPhone on size contacts with random
+ * phone numbers: exact lookups of known numbers (the inbound-call path, given the number as
+ * a long), first-page area-code lookups, and for comparison the exact lookup answered by
+ * scanning getAllContactsView().
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContactPhoneLookupBenchmark {
+
+    @Param({"100000", "1000000"})
+    int size;
+
+    @Param({"20"})
+    int pageSize;
+
+    Object service;
+    long[] phones;
+    String[] areaCodes;
+
+    @Setup(Level.Trial)
+    public void load() throws Throwable {
+        service = (Object) NEW_CONTACT_SERVICE.invokeExact();
+        Random random = new Random(42);
+        phones = new long[size];
+        for (int i = 0; i < size; i++) {
+            phones[i] = Math.floorMod(random.nextLong(), 10_000_000_000L);
+            Object contact = (Object) NEW_CONTACT.invokeExact(Integer.toString(i), "First", "Last",
+                    String.format("%010d", phones[i]), "Address");
+            ADD_CONTACT.invokeExact(service, contact);
+        }
+        areaCodes = new String[1000];
+        for (int i = 0; i < areaCodes.length; i++) {
+            areaCodes[i] = String.format("%03d", i);
+        }
+    }
+
+    @Benchmark
+    public int exact() throws Throwable {
+        return ((List<?>) FIND_CONTACTS_BY_PHONE.invokeExact(service, randomPhone())).size();
+    }
+
+    @Benchmark
+    public int areaCode() throws Throwable {
+        String prefix = areaCodes[ThreadLocalRandom.current().nextInt(areaCodes.length)];
+        return ((List<?>) FIND_CONTACTS_BY_PHONE_PREFIX.invokeExact(service, prefix, pageSize)).size();
+    }
+
+    /** exact without the phone index: compares every stored contact's number. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int scan() throws Throwable {
+        long phone = randomPhone();
+        int hits = 0;
+        for (Object c : ((Map<?, ?>) ALL_CONTACTS_VIEW.invokeExact(service)).values()) {
+            if ((long) CONTACT_PHONE_NUMBER.invokeExact(c) == phone) {
+                hits++;
+            }
+        }
+        return hits;
+    }
+
+    private long randomPhone() {
+        return phones[ThreadLocalRandom.current().nextInt(phones.length)];
+    }
+}
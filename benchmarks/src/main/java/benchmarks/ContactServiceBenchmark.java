@@ -0,0 +1,122 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static benchmarks.ServiceHandles.ADD_CONTACT;
+import static benchmarks.ServiceHandles.CONTACT_METRICS;
+import static benchmarks.ServiceHandles.DELETE_CONTACT;
+import static benchmarks.ServiceHandles.GET_CONTACT;
+import static benchmarks.ServiceHandles.NEW_CONTACT;
+import static benchmarks.ServiceHandles.NEW_CONTACT_SERVICE;
+import static benchmarks.ServiceHandles.SET_METRICS_ENABLED;
+import static benchmarks.ServiceHandles.UPDATE_CONTACT;
+
+/**
+ * Throughput and latency of ContactService add, get, update and delete on a service
+ * pre-loaded with size contacts (shared by all benchmark threads).
+ *
+ * add and delete keep the size constant: add removes its contact again and delete adds
+ * the contact it deletes, both in per-invocation fixtures outside the measured call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContactServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    /** Whether the service records ServiceMetrics, to measure their overhead. */
+    @Param({"false", "true"})
+    boolean metrics;
+
+    Object service;
+    String[] ids;
+
+    @Setup(Level.Trial)
+    public void load() throws Throwable {
+        service = (Object) NEW_CONTACT_SERVICE.invokeExact();
+        SET_METRICS_ENABLED.invokeExact((Object) CONTACT_METRICS.invokeExact(service), metrics);
+        ids = Keys.shuffled(size);
+        for (String id : ids) {
+            Object contact = (Object) NEW_CONTACT.invokeExact(id, "John", "Lennon", "1234567890", "Address");
+            ADD_CONTACT.invokeExact(service, contact);
+        }
+    }
+
+    @Benchmark
+    public Object get(Keys.Cursor cursor) throws Throwable {
+        return (Object) GET_CONTACT.invokeExact(service, cursor.next(ids));
+    }
+
+    @Benchmark
+    public void update(Keys.Cursor cursor) throws Throwable {
+        if (cursor.flip()) {
+            UPDATE_CONTACT.invokeExact(service, cursor.next(ids), "Paul", "McCartney", "0987654321", "New Address");
+        } else {
+            UPDATE_CONTACT.invokeExact(service, cursor.next(ids), "John", "Lennon", "1234567890", "Address");
+        }
+    }
+
+    @Benchmark
+    public void add(Unstored fresh) throws Throwable {
+        ADD_CONTACT.invokeExact(service, fresh.contact);
+    }
+
+    @Benchmark
+    public void delete(Stored fresh) throws Throwable {
+        DELETE_CONTACT.invokeExact(service, fresh.id);
+    }
+
+    /** A new contact for add; removed again after each call. */
+    @State(Scope.Thread)
+    public static class Unstored {
+
+        final Keys.FreshIds ids = new Keys.FreshIds();
+        String id;
+        Object contact;
+
+        @Setup(Level.Invocation)
+        public void create() throws Throwable {
+            id = ids.next();
+            contact = (Object) NEW_CONTACT.invokeExact(id, "Ringo", "Starr", "2222222222", "Address");
+        }
+
+        @TearDown(Level.Invocation)
+        public void remove(ContactServiceBenchmark bench) throws Throwable {
+            DELETE_CONTACT.invokeExact(bench.service, id);
+        }
+    }
+
+    /** A contact stored just before each delete call. */
+    @State(Scope.Thread)
+    public static class Stored {
+
+        final Keys.FreshIds ids = new Keys.FreshIds();
+        String id;
+
+        @Setup(Level.Invocation)
+        public void store(ContactServiceBenchmark bench) throws Throwable {
+            id = ids.next();
+            Object contact = (Object) NEW_CONTACT.invokeExact(id, "Ringo", "Starr", "2222222222", "Address");
+            ADD_CONTACT.invokeExact(bench.service, contact);
+        }
+    }
+}
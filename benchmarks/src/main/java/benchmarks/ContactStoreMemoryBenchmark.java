@@ -0,0 +1,110 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static benchmarks.ServiceHandles.ADD_CONTACT;
+import static benchmarks.ServiceHandles.CONTACT_VERSION;
+import static benchmarks.ServiceHandles.GET_CONTACT;
+import static benchmarks.ServiceHandles.NEW_CONTACT;
+import static benchmarks.ServiceHandles.NEW_CONTACT_SERVICE_OVER;
+import static benchmarks.ServiceHandles.NEW_HEAP_CONTACT_STORE;
+import static benchmarks.ServiceHandles.NEW_OFF_HEAP_CONTACT_STORE;
+
+/**
+ * The ContactStore backends compared: random getContact latency on a service holding size
+ * contacts (without the search indexes, so only the store is measured), and the time to
+ * load them; run loadService with -prof gc for the collections it causes.
+ *
+ * After loading, the trial setup prints the heap used after a full GC and the direct memory
+ * reserved, per contact, and how long that full GC took with the data set live (the pause a
+ * large heap costs). The fork gets a 4 GB heap and 2 GB of direct memory; raise both with
+ * -jvmArgsAppend for larger sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-XX:MaxDirectMemorySize=2g"})
+public class ContactStoreMemoryBenchmark {
+
+    @Param({"heap", "offheap"})
+    String backend;
+
+    @Param({"1000000"})
+    int size;
+
+    Object service;
+    String[] ids;
+
+    @Setup(Level.Trial)
+    public void load() throws Throwable {
+        long baseline = heapUsedAfterGc();
+        service = loaded();
+        long start = System.nanoTime();
+        long heap = Math.max(0, heapUsedAfterGc() - baseline);
+        double fullGcMillis = (System.nanoTime() - start) / 1e6;
+        System.out.printf("%n%s, %,d contacts: heap %.1f bytes/contact, direct %.1f bytes/contact,"
+                        + " full GC %.1f ms with the data set live%n",
+                backend, size, (double) heap / size, (double) directBytes() / size, fullGcMillis);
+        ids = Keys.shuffled(size);
+    }
+
+    @Benchmark
+    public long get(Keys.Cursor cursor) throws Throwable {
+        return (long) CONTACT_VERSION.invokeExact((Object) GET_CONTACT.invokeExact(service, cursor.next(ids)));
+    }
+
+    /** Loads a second service of size contacts from scratch. */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public Object loadService() throws Throwable {
+        return loaded();
+    }
+
+    private Object loaded() throws Throwable {
+        Object store = backend.equals("heap")
+                ? (Object) NEW_HEAP_CONTACT_STORE.invokeExact()
+                : (Object) NEW_OFF_HEAP_CONTACT_STORE.invokeExact();
+        Object loaded = (Object) NEW_CONTACT_SERVICE_OVER.invokeExact(store, false);
+        for (int i = 0; i < size; i++) {
+            Object contact = (Object) NEW_CONTACT.invokeExact(Integer.toString(i), "John" + i % 1000,
+                    "Lennon" + i % 997, String.format("%010d", i), i + " W 72nd St, New York");
+            ADD_CONTACT.invokeExact(loaded, contact);
+        }
+        return loaded;
+    }
+
+    private static long heapUsedAfterGc() {
+        System.gc();
+        Runtime rt = Runtime.getRuntime();
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static long directBytes() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) {
+                return pool.getMemoryUsed();
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,136 @@
+package benchmarks;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static benchmarks.ServiceHandles.ADD_CONTACT;
+import static benchmarks.ServiceHandles.CLOSE_HTTP_SERVER;
+import static benchmarks.ServiceHandles.HTTP_SERVER_PORT;
+import static benchmarks.ServiceHandles.NEW_CONTACT;
+import static benchmarks.ServiceHandles.NEW_CONTACT_SERVICE;
+import static benchmarks.ServiceHandles.NEW_HTTP_SERVER;
+import static benchmarks.ServiceHandles.START_HTTP_SERVER;
+import static benchmarks.ServiceHandles.TUNE_JDK_SERVER;
+
+/**
+ * Latency of ServiceHttpServer under many concurrent connections. A plain main class, not a
+ * JMH benchmark: what it measures is one request in flight on each of thousands of
+ * connections at once, which JMH's one-call-per-thread model cannot express.
+ *
+ * Starts a server on the loopback interface over a ContactService holding the given number
+ * of contacts, then runs one client loop per connection: nine in ten requests GET a random
+ * contact, the tenth PUTs an update. A loop's first request opens its connection and is not
+ * measured. Prints throughput, the number of requests that failed (a status other than
+ * 200/204, or an I/O error) and latency percentiles over all measured requests.
+ *
+ * Every connection needs a file descriptor at both ends, so 10,000 connections need a limit
+ * above 20,000 (ulimit -n).
+ *
+ * Usage: java -cp benchmarks.jar benchmarks.HttpLoadBenchmark [connections] [requestsPerConnection] [contacts]
+ */
+public class HttpLoadBenchmark {
+
+    public static void main(String[] args) throws Throwable {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int requests = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        int records = args.length > 2 ? Integer.parseInt(args[2]) : 10_000;
+
+        TUNE_JDK_SERVER.invokeExact(); // before the first HttpServer reads the properties
+        Object contacts = (Object) NEW_CONTACT_SERVICE.invokeExact();
+        for (int i = 0; i < records; i++) {
+            Object contact = (Object) NEW_CONTACT.invokeExact(Integer.toString(i), "First", "Last", "0123456789",
+                    "Address");
+            ADD_CONTACT.invokeExact(contacts, contact);
+        }
+        Object server = (Object) NEW_HTTP_SERVER.invokeExact(new InetSocketAddress("127.0.0.1", 0), contacts,
+                (Object) null, (Object) null);
+        try {
+            START_HTTP_SERVER.invokeExact(server);
+            String base = "http://127.0.0.1:" + (int) HTTP_SERVER_PORT.invokeExact(server) + "/contacts/";
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(30))
+                    .build();
+
+            run(client, base, records, Math.min(connections, 100), 200, new LongAdder()); // warm-up
+
+            LongAdder failed = new LongAdder();
+            long begin = System.nanoTime();
+            long[] latencies = run(client, base, records, connections, requests, failed);
+            long elapsed = System.nanoTime() - begin;
+
+            System.out.printf("%,d connections x %d requests, %,d contacts, %d CPUs%n",
+                    connections, requests, records, Runtime.getRuntime().availableProcessors());
+            System.out.printf("throughput %,.0f req/s, failed %d%n",
+                    (double) connections * requests * 1e9 / elapsed, failed.sum());
+            System.out.printf("latency over %,d requests (ms): p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                    latencies.length, ms(percentile(latencies, 50)), ms(percentile(latencies, 90)),
+                    ms(percentile(latencies, 99)), ms(percentile(latencies, 99.9)),
+                    ms(percentile(latencies, 100)));
+        } finally {
+            CLOSE_HTTP_SERVER.invokeExact(server);
+        }
+    }
+
+    /** Runs all client loops to completion; returns the sorted latencies of the measured requests. */
+    private static long[] run(HttpClient client, String base, int records, int connections, int requests,
+                              LongAdder failed) {
+        List<long[]> perLoop = new ArrayList<>(connections);
+        List<CompletableFuture<Void>> loops = new ArrayList<>(connections);
+        for (int c = 0; c < connections; c++) {
+            long[] latencies = new long[requests];
+            Arrays.fill(latencies, -1);
+            perLoop.add(latencies);
+            loops.add(loop(client, base, records, 0, latencies, failed));
+        }
+        CompletableFuture.allOf(loops.toArray(new CompletableFuture<?>[0])).orTimeout(10, TimeUnit.MINUTES).join();
+        // join happens after every loop's last write, so the arrays can be read here
+        return perLoop.stream().flatMapToLong(Arrays::stream).filter(nanos -> nanos >= 0).sorted().toArray();
+    }
+
+    /** One connection's requests, one at a time; latencies[done] is left at -1 unless measured. */
+    private static CompletableFuture<Void> loop(HttpClient client, String base, int records, int done,
+                                                long[] latencies, LongAdder failed) {
+        if (done == latencies.length) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String id = Integer.toString(ThreadLocalRandom.current().nextInt(records));
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(base + id));
+        if (done % 10 == 9) {
+            request.PUT(HttpRequest.BodyPublishers.ofString(
+                    "{\"firstName\":\"First\",\"lastName\":\"Last\",\"phone\":\"0123456789\",\"address\":\"Moved\"}"));
+        }
+        long start = System.nanoTime();
+        return client.sendAsync(request.build(), HttpResponse.BodyHandlers.discarding()).handle((response, error) -> {
+            if (error != null || (response.statusCode() != 200 && response.statusCode() != 204)) {
+                failed.increment();
+            } else if (done > 0) { // the first request of a loop includes connecting
+                latencies[done] = System.nanoTime() - start;
+            }
+            return null;
+        }).thenCompose(ignored -> loop(client, base, records, done + 1, latencies, failed));
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double ms(long nanos) {
+        return nanos / 1e6;
+    }
+}
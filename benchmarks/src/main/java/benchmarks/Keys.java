@@ -0,0 +1,64 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** ID generation shared by the service benchmarks; IDs stay within the 10 character limit. */
+public final class Keys {
+
+    private static final AtomicInteger CURSORS = new AtomicInteger();
+    private static final AtomicInteger FRESH = new AtomicInteger();
+
+    private Keys() { }
+
+    /** IDs "0" .. size-1 in a fixed random order, so lookups do not walk the map in order. */
+    static String[] shuffled(int size) {
+        String[] ids = new String[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = Integer.toString(i);
+        }
+        Random random = new Random(42);
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String tmp = ids[i];
+            ids[i] = ids[j];
+            ids[j] = tmp;
+        }
+        return ids;
+    }
+
+    /** Per-thread position in the shuffled IDs; threads start at different offsets. */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int position = CURSORS.getAndIncrement() * 7919;
+        private boolean flag;
+
+        String next(String[] ids) {
+            if (++position >= ids.length) {
+                position = 0;
+            }
+            return ids[position];
+        }
+
+        boolean flip() {
+            flag = !flag;
+            return flag;
+        }
+    }
+
+    /** IDs that never collide with shuffled() IDs or with another FreshIds: "x" + owner + "_" + counter. */
+    static final class FreshIds {
+
+        private final String prefix = "x" + FRESH.getAndIncrement() + "_";
+        private int counter;
+
+        String next() {
+            counter = counter < 999_999 ? counter + 1 : 0;
+            return prefix + counter;
+        }
+    }
+}
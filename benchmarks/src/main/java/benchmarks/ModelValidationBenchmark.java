@@ -0,0 +1,118 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static benchmarks.ServiceHandles.CHECK_APPOINTMENT;
+import static benchmarks.ServiceHandles.CHECK_CONTACT;
+import static benchmarks.ServiceHandles.CHECK_TASK;
+import static benchmarks.ServiceHandles.NEW_APPOINTMENT;
+import static benchmarks.ServiceHandles.NEW_CONTACT;
+import static benchmarks.ServiceHandles.NEW_TASK;
+
+/**
+ * Cost of the validating model constructors, for valid input and for input rejected by
+ * the last field checked (so every other field is validated first), next to the same
+ * checks through the allocation-free check() methods that return error codes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelValidationBenchmark {
+
+    // fields read from state so the JIT cannot constant-fold the validation away
+    String id = "1234567890";
+    String firstName = " John ";
+    String lastName = "Lennon";
+    String phone = "1234567890";
+    String address = "1 Abbey Road, London";
+    String badAddress = "1 Abbey Road, St John's Wood, London NW8";
+    String taskName = "Write report";
+    String description = "Quarterly numbers for the board";
+    String badDescription = "Quarterly numbers for the board, split by region and by product";
+    long future = System.currentTimeMillis() + TimeUnit.DAYS.toMillis(365);
+
+    @Benchmark
+    public Object contact() throws Throwable {
+        return (Object) NEW_CONTACT.invokeExact(id, firstName, lastName, phone, address);
+    }
+
+    @Benchmark
+    public Object contactInvalid() throws Throwable {
+        try {
+            return (Object) NEW_CONTACT.invokeExact(id, firstName, lastName, phone, badAddress);
+        } catch (RuntimeException expected) {
+            return expected;
+        }
+    }
+
+    @Benchmark
+    public Object task() throws Throwable {
+        return (Object) NEW_TASK.invokeExact(id, taskName, description);
+    }
+
+    @Benchmark
+    public Object taskInvalid() throws Throwable {
+        try {
+            return (Object) NEW_TASK.invokeExact(id, taskName, badDescription);
+        } catch (RuntimeException expected) {
+            return expected;
+        }
+    }
+
+    @Benchmark
+    public Object appointment() throws Throwable {
+        return (Object) NEW_APPOINTMENT.invokeExact(id, future, description);
+    }
+
+    @Benchmark
+    public Object appointmentInvalid() throws Throwable {
+        try {
+            return (Object) NEW_APPOINTMENT.invokeExact(id, future, badDescription);
+        } catch (RuntimeException expected) {
+            return expected;
+        }
+    }
+
+    @Benchmark
+    public int contactCheck() throws Throwable {
+        return (int) CHECK_CONTACT.invokeExact(id, firstName, lastName, phone, address);
+    }
+
+    @Benchmark
+    public int contactCheckInvalid() throws Throwable {
+        return (int) CHECK_CONTACT.invokeExact(id, firstName, lastName, phone, badAddress);
+    }
+
+    @Benchmark
+    public int taskCheck() throws Throwable {
+        return (int) CHECK_TASK.invokeExact(id, taskName, description);
+    }
+
+    @Benchmark
+    public int taskCheckInvalid() throws Throwable {
+        return (int) CHECK_TASK.invokeExact(id, taskName, badDescription);
+    }
+
+    @Benchmark
+    public int appointmentCheck() throws Throwable {
+        return (int) CHECK_APPOINTMENT.invokeExact(id, future, description);
+    }
+
+    @Benchmark
+    public int appointmentCheckInvalid() throws Throwable {
+        return (int) CHECK_APPOINTMENT.invokeExact(id, future, badDescription);
+    }
+}
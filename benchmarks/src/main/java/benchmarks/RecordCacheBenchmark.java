@@ -0,0 +1,143 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static benchmarks.ServiceHandles.ADD_TASK;
+import static benchmarks.ServiceHandles.CACHE_EVICTIONS;
+import static benchmarks.ServiceHandles.CACHE_HITS;
+import static benchmarks.ServiceHandles.CACHE_MISSES;
+import static benchmarks.ServiceHandles.CACHE_STATS;
+import static benchmarks.ServiceHandles.CLOSE_DISK_STORE;
+import static benchmarks.ServiceHandles.GET_TASK;
+import static benchmarks.ServiceHandles.NEW_TASK;
+import static benchmarks.ServiceHandles.NEW_TASK_SERVICE_OVER;
+import static benchmarks.ServiceHandles.OPEN_DISK_STORE;
+import static benchmarks.ServiceHandles.TASK_RECORD_CODEC;
+
+/**
+ * getTask latency over a DiskRecordStore per cache size, to size the cache for a skewed
+ * workload: reads follow a Zipf distribution (a few tasks are read very often, most rarely),
+ * and the cache holds cachePercent of the records (0 for none).
+ *
+ * The trial setup writes the records into a temporary directory and reopens the store with
+ * the cache, so every run reads the same files. After each iteration the cache hit rate and
+ * evictions of that iteration are printed, so the latency gained by each step of heap spent
+ * on the cache can be read off next to the hit rate that bought it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RecordCacheBenchmark {
+
+    private static final int READS = 1 << 20; // length of the key sequence, repeated
+
+    @Param({"1000000"})
+    int records;
+
+    @Param({"0", "0.1", "1", "10"})
+    double cachePercent;
+
+    @Param({"0.99"})
+    double zipfExponent;
+
+    Path dir;
+    Object store;
+    Object service;
+    String[] keys;
+    Object statsBefore;
+
+    @Setup(Level.Trial)
+    public void load() throws Throwable {
+        dir = Files.createTempDirectory("record-cache-benchmark");
+        Object codec = (Object) TASK_RECORD_CODEC.invokeExact();
+        Object writing = (Object) OPEN_DISK_STORE.invokeExact(dir, codec, 0);
+        Object loading = (Object) NEW_TASK_SERVICE_OVER.invokeExact(writing);
+        for (int i = 0; i < records; i++) {
+            ADD_TASK.invokeExact(loading, (Object) NEW_TASK.invokeExact(id(i), "Task " + i % 1000,
+                    "Description of task " + i));
+        }
+        CLOSE_DISK_STORE.invokeExact(writing); // a clean close, then read back with the cache
+
+        store = (Object) OPEN_DISK_STORE.invokeExact(dir, codec, (int) (records * cachePercent / 100));
+        service = (Object) NEW_TASK_SERVICE_OVER.invokeExact(store);
+        keys = zipfKeys(new Random(42));
+    }
+
+    @Setup(Level.Iteration)
+    public void markStats() throws Throwable {
+        statsBefore = (Object) CACHE_STATS.invokeExact(store);
+    }
+
+    @Benchmark
+    public Object get(Keys.Cursor cursor) throws Throwable {
+        return (Object) GET_TASK.invokeExact(service, cursor.next(keys));
+    }
+
+    @TearDown(Level.Iteration)
+    public void printStats() throws Throwable {
+        Object stats = (Object) CACHE_STATS.invokeExact(store);
+        long hits = (long) CACHE_HITS.invokeExact(stats) - (long) CACHE_HITS.invokeExact(statsBefore);
+        long misses = (long) CACHE_MISSES.invokeExact(stats) - (long) CACHE_MISSES.invokeExact(statsBefore);
+        long evictions = (long) CACHE_EVICTIONS.invokeExact(stats) - (long) CACHE_EVICTIONS.invokeExact(statsBefore);
+        System.out.printf("  cache hit rate %.1f%%, %,d evictions%n",
+                hits + misses == 0 ? 0 : 100.0 * hits / (hits + misses), evictions);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws Throwable {
+        CLOSE_DISK_STORE.invokeExact(store);
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        } catch (IOException e) {
+            System.err.println("cannot delete " + dir + ": " + e);
+        }
+    }
+
+    /** Keys of reads drawn from a Zipf distribution over the record ranks. */
+    private String[] zipfKeys(Random random) {
+        double[] cumulative = new double[records];
+        double sum = 0;
+        for (int rank = 0; rank < records; rank++) {
+            sum += 1 / Math.pow(rank + 1, zipfExponent);
+            cumulative[rank] = sum;
+        }
+        String[] drawn = new String[READS];
+        for (int i = 0; i < READS; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+            rank = rank < 0 ? -rank - 1 : rank;
+            // spread popular ranks over the ID space, so they do not share a segment
+            drawn[i] = id((int) ((rank * 2_654_435_761L) % records));
+        }
+        return drawn;
+    }
+
+    private static String id(int i) {
+        return "t" + i;
+    }
+}
@@ -0,0 +1,191 @@
+package benchmarks;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Method handles for the service and model classes.
+ *
+ * The services live in the default package, which code in a named package cannot name,
+ * and JMH does not generate harness code for benchmarks in the default package. So each
+ * operation is looked up once into a static final handle in which the default-package
+ * types are replaced by Object. The JIT treats static final handles as constants and
+ * inlines through them, so a call costs the same as a direct one.
+ */
+final class ServiceHandles {
+
+    static final MethodHandle NEW_CONTACT =
+            constructor("Contact", String.class, String.class, String.class, String.class, String.class);
+    static final MethodHandle CHECK_CONTACT = staticMethod("Contact", "check", int.class,
+            String.class, String.class, String.class, String.class, String.class);
+    static final MethodHandle NEW_CONTACT_SERVICE = constructor("ContactService");
+    static final MethodHandle ADD_CONTACT = method("ContactService", "addContact", void.class, "Contact");
+    static final MethodHandle GET_CONTACT = method("ContactService", "getContact", "Contact", String.class);
+    static final MethodHandle UPDATE_CONTACT = method("ContactService", "updateContact", void.class,
+            String.class, String.class, String.class, String.class, String.class);
+    static final MethodHandle DELETE_CONTACT = method("ContactService", "deleteContact", void.class, String.class);
+    static final MethodHandle CONTACT_METRICS = method("ContactService", "getMetrics", "ServiceMetrics");
+    static final MethodHandle CONTACT_VERSION = method("Contact", "getVersion", long.class);
+    static final MethodHandle NEW_HEAP_CONTACT_STORE = constructor("HeapContactStore");
+    static final MethodHandle NEW_OFF_HEAP_CONTACT_STORE = constructor("OffHeapContactStore");
+    static final MethodHandle NEW_CONTACT_SERVICE_OVER = constructor("ContactService", "RecordStore", boolean.class);
+    static final MethodHandle CONTACT_PHONE_NUMBER = method("Contact", "getPhoneNumber", long.class);
+    static final MethodHandle FIND_CONTACTS_BY_PHONE =
+            method("ContactService", "findContactsByPhone", List.class, long.class);
+    static final MethodHandle FIND_CONTACTS_BY_PHONE_PREFIX =
+            method("ContactService", "findContactsByPhonePrefix", List.class, String.class, int.class);
+    static final MethodHandle ALL_CONTACTS_VIEW = method("ContactService", "getAllContactsView", Map.class);
+
+    static final MethodHandle NEW_TASK = constructor("Task", String.class, String.class, String.class);
+    static final MethodHandle CHECK_TASK =
+            staticMethod("Task", "check", int.class, String.class, String.class, String.class);
+    static final MethodHandle NEW_TASK_SERVICE = constructor("TaskService");
+    static final MethodHandle ADD_TASK = method("TaskService", "addTask", void.class, "Task");
+    static final MethodHandle GET_TASK = method("TaskService", "getTask", "Task", String.class);
+    static final MethodHandle UPDATE_TASK = method("TaskService", "updateTask", void.class,
+            String.class, String.class, String.class);
+    static final MethodHandle DELETE_TASK = method("TaskService", "deleteTask", void.class, String.class);
+    static final MethodHandle TASK_METRICS = method("TaskService", "getMetrics", "ServiceMetrics");
+    static final MethodHandle NEW_TASK_SERVICE_OVER = constructor("TaskService", "RecordStore");
+    static final MethodHandle TASK_RECORD_CODEC = staticGetter("TaskService", "RECORD_CODEC", "RecordCodec");
+    static final MethodHandle NEW_PRIORITIZED_TASK =
+            constructor("Task", String.class, String.class, String.class, int.class, long.class);
+    static final MethodHandle TASK_MAX_PRIORITY = staticGetter("Task", "MAX_PRIORITY", int.class);
+    static final MethodHandle TASK_NO_DUE_TIME = staticGetter("Task", "NO_DUE_TIME", long.class);
+    static final MethodHandle TASK_ID = method("Task", "getTaskId", String.class);
+    static final MethodHandle CLAIM_NEXT_TASK = method("TaskService", "claimNextTask", "Task");
+    static final MethodHandle RELEASE_TASK = method("TaskService", "releaseTask", void.class, String.class);
+
+    static final MethodHandle OPEN_DISK_STORE =
+            staticMethod("DiskRecordStore", "open", "DiskRecordStore", Path.class, "RecordCodec", int.class);
+    static final MethodHandle CLOSE_DISK_STORE = method("DiskRecordStore", "close", void.class);
+    static final MethodHandle CACHE_STATS = method("DiskRecordStore", "cacheStats", "CacheStats");
+    static final MethodHandle CACHE_HITS = method("CacheStats", "getHits", long.class);
+    static final MethodHandle CACHE_MISSES = method("CacheStats", "getMisses", long.class);
+    static final MethodHandle CACHE_EVICTIONS = method("CacheStats", "getEvictions", long.class);
+
+    static final MethodHandle NEW_APPOINTMENT = constructor("Appointment", String.class, long.class, String.class);
+    static final MethodHandle CHECK_APPOINTMENT =
+            staticMethod("Appointment", "check", int.class, String.class, long.class, String.class);
+    static final MethodHandle NEW_APPOINTMENT_SERVICE = constructor("AppointmentService");
+    static final MethodHandle ADD_APPOINTMENT =
+            method("AppointmentService", "addAppointment", void.class, "Appointment");
+    static final MethodHandle GET_APPOINTMENT =
+            method("AppointmentService", "getAppointment", "Appointment", String.class);
+    static final MethodHandle DELETE_APPOINTMENT =
+            method("AppointmentService", "deleteAppointment", void.class, String.class);
+    static final MethodHandle APPOINTMENT_METRICS =
+            method("AppointmentService", "getMetrics", "ServiceMetrics");
+    static final MethodHandle NEW_BOOKING = constructor("Appointment", String.class, long.class, long.class,
+            String.class, String.class, Clock.class);
+    static final MethodHandle APPOINTMENT_TIME = method("Appointment", "getAppointmentTime", long.class);
+    static final MethodHandle APPOINTMENT_END = method("Appointment", "getEndTime", long.class);
+    static final MethodHandle APPOINTMENT_OWNER = method("Appointment", "getOwner", String.class);
+    static final MethodHandle FREE_SLOTS = method("AppointmentService", "getFreeSlots", List.class,
+            String.class, long.class, long.class, long.class);
+
+    static final MethodHandle CONTACT_TO_JSON = staticMethod("ServiceHttpServer", "toJson", String.class, "Contact");
+    static final MethodHandle PARSE_JSON = staticMethod("Json", "parseObject", Map.class, String.class);
+    static final MethodHandle TUNE_JDK_SERVER = staticMethod("ServiceHttpServer", "tuneJdkServer", void.class);
+    static final MethodHandle NEW_HTTP_SERVER = constructor("ServiceHttpServer", InetSocketAddress.class,
+            "ContactService", "TaskService", "AppointmentService");
+    static final MethodHandle START_HTTP_SERVER = method("ServiceHttpServer", "start", void.class);
+    static final MethodHandle HTTP_SERVER_PORT = method("ServiceHttpServer", "getPort", int.class);
+    static final MethodHandle CLOSE_HTTP_SERVER = method("ServiceHttpServer", "close", void.class);
+
+    static final MethodHandle WIRE_ENCODE_CONTACT =
+            staticMethod("WireCodec", "encode", void.class, ByteBuffer.class, "Contact");
+    static final MethodHandle WIRE_DECODE_CONTACT =
+            staticMethod("WireCodec", "decodeContact", "Contact", ByteBuffer.class);
+    static final MethodHandle NEW_CONTACT_VIEW = constructor("WireCodec$ContactView");
+    static final MethodHandle WRAP_CONTACT_VIEW = method("WireCodec$ContactView", "wrap",
+            "WireCodec$ContactView", ByteBuffer.class, int.class);
+    static final MethodHandle VIEW_ID = method("WireCodec$View", "getId", String.class);
+    static final MethodHandle NEW_FRAME_WRITER = constructor("WireFrame$Writer", ByteBuffer.class);
+    static final MethodHandle FRAME_ADD_CONTACT = method("WireFrame$Writer", "add", boolean.class, "Contact");
+    static final MethodHandle FRAME_FINISH = method("WireFrame$Writer", "finish", void.class);
+    static final MethodHandle NEW_FRAME_READER = constructor("WireFrame$Reader", ByteBuffer.class);
+    static final MethodHandle FRAME_NEXT = method("WireFrame$Reader", "next", boolean.class);
+    static final MethodHandle FRAME_CONTACT = method("WireFrame$Reader", "contact", "WireCodec$ContactView");
+
+    static final MethodHandle SET_METRICS_ENABLED =
+            method("ServiceMetrics", "setEnabled", void.class, boolean.class);
+
+    private ServiceHandles() { }
+
+    /** Handle for new owner(params); returns Object. */
+    private static MethodHandle constructor(String owner, Object... params) {
+        try {
+            MethodType type = MethodType.methodType(void.class, classes(params));
+            return erase(MethodHandles.publicLookup().findConstructor(Class.forName(owner), type));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** Handle for owner.name(params) taking the receiver as Object; types may be classes or class names. */
+    private static MethodHandle method(String owner, String name, Object returnType, Object... params) {
+        try {
+            MethodType type = MethodType.methodType(classOf(returnType), classes(params));
+            return erase(MethodHandles.publicLookup().findVirtual(Class.forName(owner), name, type));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** Handle for the static method owner.name(params). */
+    private static MethodHandle staticMethod(String owner, String name, Object returnType, Object... params) {
+        try {
+            MethodType type = MethodType.methodType(classOf(returnType), classes(params));
+            return erase(MethodHandles.publicLookup().findStatic(Class.forName(owner), name, type));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** Handle that reads the static field owner.name. */
+    private static MethodHandle staticGetter(String owner, String name, Object type) {
+        try {
+            return erase(MethodHandles.publicLookup().findStaticGetter(Class.forName(owner), name, classOf(type)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** Replaces every default-package type in the handle's signature with Object. */
+    private static MethodHandle erase(MethodHandle handle) {
+        MethodType type = handle.type();
+        for (int i = 0; i < type.parameterCount(); i++) {
+            if (isDefaultPackage(type.parameterType(i))) {
+                type = type.changeParameterType(i, Object.class);
+            }
+        }
+        if (isDefaultPackage(type.returnType())) {
+            type = type.changeReturnType(Object.class);
+        }
+        return handle.asType(type);
+    }
+
+    private static boolean isDefaultPackage(Class<?> c) {
+        return !c.isPrimitive() && !c.isArray() && c.getPackageName().isEmpty();
+    }
+
+    private static Class<?>[] classes(Object[] types) throws ClassNotFoundException {
+        Class<?>[] classes = new Class<?>[types.length];
+        for (int i = 0; i < types.length; i++) {
+            classes[i] = classOf(types[i]);
+        }
+        return classes;
+    }
+
+    private static Class<?> classOf(Object type) throws ClassNotFoundException {
+        return type instanceof Class ? (Class<?>) type : Class.forName((String) type);
+    }
+}
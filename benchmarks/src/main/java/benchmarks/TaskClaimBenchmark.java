@@ -0,0 +1,76 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static benchmarks.ServiceHandles.ADD_TASK;
+import static benchmarks.ServiceHandles.CLAIM_NEXT_TASK;
+import static benchmarks.ServiceHandles.NEW_PRIORITIZED_TASK;
+import static benchmarks.ServiceHandles.NEW_TASK_SERVICE;
+import static benchmarks.ServiceHandles.RELEASE_TASK;
+import static benchmarks.ServiceHandles.TASK_ID;
+import static benchmarks.ServiceHandles.TASK_MAX_PRIORITY;
+import static benchmarks.ServiceHandles.TASK_NO_DUE_TIME;
+
+/**
+ * Claim throughput of TaskService under 64 competing workers: each call claims the most
+ * urgent open task and releases it again, so the queue of size tasks at random priorities
+ * and due times never drains and every call takes the contended path twice. A task claimed
+ * by two workers makes the second release fail, which aborts the run.
+ *
+ * -t overrides the worker count; benchmarks.ThreadSweep 1,4,16,64 TaskClaimBenchmark shows
+ * the scaling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(64)
+public class TaskClaimBenchmark {
+
+    @Param({"200000"})
+    int size;
+
+    Object service;
+
+    @Setup(Level.Trial)
+    public void load() throws Throwable {
+        service = (Object) NEW_TASK_SERVICE.invokeExact();
+        int maxPriority = (int) TASK_MAX_PRIORITY.invokeExact();
+        long noDueTime = (long) TASK_NO_DUE_TIME.invokeExact();
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            long due = random.nextInt(4) == 0 ? noDueTime : random.nextInt(1_000_000);
+            Object task = (Object) NEW_PRIORITIZED_TASK.invokeExact(Integer.toString(i), "Task", "Description",
+                    random.nextInt(maxPriority + 1), due);
+            ADD_TASK.invokeExact(service, task);
+        }
+    }
+
+    @Benchmark
+    public String claimAndRelease() throws Throwable {
+        Object task = (Object) CLAIM_NEXT_TASK.invokeExact(service);
+        if (task == null) {
+            throw new IllegalStateException("the queue ran dry; raise size above the thread count");
+        }
+        String id = (String) TASK_ID.invokeExact(task);
+        RELEASE_TASK.invokeExact(service, id);
+        return id;
+    }
+}
@@ -0,0 +1,120 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import static benchmarks.ServiceHandles.ADD_TASK;
+import static benchmarks.ServiceHandles.DELETE_TASK;
+import static benchmarks.ServiceHandles.GET_TASK;
+import static benchmarks.ServiceHandles.NEW_TASK;
+import static benchmarks.ServiceHandles.NEW_TASK_SERVICE;
+import static benchmarks.ServiceHandles.SET_METRICS_ENABLED;
+import static benchmarks.ServiceHandles.TASK_METRICS;
+import static benchmarks.ServiceHandles.UPDATE_TASK;
+
+/**
+ * Throughput and latency of TaskService add, get, update and delete on a service
+ * pre-loaded with size tasks; add and delete keep the size constant like in
+ * ContactServiceBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    /** Whether the service records ServiceMetrics, to measure their overhead. */
+    @Param({"false", "true"})
+    boolean metrics;
+
+    Object service;
+    String[] ids;
+
+    @Setup(Level.Trial)
+    public void load() throws Throwable {
+        service = (Object) NEW_TASK_SERVICE.invokeExact();
+        SET_METRICS_ENABLED.invokeExact((Object) TASK_METRICS.invokeExact(service), metrics);
+        ids = Keys.shuffled(size);
+        for (String id : ids) {
+            Object task = (Object) NEW_TASK.invokeExact(id, "Write report", "Quarterly numbers for the board");
+            ADD_TASK.invokeExact(service, task);
+        }
+    }
+
+    @Benchmark
+    public Object get(Keys.Cursor cursor) throws Throwable {
+        return (Object) GET_TASK.invokeExact(service, cursor.next(ids));
+    }
+
+    @Benchmark
+    public void update(Keys.Cursor cursor) throws Throwable {
+        if (cursor.flip()) {
+            UPDATE_TASK.invokeExact(service, cursor.next(ids), "Review report", "Check the quarterly numbers");
+        } else {
+            UPDATE_TASK.invokeExact(service, cursor.next(ids), "Write report", "Quarterly numbers for the board");
+        }
+    }
+
+    @Benchmark
+    public void add(Unstored fresh) throws Throwable {
+        ADD_TASK.invokeExact(service, fresh.task);
+    }
+
+    @Benchmark
+    public void delete(Stored fresh) throws Throwable {
+        DELETE_TASK.invokeExact(service, fresh.id);
+    }
+
+    /** A new task for add; removed again after each call. */
+    @State(Scope.Thread)
+    public static class Unstored {
+
+        final Keys.FreshIds ids = new Keys.FreshIds();
+        String id;
+        Object task;
+
+        @Setup(Level.Invocation)
+        public void create() throws Throwable {
+            id = ids.next();
+            task = (Object) NEW_TASK.invokeExact(id, "Call back", "Customer asked for a call");
+        }
+
+        @TearDown(Level.Invocation)
+        public void remove(TaskServiceBenchmark bench) throws Throwable {
+            DELETE_TASK.invokeExact(bench.service, id);
+        }
+    }
+
+    /** A task stored just before each delete call. */
+    @State(Scope.Thread)
+    public static class Stored {
+
+        final Keys.FreshIds ids = new Keys.FreshIds();
+        String id;
+
+        @Setup(Level.Invocation)
+        public void store(TaskServiceBenchmark bench) throws Throwable {
+            id = ids.next();
+            Object task = (Object) NEW_TASK.invokeExact(id, "Call back", "Customer asked for a call");
+            ADD_TASK.invokeExact(bench.service, task);
+        }
+    }
+}
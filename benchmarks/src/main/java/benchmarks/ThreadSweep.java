@@ -0,0 +1,44 @@
+package benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Runs the selected benchmarks once per thread count and writes one JMH JSON result file
+ * per run, jmh-results/threads-N.json, so runs can be compared with any JMH result viewer
+ * or diffed by script.
+ *
+ * Usage: java -cp benchmarks.jar benchmarks.ThreadSweep [threads,...] [JMH options and regexps]
+ * e.g.   java -cp benchmarks.jar benchmarks.ThreadSweep 1,4,16 -p size=100000 ContactServiceBenchmark
+ */
+public class ThreadSweep {
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        String threadList = args.length > 0 ? args[0] : "1,2,4,8";
+        String[] jmhArgs = args.length > 1 ? Arrays.copyOfRange(args, 1, args.length) : new String[0];
+        File dir = new File("jmh-results");
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IllegalStateException("cannot create " + dir);
+        }
+
+        CommandLineOptions cli = new CommandLineOptions(jmhArgs);
+        for (String t : threadList.split(",")) {
+            int threads = Integer.parseInt(t.trim());
+            Options options = new OptionsBuilder()
+                    .parent(cli)
+                    .threads(threads)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(dir, "threads-" + threads + ".json").getPath())
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static benchmarks.ServiceHandles.CONTACT_TO_JSON;
+import static benchmarks.ServiceHandles.FRAME_ADD_CONTACT;
+import static benchmarks.ServiceHandles.FRAME_CONTACT;
+import static benchmarks.ServiceHandles.FRAME_FINISH;
+import static benchmarks.ServiceHandles.FRAME_NEXT;
+import static benchmarks.ServiceHandles.NEW_CONTACT;
+import static benchmarks.ServiceHandles.NEW_CONTACT_VIEW;
+import static benchmarks.ServiceHandles.NEW_FRAME_READER;
+import static benchmarks.ServiceHandles.NEW_FRAME_WRITER;
+import static benchmarks.ServiceHandles.PARSE_JSON;
+import static benchmarks.ServiceHandles.VIEW_ID;
+import static benchmarks.ServiceHandles.WIRE_DECODE_CONTACT;
+import static benchmarks.ServiceHandles.WIRE_ENCODE_CONTACT;
+import static benchmarks.ServiceHandles.WRAP_CONTACT_VIEW;
+
+/**
+ * The binary wire format (WireCodec, WireFrame) against the JSON the HTTP front end speaks,
+ * for one contact and for a frame of batch contacts (the single-record benchmarks ignore batch).
+ *
+ * Each JSON benchmark includes the conversion between String and UTF-8 bytes, since that
+ * is what goes over a connection. The readId benchmarks need one field of a record: the
+ * binary view reads it in place, while JSON has to parse the whole object to find it.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireCodecBenchmark {
+
+    @Param({"16", "256"})
+    int batch;
+
+    Object contact;
+    ByteBuffer buffer;
+    ByteBuffer encoded;
+    byte[] json;
+    Object view;
+
+    ByteBuffer frame;
+    byte[][] jsonBatch;
+    Object[] contacts;
+
+    @Setup(Level.Trial)
+    public void encode() throws Throwable {
+        contact = (Object) NEW_CONTACT.invokeExact("1234567890", "John", "Lennon", "1234567890",
+                "1 Abbey Road, London");
+        buffer = ByteBuffer.allocate(64 * 1024);
+        WIRE_ENCODE_CONTACT.invokeExact(buffer, contact);
+        encoded = ByteBuffer.allocate(buffer.position()).put(buffer.flip());
+        json = ((String) CONTACT_TO_JSON.invokeExact(contact)).getBytes(StandardCharsets.UTF_8);
+        view = (Object) NEW_CONTACT_VIEW.invokeExact();
+
+        contacts = new Object[batch];
+        jsonBatch = new byte[batch][];
+        for (int i = 0; i < batch; i++) {
+            contacts[i] = (Object) NEW_CONTACT.invokeExact(Integer.toString(i), "John", "Lennon", "1234567890",
+                    "1 Abbey Road, London");
+            jsonBatch[i] = ((String) CONTACT_TO_JSON.invokeExact(contacts[i])).getBytes(StandardCharsets.UTF_8);
+        }
+        buffer.clear();
+        writeFrame();
+        frame = ByteBuffer.allocate(buffer.position()).put(buffer.flip());
+    }
+
+    @Benchmark
+    public int binaryEncode() throws Throwable {
+        buffer.clear();
+        WIRE_ENCODE_CONTACT.invokeExact(buffer, contact);
+        return buffer.position();
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() throws Throwable {
+        return ((String) CONTACT_TO_JSON.invokeExact(contact)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Object binaryDecode() throws Throwable {
+        return (Object) WIRE_DECODE_CONTACT.invokeExact(encoded.position(0));
+    }
+
+    @Benchmark
+    public Object jsonDecode() throws Throwable {
+        Map<?, ?> fields = (Map<?, ?>) PARSE_JSON.invokeExact(new String(json, StandardCharsets.UTF_8));
+        return (Object) NEW_CONTACT.invokeExact((String) fields.get("contactId"), (String) fields.get("firstName"),
+                (String) fields.get("lastName"), (String) fields.get("phone"), (String) fields.get("address"));
+    }
+
+    @Benchmark
+    public String binaryReadId() throws Throwable {
+        return (String) VIEW_ID.invokeExact((Object) WRAP_CONTACT_VIEW.invokeExact(view, encoded, 0));
+    }
+
+    @Benchmark
+    public Object jsonReadId() throws Throwable {
+        return ((Map<?, ?>) PARSE_JSON.invokeExact(new String(json, StandardCharsets.UTF_8))).get("contactId");
+    }
+
+    /** Writes the batch into one frame. */
+    @Benchmark
+    public int frameEncode() throws Throwable {
+        buffer.clear();
+        writeFrame();
+        return buffer.position();
+    }
+
+    @Benchmark
+    public int jsonBatchEncode() throws Throwable {
+        int bytes = 0;
+        for (Object c : contacts) {
+            bytes += ((String) CONTACT_TO_JSON.invokeExact(c)).getBytes(StandardCharsets.UTF_8).length;
+        }
+        return bytes;
+    }
+
+    /** Walks the frame and reads every record's id through the reader's reused view. */
+    @Benchmark
+    public int frameScanIds() throws Throwable {
+        Object reader = (Object) NEW_FRAME_READER.invokeExact(frame.position(0));
+        int length = 0;
+        while ((boolean) FRAME_NEXT.invokeExact(reader)) {
+            length += ((String) VIEW_ID.invokeExact((Object) FRAME_CONTACT.invokeExact(reader))).length();
+        }
+        return length;
+    }
+
+    @Benchmark
+    public int jsonBatchScanIds() throws Throwable {
+        int length = 0;
+        for (byte[] body : jsonBatch) {
+            Map<?, ?> fields = (Map<?, ?>) PARSE_JSON.invokeExact(new String(body, StandardCharsets.UTF_8));
+            length += ((String) fields.get("contactId")).length();
+        }
+        return length;
+    }
+
+    private void writeFrame() throws Throwable {
+        Object writer = (Object) NEW_FRAME_WRITER.invokeExact(buffer);
+        for (Object c : contacts) {
+            boolean added = (boolean) FRAME_ADD_CONTACT.invokeExact(writer, c);
+            assert added;
+        }
+        FRAME_FINISH.invokeExact(writer);
+    }
+}